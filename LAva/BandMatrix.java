@@ -0,0 +1,319 @@
+package matrix_calculator;
+
+/** A square Matrix whose non-zero entries lie within a band about the
+ * diagonal: entry (r, c) may be non-zero only if c - r lies between
+ * -LOWER and UPPER, the lower and upper bandwidths. Only the band is
+ * stored, row by row: row r holds columns r - LOWER .. r + UPPER, so that
+ * storage is O(n * bandwidth) and products and solves take
+ * O(n * bandwidth) and O(n * bandwidth^2) time.
+ *
+ * Systems are solved by an LU factorization with partial pivoting that
+ * stays within the band, widened above the diagonal by LOWER to hold the
+ * fill from row swaps. The factorization is kept until an entry is set.
+ *
+ * @author AndyPalan */
+public class BandMatrix {
+
+    /** Creates a new N x N band Matrix of zeros with lower bandwidth LOWER
+     * and upper bandwidth UPPER.
+     *
+     * @throws MatrixException */
+    public BandMatrix(int n, int lower, int upper) throws MatrixException {
+        if (n < 1) {
+            throw new MatrixException("The dimensions of a matrix must be positive.");
+        }
+        if (lower < 0 || upper < 0) {
+            throw new MatrixException("The bandwidths of a matrix must not be negative.");
+        }
+        _n = n;
+        _lower = lower;
+        _upper = upper;
+        _width = _lower + _upper + 1;
+        _data = new double[n * _width];
+    }
+
+    /** Creates a new band Matrix holding the entries of the square Matrix
+     * A, with the narrowest band that contains all of its non-zero entries.
+     *
+     * @throws MatrixException */
+    public BandMatrix(Matrix A) throws MatrixException {
+        this(A, bandwidths(A));
+    }
+
+    /** Creates a new band Matrix holding the entries of the square Matrix
+     * A, with the lower and upper bandwidths in BANDWIDTHS.
+     *
+     * @throws MatrixException */
+    BandMatrix(Matrix A, int[] bandwidths) throws MatrixException {
+        this(A.getHeight(), bandwidths[0], bandwidths[1]);
+        for (int r = 1; r <= _n; r++) {
+            int last = Math.min(_n, r + _upper);
+            for (int c = Math.max(1, r - _lower); c <= last; c++) {
+                _data[index(r - 1, c - 1)] = A.get(r, c);
+            }
+        }
+    }
+
+    /** Returns the lower and upper bandwidths of the square Matrix A, the
+     * largest distances below and above the diagonal of its non-zero
+     * entries.
+     *
+     * @throws MatrixException */
+    static int[] bandwidths(Matrix A) throws MatrixException {
+        int n = A.getHeight();
+        if (n != A.getWidth()) {
+            throw new MatrixException("This matrix is not square.");
+        }
+        double[] a = A.data();
+        int off = A.offset(), rs = A.stride(), cs = A.colStride();
+        int lower = 0, upper = 0;
+        for (int r = 0; r < n; r++) {
+            int row = off + r * rs;
+            for (int c = 0; c < r - lower; c++) {
+                if (a[row + c * cs] != 0) {
+                    lower = r - c;
+                    break;
+                }
+            }
+            for (int c = n - 1; c > r + upper; c--) {
+                if (a[row + c * cs] != 0) {
+                    upper = c - r;
+                    break;
+                }
+            }
+        }
+        return new int[] { lower, upper };
+    }
+
+    /** Returns the index in _data of the entry at row R and col C (index
+     * starting at 0), which must lie within the band. */
+    private int index(int r, int c) {
+        return r * _width + c - r + _lower;
+    }
+
+    /** Returns the number of rows (and columns) of this Matrix. */
+    public int getHeight() {
+        return _n;
+    }
+
+    /** Returns the lower bandwidth of this Matrix. */
+    public int getLowerBandwidth() {
+        return _lower;
+    }
+
+    /** Returns the upper bandwidth of this Matrix. */
+    public int getUpperBandwidth() {
+        return _upper;
+    }
+
+    /** Returns the double at row R and col C, which is 0 outside the band. */
+    public double get(int r, int c) {
+        if (c - r > _upper || r - c > _lower) {
+            return 0;
+        }
+        return _data[index(r - 1, c - 1)];
+    }
+
+    /** Sets the entry at row R and col C to be the double K. Only entries
+     * within the band may be non-zero.
+     *
+     * @throws MatrixException */
+    public void set(int r, int c, double k) throws MatrixException {
+        if (c - r > _upper || r - c > _lower) {
+            if (k != 0) {
+                throw new MatrixException("This entry lies outside the band.");
+            }
+            return;
+        }
+        _data[index(r - 1, c - 1)] = k;
+        _factor = null;
+    }
+
+    /** Returns this Matrix as a dense SquareMatrix.
+     *
+     * @throws MatrixException */
+    public SquareMatrix toMatrix() throws MatrixException {
+        SquareMatrix A = new SquareMatrix(_n);
+        double[] a = A.data();
+        for (int r = 0; r < _n; r++) {
+            int last = Math.min(_n - 1, r + _upper);
+            for (int c = Math.max(0, r - _lower); c <= last; c++) {
+                a[r * _n + c] = _data[index(r, c)];
+            }
+        }
+        return A;
+    }
+
+    /** Returns the product of this Matrix and the vector X.
+     *
+     * @throws MatrixException */
+    public Vector multiply(Vector x) throws MatrixException {
+        if (x.numRows() != _n) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        double[] y = new double[_n];
+        multiply(x.values(), y);
+        return new Vector(y);
+    }
+
+    /** Sets Y to the product of this Matrix and X. */
+    void multiply(double[] x, double[] y) {
+        Parallel.forRows(_n, _width, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int first = Math.max(0, r - _lower);
+                int last = Math.min(_n - 1, r + _upper);
+                int p = index(r, first);
+                double sum = 0;
+                for (int c = first; c <= last; c++) {
+                    sum += _data[p++] * x[c];
+                }
+                y[r] = sum;
+            }
+        });
+    }
+
+    /** Returns true if this Matrix is singular, i.e. if some pivot of its
+     * LU factorization is smaller than epsilon. */
+    public boolean isSingular() {
+        factor();
+        return _singular;
+    }
+
+    /** Returns the determinant of this Matrix. */
+    public double getDet() {
+        factor();
+        int w = _lower + _width;
+        double det = _sign;
+        for (int k = 0; k < _n; k++) {
+            det *= _factor[k * w + _lower];
+        }
+        return det;
+    }
+
+    /** Returns the solution x to Ax = B, where A is this Matrix.
+     *
+     * @throws MatrixException */
+    public Vector solve(Vector b) throws MatrixException {
+        if (b.numRows() != _n) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        factor();
+        if (_singular) {
+            throw new MatrixException("This matrix is singular.");
+        }
+        int n = _n, kl = _lower, w = kl + _width;
+        double[] a = _factor;
+        double[] x = b.values().clone();
+        // Ly = Pb
+        for (int k = 0; k < n; k++) {
+            int p = _pivots[k];
+            if (p != k) {
+                double store = x[k];
+                x[k] = x[p];
+                x[p] = store;
+            }
+            int last = Math.min(n - 1, k + kl);
+            for (int i = k + 1; i <= last; i++) {
+                x[i] -= a[i * w + k - i + kl] * x[k];
+            }
+        }
+        // Ux = y
+        for (int i = n - 1; i >= 0; i--) {
+            int last = Math.min(n - 1, i + w - kl - 1);
+            double sum = x[i];
+            for (int j = i + 1; j <= last; j++) {
+                sum -= a[i * w + j - i + kl] * x[j];
+            }
+            x[i] = sum / a[i * w + kl];
+        }
+        return new Vector(x);
+    }
+
+    /** Sets _factor to the LU factorization with partial pivoting of this
+     * Matrix, unless it is already known. Row r of _factor holds columns
+     * r - LOWER .. r + LOWER + UPPER, L below the diagonal and U on and
+     * above it. */
+    private void factor() {
+        if (_factor != null) {
+            return;
+        }
+        int n = _n, kl = _lower, w = kl + _width;
+        double[] a = new double[n * w];
+        for (int r = 0; r < n; r++) {
+            System.arraycopy(_data, r * _width, a, r * w, _width);
+        }
+        _pivots = new int[n];
+        _sign = 1;
+        _singular = false;
+        for (int k = 0; k < n; k++) {
+            int bottom = Math.min(n - 1, k + kl);
+            int right = Math.min(n - 1, k + w - kl - 1);
+            int max = k;
+            for (int i = k + 1; i <= bottom; i++) {
+                if (Math.abs(a[i * w + k - i + kl]) > Math.abs(a[max * w + k - max + kl])) {
+                    max = i;
+                }
+            }
+            _pivots[k] = max;
+            if (max != k) {
+                for (int j = k; j <= right; j++) {
+                    int p = k * w + j - k + kl, q = max * w + j - max + kl;
+                    double store = a[p];
+                    a[p] = a[q];
+                    a[q] = store;
+                }
+                _sign = -_sign;
+            }
+            double pivot = a[k * w + kl];
+            if (Math.abs(pivot) < Matrix.epsilon) {
+                _singular = true;
+                if (pivot == 0) {
+                    continue;
+                }
+            }
+            for (int i = k + 1; i <= bottom; i++) {
+                int r = i * w - i + kl;
+                double l = a[r + k] / pivot;
+                a[r + k] = l;
+                if (l != 0) {
+                    int p = k * w - k + kl;
+                    for (int j = k + 1; j <= right; j++) {
+                        a[r + j] -= l * a[p + j];
+                    }
+                }
+            }
+        }
+        _factor = a;
+    }
+
+    /** Returns the storage of the band, row by row. */
+    double[] data() {
+        return _data;
+    }
+
+    /** The number of rows and columns. */
+    private final int _n;
+
+    /** The lower and upper bandwidths. */
+    private final int _lower, _upper;
+
+    /** The number of entries stored for each row, _lower + _upper + 1. */
+    private final int _width;
+
+    /** The entries of the band, row by row. */
+    private final double[] _data;
+
+    /** The LU factorization of this Matrix, or null if not yet computed. */
+    private double[] _factor;
+
+    /** The row swapped with row k at step k of the factorization. */
+    private int[] _pivots;
+
+    /** The sign of the row permutation of the factorization. */
+    private int _sign;
+
+    /** True if some pivot of the factorization is smaller than epsilon. */
+    private boolean _singular;
+}
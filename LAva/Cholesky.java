@@ -0,0 +1,246 @@
+package matrix_calculator;
+
+/** The Cholesky factorization A = LL^T of a symmetric positive definite
+ * Matrix A, where L is lower triangular with a positive diagonal. L is
+ * stored in the lower triangle of one row-major array. A must be symmetric,
+ * or declared so by setSymmetric(), and only its lower triangle is used.
+ *
+ * Large matrices are factored a block of BLOCK columns at a time: the
+ * diagonal block is factored, the panel below it is solved against it, and
+ * the trailing lower triangle is updated by the blocked multiply kernel.
+ * A Matrix that is not symmetric, or whose factorization meets a pivot that
+ * is not positive, is reported as not positive definite, the latter as soon
+ * as that pivot is reached.
+ *
+ * @author AndyPalan */
+public class Cholesky {
+
+    /** Creates the Cholesky factorization of A.
+     *
+     * @throws MatrixException */
+    public Cholesky(SquareMatrix A) throws MatrixException {
+        _n = A.getHeight();
+        _l = new double[_n * _n];
+        if (!A.isSymmetric()) {
+            return;
+        }
+        Operations.copy(A, new SquareMatrix(_n, _l, 0, _n));
+        _positiveDefinite = factor();
+    }
+
+    /** Restores a stored factorization of an N x N symmetric positive
+     * definite Matrix, where L holds the factor as getFactor() returns it. */
+    Cholesky(double[] l, int n) {
+        _n = n;
+        _l = l;
+        _positiveDefinite = true;
+    }
+
+    /** Factors _l in place, returning false if a pivot is not positive. */
+    private boolean factor() {
+        int n = _n;
+        double[] a = _l;
+        int nb = n < 2 * BLOCK ? n : BLOCK;
+        for (int k0 = 0; k0 < n; k0 += nb) {
+            int kb = Math.min(nb, n - k0);
+            int end = k0 + kb;
+            // Diagonal block
+            for (int i = k0; i < end; i++) {
+                for (int j = k0; j <= i; j++) {
+                    double sum = a[i * n + j] - dot(a, i * n + k0, j * n + k0, j - k0);
+                    if (i == j) {
+                        if (!(sum > 0)) {
+                            return false;
+                        }
+                        a[i * n + i] = Math.sqrt(sum);
+                    } else {
+                        a[i * n + j] = sum / a[j * n + j];
+                    }
+                }
+            }
+            if (end == n) {
+                break;
+            }
+            // Panel below the diagonal block
+            int start = k0;
+            Parallel.forRows(n - end, (long) kb * kb, (from, to) -> {
+                for (int i = end + from; i < end + to; i++) {
+                    for (int j = start; j < end; j++) {
+                        double sum = a[i * n + j]
+                            - dot(a, i * n + start, j * n + start, j - start);
+                        a[i * n + j] = sum / a[j * n + j];
+                    }
+                }
+            });
+            // Trailing lower triangle, a block of rows at a time
+            for (int r0 = end; r0 < n; r0 += nb) {
+                int rows = Math.min(nb, n - r0);
+                int cols = r0 + rows - end;
+                double[] w = new double[rows * cols];
+                Gemm.multiply(rows, cols, kb, a, r0 * n + k0, n, 1,
+                              a, end * n + k0, 1, n, w, 0, cols);
+                for (int i = 0; i < rows; i++) {
+                    int r = (r0 + i) * n + end;
+                    int last = r0 + i - end;
+                    for (int j = 0; j <= last; j++) {
+                        a[r + j] -= w[i * cols + j];
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Returns the dot product of the LEN entries of A from X and from Y. */
+    private static double dot(double[] a, int x, int y, int len) {
+        double sum = 0;
+        for (int p = 0; p < len; p++) {
+            sum += a[x + p] * a[y + p];
+        }
+        return sum;
+    }
+
+    /** Returns true if the factored Matrix is symmetric positive definite,
+     * in which case the factorization exists. */
+    public boolean isPositiveDefinite() {
+        return _positiveDefinite;
+    }
+
+    /** Returns the natural logarithm of the determinant of the factored
+     * Matrix, which does not overflow as the determinant itself may.
+     *
+     * @throws MatrixException */
+    public double getLogDet() throws MatrixException {
+        check();
+        double sum = 0;
+        for (int k = 0; k < _n; k++) {
+            sum += Math.log(_l[k * _n + k]);
+        }
+        return 2 * sum;
+    }
+
+    /** Returns the determinant of the factored Matrix.
+     *
+     * @throws MatrixException */
+    public double getDet() throws MatrixException {
+        return Math.exp(getLogDet());
+    }
+
+    /** Returns the solution x to Ax = B.
+     *
+     * @throws MatrixException */
+    public Vector solve(Vector b) throws MatrixException {
+        if (b.numRows() != _n) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        double[] x = new double[_n];
+        System.arraycopy(b.values(), 0, x, 0, _n);
+        solveInPlace(x, 1);
+        return new Vector(x);
+    }
+
+    /** Returns the solution X to AX = B, solving for every column of B at
+     * once.
+     *
+     * @throws MatrixException */
+    public Matrix solve(Matrix B) throws MatrixException {
+        if (B.getHeight() != _n) {
+            throw new MatrixException("The matrix does not have the"
+                            + " appropriate dimension.");
+        }
+        int width = B.getWidth();
+        Matrix X = new Matrix(_n, width);
+        Operations.copy(B, X);
+        solveInPlace(X.data(), width);
+        return X;
+    }
+
+    /** Returns the inverse of the factored Matrix.
+     *
+     * @throws MatrixException */
+    public SquareMatrix getInverse() throws MatrixException {
+        SquareMatrix I = new SquareMatrix(_n);
+        double[] x = I.data();
+        for (int i = 0; i < _n; i++) {
+            x[i * _n + i] = 1;
+        }
+        solveInPlace(x, _n);
+        return I;
+    }
+
+    /** Overwrites the N x WIDTH row-major right-hand sides in X with the
+     * solutions to AX = X, split into parallel tiles of columns.
+     *
+     * @throws MatrixException */
+    void solveInPlace(double[] x, int width) throws MatrixException {
+        check();
+        int n = _n;
+        double[] a = _l;
+        Parallel.forRows(width, (long) n * n, (from, to) -> {
+            // Ly = b
+            for (int i = 0; i < n; i++) {
+                int r = i * n;
+                for (int k = 0; k < i; k++) {
+                    double l = a[r + k];
+                    if (l != 0) {
+                        Matrix.axpyRow(x, k * width, i * width, from, to, -l);
+                    }
+                }
+                Matrix.scaleRow(x, i * width, from, to, 1 / a[r + i]);
+            }
+            // L^T x = y
+            for (int i = n - 1; i >= 0; i--) {
+                int r = i * n;
+                Matrix.scaleRow(x, i * width, from, to, 1 / a[r + i]);
+                for (int k = 0; k < i; k++) {
+                    double l = a[r + k];
+                    if (l != 0) {
+                        Matrix.axpyRow(x, i * width, k * width, from, to, -l);
+                    }
+                }
+            }
+        });
+    }
+
+    /** Returns the lower triangular factor L.
+     *
+     * @throws MatrixException */
+    public SquareMatrix getL() throws MatrixException {
+        check();
+        SquareMatrix L = new SquareMatrix(_n);
+        double[] l = L.data();
+        for (int r = 0; r < _n; r++) {
+            System.arraycopy(_l, r * _n, l, r * _n, r + 1);
+        }
+        return L;
+    }
+
+    /** Returns L on and below the diagonal, row-major, sharing this
+     * factorization's storage. */
+    double[] getFactor() {
+        return _l;
+    }
+
+    /** Throws a MatrixException if the factored Matrix is not positive
+     * definite.
+     *
+     * @throws MatrixException */
+    private void check() throws MatrixException {
+        if (!_positiveDefinite) {
+            throw new MatrixException("This matrix is not positive definite.");
+        }
+    }
+
+    /** The number of columns in a block of the blocked factorization. */
+    static final int BLOCK = 64;
+
+    /** The order of the factored Matrix. */
+    private final int _n;
+
+    /** L on and below the diagonal, row-major. */
+    private final double[] _l;
+
+    /** True if the factored Matrix is symmetric positive definite. */
+    private boolean _positiveDefinite;
+}
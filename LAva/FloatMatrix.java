@@ -0,0 +1,187 @@
+package matrix_calculator;
+
+/** A Matrix of single-precision entries, for workloads that tolerate float
+ * precision and are bound by memory bandwidth: it takes half the memory of
+ * a Matrix, and its kernels process twice as many entries per vector
+ * instruction. Entries are stored row-major in a flat float[], as for
+ * Matrix, and conversions to and from the double types are explicit.
+ *
+ * @author AndyPalan */
+public class FloatMatrix {
+
+    /** Creates a new ROW x COL Matrix filled with zeroes.
+     *
+     * @throws MatrixException */
+    public FloatMatrix(int row, int col) throws MatrixException {
+        this(row, col, new float[row * col], 0, col);
+    }
+
+    /** Creates a new ROW x COL Matrix stored in row-major order in DATA,
+     * with the entry at row R and col C held at
+     * DATA[OFFSET + (R - 1) * STRIDE + (C - 1)]. DATA is shared, not
+     * copied.
+     *
+     * @throws MatrixException */
+    public FloatMatrix(int row, int col, float[] data, int offset, int stride)
+        throws MatrixException {
+        if (row < 0 || col < 0 || offset < 0 || stride < col
+            || (row > 0 && col > 0 && offset + (long) (row - 1) * stride + col > data.length)) {
+            throw new MatrixException("Incorrect dimension.");
+        }
+        _height = row;
+        _width = col;
+        _data = data;
+        _offset = offset;
+        _stride = stride;
+    }
+
+    /** Creates a new Matrix holding the entries of A rounded to float.
+     *
+     * @throws MatrixException */
+    public FloatMatrix(Matrix A) throws MatrixException {
+        this(A.getHeight(), A.getWidth());
+        convert(A, this);
+    }
+
+    /** Sets the entries of F to those of A rounded to float. */
+    static void convert(Matrix A, FloatMatrix F) {
+        double[] a = A.data();
+        int off = A.offset(), rs = A.stride(), cs = A.colStride();
+        float[] f = F._data;
+        int w = F._width;
+        for (int r = 0; r < F._height; r++) {
+            int row = off + r * rs, out = F._offset + r * F._stride;
+            for (int c = 0; c < w; c++) {
+                f[out + c] = (float) a[row + c * cs];
+            }
+        }
+    }
+
+    /** Returns this Matrix as a double Matrix, which is a SquareMatrix if
+     * this Matrix is square.
+     *
+     * @throws MatrixException */
+    public Matrix toMatrix() throws MatrixException {
+        Matrix A = _height == _width ? new SquareMatrix(_height) : new Matrix(_height, _width);
+        double[] a = A.data();
+        for (int r = 0; r < _height; r++) {
+            int row = _offset + r * _stride;
+            for (int c = 0; c < _width; c++) {
+                a[r * _width + c] = _data[row + c];
+            }
+        }
+        return A;
+    }
+
+    /** Returns the float at row R and col C. */
+    public float get(int r, int c) {
+        checkIndex(r, c);
+        return _data[_offset + (r - 1) * _stride + c - 1];
+    }
+
+    /** Sets the entry at row R and col C to be the float K. */
+    public void set(int r, int c, float k) {
+        checkIndex(r, c);
+        _data[_offset + (r - 1) * _stride + c - 1] = k;
+    }
+
+    /** Throws an IndexOutOfBoundsException unless row R and col C are in
+     * this Matrix. */
+    private void checkIndex(int r, int c) {
+        if (r < 1 || r > _height || c < 1 || c > _width) {
+            throw new IndexOutOfBoundsException("(" + r + ", " + c + ")");
+        }
+    }
+
+    /** Returns the number of rows of this Matrix. */
+    public int getHeight() {
+        return _height;
+    }
+
+    /** Returns the number of columns of this Matrix. */
+    public int getWidth() {
+        return _width;
+    }
+
+    /** Returns the transpose of this Matrix.
+     *
+     * @throws MatrixException */
+    public FloatMatrix getTranspose() throws MatrixException {
+        FloatMatrix T = _height == _width ? new FloatSquareMatrix(_height)
+            : new FloatMatrix(_width, _height);
+        transpose(T);
+        return T;
+    }
+
+    /** Sets T to the transpose of this Matrix, a block of rows at a time so
+     * that both sides stay in cache. */
+    void transpose(FloatMatrix T) {
+        float[] t = T._data;
+        for (int r0 = 0; r0 < _height; r0 += BLOCK) {
+            int r1 = Math.min(_height, r0 + BLOCK);
+            for (int c0 = 0; c0 < _width; c0 += BLOCK) {
+                int c1 = Math.min(_width, c0 + BLOCK);
+                for (int r = r0; r < r1; r++) {
+                    int row = _offset + r * _stride;
+                    for (int c = c0; c < c1; c++) {
+                        t[T._offset + c * T._stride + r] = _data[row + c];
+                    }
+                }
+            }
+        }
+    }
+
+    /** Returns true if every entry of this Matrix is within epsilon of the
+     * same entry of A, relative to the larger of 1 and its magnitude. */
+    public boolean equals(FloatMatrix A) {
+        if (A._height != _height || A._width != _width) {
+            return false;
+        }
+        for (int r = 1; r <= _height; r++) {
+            for (int c = 1; c <= _width; c++) {
+                float x = get(r, c), y = A.get(r, c);
+                if (Math.abs(x - y) >= epsilon * Math.max(1, Math.abs(x))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Returns the storage of this Matrix. */
+    float[] data() {
+        return _data;
+    }
+
+    /** Returns the index in data() of the entry at row 1 and col 1. */
+    int offset() {
+        return _offset;
+    }
+
+    /** Returns the distance in data() between consecutive rows. */
+    int stride() {
+        return _stride;
+    }
+
+    /** Two floats are considered equal if they are within this margin,
+     * relative to their magnitude when it is more than 1. */
+    static final float epsilon = 1e-4f;
+
+    /** The side of the blocks the transpose is done in. */
+    private static final int BLOCK = 64;
+
+    /** The number of rows. */
+    private final int _height;
+
+    /** The number of columns. */
+    private final int _width;
+
+    /** The entries, row-major from _offset with rows _stride apart. */
+    private final float[] _data;
+
+    /** The index of the entry at row 1 and col 1. */
+    private final int _offset;
+
+    /** The distance between consecutive rows in _data. */
+    private final int _stride;
+}
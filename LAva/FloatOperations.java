@@ -0,0 +1,156 @@
+package matrix_calculator;
+
+/** Executes operations on single-precision matrices, as Operations does for
+ * double ones. The kernels run over whole rows of contiguous floats so
+ * that the compiler can vectorize them, and split their rows over the same
+ * pool as Operations.
+ *
+ * @author AndyPalan */
+public class FloatOperations {
+
+    /** Returns the Matrix that is the result of adding together A and B (A +
+     * B).
+     *
+     * @throws MatrixException */
+    public static FloatMatrix add(FloatMatrix A, FloatMatrix B) throws MatrixException {
+        checkSum(A, B);
+        FloatMatrix C = create(A.getHeight(), A.getWidth());
+        combine(A, 1, B, 1, C);
+        return C;
+    }
+
+    /** Returns the Matrix that is the result of subtracting B from A (A - B).
+     *
+     * @throws MatrixException */
+    public static FloatMatrix subtract(FloatMatrix A, FloatMatrix B) throws MatrixException {
+        checkSum(A, B);
+        FloatMatrix C = create(A.getHeight(), A.getWidth());
+        combine(A, 1, B, -1, C);
+        return C;
+    }
+
+    /** Returns the Matrix that has been scalar multiplied by K.
+     *
+     * @throws MatrixException */
+    public static FloatMatrix scalarMult(FloatMatrix A, float k) throws MatrixException {
+        FloatMatrix C = create(A.getHeight(), A.getWidth());
+        scale(A, k, C);
+        return C;
+    }
+
+    /** Returns the Matrix that is the result of Matrix multiplying A and B in
+     * the form A x B.
+     *
+     * @throws MatrixException */
+    public static FloatMatrix matrixMult(FloatMatrix A, FloatMatrix B) throws MatrixException {
+        if (A.getWidth() != B.getHeight()) {
+            throw new MatrixException("These two matrices do not have"
+                            + " the appropriate dimension to be multiplied together.");
+        }
+        FloatMatrix C = create(A.getHeight(), B.getWidth());
+        multiply(A, B, C);
+        return C;
+    }
+
+    /** Returns the Vector that is the result of multiplying the Matrix A and
+     * the Vector X in the form Ax.
+     *
+     * @throws MatrixException */
+    public static FloatVector matrixMult(FloatMatrix A, FloatVector x) throws MatrixException {
+        if (A.getWidth() != x.numRows()) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        float[] a = A.data(), v = x.values(), y = new float[A.getHeight()];
+        int w = A.getWidth();
+        Parallel.forRows(y.length, w, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                y[r] = FloatVector.dot(a, A.offset() + r * A.stride(), v, 0, w);
+            }
+        });
+        return new FloatVector(y);
+    }
+
+    /** Returns a new HEIGHT x WIDTH Matrix, which is square if they are
+     * equal.
+     *
+     * @throws MatrixException */
+    private static FloatMatrix create(int height, int width) throws MatrixException {
+        return height == width ? new FloatSquareMatrix(height) : new FloatMatrix(height, width);
+    }
+
+    /** Throws a MatrixException unless A and B have the same dimension.
+     *
+     * @throws MatrixException */
+    private static void checkSum(FloatMatrix A, FloatMatrix B) throws MatrixException {
+        if (A.getHeight() != B.getHeight() || A.getWidth() != B.getWidth()) {
+            throw new MatrixException("These two matrices do not have"
+                            + " the appropriate dimension to be added/subtracted together.");
+        }
+    }
+
+    /** Sets C to be the elementwise combination KA * A + KB * B, where A, B
+     * and C all have the same dimension. */
+    static void combine(FloatMatrix A, float kA, FloatMatrix B, float kB, FloatMatrix C) {
+        float[] a = A.data(), b = B.data(), c = C.data();
+        int w = A.getWidth();
+        Parallel.forRows(A.getHeight(), w, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int ar = A.offset() + r * A.stride();
+                int br = B.offset() + r * B.stride();
+                int cr = C.offset() + r * C.stride();
+                for (int j = 0; j < w; j++) {
+                    c[cr + j] = kA * a[ar + j] + kB * b[br + j];
+                }
+            }
+        });
+    }
+
+    /** Sets C to be K * A, where A and C have the same dimension. */
+    static void scale(FloatMatrix A, float k, FloatMatrix C) {
+        float[] a = A.data(), c = C.data();
+        int w = A.getWidth();
+        Parallel.forRows(A.getHeight(), w, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int ar = A.offset() + r * A.stride();
+                int cr = C.offset() + r * C.stride();
+                for (int j = 0; j < w; j++) {
+                    c[cr + j] = k * a[ar + j];
+                }
+            }
+        });
+    }
+
+    /** Sets C to be A x B, overwriting it. Each row of C is accumulated as a
+     * sum of rows of B scaled by entries of A, a block of DEPTH rows of B at a
+     * time so that the block stays in cache across the rows of C. */
+    static void multiply(FloatMatrix A, FloatMatrix B, FloatMatrix C) {
+        float[] a = A.data(), b = B.data(), c = C.data();
+        int n = B.getWidth(), depth = A.getWidth();
+        Parallel.forRows(A.getHeight(), (long) n * depth, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int cr = C.offset() + r * C.stride();
+                for (int j = 0; j < n; j++) {
+                    c[cr + j] = 0;
+                }
+            }
+            for (int k0 = 0; k0 < depth; k0 += DEPTH) {
+                int k1 = Math.min(depth, k0 + DEPTH);
+                for (int r = from; r < to; r++) {
+                    int ar = A.offset() + r * A.stride();
+                    int cr = C.offset() + r * C.stride();
+                    for (int k = k0; k < k1; k++) {
+                        float x = a[ar + k];
+                        int br = B.offset() + k * B.stride();
+                        for (int j = 0; j < n; j++) {
+                            c[cr + j] += x * b[br + j];
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /** The number of rows of B a product keeps in cache at once. */
+    private static final int DEPTH = 128;
+}
@@ -0,0 +1,57 @@
+package matrix_calculator;
+
+/** A square Matrix of single-precision entries (i.e. an n x n FloatMatrix).
+ *
+ * @author AndyPalan */
+public class FloatSquareMatrix extends FloatMatrix {
+
+    /** Creates a new N x N Matrix filled with zeroes.
+     *
+     * @throws MatrixException */
+    public FloatSquareMatrix(int n) throws MatrixException {
+        super(n, n);
+    }
+
+    /** Creates a new N x N Matrix stored in row-major order in DATA, as for
+     * FloatMatrix.
+     *
+     * @throws MatrixException */
+    public FloatSquareMatrix(int n, float[] data, int offset, int stride)
+        throws MatrixException {
+        super(n, n, data, offset, stride);
+    }
+
+    /** Creates a new Matrix holding the entries of A rounded to float.
+     *
+     * @throws MatrixException */
+    public FloatSquareMatrix(SquareMatrix A) throws MatrixException {
+        this(A.getHeight());
+        convert(A, this);
+    }
+
+    /** Returns this Matrix as a double SquareMatrix.
+     *
+     * @throws MatrixException */
+    @Override
+    public SquareMatrix toMatrix() throws MatrixException {
+        return (SquareMatrix) super.toMatrix();
+    }
+
+    /** Returns the transpose of this Matrix.
+     *
+     * @throws MatrixException */
+    @Override
+    public FloatSquareMatrix getTranspose() throws MatrixException {
+        return (FloatSquareMatrix) super.getTranspose();
+    }
+
+    /** Returns the sum of the diagonal entries of this Matrix, accumulated
+     * in double. */
+    public double getTrace() {
+        double sum = 0;
+        for (int k = 1; k <= getHeight(); k++) {
+            sum += get(k, k);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,93 @@
+package matrix_calculator;
+
+/** A Vector of single-precision entries, the counterpart of Vector for
+ * FloatMatrix.
+ *
+ * @author AndyPalan */
+public class FloatVector {
+
+    /** Creates a new vector holding ARGS, which is shared, not copied. */
+    public FloatVector(float... args) {
+        _values = args;
+    }
+
+    /** Creates a new vector holding the entries of V rounded to float. */
+    public FloatVector(Vector v) {
+        double[] values = v.values();
+        _values = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            _values[i] = (float) values[i];
+        }
+    }
+
+    /** Returns this vector as a double Vector. */
+    public Vector toVector() {
+        double[] values = new double[_values.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = _values[i];
+        }
+        return new Vector(values);
+    }
+
+    /** Returns the number of entries in this vector. */
+    public int numRows() {
+        return _values.length;
+    }
+
+    /** Returns the entries of this vector. */
+    public float[] values() {
+        return _values;
+    }
+
+    /** Returns the value at the specified index INDEX. */
+    public float get(int index) {
+        return _values[index];
+    }
+
+    /** Returns the dot product of this vector and vector V, accumulated in
+     * float over several independent partial sums. */
+    public float dotProduct(FloatVector v) {
+        return dot(_values, 0, v._values, 0, _values.length);
+    }
+
+    /** Returns the dot product of the LEN entries of X from XOFF and of Y
+     * from YOFF, kept in four partial sums so that the loop need not wait on
+     * one running total. */
+    static float dot(float[] x, int xOff, float[] y, int yOff, int len) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < len; i += 4) {
+            s0 += x[xOff + i] * y[yOff + i];
+            s1 += x[xOff + i + 1] * y[yOff + i + 1];
+            s2 += x[xOff + i + 2] * y[yOff + i + 2];
+            s3 += x[xOff + i + 3] * y[yOff + i + 3];
+        }
+        for (; i < len; i++) {
+            s0 += x[xOff + i] * y[yOff + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /** Returns the magnitude of this vector. */
+    public float magnitude() {
+        return (float) Math.sqrt(dotProduct(this));
+    }
+
+    /** Returns true if this vector is equal to vector V, to within epsilon
+     * relative to the larger of 1 and the magnitude of each entry. */
+    public boolean equals(FloatVector v) {
+        if (v._values.length != _values.length) {
+            return false;
+        }
+        for (int i = 0; i < _values.length; i++) {
+            float x = _values[i];
+            if (Math.abs(x - v._values[i]) >= FloatMatrix.epsilon * Math.max(1, Math.abs(x))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** The entries of this vector. */
+    private final float[] _values;
+}
@@ -0,0 +1,244 @@
+package matrix_calculator;
+
+import java.util.Arrays;
+
+/** A cache-blocked matrix multiply kernel. The right operand is packed into
+ * panels of NR columns and the left operand into panels of MR rows, so that
+ * the innermost loop updates an MR x NR tile of the product held entirely in
+ * local variables while streaming both panels sequentially.
+ *
+ * @author AndyPalan */
+final class Gemm {
+
+    /** Rows of the product computed by one call to the micro-kernel. */
+    static final int MR = 4;
+
+    /** Columns of the product computed by one call to the micro-kernel. */
+    static final int NR = 4;
+
+    /** Products with fewer multiply-adds than this use a plain loop, since
+     * packing does not pay for itself. */
+    static final long MIN_BLOCKED_WORK = 32 * 32 * 32;
+
+    /** Sets the blocking used by the kernel: ROWS rows of the left operand and
+     * DEPTH rows of the right operand are packed at a time, over COLS columns
+     * of the product. ROWS is rounded up to a multiple of MR and COLS to a
+     * multiple of NR.
+     *
+     * @throws MatrixException */
+    static void setBlockSizes(int rows, int depth, int cols) throws MatrixException {
+        if (rows < 1 || depth < 1 || cols < 1) {
+            throw new MatrixException("Block sizes must be positive.");
+        }
+        _mc = (rows + MR - 1) / MR * MR;
+        _kc = depth;
+        _nc = (cols + NR - 1) / NR * NR;
+    }
+
+    /** Sets C to be the product A x B, where C does not share storage with
+     * A or B. */
+    static void multiply(Matrix A, Matrix B, Matrix C) {
+        multiply(A.getHeight(), B.getWidth(), A.getWidth(),
+                 A.data(), A.offset(), A.stride(), A.colStride(),
+                 B.data(), B.offset(), B.stride(), B.colStride(),
+                 C.data(), C.offset(), C.stride());
+    }
+
+    /** Sets the M x N block of C starting at COFF (rows CS apart) to be the
+     * product of the M x K block of A at AOFF (rows AS apart) and the K x N
+     * block of B at BOFF (rows BS apart), where the entries of each row are
+     * contiguous. */
+    static void multiply(int m, int n, int k, double[] a, int aOff, int as,
+                         double[] b, int bOff, int bs,
+                         double[] c, int cOff, int cs) {
+        multiply(m, n, k, a, aOff, as, 1, b, bOff, bs, 1, c, cOff, cs);
+    }
+
+    /** Sets the M x N block of C starting at COFF (rows CS apart) to be the
+     * product of the M x K block of A at AOFF (with row and column strides
+     * AS and ACS) and the K x N block of B at BOFF (with strides BS and BCS).
+     * Each panel of B is packed once by the calling thread and shared, while
+     * the blocks of rows of A are packed and multiplied against it in
+     * parallel when the product is large enough. */
+    static void multiply(int m, int n, int k, double[] a, int aOff, int as, int acs,
+                         double[] b, int bOff, int bs, int bcs,
+                         double[] c, int cOff, int cs) {
+        if ((long) m * n * k < MIN_BLOCKED_WORK) {
+            naive(m, n, k, a, aOff, as, acs, b, bOff, bs, bcs, c, cOff, cs);
+            return;
+        }
+        int kc = _kc, nc = _nc;
+        int threads = Parallel.pool().getParallelism();
+        int mc = Math.min(_mc, roundUp((m + threads - 1) / threads, MR));
+        int blocks = (m + mc - 1) / mc;
+        double[] bp = take(PACKED_B, Math.min(kc, k) * Math.min(nc, roundUp(n, NR)));
+        for (int jc = 0; jc < n; jc += nc) {
+            int nb = Math.min(nc, n - jc);
+            for (int pc = 0; pc < k; pc += kc) {
+                int kb = Math.min(kc, k - pc), p = pc;
+                packB(b, bOff + pc * bs + jc * bcs, bs, bcs, kb, nb, bp);
+                int cCol = cOff + jc;
+                Parallel.forRows(blocks, (long) mc * nb * kb, (from, to) -> {
+                    double[] ap = take(PACKED_A, mc * kb);
+                    double[] tile = new double[MR * NR];
+                    for (int ic = from * mc; ic < Math.min(m, to * mc); ic += mc) {
+                        int mb = Math.min(mc, m - ic);
+                        packA(a, aOff + ic * as + p * acs, as, acs, mb, kb, ap);
+                        for (int jr = 0; jr < nb; jr += NR) {
+                            for (int ir = 0; ir < mb; ir += MR) {
+                                kernel(kb, ap, ir * kb, bp, jr * kb,
+                                       c, cCol + (ic + ir) * cs + jr, cs,
+                                       Math.min(MR, mb - ir), Math.min(NR, nb - jr),
+                                       p == 0, tile);
+                            }
+                        }
+                    }
+                    PACKED_A.set(ap);
+                });
+            }
+        }
+        PACKED_B.set(bp);
+    }
+
+    /** Returns the array held by CACHE for the current thread if it has at
+     * least SIZE entries, and otherwise a new one, leaving CACHE empty until
+     * the array is given back. A product started on the same thread while
+     * the array is in use, such as one stolen by a worker waiting for its
+     * tiles, so allocates its own. */
+    private static double[] take(ThreadLocal<double[]> cache, int size) {
+        double[] array = cache.get();
+        cache.set(null);
+        return array != null && array.length >= size ? array : new double[size];
+    }
+
+    /** Sets the M x N block of C at COFF to be the product of the M x K block
+     * of A at AOFF and the K x N block of B at BOFF using a plain
+     * row-oriented loop. */
+    static void naive(int m, int n, int k, double[] a, int aOff, int as, int acs,
+                      double[] b, int bOff, int bs, int bcs,
+                      double[] c, int cOff, int cs) {
+        for (int i = 0; i < m; i++) {
+            int cr = cOff + i * cs;
+            Arrays.fill(c, cr, cr + n, 0);
+            int ar = aOff + i * as;
+            for (int p = 0; p < k; p++) {
+                double aip = a[ar + p * acs];
+                int br = bOff + p * bs;
+                if (bcs == 1) {
+                    for (int j = 0; j < n; j++) {
+                        c[cr + j] += aip * b[br + j];
+                    }
+                } else {
+                    for (int j = 0; j < n; j++) {
+                        c[cr + j] += aip * b[br + j * bcs];
+                    }
+                }
+            }
+        }
+    }
+
+    /** Copies the MB x KB block of A at OFF (with row and column strides AS
+     * and ACS) into AP as consecutive panels of MR rows, each stored column
+     * by column and padded with zeroes. */
+    private static void packA(double[] a, int off, int as, int acs, int mb, int kb,
+                              double[] ap) {
+        int dst = 0;
+        for (int ir = 0; ir < mb; ir += MR) {
+            int rows = Math.min(MR, mb - ir);
+            for (int p = 0; p < kb; p++) {
+                int src = off + ir * as + p * acs;
+                for (int i = 0; i < MR; i++) {
+                    ap[dst++] = i < rows ? a[src + i * as] : 0;
+                }
+            }
+        }
+    }
+
+    /** Copies the KB x NB block of B at OFF (with row and column strides BS
+     * and BCS) into BP as consecutive panels of NR columns, each stored row
+     * by row and padded with zeroes. */
+    private static void packB(double[] b, int off, int bs, int bcs, int kb, int nb,
+                              double[] bp) {
+        int dst = 0;
+        for (int jr = 0; jr < nb; jr += NR) {
+            int cols = Math.min(NR, nb - jr);
+            for (int p = 0; p < kb; p++) {
+                int src = off + p * bs + jr * bcs;
+                for (int j = 0; j < NR; j++) {
+                    bp[dst++] = j < cols ? b[src + j * bcs] : 0;
+                }
+            }
+        }
+    }
+
+    /** Computes the MR x NR product of the packed panels of A at AI and B at
+     * BI over depth KB, and stores it into (if FIRST) or adds it onto the
+     * ROWS x COLS block of C at CI (rows CS apart). TILE is scratch space
+     * for partial tiles at the edges of C. */
+    private static void kernel(int kb, double[] ap, int ai, double[] bp, int bi,
+                               double[] c, int ci, int cs, int rows, int cols,
+                               boolean first, double[] tile) {
+        double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+        double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+        double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+        double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+        for (int p = 0; p < kb; p++, ai += MR, bi += NR) {
+            double a0 = ap[ai], a1 = ap[ai + 1], a2 = ap[ai + 2], a3 = ap[ai + 3];
+            double b0 = bp[bi], b1 = bp[bi + 1], b2 = bp[bi + 2], b3 = bp[bi + 3];
+            c00 += a0 * b0; c01 += a0 * b1; c02 += a0 * b2; c03 += a0 * b3;
+            c10 += a1 * b0; c11 += a1 * b1; c12 += a1 * b2; c13 += a1 * b3;
+            c20 += a2 * b0; c21 += a2 * b1; c22 += a2 * b2; c23 += a2 * b3;
+            c30 += a3 * b0; c31 += a3 * b1; c32 += a3 * b2; c33 += a3 * b3;
+        }
+        if (rows == MR && cols == NR) {
+            int r0 = ci, r1 = ci + cs, r2 = ci + 2 * cs, r3 = ci + 3 * cs;
+            if (first) {
+                c[r0] = c00; c[r0 + 1] = c01; c[r0 + 2] = c02; c[r0 + 3] = c03;
+                c[r1] = c10; c[r1 + 1] = c11; c[r1 + 2] = c12; c[r1 + 3] = c13;
+                c[r2] = c20; c[r2 + 1] = c21; c[r2 + 2] = c22; c[r2 + 3] = c23;
+                c[r3] = c30; c[r3 + 1] = c31; c[r3 + 2] = c32; c[r3 + 3] = c33;
+            } else {
+                c[r0] += c00; c[r0 + 1] += c01; c[r0 + 2] += c02; c[r0 + 3] += c03;
+                c[r1] += c10; c[r1 + 1] += c11; c[r1 + 2] += c12; c[r1 + 3] += c13;
+                c[r2] += c20; c[r2 + 1] += c21; c[r2 + 2] += c22; c[r2 + 3] += c23;
+                c[r3] += c30; c[r3 + 1] += c31; c[r3 + 2] += c32; c[r3 + 3] += c33;
+            }
+            return;
+        }
+        tile[0] = c00; tile[1] = c01; tile[2] = c02; tile[3] = c03;
+        tile[4] = c10; tile[5] = c11; tile[6] = c12; tile[7] = c13;
+        tile[8] = c20; tile[9] = c21; tile[10] = c22; tile[11] = c23;
+        tile[12] = c30; tile[13] = c31; tile[14] = c32; tile[15] = c33;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (first) {
+                    c[ci + i * cs + j] = tile[i * NR + j];
+                } else {
+                    c[ci + i * cs + j] += tile[i * NR + j];
+                }
+            }
+        }
+    }
+
+    /** Returns N rounded up to a multiple of M. */
+    private static int roundUp(int n, int m) {
+        return (n + m - 1) / m * m;
+    }
+
+    /** Each thread's packed panel of the right operand, kept between
+     * products so that it is not reallocated for each one. */
+    private static final ThreadLocal<double[]> PACKED_B = new ThreadLocal<>();
+
+    /** Each thread's packed block of the left operand. */
+    private static final ThreadLocal<double[]> PACKED_A = new ThreadLocal<>();
+
+    /** The number of rows of the left operand packed at a time. */
+    private static volatile int _mc = 128;
+
+    /** The number of rows of the right operand packed at a time. */
+    private static volatile int _kc = 256;
+
+    /** The number of columns of the product computed per packed panel of
+     * the right operand. */
+    private static volatile int _nc = 2048;
+}
@@ -0,0 +1,273 @@
+package matrix_calculator;
+
+/** Computes the eigenvalues of a general real square Matrix. The Matrix is
+ * first reduced to upper Hessenberg form by Householder reflections, and the
+ * Hessenberg Matrix is then driven to quasi-triangular form by implicit
+ * double-shift (Francis) QR steps, deflating 1 x 1 and 2 x 2 blocks off the
+ * bottom as their subdiagonal entries become negligible. Each step costs
+ * O(n^2), and the number of steps is capped.
+ *
+ * @author AndyPalan */
+final class HessenbergQR {
+
+    /** The number of QR steps allowed per eigenvalue before giving up. */
+    static final int MAX_ITERATIONS = 30;
+
+    /** Returns the eigenvalues of A as a pair of arrays holding their real
+     * and imaginary parts. Complex eigenvalues come in adjacent conjugate
+     * pairs, the one with positive imaginary part first.
+     *
+     * @throws MatrixException */
+    static double[][] eigenvalues(SquareMatrix A) throws MatrixException {
+        int n = A.getHeight();
+        double[] h = new double[n * n];
+        Operations.copy(A, new SquareMatrix(n, h, 0, n));
+        reduce(h, n);
+        double[] re = new double[n], im = new double[n];
+        hqr(h, n, re, im);
+        return new double[][] { re, im };
+    }
+
+    /** Reduces the N x N row-major Matrix H to upper Hessenberg form in
+     * place, by a similarity transformation. */
+    static void reduce(double[] h, int n) {
+        double[] v = new double[n];
+        double[] w = new double[n];
+        for (int k = 0; k < n - 2; k++) {
+            double scale = 0;
+            for (int i = k + 1; i < n; i++) {
+                scale += Math.abs(h[i * n + k]);
+            }
+            if (scale == 0) {
+                continue;
+            }
+            // Reflector v, with H = I - v v^T / beta, taking column k to
+            // a multiple of e_(k+1)
+            double norm = 0;
+            for (int i = k + 1; i < n; i++) {
+                v[i] = h[i * n + k] / scale;
+                norm += v[i] * v[i];
+            }
+            double g = -Math.copySign(Math.sqrt(norm), v[k + 1]);
+            double beta = norm - v[k + 1] * g;
+            v[k + 1] -= g;
+            // Apply from the left to rows k+1..n, columns k..n
+            for (int j = k; j < n; j++) {
+                w[j] = 0;
+            }
+            for (int i = k + 1; i < n; i++) {
+                double vi = v[i];
+                int r = i * n;
+                for (int j = k; j < n; j++) {
+                    w[j] += vi * h[r + j];
+                }
+            }
+            for (int i = k + 1; i < n; i++) {
+                double f = v[i] / beta;
+                int r = i * n;
+                for (int j = k; j < n; j++) {
+                    h[r + j] -= f * w[j];
+                }
+            }
+            // Apply from the right to all rows, columns k+1..n
+            for (int i = 0; i < n; i++) {
+                int r = i * n;
+                double dot = 0;
+                for (int j = k + 1; j < n; j++) {
+                    dot += h[r + j] * v[j];
+                }
+                double f = dot / beta;
+                for (int j = k + 1; j < n; j++) {
+                    h[r + j] -= f * v[j];
+                }
+            }
+            for (int i = k + 2; i < n; i++) {
+                h[i * n + k] = 0;
+            }
+        }
+    }
+
+    /** Sets RE and IM to the real and imaginary parts of the eigenvalues of
+     * the N x N row-major upper Hessenberg Matrix H, which is overwritten.
+     *
+     * @throws MatrixException */
+    static void hqr(double[] h, int nn, double[] re, double[] im)
+        throws MatrixException {
+        double eps = Math.ulp(1.0);
+        double norm = 0;
+        for (int i = 0; i < nn; i++) {
+            for (int j = Math.max(i - 1, 0); j < nn; j++) {
+                norm += Math.abs(h[i * nn + j]);
+            }
+        }
+        if (norm == 0) {
+            return;
+        }
+        int n = nn - 1;
+        int iter = 0, total = 0;
+        double exshift = 0;
+        double p = 0, q = 0, r = 0, s = 0, z = 0, w, x, y;
+        while (n >= 0) {
+            // Look for a single small subdiagonal element
+            int l = n;
+            while (l > 0) {
+                s = Math.abs(h[(l - 1) * nn + l - 1]) + Math.abs(h[l * nn + l]);
+                if (s == 0) {
+                    s = norm;
+                }
+                if (Math.abs(h[l * nn + l - 1]) < eps * s) {
+                    break;
+                }
+                l--;
+            }
+            if (l == n) {
+                // One root found
+                re[n] = h[n * nn + n] + exshift;
+                im[n] = 0;
+                n--;
+                iter = 0;
+            } else if (l == n - 1) {
+                // Two roots found
+                w = h[n * nn + n - 1] * h[(n - 1) * nn + n];
+                p = (h[(n - 1) * nn + n - 1] - h[n * nn + n]) / 2;
+                q = p * p + w;
+                z = Math.sqrt(Math.abs(q));
+                x = h[n * nn + n] + exshift;
+                if (q >= 0) {
+                    z = p >= 0 ? p + z : p - z;
+                    re[n - 1] = x + z;
+                    re[n] = z != 0 ? x - w / z : x + z;
+                    im[n - 1] = 0;
+                    im[n] = 0;
+                } else {
+                    re[n - 1] = x + p;
+                    re[n] = x + p;
+                    im[n - 1] = z;
+                    im[n] = -z;
+                }
+                n -= 2;
+                iter = 0;
+            } else {
+                if (total++ > MAX_ITERATIONS * nn) {
+                    throw new MatrixException("The eigenvalue iteration did not"
+                                              + " converge.");
+                }
+                // Form the shift
+                x = h[n * nn + n];
+                y = h[(n - 1) * nn + n - 1];
+                w = h[n * nn + n - 1] * h[(n - 1) * nn + n];
+                if (iter == 10) {
+                    // Exceptional shift
+                    exshift += x;
+                    for (int i = 0; i <= n; i++) {
+                        h[i * nn + i] -= x;
+                    }
+                    s = Math.abs(h[n * nn + n - 1]) + Math.abs(h[(n - 1) * nn + n - 2]);
+                    x = y = 0.75 * s;
+                    w = -0.4375 * s * s;
+                }
+                if (iter == 30) {
+                    // Second exceptional shift
+                    s = (y - x) / 2;
+                    s = s * s + w;
+                    if (s > 0) {
+                        s = Math.sqrt(s);
+                        if (y < x) {
+                            s = -s;
+                        }
+                        s = x - w / ((y - x) / 2 + s);
+                        for (int i = 0; i <= n; i++) {
+                            h[i * nn + i] -= s;
+                        }
+                        exshift += s;
+                        x = y = w = 0.964;
+                    }
+                }
+                iter++;
+                // Look for two consecutive small subdiagonal elements
+                int m = n - 2;
+                while (m >= l) {
+                    z = h[m * nn + m];
+                    r = x - z;
+                    s = y - z;
+                    p = (r * s - w) / h[(m + 1) * nn + m] + h[m * nn + m + 1];
+                    q = h[(m + 1) * nn + m + 1] - z - r - s;
+                    r = h[(m + 2) * nn + m + 1];
+                    s = Math.abs(p) + Math.abs(q) + Math.abs(r);
+                    p /= s;
+                    q /= s;
+                    r /= s;
+                    if (m == l) {
+                        break;
+                    }
+                    if (Math.abs(h[m * nn + m - 1]) * (Math.abs(q) + Math.abs(r))
+                        < eps * (Math.abs(p) * (Math.abs(h[(m - 1) * nn + m - 1])
+                                 + Math.abs(z) + Math.abs(h[(m + 1) * nn + m + 1])))) {
+                        break;
+                    }
+                    m--;
+                }
+                for (int i = m + 2; i <= n; i++) {
+                    h[i * nn + i - 2] = 0;
+                    if (i > m + 2) {
+                        h[i * nn + i - 3] = 0;
+                    }
+                }
+                // Double QR step on rows l..n and columns m..n
+                for (int k = m; k <= n - 1; k++) {
+                    boolean notlast = k != n - 1;
+                    if (k != m) {
+                        p = h[k * nn + k - 1];
+                        q = h[(k + 1) * nn + k - 1];
+                        r = notlast ? h[(k + 2) * nn + k - 1] : 0;
+                        x = Math.abs(p) + Math.abs(q) + Math.abs(r);
+                        if (x == 0) {
+                            continue;
+                        }
+                        p /= x;
+                        q /= x;
+                        r /= x;
+                    }
+                    s = Math.copySign(Math.sqrt(p * p + q * q + r * r), p);
+                    if (s == 0) {
+                        continue;
+                    }
+                    if (k != m) {
+                        h[k * nn + k - 1] = -s * x;
+                    } else if (l != m) {
+                        h[k * nn + k - 1] = -h[k * nn + k - 1];
+                    }
+                    p += s;
+                    x = p / s;
+                    y = q / s;
+                    z = r / s;
+                    q /= p;
+                    r /= p;
+                    // Row modification
+                    int r0 = k * nn, r1 = r0 + nn, r2 = r1 + nn;
+                    for (int j = k; j <= n; j++) {
+                        p = h[r0 + j] + q * h[r1 + j];
+                        if (notlast) {
+                            p += r * h[r2 + j];
+                            h[r2 + j] -= p * z;
+                        }
+                        h[r0 + j] -= p * x;
+                        h[r1 + j] -= p * y;
+                    }
+                    // Column modification
+                    int last = Math.min(n, k + 3);
+                    for (int i = l; i <= last; i++) {
+                        int row = i * nn;
+                        p = x * h[row + k] + y * h[row + k + 1];
+                        if (notlast) {
+                            p += z * h[row + k + 2];
+                            h[row + k + 2] -= p * r;
+                        }
+                        h[row + k] -= p;
+                        h[row + k + 1] -= p * q;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package matrix_calculator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Computes the real eigenvectors of a square Matrix from its eigenvalues by
+ * shifted inverse iteration. Eigenvalues within a tolerance of each other are
+ * grouped into a cluster, and each cluster is handled with a single LU
+ * factorization of the shifted Matrix: one vector is iterated for each
+ * eigenvalue in the cluster, kept orthogonal to those before it, and kept
+ * only if it is an eigenvector to working accuracy, so that a defective
+ * eigenvalue yields no more vectors than its geometric multiplicity.
+ * Clusters are independent and are processed in parallel.
+ *
+ * @author AndyPalan */
+final class InverseIteration {
+
+    /** The largest number of inverse iteration steps per vector. */
+    static final int MAX_ITERATIONS = 5;
+
+    /** Returns the eigenvectors of A for its real eigenvalues VALUES (those
+     * whose entry in IMAGINARY is 0), in the order in which their clusters
+     * first appear. The vectors of each cluster are scaled so that they are
+     * in the form a null space basis would take: each has a component equal
+     * to 1, its last non-negligible one, which is 0 in the others.
+     *
+     * @throws MatrixException */
+    static ArrayList<Vector> eigenvectors(SquareMatrix A, ArrayList<Double> values,
+                                          ArrayList<Double> imaginary)
+        throws MatrixException {
+        int n = A.getHeight();
+        double[] a = new double[n * n];
+        Operations.copy(A, new SquareMatrix(n, a, 0, n));
+        double sum = 0;
+        for (double value : a) {
+            sum += value * value;
+        }
+        double norm = Math.max(Math.sqrt(sum), Double.MIN_NORMAL);
+        double tolerance = Matrix.epsilon * Math.max(norm, 1);
+
+        ArrayList<double[]> clusters = new ArrayList<>();
+        for (int k = 0; k < values.size(); k++) {
+            if (imaginary.get(k) != 0) {
+                continue;
+            }
+            double value = values.get(k);
+            double[] found = null;
+            for (double[] cluster : clusters) {
+                if (Math.abs(cluster[0] - value) <= tolerance) {
+                    found = cluster;
+                    break;
+                }
+            }
+            if (found == null) {
+                clusters.add(new double[] { value, value, 1 });
+            } else {
+                found[1] += value;
+                found[2]++;
+            }
+        }
+
+        double[][][] vectors = new double[clusters.size()][][];
+        Parallel.forRows(clusters.size(), (long) n * n * n, (from, to) -> {
+            for (int c = from; c < to; c++) {
+                double[] cluster = clusters.get(c);
+                vectors[c] = cluster(a, n, cluster[1] / cluster[2],
+                                     (int) cluster[2], norm);
+            }
+        });
+
+        ArrayList<Vector> result = new ArrayList<>();
+        for (double[][] cluster : vectors) {
+            for (double[] x : cluster) {
+                result.add(new Vector(x));
+            }
+        }
+        return result;
+    }
+
+    /** Returns up to COUNT independent eigenvectors of the N x N row-major
+     * Matrix A for the eigenvalue SHIFT, where NORM is the Frobenius norm of
+     * A. */
+    private static double[][] cluster(double[] a, int n, double shift, int count,
+                                      double norm) {
+        double[] shifted = a.clone();
+        for (int i = 0; i < n; i++) {
+            shifted[i * n + i] -= shift;
+        }
+        double eps = Math.ulp(1.0);
+        LU lu = new LU(shifted, n, eps * norm);
+        double converged = eps * n * norm;
+        double accepted = Matrix.epsilon * Math.max(norm, 1);
+        double[][] basis = new double[count][];
+        int found = 0;
+        for (int j = 0; j < count; j++) {
+            Random random = new Random(j + 1);
+            double[] x = new double[n];
+            for (int i = 0; i < n; i++) {
+                x[i] = random.nextDouble() - 0.5;
+            }
+            double residual = Double.POSITIVE_INFINITY;
+            for (int iter = 0; iter < MAX_ITERATIONS && residual > converged; iter++) {
+                lu.substitute(x, 1);
+                if (!orthonormalize(x, basis, found)) {
+                    break;
+                }
+                residual = residual(a, n, shift, x);
+            }
+            if (residual <= accepted) {
+                basis[found++] = x;
+            }
+        }
+        return reduce(basis, found, n);
+    }
+
+    /** Makes X orthogonal to the first COUNT vectors of BASIS and scales it
+     * to unit length. Returns false if nothing of X is left. */
+    private static boolean orthonormalize(double[] x, double[][] basis, int count) {
+        int n = x.length;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int j = 0; j < count; j++) {
+                double dot = 0;
+                for (int i = 0; i < n; i++) {
+                    dot += x[i] * basis[j][i];
+                }
+                for (int i = 0; i < n; i++) {
+                    x[i] -= dot * basis[j][i];
+                }
+            }
+        }
+        double length = 0;
+        for (int i = 0; i < n; i++) {
+            length += x[i] * x[i];
+        }
+        length = Math.sqrt(length);
+        if (length == 0 || Double.isInfinite(length) || Double.isNaN(length)) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            x[i] /= length;
+        }
+        return true;
+    }
+
+    /** Returns the length of (A - SHIFT I)X for the N x N row-major A. */
+    private static double residual(double[] a, int n, double shift, double[] x) {
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            int r = i * n;
+            double value = -shift * x[i];
+            for (int j = 0; j < n; j++) {
+                value += a[r + j] * x[j];
+            }
+            sum += value * value;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /** Returns the first COUNT vectors of BASIS (of length N) transformed to
+     * span the same space in reduced form: working back from the last
+     * component, each vector in turn takes the largest remaining entry of a
+     * component as its pivot, is scaled so that the pivot is 1, and is
+     * eliminated from that component of the other vectors. The vectors are
+     * returned in increasing order of pivot. */
+    private static double[][] reduce(double[][] basis, int count, int n) {
+        double[][] result = new double[count][];
+        boolean[] used = new boolean[count];
+        int placed = count;
+        for (int c = n - 1; c >= 0 && placed > 0; c--) {
+            int best = -1;
+            for (int j = 0; j < count; j++) {
+                if (!used[j] && (best < 0
+                                 || Math.abs(basis[j][c]) > Math.abs(basis[best][c]))) {
+                    best = j;
+                }
+            }
+            double pivot = basis[best][c];
+            if (Math.abs(pivot) < Matrix.epsilon) {
+                continue;
+            }
+            double[] p = basis[best];
+            for (int i = 0; i < n; i++) {
+                p[i] /= pivot;
+            }
+            p[c] = 1;
+            for (int j = 0; j < count; j++) {
+                if (j != best && basis[j][c] != 0) {
+                    double f = basis[j][c];
+                    for (int i = 0; i < n; i++) {
+                        basis[j][i] -= f * p[i];
+                    }
+                    basis[j][c] = 0;
+                }
+            }
+            used[best] = true;
+            result[--placed] = p;
+        }
+        return Arrays.copyOfRange(result, placed, count);
+    }
+}
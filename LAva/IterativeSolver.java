@@ -0,0 +1,400 @@
+package matrix_calculator;
+
+import java.util.Arrays;
+
+/** Solves Ax = b by a Krylov subspace method, touching A only through its
+ * products with vectors, so that large sparse or matrix-free systems may be
+ * solved in far less time and memory than by elimination, and a usable
+ * approximation is available long before the exact solution would be.
+ *
+ * The conjugate gradient method needs A to be symmetric positive definite;
+ * restarted GMRES and BiCGSTAB work for any nonsingular A. Each may be
+ * given a Preconditioner (applied on the left for the conjugate gradient
+ * method and on the right otherwise, so that the residual monitored is
+ * always that of the original system), a starting guess, a tolerance on
+ * the residual relative to b, an iteration limit and a Listener told of the
+ * residual after every iteration. A solve that stops before reaching the
+ * tolerance returns its best approximation, and hasConverged() is false.
+ *
+ * @author AndyPalan */
+public class IterativeSolver {
+
+    /** The Krylov methods available. */
+    public enum Method {
+        /** The conjugate gradient method, for symmetric positive definite A. */
+        CONJUGATE_GRADIENT,
+        /** The generalized minimal residual method, restarted. */
+        GMRES,
+        /** The biconjugate gradient stabilized method. */
+        BICGSTAB
+    }
+
+    /** Receives the progress of a solve. */
+    public interface Listener {
+
+        /** Called after iteration ITERATION (starting at 1) with the norm of
+         * the residual relative to that of b. */
+        void iteration(int iteration, double residual);
+    }
+
+    /** Creates a new solver for the operator A using METHOD. */
+    public IterativeSolver(LinearOperator A, Method method) {
+        _operator = A;
+        _method = method;
+        _maxIterations = Math.max(2 * A.size(), 100);
+    }
+
+    /** Creates a new solver for the square Matrix A using METHOD.
+     *
+     * @throws MatrixException */
+    public IterativeSolver(Matrix A, Method method) throws MatrixException {
+        this(LinearOperator.of(A), method);
+    }
+
+    /** Creates a new solver for the square SparseMatrix A using METHOD.
+     *
+     * @throws MatrixException */
+    public IterativeSolver(SparseMatrix A, Method method) throws MatrixException {
+        this(LinearOperator.of(A), method);
+    }
+
+    /** Sets the residual norm, relative to that of b, at which a solve stops
+     * to TOLERANCE.
+     *
+     * @throws MatrixException */
+    public void setTolerance(double tolerance) throws MatrixException {
+        if (!(tolerance > 0)) {
+            throw new MatrixException("The tolerance must be positive.");
+        }
+        _tolerance = tolerance;
+    }
+
+    /** Sets the largest number of iterations of a solve to MAX.
+     *
+     * @throws MatrixException */
+    public void setMaxIterations(int max) throws MatrixException {
+        if (max < 1) {
+            throw new MatrixException("The iteration limit must be positive.");
+        }
+        _maxIterations = max;
+    }
+
+    /** Sets the number of GMRES iterations between restarts to RESTART.
+     *
+     * @throws MatrixException */
+    public void setRestart(int restart) throws MatrixException {
+        if (restart < 1) {
+            throw new MatrixException("The restart length must be positive.");
+        }
+        _restart = restart;
+    }
+
+    /** Sets the preconditioner to M, or to none if M is null. */
+    public void setPreconditioner(Preconditioner M) {
+        _preconditioner = M;
+    }
+
+    /** Sets the listener told of the residual after every iteration to
+     * LISTENER, or to none if LISTENER is null. */
+    public void setListener(Listener listener) {
+        _listener = listener;
+    }
+
+    /** Returns the solution x to Ax = B, starting from 0.
+     *
+     * @throws MatrixException */
+    public Vector solve(Vector b) throws MatrixException {
+        return solve(b, null);
+    }
+
+    /** Returns the solution x to Ax = B, starting from X0, or from 0 if X0
+     * is null.
+     *
+     * @throws MatrixException */
+    public Vector solve(Vector b, Vector x0) throws MatrixException {
+        int n = _operator.size();
+        if (b.numRows() != n || (x0 != null && x0.numRows() != n)) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        double[] x = x0 == null ? new double[n] : x0.values().clone();
+        double[] bv = b.values();
+        _iterations = 0;
+        double bnorm = norm(bv);
+        if (bnorm == 0) {
+            _residual = 0;
+            _converged = true;
+            return new Vector(new double[n]);
+        }
+        if (_method == Method.CONJUGATE_GRADIENT) {
+            conjugateGradient(bv, x, bnorm);
+        } else if (_method == Method.GMRES) {
+            gmres(bv, x, bnorm);
+        } else {
+            biCGStab(bv, x, bnorm);
+        }
+        _converged = _residual <= _tolerance;
+        return new Vector(x);
+    }
+
+    /** Improves X towards the solution of Ax = B by the preconditioned
+     * conjugate gradient method, where BNORM is the norm of B. */
+    private void conjugateGradient(double[] b, double[] x, double bnorm) {
+        int n = b.length;
+        double[] r = residual(b, x);
+        double[] z = precondition(r, new double[n]);
+        double[] p = z.clone();
+        double[] q = new double[n];
+        double rz = dot(r, z);
+        _residual = norm(r) / bnorm;
+        while (_residual > _tolerance && _iterations < _maxIterations) {
+            _operator.apply(p, q);
+            double pq = dot(p, q);
+            if (!(pq > 0)) {
+                // A is not positive definite along p
+                break;
+            }
+            double alpha = rz / pq;
+            axpy(alpha, p, x);
+            axpy(-alpha, q, r);
+            step(norm(r) / bnorm);
+            precondition(r, z);
+            double rzNew = dot(r, z);
+            double beta = rzNew / rz;
+            rz = rzNew;
+            for (int i = 0; i < n; i++) {
+                p[i] = z[i] + beta * p[i];
+            }
+        }
+    }
+
+    /** Improves X towards the solution of Ax = B by GMRES, restarted every
+     * _restart iterations and preconditioned on the right, where BNORM is
+     * the norm of B. The least squares problem of each cycle is kept in
+     * triangular form by Givens rotations, so that its residual is known at
+     * every iteration without forming x. */
+    private void gmres(double[] b, double[] x, double bnorm) {
+        int n = b.length, m = Math.min(_restart, n);
+        double[][] v = new double[m + 1][];
+        double[][] h = new double[m + 1][m];
+        double[] cs = new double[m], sn = new double[m], g = new double[m + 1];
+        double[] w = new double[n], z = new double[n];
+        double[] r = residual(b, x);
+        _residual = norm(r) / bnorm;
+        for (int i = 0; i <= m; i++) {
+            v[i] = new double[n];
+        }
+        while (_residual > _tolerance && _iterations < _maxIterations) {
+            double before = _residual;
+            double beta = norm(r);
+            System.arraycopy(r, 0, v[0], 0, n);
+            scale(1 / beta, v[0]);
+            Arrays.fill(g, 0);
+            g[0] = beta;
+            int j = 0;
+            while (j < m && _residual > _tolerance && _iterations < _maxIterations) {
+                _operator.apply(precondition(v[j], z), w);
+                // Modified Gram-Schmidt against the basis so far
+                for (int i = 0; i <= j; i++) {
+                    h[i][j] = dot(w, v[i]);
+                    axpy(-h[i][j], v[i], w);
+                }
+                h[j + 1][j] = norm(w);
+                System.arraycopy(w, 0, v[j + 1], 0, n);
+                if (h[j + 1][j] != 0) {
+                    scale(1 / h[j + 1][j], v[j + 1]);
+                }
+                for (int i = 0; i < j; i++) {
+                    double t = cs[i] * h[i][j] + sn[i] * h[i + 1][j];
+                    h[i + 1][j] = -sn[i] * h[i][j] + cs[i] * h[i + 1][j];
+                    h[i][j] = t;
+                }
+                double d = Math.hypot(h[j][j], h[j + 1][j]);
+                cs[j] = d == 0 ? 1 : h[j][j] / d;
+                sn[j] = d == 0 ? 0 : h[j + 1][j] / d;
+                h[j][j] = d;
+                h[j + 1][j] = 0;
+                g[j + 1] = -sn[j] * g[j];
+                g[j] *= cs[j];
+                j++;
+                step(Math.abs(g[j]) / bnorm);
+                if (d == 0) {
+                    break;
+                }
+            }
+            // Solve the triangular system and update x
+            double[] y = new double[j];
+            for (int i = j - 1; i >= 0; i--) {
+                double sum = g[i];
+                for (int k = i + 1; k < j; k++) {
+                    sum -= h[i][k] * y[k];
+                }
+                y[i] = h[i][i] == 0 ? 0 : sum / h[i][i];
+            }
+            Arrays.fill(w, 0);
+            for (int i = 0; i < j; i++) {
+                axpy(y[i], v[i], w);
+            }
+            axpy(1, precondition(w, z), x);
+            r = residual(b, x);
+            _residual = norm(r) / bnorm;
+            if (_residual >= before) {
+                // The cycle made no progress, so restarting would not either
+                break;
+            }
+        }
+    }
+
+    /** Improves X towards the solution of Ax = B by BiCGSTAB, preconditioned
+     * on the right, where BNORM is the norm of B. */
+    private void biCGStab(double[] b, double[] x, double bnorm) {
+        int n = b.length;
+        double[] r = residual(b, x);
+        double[] shadow = r.clone();
+        double[] p = new double[n], v = new double[n], t = new double[n];
+        double[] ph = new double[n], sh = new double[n];
+        double rho = 1, alpha = 1, omega = 1;
+        _residual = norm(r) / bnorm;
+        while (_residual > _tolerance && _iterations < _maxIterations) {
+            double rhoNew = dot(shadow, r);
+            if (rhoNew == 0) {
+                break;
+            }
+            double beta = (rhoNew / rho) * (alpha / omega);
+            rho = rhoNew;
+            for (int i = 0; i < n; i++) {
+                p[i] = r[i] + beta * (p[i] - omega * v[i]);
+            }
+            _operator.apply(precondition(p, ph), v);
+            alpha = rho / dot(shadow, v);
+            // r now holds s = r - alpha v
+            axpy(-alpha, v, r);
+            axpy(alpha, ph, x);
+            double snorm = norm(r) / bnorm;
+            if (snorm <= _tolerance) {
+                step(snorm);
+                break;
+            }
+            _operator.apply(precondition(r, sh), t);
+            double tt = dot(t, t);
+            omega = tt == 0 ? 0 : dot(t, r) / tt;
+            axpy(omega, sh, x);
+            axpy(-omega, t, r);
+            step(norm(r) / bnorm);
+            if (omega == 0) {
+                break;
+            }
+        }
+    }
+
+    /** Records the end of an iteration with relative residual RESIDUAL. */
+    private void step(double residual) {
+        _iterations++;
+        _residual = residual;
+        if (_listener != null) {
+            _listener.iteration(_iterations, residual);
+        }
+    }
+
+    /** Returns B - AX. */
+    private double[] residual(double[] b, double[] x) {
+        double[] r = new double[b.length];
+        _operator.apply(x, r);
+        for (int i = 0; i < b.length; i++) {
+            r[i] = b[i] - r[i];
+        }
+        return r;
+    }
+
+    /** Sets Z to the preconditioned R, or to R without a preconditioner,
+     * and returns Z. */
+    private double[] precondition(double[] r, double[] z) {
+        if (_preconditioner == null) {
+            System.arraycopy(r, 0, z, 0, r.length);
+        } else {
+            _preconditioner.apply(r, z);
+        }
+        return z;
+    }
+
+    /** Returns the dot product of X and Y. */
+    private static double dot(double[] x, double[] y) {
+        double sum = 0;
+        for (int i = 0; i < x.length; i++) {
+            sum += x[i] * y[i];
+        }
+        return sum;
+    }
+
+    /** Returns the Euclidean norm of X. */
+    private static double norm(double[] x) {
+        return Math.sqrt(dot(x, x));
+    }
+
+    /** Adds K times X to Y. */
+    private static void axpy(double k, double[] x, double[] y) {
+        for (int i = 0; i < x.length; i++) {
+            y[i] += k * x[i];
+        }
+    }
+
+    /** Multiplies X by K. */
+    private static void scale(double k, double[] x) {
+        for (int i = 0; i < x.length; i++) {
+            x[i] *= k;
+        }
+    }
+
+    /** Returns the number of iterations of the last solve. */
+    public int getIterations() {
+        return _iterations;
+    }
+
+    /** Returns the norm of the residual of the last solve relative to that
+     * of b. */
+    public double getResidual() {
+        return _residual;
+    }
+
+    /** Returns true if the last solve reached the tolerance. */
+    public boolean hasConverged() {
+        return _converged;
+    }
+
+    /** The default residual norm, relative to that of b, at which a solve
+     * stops. */
+    static final double TOLERANCE = 1e-10;
+
+    /** The default number of GMRES iterations between restarts. */
+    static final int RESTART = 30;
+
+    /** The operator of the system. */
+    private final LinearOperator _operator;
+
+    /** The Krylov method used. */
+    private final Method _method;
+
+    /** The residual norm, relative to that of b, at which a solve stops. */
+    private double _tolerance = TOLERANCE;
+
+    /** The largest number of iterations of a solve. */
+    private int _maxIterations;
+
+    /** The number of GMRES iterations between restarts. */
+    private int _restart = RESTART;
+
+    /** The preconditioner, or null for none. */
+    private Preconditioner _preconditioner;
+
+    /** The listener told of every iteration, or null for none. */
+    private Listener _listener;
+
+    /** The number of iterations of the last solve. */
+    private int _iterations;
+
+    /** The relative residual norm of the last solve. */
+    private double _residual;
+
+    /** True if the last solve reached the tolerance. */
+    private boolean _converged;
+}
@@ -0,0 +1,49 @@
+package matrix_calculator;
+
+/** The Jacobi preconditioner M = diag(A), the cheapest there is, which
+ * helps most when the rows of A differ greatly in scale.
+ *
+ * @author AndyPalan */
+public class JacobiPreconditioner implements Preconditioner {
+
+    /** Creates the Jacobi preconditioner of the square SparseMatrix A.
+     *
+     * @throws MatrixException */
+    public JacobiPreconditioner(SparseMatrix A) throws MatrixException {
+        int n = A.getHeight();
+        if (n != A.getWidth()) {
+            throw new MatrixException("This matrix is not square.");
+        }
+        SparseMatrix a = A.toCSR();
+        int[] ptr = a.pointers(), idx = a.indices();
+        double[] val = a.values();
+        _inverse = new double[n];
+        for (int i = 0; i < n; i++) {
+            for (int p = ptr[i]; p < ptr[i + 1]; p++) {
+                if (idx[p] == i) {
+                    _inverse[i] = 1 / val[p];
+                }
+            }
+            if (_inverse[i] == 0 || Double.isInfinite(_inverse[i])) {
+                throw new MatrixException("This matrix has a zero on its diagonal.");
+            }
+        }
+    }
+
+    /** Creates the Jacobi preconditioner of the square Matrix A.
+     *
+     * @throws MatrixException */
+    public JacobiPreconditioner(Matrix A) throws MatrixException {
+        this(new SparseMatrix(A));
+    }
+
+    @Override
+    public void apply(double[] r, double[] z) {
+        for (int i = 0; i < _inverse.length; i++) {
+            z[i] = r[i] * _inverse[i];
+        }
+    }
+
+    /** The reciprocals of the diagonal entries of A. */
+    private final double[] _inverse;
+}
@@ -0,0 +1,267 @@
+package matrix_calculator;
+
+/** The LU factorization with partial pivoting of a square Matrix A, in the
+ * form PA = LU, where P is a permutation, L is unit lower triangular and U is
+ * upper triangular. L and U are stored together in one row-major array, with
+ * the unit diagonal of L left implicit.
+ *
+ * @author AndyPalan */
+public class LU {
+
+    /** Creates the LU factorization of A.
+     *
+     * @throws MatrixException */
+    public LU(SquareMatrix A) throws MatrixException {
+        _n = A.getHeight();
+        _lu = new double[_n * _n];
+        Operations.copy(A, new SquareMatrix(_n, _lu, 0, _n));
+        _pivots = new int[_n];
+        _sign = 1;
+        factor(0);
+    }
+
+    /** Creates the LU factorization of the N x N row-major Matrix in A,
+     * factoring it in place. Pivots smaller in magnitude than FLOOR are
+     * replaced by FLOOR (with their sign), as for inverse iteration, where
+     * the Matrix is singular to working precision by design. */
+    LU(double[] a, int n, double floor) {
+        _n = n;
+        _lu = a;
+        _pivots = new int[n];
+        _sign = 1;
+        factor(floor);
+    }
+
+    /** Restores a stored factorization of an N x N Matrix, where LU holds L
+     * and U as getFactors() returns them and PIVOTS the row swaps as
+     * getPivots() does. */
+    LU(double[] lu, int[] pivots) {
+        _n = pivots.length;
+        _lu = lu;
+        _pivots = pivots;
+        _sign = 1;
+        for (int k = 0; k < _n; k++) {
+            if (pivots[k] != k) {
+                _sign = -_sign;
+            }
+            if (Math.abs(lu[k * _n + k]) < Matrix.epsilon) {
+                _singular = true;
+            }
+        }
+    }
+
+    /** Factors _lu in place, recording the row swaps in _pivots and raising
+     * pivots smaller than FLOOR to FLOOR. */
+    private void factor(double floor) {
+        int n = _n;
+        double[] a = _lu;
+        for (int k = 0; k < n; k++) {
+            int max = k;
+            for (int i = k + 1; i < n; i++) {
+                if (Math.abs(a[i * n + k]) > Math.abs(a[max * n + k])) {
+                    max = i;
+                }
+            }
+            _pivots[k] = max;
+            if (max != k) {
+                Matrix.swapRows(a, k * n, max * n, n);
+                _sign = -_sign;
+            }
+            double pivot = a[k * n + k];
+            if (Math.abs(pivot) < floor) {
+                pivot = pivot < 0 ? -floor : floor;
+                a[k * n + k] = pivot;
+            }
+            if (Math.abs(pivot) < Matrix.epsilon) {
+                _singular = true;
+                if (pivot == 0) {
+                    continue;
+                }
+            }
+            int row = k;
+            Parallel.forRows(n - k - 1, n - k, (from, to) -> {
+                int p = row * n;
+                for (int i = row + 1 + from; i < row + 1 + to; i++) {
+                    int r = i * n;
+                    double l = a[r + row] / a[p + row];
+                    a[r + row] = l;
+                    if (l != 0) {
+                        Matrix.axpyRow(a, p, r, row + 1, n, -l);
+                    }
+                }
+            });
+        }
+    }
+
+    /** Returns true if this Matrix is singular, i.e. if some pivot is smaller
+     * than epsilon. */
+    public boolean isSingular() {
+        return _singular;
+    }
+
+    /** Returns the determinant of the factored Matrix. */
+    public double getDet() {
+        double det = _sign;
+        for (int k = 0; k < _n; k++) {
+            det *= _lu[k * _n + k];
+        }
+        return det;
+    }
+
+    /** Returns the solution x to Ax = B.
+     *
+     * @throws MatrixException */
+    public Vector solve(Vector b) throws MatrixException {
+        if (b.numRows() != _n) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        double[] x = new double[_n];
+        System.arraycopy(b.values(), 0, x, 0, _n);
+        solveInPlace(x, 1);
+        return new Vector(x);
+    }
+
+    /** Returns the solution X to AX = B, solving for every column of B at
+     * once.
+     *
+     * @throws MatrixException */
+    public Matrix solve(Matrix B) throws MatrixException {
+        if (B.getHeight() != _n) {
+            throw new MatrixException("The matrix does not have the"
+                            + " appropriate dimension.");
+        }
+        int width = B.getWidth();
+        Matrix X = new Matrix(_n, width);
+        Operations.copy(B, X);
+        solveInPlace(X.data(), width);
+        return X;
+    }
+
+    /** Returns the inverse of the factored Matrix.
+     *
+     * @throws MatrixException */
+    public SquareMatrix getInverse() throws MatrixException {
+        SquareMatrix I = new SquareMatrix(_n);
+        double[] x = I.data();
+        for (int i = 0; i < _n; i++) {
+            x[i * _n + i] = 1;
+        }
+        solveInPlace(x, _n);
+        return I;
+    }
+
+    /** Overwrites the N x WIDTH row-major right-hand sides in X with the
+     * solutions to AX = X.
+     *
+     * @throws MatrixException */
+    void solveInPlace(double[] x, int width) throws MatrixException {
+        if (_singular) {
+            throw new MatrixException("This matrix is singular.");
+        }
+        substitute(x, width);
+    }
+
+    /** Overwrites the N x WIDTH row-major right-hand sides in X with the
+     * solutions to AX = X, without checking for singularity. Many
+     * right-hand sides are solved in one pass, split into parallel tiles of
+     * columns. */
+    void substitute(double[] x, int width) {
+        int n = _n;
+        double[] a = _lu;
+        for (int k = 0; k < n; k++) {
+            if (_pivots[k] != k) {
+                Matrix.swapRows(x, k * width, _pivots[k] * width, width);
+            }
+        }
+        Parallel.forRows(width, (long) n * n, (from, to) -> {
+            for (int i = 1; i < n; i++) {
+                int r = i * n;
+                for (int k = 0; k < i; k++) {
+                    double l = a[r + k];
+                    if (l != 0) {
+                        Matrix.axpyRow(x, k * width, i * width, from, to, -l);
+                    }
+                }
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                int r = i * n;
+                for (int k = i + 1; k < n; k++) {
+                    double u = a[r + k];
+                    if (u != 0) {
+                        Matrix.axpyRow(x, k * width, i * width, from, to, -u);
+                    }
+                }
+                Matrix.scaleRow(x, i * width, from, to, 1 / a[r + i]);
+            }
+        });
+    }
+
+    /** Returns the unit lower triangular factor L.
+     *
+     * @throws MatrixException */
+    public SquareMatrix getL() throws MatrixException {
+        SquareMatrix L = new SquareMatrix(_n);
+        for (int r = 1; r <= _n; r++) {
+            for (int c = 1; c < r; c++) {
+                L.set(r, c, _lu[(r - 1) * _n + c - 1]);
+            }
+            L.set(r, r, 1);
+        }
+        return L;
+    }
+
+    /** Returns the upper triangular factor U.
+     *
+     * @throws MatrixException */
+    public SquareMatrix getU() throws MatrixException {
+        SquareMatrix U = new SquareMatrix(_n);
+        for (int r = 1; r <= _n; r++) {
+            for (int c = r; c <= _n; c++) {
+                U.set(r, c, _lu[(r - 1) * _n + c - 1]);
+            }
+        }
+        return U;
+    }
+
+    /** Returns the permutation P, such that row R of PA is row
+     * getPermutation()[R - 1] of A (index starting at 1). */
+    public int[] getPermutation() {
+        int[] perm = new int[_n];
+        for (int i = 0; i < _n; i++) {
+            perm[i] = i + 1;
+        }
+        for (int k = 0; k < _n; k++) {
+            int store = perm[k];
+            perm[k] = perm[_pivots[k]];
+            perm[_pivots[k]] = store;
+        }
+        return perm;
+    }
+
+    /** Returns L and U, row-major, sharing this factorization's storage. */
+    double[] getFactors() {
+        return _lu;
+    }
+
+    /** Returns the row swaps, where row k was swapped with row
+     * getPivots()[k] at step k, sharing this factorization's storage. */
+    int[] getPivots() {
+        return _pivots;
+    }
+
+    /** The order of the factored Matrix. */
+    private final int _n;
+
+    /** L (strictly below the diagonal) and U (on and above it), row-major. */
+    private final double[] _lu;
+
+    /** Row k was swapped with row _pivots[k] at step k of the elimination. */
+    private final int[] _pivots;
+
+    /** The sign of the permutation P. */
+    private int _sign;
+
+    /** True if some pivot is smaller than epsilon. */
+    private boolean _singular;
+}
@@ -0,0 +1,81 @@
+package matrix_calculator;
+
+/** A square linear map x -> Ax given only by its action on vectors, which
+ * is all the iterative solvers need of A. Operators are provided for dense,
+ * sparse and band matrices; any other map, such as a matrix-free stencil,
+ * may implement this interface directly.
+ *
+ * @author AndyPalan */
+public interface LinearOperator {
+
+    /** Returns the dimension of the vectors this operator acts on. */
+    int size();
+
+    /** Sets Y to the image of X, both of length size(). */
+    void apply(double[] x, double[] y);
+
+    /** Returns the operator of the square Matrix A, which shares its
+     * storage.
+     *
+     * @throws MatrixException */
+    static LinearOperator of(Matrix A) throws MatrixException {
+        int n = A.getHeight();
+        if (n != A.getWidth()) {
+            throw new MatrixException("This matrix is not square.");
+        }
+        double[] a = A.data();
+        int off = A.offset(), rs = A.stride(), cs = A.colStride();
+        return new LinearOperator() {
+            public int size() {
+                return n;
+            }
+
+            public void apply(double[] x, double[] y) {
+                Parallel.forRows(n, n, (from, to) -> {
+                    for (int r = from; r < to; r++) {
+                        int p = off + r * rs;
+                        double sum = 0;
+                        for (int c = 0; c < n; c++) {
+                            sum += a[p + c * cs] * x[c];
+                        }
+                        y[r] = sum;
+                    }
+                });
+            }
+        };
+    }
+
+    /** Returns the operator of the square SparseMatrix A, which shares its
+     * storage.
+     *
+     * @throws MatrixException */
+    static LinearOperator of(SparseMatrix A) throws MatrixException {
+        int n = A.getHeight();
+        if (n != A.getWidth()) {
+            throw new MatrixException("This matrix is not square.");
+        }
+        SparseMatrix a = A.toCSR();
+        return new LinearOperator() {
+            public int size() {
+                return n;
+            }
+
+            public void apply(double[] x, double[] y) {
+                a.multiply(x, y);
+            }
+        };
+    }
+
+    /** Returns the operator of the BandMatrix A, which shares its storage. */
+    static LinearOperator of(BandMatrix A) {
+        return new LinearOperator() {
+            public int size() {
+                return A.getHeight();
+            }
+
+            public void apply(double[] x, double[] y) {
+                A.multiply(x, y);
+            }
+        };
+    }
+}
@@ -0,0 +1,189 @@
+package matrix_calculator;
+
+import java.util.Arrays;
+
+/** Solves Ax = b for many right-hand sides b with a Matrix A factored
+ * once, when it is created, so that each solve costs O(n^2) rather than
+ * the O(n^3) of reducing A again. A square Matrix is factored by Cholesky
+ * if it is symmetric positive definite and by LU if it is otherwise
+ * invertible. Any other Matrix is row reduced once alongside the identity,
+ * recording the row operations E, so that EA is in row reduced echelon
+ * form: Eb then gives a solution with its free variables 0, as solve() on
+ * the Matrix would, or shows that there is none.
+ *
+ * Right-hand sides given together, as an array of Vectors or the columns
+ * of a Matrix, are solved in one pass over the factors.
+ *
+ * @author AndyPalan */
+public class LinearSolver {
+
+    /** Creates a new solver for the Matrix A, factoring it.
+     *
+     * @throws MatrixException */
+    public LinearSolver(Matrix A) throws MatrixException {
+        _height = A.getHeight();
+        _width = A.getWidth();
+        if (_height == _width) {
+            SquareMatrix S;
+            if (A instanceof SquareMatrix) {
+                S = (SquareMatrix) A;
+            } else {
+                S = new SquareMatrix(_height);
+                Operations.copy(A, S);
+            }
+            if (S.maybePositiveDefinite() && S.getCholesky().isPositiveDefinite()) {
+                _cholesky = S.getCholesky();
+                return;
+            }
+            if (!S.getLU().isSingular()) {
+                _lu = S.getLU();
+                return;
+            }
+        }
+        int h = _height, w = _width + h;
+        double[] a = new double[h * w];
+        Operations.copy(A, new Matrix(h, _width, a, 0, w));
+        for (int r = 0; r < h; r++) {
+            a[r * w + _width + r] = 1;
+        }
+        _pivots = new int[Math.min(h, _width)];
+        _rank = Matrix.reduce(a, w, h, w, _width, true, _pivots);
+        _operations = new double[h * h];
+        for (int r = 0; r < h; r++) {
+            System.arraycopy(a, r * w + _width, _operations, r * h, h);
+        }
+    }
+
+    /** Returns a solution x to Ax = B, or null if there is none.
+     *
+     * @throws MatrixException */
+    public Vector solve(Vector b) throws MatrixException {
+        if (b.numRows() != _height) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        double[] x = solve(b.values().clone(), 1);
+        return x == null ? null : new Vector(x);
+    }
+
+    /** Returns a solution to Ax = b for each Vector b in B, or null in
+     * place of any for which there is none.
+     *
+     * @throws MatrixException */
+    public Vector[] solve(Vector[] B) throws MatrixException {
+        int k = B.length;
+        double[] x = new double[_height * k];
+        for (int j = 0; j < k; j++) {
+            if (B[j].numRows() != _height) {
+                throw new MatrixException("The vector does not have the"
+                                + " appropriate dimension.");
+            }
+            double[] b = B[j].values();
+            for (int i = 0; i < _height; i++) {
+                x[i * k + j] = b[i];
+            }
+        }
+        boolean[] consistent = new boolean[k];
+        x = solve(x, k, consistent);
+        Vector[] result = new Vector[k];
+        for (int j = 0; j < k; j++) {
+            if (consistent[j]) {
+                double[] column = new double[_width];
+                for (int i = 0; i < _width; i++) {
+                    column[i] = x[i * k + j];
+                }
+                result[j] = new Vector(column);
+            }
+        }
+        return result;
+    }
+
+    /** Returns a solution X to AX = B, solving for every column of B at
+     * once.
+     *
+     * @throws MatrixException */
+    public Matrix solve(Matrix B) throws MatrixException {
+        if (B.getHeight() != _height) {
+            throw new MatrixException("The matrix does not have the"
+                            + " appropriate dimension.");
+        }
+        int k = B.getWidth();
+        double[] x = new double[_height * k];
+        Operations.copy(B, new Matrix(_height, k, x, 0, k));
+        x = solve(x, k);
+        if (x == null) {
+            throw new MatrixException("No solution exists. This system is inconsistent.");
+        }
+        return new Matrix(_width, k, x, 0, k);
+    }
+
+    /** Returns the solutions for the HEIGHT x K row-major right-hand sides
+     * in B, which may be overwritten, as a WIDTH x K row-major array, or
+     * null if any has no solution. */
+    private double[] solve(double[] b, int k) throws MatrixException {
+        boolean[] consistent = new boolean[k];
+        double[] x = solve(b, k, consistent);
+        for (boolean c : consistent) {
+            if (!c) {
+                return null;
+            }
+        }
+        return x;
+    }
+
+    /** Returns the solutions for the HEIGHT x K row-major right-hand sides
+     * in B, which may be overwritten, as a WIDTH x K row-major array, and
+     * sets CONSISTENT[j] to whether column j has a solution. */
+    private double[] solve(double[] b, int k, boolean[] consistent)
+        throws MatrixException {
+        if (_cholesky != null || _lu != null) {
+            if (_cholesky != null) {
+                _cholesky.solveInPlace(b, k);
+            } else {
+                _lu.solveInPlace(b, k);
+            }
+            Arrays.fill(consistent, true);
+            return b;
+        }
+        int h = _height;
+        double[] y = new double[h * k];
+        Gemm.multiply(h, k, h, _operations, 0, h, b, 0, k, y, 0, k);
+        for (int j = 0; j < k; j++) {
+            consistent[j] = true;
+            for (int r = _rank; r < h && consistent[j]; r++) {
+                consistent[j] = Math.abs(y[r * k + j]) < Matrix.epsilon;
+            }
+        }
+        double[] x = new double[_width * k];
+        for (int r = 0; r < _rank; r++) {
+            System.arraycopy(y, r * k, x, _pivots[r] * k, k);
+        }
+        return x;
+    }
+
+    /** Returns true if the factored Matrix is square and invertible, in
+     * which case every system has exactly one solution. */
+    public boolean isInvertible() {
+        return _cholesky != null || _lu != null;
+    }
+
+    /** The dimensions of the factored Matrix. */
+    private final int _height, _width;
+
+    /** The Cholesky factorization, if the Matrix is symmetric positive
+     * definite. */
+    private Cholesky _cholesky;
+
+    /** The LU factorization, if the Matrix is otherwise invertible. */
+    private LU _lu;
+
+    /** The row operations E reducing the Matrix, row-major, when it is
+     * neither. */
+    private double[] _operations;
+
+    /** The columns of the pivots of EA. */
+    private int[] _pivots;
+
+    /** The number of pivots of EA. */
+    private int _rank;
+}
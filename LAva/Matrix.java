@@ -12,40 +12,175 @@ public class Matrix {
 
     /** Creates a new ROW x COL square Matrix with contents CONTENTS. */
     public Matrix(int row, int col, double[][] contents) throws MatrixException {
-        if (!(contents.length == row && contents[1].length == col)) {
+        if (contents.length != row) {
             throw new MatrixException("Incorrect dimension.");
         }
-        _dim = new ArrayList<Integer>();
-        _dim.add(row);
-        _dim.add(col);
-        _contents = contents;
-        df.setRoundingMode(RoundingMode.HALF_UP);
+        _height = row;
+        _width = col;
+        _data = new double[row * col];
+        _offset = 0;
+        _stride = col;
+        _colStride = 1;
+        for (int r = 0; r < row; r++) {
+            if (contents[r].length != col) {
+                throw new MatrixException("Incorrect dimension.");
+            }
+            System.arraycopy(contents[r], 0, _data, r * col, col);
+        }
+    }
+
+    /** Creates a new ROW x COL Matrix filled with zeroes. */
+    public Matrix(int row, int col) throws MatrixException {
+        this(row, col, new double[row * col], 0, col);
+    }
+
+    /** Creates a new ROW x COL Matrix stored in row-major order in DATA,
+     * with the entry at row R and col C held at
+     * DATA[OFFSET + (R - 1) * STRIDE + (C - 1)]. DATA is shared, not
+     * copied. */
+    public Matrix(int row, int col, double[] data, int offset, int stride)
+        throws MatrixException {
+        this(row, col, data, offset, stride, 1);
+        if (stride < col) {
+            throw new MatrixException("Incorrect dimension.");
+        }
+    }
+
+    /** Creates a new ROW x COL Matrix that shares DATA, with the entry at
+     * row R and col C held at
+     * DATA[OFFSET + (R - 1) * STRIDE + (C - 1) * COLSTRIDE]. */
+    Matrix(int row, int col, double[] data, int offset, int stride,
+           int colStride) throws MatrixException {
+        if (row < 0 || col < 0 || offset < 0 || stride < 0 || colStride < 0
+            || (row > 0 && col > 0 && offset + (long) (row - 1) * stride
+                + (long) (col - 1) * colStride >= data.length)) {
+            throw new MatrixException("Incorrect dimension.");
+        }
+        _height = row;
+        _width = col;
+        _data = data;
+        _offset = offset;
+        _stride = stride;
+        _colStride = colStride;
     }
 
     /** Returns the double at row R and col C. */
     public double get(int r, int c) {
-        return _contents[r - 1][c - 1];
+        checkIndex(r, c);
+        return _data[_offset + (r - 1) * _stride + (c - 1) * _colStride];
     }
 
     /** Sets the entry at row R and col C to be the double K. */
     public void set(int r, int c, double k) {
-        _contents[r - 1][c - 1] = k;
+        checkIndex(r, c);
+        _data[_offset + (r - 1) * _stride + (c - 1) * _colStride] = k;
+    }
+
+    /** Throws an IndexOutOfBoundsException unless row R and col C are in
+     * this Matrix, since with flat storage an index past the end of a row
+     * would otherwise read the next row, or an entry outside a view. */
+    private void checkIndex(int r, int c) {
+        if (r < 1 || r > _height || c < 1 || c > _width) {
+            throw new IndexOutOfBoundsException("(" + r + ", " + c + ")");
+        }
+    }
+
+    /** Returns a view of the transpose of this Matrix, which shares this
+     * Matrix's storage.
+     *
+     * @throws MatrixException */
+    public Matrix viewTranspose() throws MatrixException {
+        return new Matrix(_width, _height, _data, _offset, _colStride, _stride);
+    }
+
+    /** Returns a view of the block of this Matrix from row R1 to row R2 and
+     * from col C1 to col C2 (inclusive), which shares this Matrix's storage.
+     *
+     * @throws MatrixException */
+    public Matrix viewBlock(int r1, int r2, int c1, int c2) throws MatrixException {
+        if (r1 < 1 || r2 > getHeight() || r1 > r2 + 1) {
+            throw new MatrixException("Rows " + r1 + " to " + r2
+                                      + " are not a valid range.");
+        } else if (c1 < 1 || c2 > getWidth() || c1 > c2 + 1) {
+            throw new MatrixException("Columns " + c1 + " to " + c2
+                                      + " are not a valid range.");
+        }
+        return new Matrix(r2 - r1 + 1, c2 - c1 + 1, _data,
+                          _offset + (r1 - 1) * _stride + (c1 - 1) * _colStride,
+                          _stride, _colStride);
+    }
+
+    /** Returns a view of rows R1 to R2 (inclusive) of this Matrix, which
+     * shares this Matrix's storage.
+     *
+     * @throws MatrixException */
+    public Matrix viewRows(int r1, int r2) throws MatrixException {
+        return viewBlock(r1, r2, 1, getWidth());
+    }
+
+    /** Returns a view of columns C1 to C2 (inclusive) of this Matrix, which
+     * shares this Matrix's storage.
+     *
+     * @throws MatrixException */
+    public Matrix viewColumns(int c1, int c2) throws MatrixException {
+        return viewBlock(1, getHeight(), c1, c2);
+    }
+
+    /** Returns a view of row R of this Matrix as a 1 x n Matrix, which shares
+     * this Matrix's storage.
+     *
+     * @throws MatrixException */
+    public Matrix viewRow(int r) throws MatrixException {
+        return viewBlock(r, r, 1, getWidth());
+    }
+
+    /** Returns a view of column C of this Matrix as an n x 1 Matrix, which
+     * shares this Matrix's storage.
+     *
+     * @throws MatrixException */
+    public Matrix viewColumn(int c) throws MatrixException {
+        return viewBlock(1, getHeight(), c, c);
+    }
+
+    /** Returns the array backing this Matrix. */
+    double[] data() {
+        return _data;
+    }
+
+    /** Returns the index in data() of the entry at row 1 and col 1. */
+    int offset() {
+        return _offset;
+    }
+
+    /** Returns the distance in data() between the starts of two consecutive
+     * rows. */
+    int stride() {
+        return _stride;
+    }
+
+    /** Returns the distance in data() between two consecutive entries of a
+     * row. This is 1 unless this Matrix is a transposed view. */
+    int colStride() {
+        return _colStride;
     }
 
     /** Returns an ArrayList containing the dimension of the matrix, with the
      * height and the 0th index and the width at the 1st. */
     public ArrayList<Integer> getDimension() {
-        return _dim;
+        ArrayList<Integer> dim = new ArrayList<Integer>();
+        dim.add(_height);
+        dim.add(_width);
+        return dim;
     }
 
     /** Returns the integer height (number of rows) of the Matrix. */
     public int getHeight() {
-        return _dim.get(0);
+        return _height;
     }
 
     /** Returns the integer width (number of columns) of the Matrix. */
     public int getWidth() {
-        return _dim.get(1);
+        return _width;
     }
 
     /** Returns true if this Matrix is equal to Matrix A. */
@@ -75,13 +210,47 @@ public class Matrix {
 
     /** Sets _transpose to be the transpose of this Matrix. */
     public void transpose() throws MatrixException {
-        Matrix T = new Matrix(getWidth(), getHeight(), new double[getWidth()][getHeight()]);
-        for (int r = 1; r <= getHeight(); r++) {
-            for (int c = 1; c <= getWidth(); c++) {
-                T.set(c, r, get(r, c));
+        Matrix T = new Matrix(getWidth(), getHeight());
+        transposeInto(T);
+        _transpose = T;
+    }
+
+    /** Writes the transpose of this Matrix into T, splitting the larger
+     * dimension in half until the blocks fit in cache, so that neither
+     * matrix is walked against its layout across more than one block. */
+    void transposeInto(Matrix T) {
+        transposeBlock(_data, _offset, _stride, _colStride,
+                       T._data, T._offset, T._stride, T._colStride,
+                       getHeight(), getWidth());
+    }
+
+    /** Writes the transpose of the H x W block of A at AOFF (with row and
+     * column strides AS and ACS) into the block of T at TOFF (with strides
+     * TS and TCS). */
+    static void transposeBlock(double[] a, int aOff, int as, int acs,
+                               double[] t, int tOff, int ts, int tcs,
+                               int h, int w) {
+        if (h > TRANSPOSE_BLOCK || w > TRANSPOSE_BLOCK) {
+            if (h >= w) {
+                int half = h / 2;
+                transposeBlock(a, aOff, as, acs, t, tOff, ts, tcs, half, w);
+                transposeBlock(a, aOff + half * as, as, acs,
+                               t, tOff + half * tcs, ts, tcs, h - half, w);
+            } else {
+                int half = w / 2;
+                transposeBlock(a, aOff, as, acs, t, tOff, ts, tcs, h, half);
+                transposeBlock(a, aOff + half * acs, as, acs,
+                               t, tOff + half * ts, ts, tcs, h, w - half);
+            }
+            return;
+        }
+        for (int r = 0; r < h; r++) {
+            int ar = aOff + r * as;
+            int tc = tOff + r * tcs;
+            for (int c = 0; c < w; c++) {
+                t[tc + c * ts] = a[ar + c * acs];
             }
         }
-        _transpose = T;
     }
 
     /** Sets _rowRed to be this Matrix in row reduced form if EF is false and
@@ -92,38 +261,14 @@ public class Matrix {
      * @throws MatrixException */
     public void rowReduction(Boolean EF) throws MatrixException {
         Matrix B = Operations.matrixCopy(this);
+        int h = B.getHeight(), w = B.getWidth();
+        int[] pivots = new int[Math.min(h, w)];
+        int rank = reduce(B._data, B._stride, h, w, w, EF, pivots);
         _pivotCols = new ArrayList<Integer>();
         _pivotRows = new ArrayList<Integer>();
-        int pivot = 1;
-        for (int c = 1; c <= B.getWidth(); c++) {
-            if (pivot > B.getHeight()) {
-                break;
-            }
-            if (B.count(c, pivot) == 0) {
-                continue;
-            } else if (B.get(pivot, c) == 0) {
-                int k = pivot + 1;
-                while (B.get(k, c) == 0) {
-                    k++;
-                }
-                B.switchRow(pivot, k);
-            }
-            if (EF == true) {
-                for (int r = 1; r <= B.getHeight(); r++) {
-                    if (r == pivot) {
-                        continue;
-                    }
-                    B.add(pivot, r, -1 * B.get(r, c) / B.get(pivot, c));
-                }
-            } else {
-                for (int r = pivot + 1; r <= B.getHeight(); r++) {
-                    B.add(pivot, r, -1 * B.get(r, c) / B.get(pivot, c));
-                }
-            }
-            B.scalarMultRow(pivot, 1 / B.get(pivot, c));
-            _pivotCols.add(c);
-            _pivotRows.add(pivot);
-            pivot++;
+        for (int k = 0; k < rank; k++) {
+            _pivotCols.add(pivots[k] + 1);
+            _pivotRows.add(k + 1);
         }
         if (EF == true) {
             _rowRedEF = B;
@@ -131,7 +276,7 @@ public class Matrix {
             _rowRed = B;
         }
         if (_rank == null) {
-            _rank = pivot - 1;
+            _rank = rank;
             _nullity = getWidth() - _rank;
             _linInd = (_rank == getWidth());
             _surjective = (_rank == getHeight());
@@ -139,6 +284,104 @@ public class Matrix {
         }
     }
 
+    /** Reduces the H x W row-major Matrix in B, whose rows start S apart, in
+     * place to row reduced form, or to row reduced echelon form if EF is
+     * true, seeking pivots only in the first COLS columns. Stores the column
+     * (index starting at 0) of the pivot of row k in PIVOTS[k] and returns
+     * the number of pivots. */
+    static int reduce(double[] b, int s, int h, int w, int cols, boolean EF,
+                      int[] pivots) {
+        int pivot = 0;
+        for (int c = 0; c < cols && pivot < h; c++) {
+            boolean found = false;
+            for (int r = pivot; r < h && !found; r++) {
+                found = Math.abs(b[r * s + c]) >= epsilon;
+            }
+            if (!found) {
+                continue;
+            } else if (b[pivot * s + c] == 0) {
+                int k = pivot + 1;
+                while (b[k * s + c] == 0) {
+                    k++;
+                }
+                swapRows(b, pivot * s, k * s, w);
+            }
+            int p = pivot * s;
+            int first = EF ? 0 : pivot + 1;
+            for (int r = first; r < h; r++) {
+                if (r == pivot) {
+                    continue;
+                }
+                int row = r * s;
+                axpyRow(b, p, row, c, w, -1 * b[row + c] / b[p + c]);
+            }
+            scaleRow(b, p, c, w, 1 / b[p + c]);
+            pivots[pivot++] = c;
+        }
+        return pivot;
+    }
+
+    /** Adds K times the row starting at SRC to the row starting at DST in A,
+     * over columns FROM (inclusive) to TO (exclusive). */
+    static void axpyRow(double[] a, int src, int dst, int from, int to, double k) {
+        for (int c = from; c < to; c++) {
+            a[dst + c] += a[src + c] * k;
+        }
+    }
+
+    /** Multiplies the row starting at ROW in A by K over columns FROM
+     * (inclusive) to TO (exclusive). */
+    static void scaleRow(double[] a, int row, int from, int to, double k) {
+        for (int c = from; c < to; c++) {
+            a[row + c] *= k;
+        }
+    }
+
+    /** Swaps the WIDTH entries of the rows starting at R1 and R2 in A. */
+    static void swapRows(double[] a, int r1, int r2, int width) {
+        for (int c = 0; c < width; c++) {
+            double store = a[r1 + c];
+            a[r1 + c] = a[r2 + c];
+            a[r2 + c] = store;
+        }
+    }
+
+    /** Sets _qr to be the Householder QR factorization of this Matrix.
+     *
+     * @throws MatrixException */
+    public void QR() throws MatrixException {
+        _qr = new QR(this);
+    }
+
+    /** Returns the Householder QR factorization of this Matrix.
+     *
+     * @throws MatrixException */
+    public QR getQRFactorization() throws MatrixException {
+        if (_qr == null) {
+            QR();
+        }
+        return _qr;
+    }
+
+    /** Sets _svd to be the thin singular value decomposition of this
+     * Matrix.
+     *
+     * @throws MatrixException */
+    public void SVD() throws MatrixException {
+        _svd = new SVD(this);
+    }
+
+    /** Returns the thin singular value decomposition of this Matrix, from
+     * which its pseudoinverse, numerical rank and condition number follow.
+     *
+     * @throws MatrixException */
+    public SVD getSVD() throws MatrixException {
+        if (_svd == null) {
+            SVD();
+        }
+        return _svd;
+    }
+
     /** Returns the change of basis Matrix given another Matrix MATRIX.
      * 
      * @throws MatrixException */
@@ -179,25 +422,16 @@ public class Matrix {
      * 
      * @throws MatrixException */
     public VectorSet columnSpace() throws MatrixException {
-        ArrayList<Integer> columns = new ArrayList<>();
         VectorSet basis = new VectorSet();
-        int count;
-        for (double[] column : getRowRed()._contents) {
-            count = 0;
-            for (double value : column) {
-                if (value != 0) {
-                    columns.add(count);
+        Matrix R = getRowRed();
+        for (int r = 0; r < R.getHeight(); r++) {
+            int row = R._offset + r * R._stride;
+            for (int c = 0; c < R.getWidth(); c++) {
+                if (R._data[row + c * R._colStride] != 0) {
+                    basis.add(column(c));
                     break;
                 }
-                count++;
-            }
-        }
-        for (int column : columns) {
-            double[] vector = new double[_contents.length];
-            for (int index = 0; index < _contents.length; index++) {
-                vector[index] = get(index + 1, column + 1);
             }
-            basis.add(new Vector(vector));
         }
         return basis;
     }
@@ -245,77 +479,120 @@ public class Matrix {
     
     /** Returns a vector which is one possible solution to the system
      * of linear equations, Ax=b, where A is this matrix and B is
-     * a vector. Stores the general solution to this system in SOLSET. */
+     * a vector, or null if the system is inconsistent. Stores the general
+     * solution to this system in SOLSET, unless it is null.
+     *
+     * @throws MatrixException */
     public Vector solve(Vector b, String[] solset) throws MatrixException {
-        double[][] contents = new double[getHeight()][];
-        for(int c = 0; c < getHeight(); c++){
-            double[] matrix = _contents[c];
-            contents[c] = new double[getWidth() + 1];
-            System.arraycopy(matrix, 0, contents[c], 0, getWidth());
-            contents[c][getWidth()] = b.values()[c];
-        }
-        Matrix augmented = new Matrix(getHeight(), getWidth() + 1, contents);
-        Matrix RREF = augmented.getRowRedEF();
-        double[] result = new double[getWidth()];
         if (solset == null) {
-            solset = new String[getWidth()];
+            return solve(b);
         }
-        for (int r = 1; r <= getHeight(); r++) {
-            if (RREF.inconsistent(r)) {
-                System.out.println("No solution exists. This system is inconsistent.");
-                return null;
-            } 
-        }
-        for (int col = 1; col <= getWidth(); col++) {
-            if (RREF.getPivotCols().contains(col)) {
-                int r = RREF.getPivotRows().get(RREF.getPivotCols().indexOf(col));
-                String sol = df.format(RREF.get(col, RREF.getWidth())) + "";
-                for (int c = 1; c <= getWidth(); c++) {
-                    if (!RREF.getPivotCols().contains(c)) {
-                        String toAdd;
-                        double value = -1 * RREF.get(r, c);
-                        String entry = df.format(Math.abs(value));
-                        if (df.format(Math.abs(value)).equals("1")) {
-                            entry = "";
-                        }
-                        if (Math.abs(RREF.get(r, c)) < epsilon) {
-                            toAdd = "";
-                            continue;
-                        } else if (value > 0) {
-                            toAdd = " + ";
-                        } else {
-                            toAdd = " - ";
-                        }
-                        toAdd += entry + "x" + c;
-                        sol += toAdd;
-                    }
-                }
-                solset[col - 1] = sol;
-                result[col - 1] = RREF.get(r, RREF.getWidth());
-            } else {
-                solset[col - 1] = "Free";
-                result[col - 1] = 0;
-            }
+        Matrix augmented = augment(b);
+        Matrix RREF = augmented.getRowRedEF();
+        ArrayList<Integer> pivotCols = augmented.getPivotCols();
+        int rank = pivotCols.size();
+        int[] pivots = new int[rank];
+        for (int k = 0; k < rank; k++) {
+            pivots[k] = pivotCols.get(k) - 1;
+        }
+        Vector x = particular(RREF._data, RREF._stride, getWidth(), pivots, rank);
+        if (x != null) {
+            describe(RREF, pivots, rank, solset);
         }
-        Vector x = new Vector(result);
         return x;
     }
 
     /** Returns a vector which is one possible solution to the system
      * of linear equations, Ax=b, where A is this matrix and B is
-     * a vector. */
+     * a vector, or null if the system is inconsistent. Only the numbers
+     * are computed: the augmented matrix is reduced in place, and nothing
+     * is formatted or printed.
+     *
+     * @throws MatrixException */
     public Vector solve(Vector b) throws MatrixException {
-        return solve(b, null);
+        Matrix augmented = augment(b);
+        int h = getHeight(), w = getWidth() + 1;
+        int[] pivots = new int[Math.min(h, w)];
+        int rank = reduce(augmented._data, w, h, w, w, true, pivots);
+        return particular(augmented._data, w, getWidth(), pivots, rank);
     }
-    
+
+    /** Returns a new row-major Matrix holding this Matrix with the vector B
+     * appended as its last column.
+     *
+     * @throws MatrixException */
+    private Matrix augment(Vector b) throws MatrixException {
+        if (b.numRows() != getHeight()) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        int h = getHeight(), w = getWidth() + 1;
+        double[] contents = new double[h * w];
+        Operations.copy(this, new Matrix(h, w - 1, contents, 0, w));
+        double[] values = b.values();
+        for (int r = 0; r < h; r++) {
+            contents[r * w + w - 1] = values[r];
+        }
+        return new Matrix(h, w, contents, 0, w);
+    }
+
+    /** Returns the solution, with its free variables 0, of the system whose
+     * augmented Matrix in row reduced echelon form is in A, with rows S
+     * apart, WIDTH variables, and RANK pivots in the columns PIVOTS. Returns
+     * null if the last column holds a pivot, as the system is then
+     * inconsistent. */
+    private static Vector particular(double[] a, int s, int width, int[] pivots,
+                                     int rank) {
+        if (rank > 0 && pivots[rank - 1] == width) {
+            return null;
+        }
+        double[] result = new double[width];
+        for (int k = 0; k < rank; k++) {
+            result[pivots[k]] = a[k * s + width];
+        }
+        return new Vector(result);
+    }
+
+    /** Stores in SOLSET the general solution of the consistent system whose
+     * augmented Matrix in row reduced echelon form is RREF, with RANK pivots
+     * in the columns PIVOTS: each basic variable as an expression in the
+     * free ones, and "Free" for the free ones. */
+    private void describe(Matrix RREF, int[] pivots, int rank, String[] solset) {
+        int width = getWidth();
+        boolean[] basic = new boolean[width];
+        for (int k = 0; k < rank; k++) {
+            basic[pivots[k]] = true;
+        }
+        for (int col = 0; col < width; col++) {
+            if (!basic[col]) {
+                solset[col] = "Free";
+            }
+        }
+        for (int k = 0; k < rank; k++) {
+            int r = k + 1;
+            StringBuilder sol = new StringBuilder(df.format(RREF.get(r, width + 1)));
+            for (int c = 1; c <= width; c++) {
+                double value = -1 * RREF.get(r, c);
+                if (basic[c - 1] || Math.abs(value) < epsilon) {
+                    continue;
+                }
+                String entry = df.format(Math.abs(value));
+                sol.append(value > 0 ? " + " : " - ");
+                sol.append(entry.equals("1") ? "" : entry).append("x").append(c);
+            }
+            solset[pivots[k]] = sol.toString();
+        }
+    }
+
     /** Returns a string array containing a general solution set to the
      * system of linear equations, Ax=b, where A is this matrix and B is
-     * a vector. Prints out this general solution.
+     * a vector. Prints out this general solution, or that there is none.
      * @throws MatrixException */
     public String[] generalSolution(Vector b) throws MatrixException {
         String[] solset = new String[getWidth()];
         Vector test = solve(b, solset);
         if (test == null) {
+            System.out.println("No solution exists. This system is inconsistent.");
             return null;
         }
         for (int i = 1; i <= getWidth(); i++) {
@@ -354,12 +631,13 @@ public class Matrix {
     /** Returns true if row R is inconsistent, i.e. consists of all zeroes,
      * except in the last column. */
     public boolean inconsistent(int r) {
-        for (int c = 1; c < getWidth(); c++) {
-            if (get(r, c) >= epsilon) {
+        int row = _offset + (r - 1) * _stride;
+        for (int c = 0; c < getWidth() - 1; c++) {
+            if (_data[row + c * _colStride] >= epsilon) {
                 return false;
             }
         }
-        if (get(r, getWidth()) >= epsilon) {
+        if (_data[row + (getWidth() - 1) * _colStride] >= epsilon) {
             return true;
         } else {
             return false;
@@ -368,8 +646,9 @@ public class Matrix {
     
     /** Returns true if a column contains only zeroes. */
     public boolean isZero(int c) {
-        for (int r = 1; r <= getHeight(); r++) {
-            if (get(r, c) >= epsilon) {
+        for (int i = _offset + (c - 1) * _colStride, r = 0; r < getHeight();
+             r++, i += _stride) {
+            if (_data[i] >= epsilon) {
                 return false;
             }
         }
@@ -404,12 +683,20 @@ public class Matrix {
         return _transpose;
     }
 
+    /** Sets _rank, _nullity, _linInd, _surjective and _injective from the
+     * row reduced form of this Matrix.
+     *
+     * @throws MatrixException */
+    protected void rank() throws MatrixException {
+        getRowRed();
+    }
+
     /** Returns the rank of this Matrix.
      *
      * @throws MatrixException */
     public int getRank() throws MatrixException {
         if (_rank == null) {
-            getRowRed();
+            rank();
         }
         return _rank;
     }
@@ -419,7 +706,7 @@ public class Matrix {
      * @throws MatrixException */
     public int getNullity() throws MatrixException {
         if (_nullity == null) {
-            getRowRed();
+            rank();
         }
         return _nullity;
     }
@@ -429,7 +716,7 @@ public class Matrix {
      * @throws MatrixException */
     public Boolean isLinInd() throws MatrixException {
         if (_linInd == null) {
-            getRowRed();
+            rank();
         }
         return _linInd;
     }
@@ -440,7 +727,7 @@ public class Matrix {
      * @throws MatrixException */
     public Boolean isSurjective() throws MatrixException {
         if (_surjective == null) {
-            getRowRed();
+            rank();
         }
         return _surjective;
     }
@@ -451,7 +738,7 @@ public class Matrix {
      * @throws MatrixException */
     public Boolean isInjective() throws MatrixException {
         if (_injective == null) {
-            getRowRed();
+            rank();
         }
         return _injective;
     }
@@ -463,8 +750,13 @@ public class Matrix {
         if (r < 1 || r > getHeight()) {
             throw new MatrixException("Row " + r + " is not a valid row.");
         }
-        for (int c = 1; c <= getWidth(); c++) {
-            set(r, c, get(r, c) * k);
+        int row = _offset + (r - 1) * _stride;
+        if (_colStride == 1) {
+            scaleRow(_data, row, 0, getWidth(), k);
+        } else {
+            for (int c = 0; c < getWidth(); c++) {
+                _data[row + c * _colStride] *= k;
+            }
         }
     }
 
@@ -484,10 +776,16 @@ public class Matrix {
         } else if (R2 < 1 || R2 > getHeight()) {
             throw new MatrixException("Row " + R2 + " is now a valid row.");
         }
-        for (int c = 1; c <= getWidth(); c++) {
-            double storeR1 = get(R1, c);
-            set(R1, c, get(R2, c));
-            set(R2, c, storeR1);
+        int row1 = _offset + (R1 - 1) * _stride;
+        int row2 = _offset + (R2 - 1) * _stride;
+        if (_colStride == 1) {
+            swapRows(_data, row1, row2, getWidth());
+        } else {
+            for (int c = 0; c < getWidth() * _colStride; c += _colStride) {
+                double storeR1 = _data[row1 + c];
+                _data[row1 + c] = _data[row2 + c];
+                _data[row2 + c] = storeR1;
+            }
         }
     }
 
@@ -500,8 +798,14 @@ public class Matrix {
         } else if (R2 < 1 || R2 > getHeight()) {
             throw new MatrixException("Row " + R2 + " is now a valid row.");
         }
-        for (int c = 1; c <= getWidth(); c++) {
-            set(R2, c, get(R2, c) + get(R1, c) * k);
+        int row1 = _offset + (R1 - 1) * _stride;
+        int row2 = _offset + (R2 - 1) * _stride;
+        if (_colStride == 1) {
+            axpyRow(_data, row1, row2, 0, getWidth(), k);
+        } else {
+            for (int c = 0; c < getWidth() * _colStride; c += _colStride) {
+                _data[row2 + c] += _data[row1 + c] * k;
+            }
         }
     }
 
@@ -523,8 +827,10 @@ public class Matrix {
             throw new MatrixException("Row " + r + " is not a valid row.");
         }
         int num = 0;
-        for (int i = r; i <= getHeight(); i++) {
-            if (Math.abs(get(i, c)) >= epsilon) {
+        for (int i = _offset + (r - 1) * _stride + (c - 1) * _colStride, k = r;
+             k <= getHeight();
+             k++, i += _stride) {
+            if (Math.abs(_data[i]) >= epsilon) {
                 num++;
             }
         }
@@ -535,20 +841,38 @@ public class Matrix {
     public VectorSet vectorSet() {
         Vector[] vectors = new Vector[getWidth()];
         for (int c = 0; c < getWidth(); c++) {
-            double[] values = new double[getHeight()];
-            for (int r = 0; r < getHeight(); r++) {
-                values[r] = get(r + 1, c + 1);
-            }
-            vectors[c] = new Vector(values);
+            vectors[c] = column(c);
         }
         return new VectorSet(vectors);
     }
 
-    /** The contents of this Matrix. */
-    private double[][] _contents;
+    /** Returns a copy of the column at 0-based index C as a Vector. */
+    Vector column(int c) {
+        double[] values = new double[getHeight()];
+        for (int r = 0, i = _offset + c * _colStride; r < values.length;
+             r++, i += _stride) {
+            values[r] = _data[i];
+        }
+        return new Vector(values);
+    }
+
+    /** The contents of this Matrix, in row-major order. */
+    private double[] _data;
 
-    /** The dimension of this Matrix. */
-    private ArrayList<Integer> _dim;
+    /** The index in _data of the first entry of this Matrix. */
+    private int _offset;
+
+    /** The distance in _data between the starts of two consecutive rows. */
+    private int _stride;
+
+    /** The distance in _data between two consecutive entries of a row. */
+    private int _colStride;
+
+    /** The number of rows of this Matrix. */
+    private int _height;
+
+    /** The number of columns of this Matrix. */
+    private int _width;
     
     /** The pivot columns of this Matrix. */
     protected ArrayList<Integer> _pivotCols;
@@ -581,11 +905,24 @@ public class Matrix {
 
     /** The transpose of this Matrix. */
     protected Matrix _transpose;
+
+    /** The Householder QR factorization of this Matrix. */
+    protected QR _qr;
+
+    /** The singular value decomposition of this Matrix. */
+    protected SVD _svd;
     
+    /** The largest block side transposed without further splitting. */
+    private static final int TRANSPOSE_BLOCK = 32;
+
     /** Two doubles are considered equal if they are within this margin. */
     protected static final double epsilon = 0.000001;
         
     /** The format of output for entries in the matrix. */
     protected static final DecimalFormat df = new DecimalFormat("#");
 
+    static {
+        df.setRoundingMode(RoundingMode.HALF_UP);
+    }
+
 }
@@ -0,0 +1,157 @@
+package matrix_calculator;
+
+/** An immutable 2 x 2 Matrix held in final primitive fields, for the
+ * small transforms of graphics and robotics code. Every operation is
+ * unrolled, with no loops, bounds checks or arrays, and returns a new
+ * Matrix2, which the JIT compiler can usually keep in registers. The
+ * determinant and inverse use closed forms.
+ *
+ * @author AndyPalan */
+public final class Matrix2 {
+
+    /** The 2 x 2 identity Matrix. */
+    public static final Matrix2 IDENTITY = new Matrix2(1, 0,
+                                                       0, 1);
+
+    /** Creates a new Matrix2 whose entry at row r and col c (index starting
+     * at 0) is Mrc. */
+    public Matrix2(double m00, double m01,
+                   double m10, double m11) {
+        _m00 = m00;
+        _m01 = m01;
+        _m10 = m10;
+        _m11 = m11;
+    }
+
+    /** Creates a new Matrix2 holding the entries of the 2 x 2 Matrix A.
+     *
+     * @throws MatrixException */
+    public Matrix2(Matrix A) throws MatrixException {
+        this(checked(A).get(1, 1), A.get(1, 2),
+             A.get(2, 1), A.get(2, 2));
+    }
+
+    /** Returns A, throwing a MatrixException unless it is 2 x 2.
+     *
+     * @throws MatrixException */
+    private static Matrix checked(Matrix A) throws MatrixException {
+        if (A.getHeight() != 2 || A.getWidth() != 2) {
+            throw new MatrixException("The matrix does not have the"
+                            + " appropriate dimension.");
+        }
+        return A;
+    }
+
+    /** Returns the double at row R and col C. */
+    public double get(int r, int c) {
+        if (r < 1 || r > 2 || c < 1 || c > 2) {
+            throw outOfRange(r, c);
+        }
+        switch ((r - 1) * 2 + c - 1) {
+        case 0:
+            return _m00;
+        case 1:
+            return _m01;
+        case 2:
+            return _m10;
+        case 3:
+            return _m11;
+        default:
+            throw outOfRange(r, c);
+        }
+    }
+
+    /** Returns the exception for the entry at row R and col C, which is
+     * not in this Matrix. */
+    private static IndexOutOfBoundsException outOfRange(int r, int c) {
+        return new IndexOutOfBoundsException("Entry (" + r + ", " + c + ") is not in a"
+                                             + " 2 x 2 matrix.");
+    }
+
+    /** Returns this Matrix as a SquareMatrix.
+     *
+     * @throws MatrixException */
+    public SquareMatrix toSquareMatrix() throws MatrixException {
+        double[] data = { _m00, _m01,
+                           _m10, _m11 };
+        return new SquareMatrix(2, data, 0, 2);
+    }
+
+    /** Returns the determinant of this Matrix. */
+    public double getDet() {
+        return _m00 * _m11 - _m01 * _m10;
+    }
+
+    /** Returns the inverse of this Matrix.
+     *
+     * @throws MatrixException */
+    public Matrix2 getInverse() throws MatrixException {
+        double det = getDet();
+        if (Math.abs(det) < Matrix.epsilon) {
+            throw new MatrixException("This matrix is singular.");
+        }
+        double inv = 1 / det;
+        return new Matrix2(_m11 * inv, -_m01 * inv, -_m10 * inv, _m00 * inv);
+    }
+
+    /** Returns the transpose of this Matrix. */
+    public Matrix2 getTranspose() {
+        return new Matrix2(_m00, _m10,
+                           _m01, _m11);
+    }
+
+    /** Returns the product of this Matrix and B. */
+    public Matrix2 multiply(Matrix2 B) {
+        return new Matrix2(_m00 * B._m00 + _m01 * B._m10,
+                           _m00 * B._m01 + _m01 * B._m11,
+                           _m10 * B._m00 + _m11 * B._m10,
+                           _m10 * B._m01 + _m11 * B._m11);
+    }
+
+    /** Returns the sum of this Matrix and B. */
+    public Matrix2 add(Matrix2 B) {
+        return new Matrix2(_m00 + B._m00, _m01 + B._m01,
+                           _m10 + B._m10, _m11 + B._m11);
+    }
+
+    /** Returns this Matrix multiplied by the scalar K. */
+    public Matrix2 scalarMult(double k) {
+        return new Matrix2(_m00 * k, _m01 * k,
+                           _m10 * k, _m11 * k);
+    }
+
+    /** Returns the product of this Matrix and the vector X.
+     *
+     * @throws MatrixException */
+    public Vector transform(Vector x) throws MatrixException {
+        if (x.numRows() != 2) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        double[] v = x.values();
+        return new Vector(_m00 * v[0] + _m01 * v[1], _m10 * v[0] + _m11 * v[1]);
+    }
+
+    /** Sets Y[OFFSET .. OFFSET + 1] to the product of this Matrix and
+     * X[OFFSET .. OFFSET + 1], allocating nothing. X and Y may be the same
+     * array. */
+    public void transform(double[] x, double[] y, int offset) {
+        double x0 = x[offset];
+        double x1 = x[offset + 1];
+        y[offset] = _m00 * x0 + _m01 * x1;
+        y[offset + 1] = _m10 * x0 + _m11 * x1;
+    }
+
+    /** Returns true if every entry of this Matrix is within epsilon of the
+     * same entry of B. */
+    public boolean equals(Matrix2 B) {
+        return Math.abs(_m00 - B._m00) < Matrix.epsilon
+            && Math.abs(_m01 - B._m01) < Matrix.epsilon
+            && Math.abs(_m10 - B._m10) < Matrix.epsilon
+            && Math.abs(_m11 - B._m11) < Matrix.epsilon;
+    }
+
+    /** The entries, _mrc being at row r and col c (index starting at 0). */
+    private final double _m00, _m01,
+                         _m10, _m11;
+}
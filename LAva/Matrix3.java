@@ -0,0 +1,203 @@
+package matrix_calculator;
+
+/** An immutable 3 x 3 Matrix held in final primitive fields, for the
+ * small transforms of graphics and robotics code. Every operation is
+ * unrolled, with no loops, bounds checks or arrays, and returns a new
+ * Matrix3, which the JIT compiler can usually keep in registers. The
+ * determinant and inverse use closed forms.
+ *
+ * @author AndyPalan */
+public final class Matrix3 {
+
+    /** The 3 x 3 identity Matrix. */
+    public static final Matrix3 IDENTITY = new Matrix3(1, 0, 0,
+                                                       0, 1, 0,
+                                                       0, 0, 1);
+
+    /** Creates a new Matrix3 whose entry at row r and col c (index starting
+     * at 0) is Mrc. */
+    public Matrix3(double m00, double m01, double m02,
+                   double m10, double m11, double m12,
+                   double m20, double m21, double m22) {
+        _m00 = m00;
+        _m01 = m01;
+        _m02 = m02;
+        _m10 = m10;
+        _m11 = m11;
+        _m12 = m12;
+        _m20 = m20;
+        _m21 = m21;
+        _m22 = m22;
+    }
+
+    /** Creates a new Matrix3 holding the entries of the 3 x 3 Matrix A.
+     *
+     * @throws MatrixException */
+    public Matrix3(Matrix A) throws MatrixException {
+        this(checked(A).get(1, 1), A.get(1, 2), A.get(1, 3),
+             A.get(2, 1), A.get(2, 2), A.get(2, 3),
+             A.get(3, 1), A.get(3, 2), A.get(3, 3));
+    }
+
+    /** Returns A, throwing a MatrixException unless it is 3 x 3.
+     *
+     * @throws MatrixException */
+    private static Matrix checked(Matrix A) throws MatrixException {
+        if (A.getHeight() != 3 || A.getWidth() != 3) {
+            throw new MatrixException("The matrix does not have the"
+                            + " appropriate dimension.");
+        }
+        return A;
+    }
+
+    /** Returns the double at row R and col C. */
+    public double get(int r, int c) {
+        if (r < 1 || r > 3 || c < 1 || c > 3) {
+            throw outOfRange(r, c);
+        }
+        switch ((r - 1) * 3 + c - 1) {
+        case 0:
+            return _m00;
+        case 1:
+            return _m01;
+        case 2:
+            return _m02;
+        case 3:
+            return _m10;
+        case 4:
+            return _m11;
+        case 5:
+            return _m12;
+        case 6:
+            return _m20;
+        case 7:
+            return _m21;
+        case 8:
+            return _m22;
+        default:
+            throw outOfRange(r, c);
+        }
+    }
+
+    /** Returns the exception for the entry at row R and col C, which is
+     * not in this Matrix. */
+    private static IndexOutOfBoundsException outOfRange(int r, int c) {
+        return new IndexOutOfBoundsException("Entry (" + r + ", " + c + ") is not in a"
+                                             + " 3 x 3 matrix.");
+    }
+
+    /** Returns this Matrix as a SquareMatrix.
+     *
+     * @throws MatrixException */
+    public SquareMatrix toSquareMatrix() throws MatrixException {
+        double[] data = { _m00, _m01, _m02,
+                           _m10, _m11, _m12,
+                           _m20, _m21, _m22 };
+        return new SquareMatrix(3, data, 0, 3);
+    }
+
+    /** Returns the determinant of this Matrix. */
+    public double getDet() {
+        return _m00 * (_m11 * _m22 - _m12 * _m21) + _m01 * (_m12 * _m20 - _m10 * _m22)
+            + _m02 * (_m10 * _m21 - _m11 * _m20);
+    }
+
+    /** Returns the inverse of this Matrix, its adjugate over its
+     * determinant.
+     *
+     * @throws MatrixException */
+    public Matrix3 getInverse() throws MatrixException {
+        double b00 = _m11 * _m22 - _m12 * _m21, b10 = _m12 * _m20 - _m10 * _m22;
+        double b20 = _m10 * _m21 - _m11 * _m20;
+        double det = _m00 * b00 + _m01 * b10 + _m02 * b20;
+        if (Math.abs(det) < Matrix.epsilon) {
+            throw new MatrixException("This matrix is singular.");
+        }
+        double inv = 1 / det;
+        return new Matrix3(b00 * inv, (_m02 * _m21 - _m01 * _m22) * inv,
+                           (_m01 * _m12 - _m02 * _m11) * inv,
+                           b10 * inv, (_m00 * _m22 - _m02 * _m20) * inv,
+                           (_m02 * _m10 - _m00 * _m12) * inv,
+                           b20 * inv, (_m01 * _m20 - _m00 * _m21) * inv,
+                           (_m00 * _m11 - _m01 * _m10) * inv);
+    }
+
+    /** Returns the transpose of this Matrix. */
+    public Matrix3 getTranspose() {
+        return new Matrix3(_m00, _m10, _m20,
+                           _m01, _m11, _m21,
+                           _m02, _m12, _m22);
+    }
+
+    /** Returns the product of this Matrix and B. */
+    public Matrix3 multiply(Matrix3 B) {
+        return new Matrix3(_m00 * B._m00 + _m01 * B._m10 + _m02 * B._m20,
+                           _m00 * B._m01 + _m01 * B._m11 + _m02 * B._m21,
+                           _m00 * B._m02 + _m01 * B._m12 + _m02 * B._m22,
+                           _m10 * B._m00 + _m11 * B._m10 + _m12 * B._m20,
+                           _m10 * B._m01 + _m11 * B._m11 + _m12 * B._m21,
+                           _m10 * B._m02 + _m11 * B._m12 + _m12 * B._m22,
+                           _m20 * B._m00 + _m21 * B._m10 + _m22 * B._m20,
+                           _m20 * B._m01 + _m21 * B._m11 + _m22 * B._m21,
+                           _m20 * B._m02 + _m21 * B._m12 + _m22 * B._m22);
+    }
+
+    /** Returns the sum of this Matrix and B. */
+    public Matrix3 add(Matrix3 B) {
+        return new Matrix3(_m00 + B._m00, _m01 + B._m01, _m02 + B._m02,
+                           _m10 + B._m10, _m11 + B._m11, _m12 + B._m12,
+                           _m20 + B._m20, _m21 + B._m21, _m22 + B._m22);
+    }
+
+    /** Returns this Matrix multiplied by the scalar K. */
+    public Matrix3 scalarMult(double k) {
+        return new Matrix3(_m00 * k, _m01 * k, _m02 * k,
+                           _m10 * k, _m11 * k, _m12 * k,
+                           _m20 * k, _m21 * k, _m22 * k);
+    }
+
+    /** Returns the product of this Matrix and the vector X.
+     *
+     * @throws MatrixException */
+    public Vector transform(Vector x) throws MatrixException {
+        if (x.numRows() != 3) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        double[] v = x.values();
+        return new Vector(_m00 * v[0] + _m01 * v[1] + _m02 * v[2],
+                          _m10 * v[0] + _m11 * v[1] + _m12 * v[2],
+                          _m20 * v[0] + _m21 * v[1] + _m22 * v[2]);
+    }
+
+    /** Sets Y[OFFSET .. OFFSET + 2] to the product of this Matrix and
+     * X[OFFSET .. OFFSET + 2], allocating nothing. X and Y may be the same
+     * array. */
+    public void transform(double[] x, double[] y, int offset) {
+        double x0 = x[offset];
+        double x1 = x[offset + 1];
+        double x2 = x[offset + 2];
+        y[offset] = _m00 * x0 + _m01 * x1 + _m02 * x2;
+        y[offset + 1] = _m10 * x0 + _m11 * x1 + _m12 * x2;
+        y[offset + 2] = _m20 * x0 + _m21 * x1 + _m22 * x2;
+    }
+
+    /** Returns true if every entry of this Matrix is within epsilon of the
+     * same entry of B. */
+    public boolean equals(Matrix3 B) {
+        return Math.abs(_m00 - B._m00) < Matrix.epsilon
+            && Math.abs(_m01 - B._m01) < Matrix.epsilon
+            && Math.abs(_m02 - B._m02) < Matrix.epsilon
+            && Math.abs(_m10 - B._m10) < Matrix.epsilon
+            && Math.abs(_m11 - B._m11) < Matrix.epsilon
+            && Math.abs(_m12 - B._m12) < Matrix.epsilon
+            && Math.abs(_m20 - B._m20) < Matrix.epsilon
+            && Math.abs(_m21 - B._m21) < Matrix.epsilon
+            && Math.abs(_m22 - B._m22) < Matrix.epsilon;
+    }
+
+    /** The entries, _mrc being at row r and col c (index starting at 0). */
+    private final double _m00, _m01, _m02,
+                         _m10, _m11, _m12,
+                         _m20, _m21, _m22;
+}
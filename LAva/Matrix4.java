@@ -0,0 +1,270 @@
+package matrix_calculator;
+
+/** An immutable 4 x 4 Matrix held in final primitive fields, for the
+ * small transforms of graphics and robotics code. Every operation is
+ * unrolled, with no loops, bounds checks or arrays, and returns a new
+ * Matrix4, which the JIT compiler can usually keep in registers. The
+ * determinant and inverse use closed forms.
+ *
+ * @author AndyPalan */
+public final class Matrix4 {
+
+    /** The 4 x 4 identity Matrix. */
+    public static final Matrix4 IDENTITY = new Matrix4(1, 0, 0, 0,
+                                                       0, 1, 0, 0,
+                                                       0, 0, 1, 0,
+                                                       0, 0, 0, 1);
+
+    /** Creates a new Matrix4 whose entry at row r and col c (index starting
+     * at 0) is Mrc. */
+    public Matrix4(double m00, double m01, double m02, double m03,
+                   double m10, double m11, double m12, double m13,
+                   double m20, double m21, double m22, double m23,
+                   double m30, double m31, double m32, double m33) {
+        _m00 = m00;
+        _m01 = m01;
+        _m02 = m02;
+        _m03 = m03;
+        _m10 = m10;
+        _m11 = m11;
+        _m12 = m12;
+        _m13 = m13;
+        _m20 = m20;
+        _m21 = m21;
+        _m22 = m22;
+        _m23 = m23;
+        _m30 = m30;
+        _m31 = m31;
+        _m32 = m32;
+        _m33 = m33;
+    }
+
+    /** Creates a new Matrix4 holding the entries of the 4 x 4 Matrix A.
+     *
+     * @throws MatrixException */
+    public Matrix4(Matrix A) throws MatrixException {
+        this(checked(A).get(1, 1), A.get(1, 2), A.get(1, 3), A.get(1, 4),
+             A.get(2, 1), A.get(2, 2), A.get(2, 3), A.get(2, 4),
+             A.get(3, 1), A.get(3, 2), A.get(3, 3), A.get(3, 4),
+             A.get(4, 1), A.get(4, 2), A.get(4, 3), A.get(4, 4));
+    }
+
+    /** Returns A, throwing a MatrixException unless it is 4 x 4.
+     *
+     * @throws MatrixException */
+    private static Matrix checked(Matrix A) throws MatrixException {
+        if (A.getHeight() != 4 || A.getWidth() != 4) {
+            throw new MatrixException("The matrix does not have the"
+                            + " appropriate dimension.");
+        }
+        return A;
+    }
+
+    /** Returns the double at row R and col C. */
+    public double get(int r, int c) {
+        if (r < 1 || r > 4 || c < 1 || c > 4) {
+            throw outOfRange(r, c);
+        }
+        switch ((r - 1) * 4 + c - 1) {
+        case 0:
+            return _m00;
+        case 1:
+            return _m01;
+        case 2:
+            return _m02;
+        case 3:
+            return _m03;
+        case 4:
+            return _m10;
+        case 5:
+            return _m11;
+        case 6:
+            return _m12;
+        case 7:
+            return _m13;
+        case 8:
+            return _m20;
+        case 9:
+            return _m21;
+        case 10:
+            return _m22;
+        case 11:
+            return _m23;
+        case 12:
+            return _m30;
+        case 13:
+            return _m31;
+        case 14:
+            return _m32;
+        case 15:
+            return _m33;
+        default:
+            throw outOfRange(r, c);
+        }
+    }
+
+    /** Returns the exception for the entry at row R and col C, which is
+     * not in this Matrix. */
+    private static IndexOutOfBoundsException outOfRange(int r, int c) {
+        return new IndexOutOfBoundsException("Entry (" + r + ", " + c + ") is not in a"
+                                             + " 4 x 4 matrix.");
+    }
+
+    /** Returns this Matrix as a SquareMatrix.
+     *
+     * @throws MatrixException */
+    public SquareMatrix toSquareMatrix() throws MatrixException {
+        double[] data = { _m00, _m01, _m02, _m03,
+                           _m10, _m11, _m12, _m13,
+                           _m20, _m21, _m22, _m23,
+                           _m30, _m31, _m32, _m33 };
+        return new SquareMatrix(4, data, 0, 4);
+    }
+
+    /** Returns the determinant of this Matrix, by expansion in the 2 x 2
+     * minors of its first two and last two rows. */
+    public double getDet() {
+        double s0 = _m00 * _m11 - _m10 * _m01, s1 = _m00 * _m12 - _m10 * _m02;
+        double s2 = _m00 * _m13 - _m10 * _m03, s3 = _m01 * _m12 - _m11 * _m02;
+        double s4 = _m01 * _m13 - _m11 * _m03, s5 = _m02 * _m13 - _m12 * _m03;
+        double c0 = _m20 * _m31 - _m30 * _m21, c1 = _m20 * _m32 - _m30 * _m22;
+        double c2 = _m20 * _m33 - _m30 * _m23, c3 = _m21 * _m32 - _m31 * _m22;
+        double c4 = _m21 * _m33 - _m31 * _m23, c5 = _m22 * _m33 - _m32 * _m23;
+        return s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+    }
+
+    /** Returns the inverse of this Matrix, its adjugate over its
+     * determinant, both formed from the 2 x 2 minors of its first two and
+     * last two rows.
+     *
+     * @throws MatrixException */
+    public Matrix4 getInverse() throws MatrixException {
+        double s0 = _m00 * _m11 - _m10 * _m01, s1 = _m00 * _m12 - _m10 * _m02;
+        double s2 = _m00 * _m13 - _m10 * _m03, s3 = _m01 * _m12 - _m11 * _m02;
+        double s4 = _m01 * _m13 - _m11 * _m03, s5 = _m02 * _m13 - _m12 * _m03;
+        double c0 = _m20 * _m31 - _m30 * _m21, c1 = _m20 * _m32 - _m30 * _m22;
+        double c2 = _m20 * _m33 - _m30 * _m23, c3 = _m21 * _m32 - _m31 * _m22;
+        double c4 = _m21 * _m33 - _m31 * _m23, c5 = _m22 * _m33 - _m32 * _m23;
+        double det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+        if (Math.abs(det) < Matrix.epsilon) {
+            throw new MatrixException("This matrix is singular.");
+        }
+        double inv = 1 / det;
+        return new Matrix4((_m11 * c5 - _m12 * c4 + _m13 * c3) * inv,
+                           (-_m01 * c5 + _m02 * c4 - _m03 * c3) * inv,
+                           (_m31 * s5 - _m32 * s4 + _m33 * s3) * inv,
+                           (-_m21 * s5 + _m22 * s4 - _m23 * s3) * inv,
+                           (-_m10 * c5 + _m12 * c2 - _m13 * c1) * inv,
+                           (_m00 * c5 - _m02 * c2 + _m03 * c1) * inv,
+                           (-_m30 * s5 + _m32 * s2 - _m33 * s1) * inv,
+                           (_m20 * s5 - _m22 * s2 + _m23 * s1) * inv,
+                           (_m10 * c4 - _m11 * c2 + _m13 * c0) * inv,
+                           (-_m00 * c4 + _m01 * c2 - _m03 * c0) * inv,
+                           (_m30 * s4 - _m31 * s2 + _m33 * s0) * inv,
+                           (-_m20 * s4 + _m21 * s2 - _m23 * s0) * inv,
+                           (-_m10 * c3 + _m11 * c1 - _m12 * c0) * inv,
+                           (_m00 * c3 - _m01 * c1 + _m02 * c0) * inv,
+                           (-_m30 * s3 + _m31 * s1 - _m32 * s0) * inv,
+                           (_m20 * s3 - _m21 * s1 + _m22 * s0) * inv);
+    }
+
+    /** Returns the transpose of this Matrix. */
+    public Matrix4 getTranspose() {
+        return new Matrix4(_m00, _m10, _m20, _m30,
+                           _m01, _m11, _m21, _m31,
+                           _m02, _m12, _m22, _m32,
+                           _m03, _m13, _m23, _m33);
+    }
+
+    /** Returns the product of this Matrix and B. */
+    public Matrix4 multiply(Matrix4 B) {
+        return new Matrix4(_m00 * B._m00 + _m01 * B._m10 + _m02 * B._m20 + _m03 * B._m30,
+                           _m00 * B._m01 + _m01 * B._m11 + _m02 * B._m21 + _m03 * B._m31,
+                           _m00 * B._m02 + _m01 * B._m12 + _m02 * B._m22 + _m03 * B._m32,
+                           _m00 * B._m03 + _m01 * B._m13 + _m02 * B._m23 + _m03 * B._m33,
+                           _m10 * B._m00 + _m11 * B._m10 + _m12 * B._m20 + _m13 * B._m30,
+                           _m10 * B._m01 + _m11 * B._m11 + _m12 * B._m21 + _m13 * B._m31,
+                           _m10 * B._m02 + _m11 * B._m12 + _m12 * B._m22 + _m13 * B._m32,
+                           _m10 * B._m03 + _m11 * B._m13 + _m12 * B._m23 + _m13 * B._m33,
+                           _m20 * B._m00 + _m21 * B._m10 + _m22 * B._m20 + _m23 * B._m30,
+                           _m20 * B._m01 + _m21 * B._m11 + _m22 * B._m21 + _m23 * B._m31,
+                           _m20 * B._m02 + _m21 * B._m12 + _m22 * B._m22 + _m23 * B._m32,
+                           _m20 * B._m03 + _m21 * B._m13 + _m22 * B._m23 + _m23 * B._m33,
+                           _m30 * B._m00 + _m31 * B._m10 + _m32 * B._m20 + _m33 * B._m30,
+                           _m30 * B._m01 + _m31 * B._m11 + _m32 * B._m21 + _m33 * B._m31,
+                           _m30 * B._m02 + _m31 * B._m12 + _m32 * B._m22 + _m33 * B._m32,
+                           _m30 * B._m03 + _m31 * B._m13 + _m32 * B._m23 + _m33 * B._m33);
+    }
+
+    /** Returns the sum of this Matrix and B. */
+    public Matrix4 add(Matrix4 B) {
+        return new Matrix4(_m00 + B._m00, _m01 + B._m01, _m02 + B._m02, _m03 + B._m03,
+                           _m10 + B._m10, _m11 + B._m11, _m12 + B._m12, _m13 + B._m13,
+                           _m20 + B._m20, _m21 + B._m21, _m22 + B._m22, _m23 + B._m23,
+                           _m30 + B._m30, _m31 + B._m31, _m32 + B._m32, _m33 + B._m33);
+    }
+
+    /** Returns this Matrix multiplied by the scalar K. */
+    public Matrix4 scalarMult(double k) {
+        return new Matrix4(_m00 * k, _m01 * k, _m02 * k, _m03 * k,
+                           _m10 * k, _m11 * k, _m12 * k, _m13 * k,
+                           _m20 * k, _m21 * k, _m22 * k, _m23 * k,
+                           _m30 * k, _m31 * k, _m32 * k, _m33 * k);
+    }
+
+    /** Returns the product of this Matrix and the vector X.
+     *
+     * @throws MatrixException */
+    public Vector transform(Vector x) throws MatrixException {
+        if (x.numRows() != 4) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        double[] v = x.values();
+        return new Vector(_m00 * v[0] + _m01 * v[1] + _m02 * v[2] + _m03 * v[3],
+                          _m10 * v[0] + _m11 * v[1] + _m12 * v[2] + _m13 * v[3],
+                          _m20 * v[0] + _m21 * v[1] + _m22 * v[2] + _m23 * v[3],
+                          _m30 * v[0] + _m31 * v[1] + _m32 * v[2] + _m33 * v[3]);
+    }
+
+    /** Sets Y[OFFSET .. OFFSET + 3] to the product of this Matrix and
+     * X[OFFSET .. OFFSET + 3], allocating nothing. X and Y may be the same
+     * array. */
+    public void transform(double[] x, double[] y, int offset) {
+        double x0 = x[offset];
+        double x1 = x[offset + 1];
+        double x2 = x[offset + 2];
+        double x3 = x[offset + 3];
+        y[offset] = _m00 * x0 + _m01 * x1 + _m02 * x2 + _m03 * x3;
+        y[offset + 1] = _m10 * x0 + _m11 * x1 + _m12 * x2 + _m13 * x3;
+        y[offset + 2] = _m20 * x0 + _m21 * x1 + _m22 * x2 + _m23 * x3;
+        y[offset + 3] = _m30 * x0 + _m31 * x1 + _m32 * x2 + _m33 * x3;
+    }
+
+    /** Returns true if every entry of this Matrix is within epsilon of the
+     * same entry of B. */
+    public boolean equals(Matrix4 B) {
+        return Math.abs(_m00 - B._m00) < Matrix.epsilon
+            && Math.abs(_m01 - B._m01) < Matrix.epsilon
+            && Math.abs(_m02 - B._m02) < Matrix.epsilon
+            && Math.abs(_m03 - B._m03) < Matrix.epsilon
+            && Math.abs(_m10 - B._m10) < Matrix.epsilon
+            && Math.abs(_m11 - B._m11) < Matrix.epsilon
+            && Math.abs(_m12 - B._m12) < Matrix.epsilon
+            && Math.abs(_m13 - B._m13) < Matrix.epsilon
+            && Math.abs(_m20 - B._m20) < Matrix.epsilon
+            && Math.abs(_m21 - B._m21) < Matrix.epsilon
+            && Math.abs(_m22 - B._m22) < Matrix.epsilon
+            && Math.abs(_m23 - B._m23) < Matrix.epsilon
+            && Math.abs(_m30 - B._m30) < Matrix.epsilon
+            && Math.abs(_m31 - B._m31) < Matrix.epsilon
+            && Math.abs(_m32 - B._m32) < Matrix.epsilon
+            && Math.abs(_m33 - B._m33) < Matrix.epsilon;
+    }
+
+    /** The entries, _mrc being at row r and col c (index starting at 0). */
+    private final double _m00, _m01, _m02, _m03,
+                         _m10, _m11, _m12, _m13,
+                         _m20, _m21, _m22, _m23,
+                         _m30, _m31, _m32, _m33;
+}
@@ -0,0 +1,313 @@
+package matrix_calculator;
+
+/** A batch of COUNT square matrices of the same small SIZE (2, 3 or 4),
+ * stored as a structure of arrays: entry (r, c) of every matrix in the
+ * batch is held in one contiguous run of COUNT doubles, so that entry
+ * (r, c) of matrix i is at DATA[((r - 1) * SIZE + c - 1) * COUNT + i].
+ * Determinants, inverses, products and solves run over the whole batch in
+ * loops whose iterations are independent and whose loads are unit-stride,
+ * which the JIT compiler can vectorize, with no object per matrix.
+ *
+ * Determinants and inverses use closed forms with no pivoting or branches,
+ * so a singular matrix gives an inverse (and solutions) with infinite or
+ * NaN entries rather than an exception; getDet() identifies them.
+ *
+ * @author AndyPalan */
+public class MatrixBatch {
+
+    /** Creates a new batch of COUNT SIZE x SIZE matrices of zeros.
+     *
+     * @throws MatrixException */
+    public MatrixBatch(int size, int count) throws MatrixException {
+        this(size, count, new double[checked(size, count) * size * size]);
+    }
+
+    /** Creates a new batch of COUNT SIZE x SIZE matrices sharing DATA, laid
+     * out as above.
+     *
+     * @throws MatrixException */
+    public MatrixBatch(int size, int count, double[] data) throws MatrixException {
+        if (data.length < checked(size, count) * size * size) {
+            throw new MatrixException("Incorrect dimension.");
+        }
+        _size = size;
+        _count = count;
+        _data = data;
+    }
+
+    /** Returns COUNT, throwing a MatrixException unless SIZE and COUNT are
+     * valid for a batch.
+     *
+     * @throws MatrixException */
+    private static int checked(int size, int count) throws MatrixException {
+        if (size < 2 || size > 4) {
+            throw new MatrixException("A batch holds 2 x 2, 3 x 3 or 4 x 4 matrices.");
+        }
+        if (count < 1) {
+            throw new MatrixException("The dimensions of a matrix must be positive.");
+        }
+        return count;
+    }
+
+    /** Returns the size of the matrices in this batch. */
+    public int getSize() {
+        return _size;
+    }
+
+    /** Returns the number of matrices in this batch. */
+    public int getCount() {
+        return _count;
+    }
+
+    /** Returns the entry at row R and col C of matrix INDEX (index starting
+     * at 0). */
+    public double get(int index, int r, int c) {
+        checkIndex(index, r, c);
+        return _data[((r - 1) * _size + c - 1) * _count + index];
+    }
+
+    /** Sets the entry at row R and col C of matrix INDEX to be the double
+     * K. */
+    public void set(int index, int r, int c, double k) {
+        checkIndex(index, r, c);
+        _data[((r - 1) * _size + c - 1) * _count + index] = k;
+    }
+
+    /** Throws an IndexOutOfBoundsException unless INDEX is a matrix of this
+     * batch and row R and col C are in it, since an index out of range would
+     * otherwise reach an entry of another matrix. */
+    private void checkIndex(int index, int r, int c) {
+        if (index < 0 || index >= _count || r < 1 || r > _size || c < 1 || c > _size) {
+            throw new IndexOutOfBoundsException("Matrix " + index + ", (" + r + ", " + c + ")");
+        }
+    }
+
+    /** Returns matrix INDEX of this batch as a SquareMatrix.
+     *
+     * @throws MatrixException */
+    public SquareMatrix get(int index) throws MatrixException {
+        checkIndex(index, 1, 1);
+        SquareMatrix A = new SquareMatrix(_size);
+        double[] a = A.data();
+        for (int e = 0; e < _size * _size; e++) {
+            a[e] = _data[e * _count + index];
+        }
+        return A;
+    }
+
+    /** Sets matrix INDEX of this batch to the entries of A.
+     *
+     * @throws MatrixException */
+    public void set(int index, Matrix A) throws MatrixException {
+        if (A.getHeight() != _size || A.getWidth() != _size) {
+            throw new MatrixException("The matrix does not have the"
+                            + " appropriate dimension.");
+        }
+        checkIndex(index, 1, 1);
+        for (int r = 1; r <= _size; r++) {
+            for (int c = 1; c <= _size; c++) {
+                set(index, r, c, A.get(r, c));
+            }
+        }
+    }
+
+    /** Returns the determinants of the matrices of this batch. */
+    public double[] getDet() {
+        double[] det = new double[_count];
+        double[] m = _data;
+        int n = _count;
+        Parallel.forRows(n, WORK[_size], (from, to) -> {
+            if (_size == 2) {
+                for (int i = from; i < to; i++) {
+                    det[i] = m[i] * m[3 * n + i] - m[n + i] * m[2 * n + i];
+                }
+            } else if (_size == 3) {
+                for (int i = from; i < to; i++) {
+                    double a00 = m[i], a01 = m[n + i], a02 = m[2 * n + i];
+                    double a10 = m[3 * n + i], a11 = m[4 * n + i], a12 = m[5 * n + i];
+                    double a20 = m[6 * n + i], a21 = m[7 * n + i], a22 = m[8 * n + i];
+                    det[i] = a00 * (a11 * a22 - a12 * a21) + a01 * (a12 * a20 - a10 * a22)
+                        + a02 * (a10 * a21 - a11 * a20);
+                }
+            } else {
+                for (int i = from; i < to; i++) {
+                    double a00 = m[i], a01 = m[n + i], a02 = m[2 * n + i], a03 = m[3 * n + i];
+                    double a10 = m[4 * n + i], a11 = m[5 * n + i];
+                    double a12 = m[6 * n + i], a13 = m[7 * n + i];
+                    double a20 = m[8 * n + i], a21 = m[9 * n + i];
+                    double a22 = m[10 * n + i], a23 = m[11 * n + i];
+                    double a30 = m[12 * n + i], a31 = m[13 * n + i];
+                    double a32 = m[14 * n + i], a33 = m[15 * n + i];
+                    double s0 = a00 * a11 - a10 * a01, s1 = a00 * a12 - a10 * a02;
+                    double s2 = a00 * a13 - a10 * a03, s3 = a01 * a12 - a11 * a02;
+                    double s4 = a01 * a13 - a11 * a03, s5 = a02 * a13 - a12 * a03;
+                    double c0 = a20 * a31 - a30 * a21, c1 = a20 * a32 - a30 * a22;
+                    double c2 = a20 * a33 - a30 * a23, c3 = a21 * a32 - a31 * a22;
+                    double c4 = a21 * a33 - a31 * a23, c5 = a22 * a33 - a32 * a23;
+                    det[i] = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+                }
+            }
+        });
+        return det;
+    }
+
+    /** Returns the batch of the inverses of the matrices of this batch.
+     *
+     * @throws MatrixException */
+    public MatrixBatch getInverse() throws MatrixException {
+        MatrixBatch result = new MatrixBatch(_size, _count);
+        double[] m = _data, b = result._data;
+        int n = _count;
+        Parallel.forRows(n, WORK[_size], (from, to) -> {
+            if (_size == 2) {
+                for (int i = from; i < to; i++) {
+                    double a00 = m[i], a01 = m[n + i], a10 = m[2 * n + i], a11 = m[3 * n + i];
+                    double inv = 1 / (a00 * a11 - a01 * a10);
+                    b[i] = a11 * inv;
+                    b[n + i] = -a01 * inv;
+                    b[2 * n + i] = -a10 * inv;
+                    b[3 * n + i] = a00 * inv;
+                }
+            } else if (_size == 3) {
+                for (int i = from; i < to; i++) {
+                    double a00 = m[i], a01 = m[n + i], a02 = m[2 * n + i];
+                    double a10 = m[3 * n + i], a11 = m[4 * n + i], a12 = m[5 * n + i];
+                    double a20 = m[6 * n + i], a21 = m[7 * n + i], a22 = m[8 * n + i];
+                    double b00 = a11 * a22 - a12 * a21, b10 = a12 * a20 - a10 * a22;
+                    double b20 = a10 * a21 - a11 * a20;
+                    double inv = 1 / (a00 * b00 + a01 * b10 + a02 * b20);
+                    b[i] = b00 * inv;
+                    b[n + i] = (a02 * a21 - a01 * a22) * inv;
+                    b[2 * n + i] = (a01 * a12 - a02 * a11) * inv;
+                    b[3 * n + i] = b10 * inv;
+                    b[4 * n + i] = (a00 * a22 - a02 * a20) * inv;
+                    b[5 * n + i] = (a02 * a10 - a00 * a12) * inv;
+                    b[6 * n + i] = b20 * inv;
+                    b[7 * n + i] = (a01 * a20 - a00 * a21) * inv;
+                    b[8 * n + i] = (a00 * a11 - a01 * a10) * inv;
+                }
+            } else {
+                for (int i = from; i < to; i++) {
+                    double a00 = m[i], a01 = m[n + i], a02 = m[2 * n + i], a03 = m[3 * n + i];
+                    double a10 = m[4 * n + i], a11 = m[5 * n + i];
+                    double a12 = m[6 * n + i], a13 = m[7 * n + i];
+                    double a20 = m[8 * n + i], a21 = m[9 * n + i];
+                    double a22 = m[10 * n + i], a23 = m[11 * n + i];
+                    double a30 = m[12 * n + i], a31 = m[13 * n + i];
+                    double a32 = m[14 * n + i], a33 = m[15 * n + i];
+                    double s0 = a00 * a11 - a10 * a01, s1 = a00 * a12 - a10 * a02;
+                    double s2 = a00 * a13 - a10 * a03, s3 = a01 * a12 - a11 * a02;
+                    double s4 = a01 * a13 - a11 * a03, s5 = a02 * a13 - a12 * a03;
+                    double c0 = a20 * a31 - a30 * a21, c1 = a20 * a32 - a30 * a22;
+                    double c2 = a20 * a33 - a30 * a23, c3 = a21 * a32 - a31 * a22;
+                    double c4 = a21 * a33 - a31 * a23, c5 = a22 * a33 - a32 * a23;
+                    double inv = 1 / (s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0);
+                    b[i] = (a11 * c5 - a12 * c4 + a13 * c3) * inv;
+                    b[n + i] = (-a01 * c5 + a02 * c4 - a03 * c3) * inv;
+                    b[2 * n + i] = (a31 * s5 - a32 * s4 + a33 * s3) * inv;
+                    b[3 * n + i] = (-a21 * s5 + a22 * s4 - a23 * s3) * inv;
+                    b[4 * n + i] = (-a10 * c5 + a12 * c2 - a13 * c1) * inv;
+                    b[5 * n + i] = (a00 * c5 - a02 * c2 + a03 * c1) * inv;
+                    b[6 * n + i] = (-a30 * s5 + a32 * s2 - a33 * s1) * inv;
+                    b[7 * n + i] = (a20 * s5 - a22 * s2 + a23 * s1) * inv;
+                    b[8 * n + i] = (a10 * c4 - a11 * c2 + a13 * c0) * inv;
+                    b[9 * n + i] = (-a00 * c4 + a01 * c2 - a03 * c0) * inv;
+                    b[10 * n + i] = (a30 * s4 - a31 * s2 + a33 * s0) * inv;
+                    b[11 * n + i] = (-a20 * s4 + a21 * s2 - a23 * s0) * inv;
+                    b[12 * n + i] = (-a10 * c3 + a11 * c1 - a12 * c0) * inv;
+                    b[13 * n + i] = (a00 * c3 - a01 * c1 + a02 * c0) * inv;
+                    b[14 * n + i] = (-a30 * s3 + a31 * s1 - a32 * s0) * inv;
+                    b[15 * n + i] = (a20 * s3 - a21 * s1 + a22 * s0) * inv;
+                }
+            }
+        });
+        return result;
+    }
+
+    /** Returns the batch of the products AB of the matrices A of this batch
+     * with the matrices B of the batch OTHER, pair by pair.
+     *
+     * @throws MatrixException */
+    public MatrixBatch multiply(MatrixBatch other) throws MatrixException {
+        check(other._size, other._count);
+        MatrixBatch result = new MatrixBatch(_size, _count);
+        double[] a = _data, b = other._data, c = result._data;
+        int d = _size, n = _count;
+        Parallel.forRows(n, d * d * d, (from, to) -> {
+            for (int r = 0; r < d; r++) {
+                for (int col = 0; col < d; col++) {
+                    int out = (r * d + col) * n;
+                    for (int k = 0; k < d; k++) {
+                        int x = (r * d + k) * n, y = (k * d + col) * n;
+                        for (int i = from; i < to; i++) {
+                            c[out + i] += a[x + i] * b[y + i];
+                        }
+                    }
+                }
+            }
+        });
+        return result;
+    }
+
+    /** Returns the products Ax of the matrices A of this batch with the
+     * vectors x in X, pair by pair, where X and the result hold component
+     * r of vector i at [(r - 1) * COUNT + i].
+     *
+     * @throws MatrixException */
+    public double[] multiply(double[] x) throws MatrixException {
+        int d = _size, n = _count;
+        if (x.length < d * n) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        double[] a = _data;
+        double[] y = new double[d * n];
+        Parallel.forRows(n, d * d, (from, to) -> {
+            for (int r = 0; r < d; r++) {
+                for (int k = 0; k < d; k++) {
+                    int p = (r * d + k) * n;
+                    for (int i = from; i < to; i++) {
+                        y[r * n + i] += a[p + i] * x[k * n + i];
+                    }
+                }
+            }
+        });
+        return y;
+    }
+
+    /** Returns the solutions x to Ax = b of the matrices A of this batch
+     * with the right-hand sides b in B, pair by pair, laid out as for
+     * multiply().
+     *
+     * @throws MatrixException */
+    public double[] solve(double[] b) throws MatrixException {
+        return getInverse().multiply(b);
+    }
+
+    /** Throws a MatrixException unless SIZE and COUNT match this batch.
+     *
+     * @throws MatrixException */
+    private void check(int size, int count) throws MatrixException {
+        if (size != _size || count != _count) {
+            throw new MatrixException("The batches do not have the same dimensions.");
+        }
+    }
+
+    /** Returns the storage of this batch. */
+    double[] data() {
+        return _data;
+    }
+
+    /** The rough number of operations per matrix of a closed-form kernel,
+     * by size, for splitting the batch among threads. */
+    private static final long[] WORK = { 0, 0, 8, 40, 160 };
+
+    /** The size of the matrices. */
+    private final int _size;
+
+    /** The number of matrices. */
+    private final int _count;
+
+    /** The entries, entry by entry across the batch. */
+    private final double[] _data;
+}
@@ -0,0 +1,346 @@
+package matrix_calculator;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** Reads and writes matrices as delimited text, one row per line. Input is
+ * streamed from a channel a chunk at a time, and each chunk is split into
+ * pieces of whole lines that are parsed in parallel, straight into dense or
+ * sparse storage. Blank lines are skipped, and spaces around an entry are
+ * ignored.
+ *
+ * @author AndyPalan */
+public final class MatrixCsv {
+
+    /** Returns the Matrix written in FILE with entries separated by commas
+     * and no header, which is a SquareMatrix if it is square.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static Matrix read(Path file) throws MatrixException, IOException {
+        return read(file, ',', false);
+    }
+
+    /** Returns the Matrix written in FILE with entries separated by
+     * DELIMITER, skipping its first line if HEADER is true.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static Matrix read(Path file, char delimiter, boolean header)
+        throws MatrixException, IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel, delimiter, header);
+        }
+    }
+
+    /** Returns the Matrix read from CHANNEL with entries separated by
+     * DELIMITER, skipping its first line if HEADER is true.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static Matrix read(ReadableByteChannel channel, char delimiter, boolean header)
+        throws MatrixException, IOException {
+        Rows rows = parse(channel, delimiter, header, false);
+        int h = rows._height, w = Math.max(rows._width, 0);
+        if (h == w) {
+            return new SquareMatrix(h, rows._values, 0, w);
+        }
+        return new Matrix(h, w, rows._values, 0, w);
+    }
+
+    /** Returns the sparse Matrix, in CSR form, written in FILE with entries
+     * separated by DELIMITER, skipping its first line if HEADER is true.
+     * Only the non-zero entries are kept, so the file may be far larger than
+     * a dense Matrix of it would be.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static SparseMatrix readSparse(Path file, char delimiter, boolean header)
+        throws MatrixException, IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readSparse(channel, delimiter, header);
+        }
+    }
+
+    /** Returns the sparse Matrix, in CSR form, read from CHANNEL with
+     * entries separated by DELIMITER, skipping its first line if HEADER is
+     * true.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static SparseMatrix readSparse(ReadableByteChannel channel, char delimiter,
+                                          boolean header) throws MatrixException, IOException {
+        Rows rows = parse(channel, delimiter, header, true);
+        int nnz = rows._pointers[rows._height];
+        return new SparseMatrix(rows._height, Math.max(rows._width, 0),
+                                Arrays.copyOf(rows._pointers, rows._height + 1),
+                                Arrays.copyOf(rows._indices, nnz),
+                                Arrays.copyOf(rows._values, nnz), true);
+    }
+
+    /** Writes A to FILE, replacing its contents, with entries separated by
+     * commas.
+     *
+     * @throws IOException */
+    public static void write(Path file, Matrix A) throws IOException {
+        write(file, A, ',');
+    }
+
+    /** Writes A to FILE, replacing its contents, with entries separated by
+     * DELIMITER.
+     *
+     * @throws IOException */
+    public static void write(Path file, Matrix A, char delimiter) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, A, delimiter);
+        }
+    }
+
+    /** Writes A to CHANNEL with entries separated by DELIMITER.
+     *
+     * @throws IOException */
+    public static void write(WritableByteChannel channel, Matrix A, char delimiter)
+        throws IOException {
+        int w = A.getWidth();
+        TextWriter.write(channel, A.getHeight(), w, (from, to, out) -> {
+            for (long r = from + 1; r <= to; r++) {
+                for (int c = 1; c <= w; c++) {
+                    if (c > 1) {
+                        out.append(delimiter);
+                    }
+                    TextWriter.append(out, A.get((int) r, c));
+                }
+                out.append('\n');
+            }
+        });
+    }
+
+    /** Returns the rows read from CHANNEL, kept as non-zero entries if
+     * SPARSE is true.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    private static Rows parse(ReadableByteChannel channel, char delimiter, boolean header,
+                              boolean sparse) throws MatrixException, IOException {
+        if (delimiter == ' ' || delimiter == '\r' || delimiter == '\n' || delimiter > 0x7f) {
+            throw new MatrixException("The delimiter must be a printable ASCII character"
+                            + " or a tab.");
+        }
+        TextReader in = new TextReader(channel);
+        if (header) {
+            in.readLine();
+        }
+        Rows rows = new Rows(sparse);
+        byte separator = (byte) delimiter;
+        while (in.nextChunk()) {
+            byte[] b = in.bytes();
+            int[] bounds = in.pieces();
+            Piece[] pieces = new Piece[bounds.length - 1];
+            Parallel.forRows(pieces.length, TextReader.PIECE_BYTES, (from, to) -> {
+                for (int k = from; k < to; k++) {
+                    pieces[k] = parse(b, bounds[k], bounds[k + 1], separator);
+                }
+            });
+            long line = in.line();
+            for (Piece piece : pieces) {
+                if (piece._error != null) {
+                    throw new MatrixException("Line " + (line + piece._errorLine) + ": "
+                                              + piece._error);
+                }
+                if (piece._rows > 0 && rows._width >= 0 && piece._width != rows._width) {
+                    throw new MatrixException("Line " + (line + piece._firstLine) + " has "
+                                              + piece._width + " entries where "
+                                              + rows._width + " were expected.");
+                }
+                rows.append(piece);
+                line += piece._lines;
+            }
+            in.countLines(line - in.line());
+        }
+        return rows;
+    }
+
+    /** Returns the rows written in the bytes of B from FROM to TO, which are
+     * whole lines, with entries separated by SEPARATOR. */
+    private static Piece parse(byte[] b, int from, int to, byte separator) {
+        Piece piece = new Piece();
+        for (int i = from, end; i < to; i = end + 1) {
+            end = i;
+            while (end < to && b[end] != '\n') {
+                end++;
+            }
+            int eol = end > i && b[end - 1] == '\r' ? end - 1 : end;
+            piece._lines++;
+            if (blank(b, i, eol, separator) == eol) {
+                continue;
+            }
+            int count = 0;
+            for (int f = i;; count++) {
+                int d = f;
+                while (d < eol && b[d] != separator) {
+                    d++;
+                }
+                int s = blank(b, f, d, separator), e = d;
+                while (e > s && (b[e - 1] == ' ' || (b[e - 1] == '\t' && separator != '\t'))) {
+                    e--;
+                }
+                try {
+                    piece.add(TextReader.parseDouble(b, s, e));
+                } catch (NumberFormatException x) {
+                    piece.fail("Cannot read \"" + TextReader.text(b, s, e) + "\" as a number.");
+                    return piece;
+                }
+                if (d == eol) {
+                    break;
+                }
+                f = d + 1;
+            }
+            count++;
+            if (piece._rows == 0) {
+                piece._width = count;
+                piece._firstLine = piece._lines;
+            } else if (count != piece._width) {
+                piece.fail("There are " + count + " entries where " + piece._width
+                           + " were expected.");
+                return piece;
+            }
+            piece._rows++;
+        }
+        return piece;
+    }
+
+    /** Returns the index of the first byte from FROM before TO that is not
+     * a space, or a tab unless SEPARATOR is a tab. */
+    private static int blank(byte[] b, int from, int to, byte separator) {
+        while (from < to && (b[from] == ' ' || (b[from] == '\t' && separator != '\t'))) {
+            from++;
+        }
+        return from;
+    }
+
+    /** The rows parsed from one piece of a chunk. */
+    private static final class Piece {
+
+        /** Appends the entry X. */
+        void add(double x) {
+            if (_size == _values.length) {
+                _values = Arrays.copyOf(_values, 2 * _values.length);
+            }
+            _values[_size++] = x;
+        }
+
+        /** Records the error MESSAGE on the current line. */
+        void fail(String message) {
+            _error = message;
+            _errorLine = _lines;
+        }
+
+        /** The entries of the rows, row-major. */
+        double[] _values = new double[64];
+
+        /** The number of entries, rows and lines. */
+        int _size, _rows, _lines;
+
+        /** The number of entries in each row. */
+        int _width;
+
+        /** The line of the first row, counted from 1. */
+        int _firstLine;
+
+        /** The first error met, or null. */
+        String _error;
+
+        /** The line of the error, counted from 1. */
+        int _errorLine;
+    }
+
+    /** The rows read so far, dense or as CSR arrays. */
+    private static final class Rows {
+
+        Rows(boolean sparse) {
+            _sparse = sparse;
+            _values = new double[64];
+            if (sparse) {
+                _pointers = new int[64];
+                _indices = new int[64];
+            }
+        }
+
+        /** Appends the rows of PIECE.
+         *
+         * @throws MatrixException */
+        void append(Piece piece) throws MatrixException {
+            if (piece._rows == 0) {
+                return;
+            }
+            _width = piece._width;
+            if (!_sparse) {
+                if ((long) _size + piece._size > Integer.MAX_VALUE - 8) {
+                    throw new MatrixException("This matrix is too large to be held on the heap.");
+                }
+                ensure(_size + piece._size);
+                System.arraycopy(piece._values, 0, _values, _size, piece._size);
+                _size += piece._size;
+                _height += piece._rows;
+                return;
+            }
+            if (_height + piece._rows + 1 > _pointers.length) {
+                _pointers = Arrays.copyOf(_pointers, 2 * (_height + piece._rows + 1));
+            }
+            for (int r = 0; r < piece._rows; r++) {
+                int row = r * _width;
+                for (int c = 0; c < _width; c++) {
+                    double x = piece._values[row + c];
+                    if (x != 0) {
+                        if (_size == Integer.MAX_VALUE - 8) {
+                            throw new MatrixException("This matrix has too many non-zero entries.");
+                        }
+                        ensure(_size + 1);
+                        _indices[_size] = c;
+                        _values[_size++] = x;
+                    }
+                }
+                _pointers[++_height] = _size;
+            }
+        }
+
+        /** Grows the arrays to hold at least SIZE entries. */
+        private void ensure(int size) {
+            if (size > _values.length) {
+                int length = (int) Math.min(Integer.MAX_VALUE - 8,
+                                            Math.max(size, 2L * _values.length));
+                _values = Arrays.copyOf(_values, length);
+                if (_sparse) {
+                    _indices = Arrays.copyOf(_indices, length);
+                }
+            }
+        }
+
+        /** True if only the non-zero entries are kept. */
+        private final boolean _sparse;
+
+        /** The number of rows, and of entries in each, or -1 before the
+         * first row. */
+        int _height, _width = -1;
+
+        /** The number of entries kept. */
+        int _size;
+
+        /** The entries kept, row-major if dense. */
+        double[] _values;
+
+        /** The CSR row pointers and column indices, if sparse. */
+        int[] _pointers, _indices;
+    }
+
+    /** This class is not instantiated. */
+    private MatrixCsv() {
+    }
+}
@@ -0,0 +1,530 @@
+package matrix_calculator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** Saves and loads matrices in a binary file format. A file is a header of
+ * HEADER_BYTES bytes followed by the entries and, for a square Matrix that
+ * has been factored, by its factorization, all little-endian:
+ *
+ *   offset  0  int   MAGIC
+ *          4  int   VERSION
+ *          8  int   kind: MATRIX, SQUARE or VECTORS
+ *         12  int   layout: ROW_MAJOR or COLUMN_MAJOR
+ *         16  int   dtype: FLOAT64 or FLOAT32
+ *         20  int   factorization: NO_FACTORS, LU_FACTORS or
+ *                   CHOLESKY_FACTORS
+ *         24  long  number of rows
+ *         32  long  number of columns
+ *         40  long  offset of the entries
+ *         48  long  offset of the factorization, or 0
+ *         56  long  reserved, 0
+ *
+ * A Matrix is written row-major and a VectorSet column-major, so that each
+ * of its vectors is contiguous. An LU factorization is stored as the n x n
+ * array of L and U followed by n int pivots, and a Cholesky factorization as
+ * the n x n array of L.
+ *
+ * Files are written through a FileChannel and read by mapping them, so
+ * that loading costs a single copy from the page cache, and map() loads a
+ * Matrix of any size as an OffHeapMatrix with no copy at all.
+ *
+ * @author AndyPalan */
+public final class MatrixFile {
+
+    /** Writes A to FILE, replacing its contents, together with its
+     * factorization if A is a SquareMatrix that has been factored.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static void write(Path file, Matrix A) throws MatrixException, IOException {
+        int h = A.getHeight(), w = A.getWidth();
+        int factorization = NO_FACTORS;
+        LU lu = null;
+        Cholesky cholesky = null;
+        if (A instanceof SquareMatrix) {
+            SquareMatrix S = (SquareMatrix) A;
+            cholesky = S.cachedCholesky();
+            lu = S.cachedLU();
+            if (cholesky != null && cholesky.isPositiveDefinite()) {
+                factorization = CHOLESKY_FACTORS;
+            } else if (lu != null) {
+                factorization = LU_FACTORS;
+            }
+        }
+        try (FileChannel channel = create(file)) {
+            Output out = new Output(channel);
+            if (A.colStride() == 1 && A.stride() == w) {
+                out.put(A.data(), A.offset(), h * w);
+            } else {
+                int tile = Math.min(h, OffHeapMatrix.tileRows(w));
+                double[] rows = new double[tile * w];
+                for (int r0 = 0; r0 < h; r0 += tile) {
+                    int m = Math.min(tile, h - r0);
+                    Operations.copy(new Matrix(m, w, A.data(), A.offset() + r0 * A.stride(),
+                                               A.stride(), A.colStride()),
+                                    new Matrix(m, w, rows, 0, w));
+                    out.put(rows, 0, m * w);
+                }
+            }
+            long factorOffset = 0;
+            if (factorization == CHOLESKY_FACTORS) {
+                factorOffset = out.position();
+                out.put(cholesky.getFactor(), 0, h * h);
+            } else if (factorization == LU_FACTORS) {
+                factorOffset = out.position();
+                out.put(lu.getFactors(), 0, h * h);
+                out.put(lu.getPivots(), 0, h);
+            }
+            out.flush();
+            writeHeader(channel, A instanceof SquareMatrix ? SQUARE : MATRIX, ROW_MAJOR,
+                        FLOAT64, factorization, h, w, factorOffset);
+        }
+    }
+
+    /** Writes A to FILE in single precision, replacing its contents.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static void write(Path file, FloatMatrix A) throws MatrixException, IOException {
+        int h = A.getHeight(), w = A.getWidth();
+        try (FileChannel channel = create(file)) {
+            Output out = new Output(channel);
+            for (int r = 0; r < h; r++) {
+                out.put(A.data(), A.offset() + r * A.stride(), w);
+            }
+            out.flush();
+            writeHeader(channel, A instanceof FloatSquareMatrix ? SQUARE : MATRIX, ROW_MAJOR,
+                        FLOAT32, NO_FACTORS, h, w, 0);
+        }
+    }
+
+    /** Writes the off-heap Matrix A to FILE, replacing its contents.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static void write(Path file, OffHeapMatrix A) throws MatrixException, IOException {
+        int h = A.getHeight(), w = A.getWidth();
+        try (FileChannel channel = create(file)) {
+            Output out = new Output(channel);
+            int tile = Math.min(h, OffHeapMatrix.tileRows(w));
+            double[] rows = new double[tile * w];
+            for (int r0 = 0; r0 < h; r0 += tile) {
+                int r1 = Math.min(h, r0 + tile);
+                A.getRows(r0, r1, rows, 0);
+                out.put(rows, 0, (r1 - r0) * w);
+            }
+            out.flush();
+            writeHeader(channel, h == w ? SQUARE : MATRIX, ROW_MAJOR, FLOAT64, NO_FACTORS,
+                        h, w, 0);
+        }
+    }
+
+    /** Writes the vectors of SET to FILE, replacing its contents.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static void write(Path file, VectorSet set) throws MatrixException, IOException {
+        int h = set.size() == 0 ? 0 : set.get(0).numRows();
+        for (Vector v : set.vectors()) {
+            if (v.numRows() != h) {
+                throw new MatrixException("The vectors do not all have the same dimension.");
+            }
+        }
+        try (FileChannel channel = create(file)) {
+            Output out = new Output(channel);
+            for (Vector v : set.vectors()) {
+                out.put(v.values(), 0, h);
+            }
+            out.flush();
+            writeHeader(channel, VECTORS, COLUMN_MAJOR, FLOAT64, NO_FACTORS, h, set.size(), 0);
+        }
+    }
+
+    /** Returns the Matrix stored in FILE, which is a SquareMatrix if it is
+     * square, with its stored factorization, if any, restored. Entries
+     * stored in single precision are widened.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static Matrix read(Path file) throws MatrixException, IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            int h = header.rows, w = header.cols;
+            checkHeap(h, w);
+            double[] data = new double[h * w];
+            boolean columns = header.layout == COLUMN_MAJOR;
+            if (header.dtype == FLOAT64) {
+                try (OffHeapMatrix M = OffHeapMatrix.map(channel, header.dataOffset,
+                                                         columns ? w : h, columns ? h : w,
+                                                         MapMode.READ_ONLY)) {
+                    M.getRows(0, M.getHeight(), data, 0);
+                }
+            } else {
+                float[] values = new float[h * w];
+                getFloats(channel, header.dataOffset, values);
+                for (int i = 0; i < values.length; i++) {
+                    data[i] = values[i];
+                }
+            }
+            if (columns) {
+                double[] rows = new double[h * w];
+                Operations.copy(new Matrix(h, w, data, 0, 1, h), new Matrix(h, w, rows, 0, w));
+                data = rows;
+            }
+            if (h != w) {
+                return new Matrix(h, w, data, 0, w);
+            }
+            SquareMatrix S = new SquareMatrix(h, data, 0, h);
+            if (header.factorization != NO_FACTORS) {
+                double[] factor = new double[h * h];
+                try (OffHeapMatrix F = OffHeapMatrix.map(channel, header.factorOffset, h, h,
+                                                         MapMode.READ_ONLY)) {
+                    F.getRows(0, h, factor, 0);
+                }
+                if (header.factorization == CHOLESKY_FACTORS) {
+                    S.setCholesky(new Cholesky(factor, h));
+                } else {
+                    int[] pivots = new int[h];
+                    long position = header.factorOffset + (long) h * h * Double.BYTES;
+                    channel.map(MapMode.READ_ONLY, position, (long) h * Integer.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(pivots);
+                    for (int p : pivots) {
+                        if (p < 0 || p >= h) {
+                            throw new MatrixException("This matrix file is corrupt.");
+                        }
+                    }
+                    S.setLU(new LU(factor, pivots));
+                }
+            }
+            return S;
+        }
+    }
+
+    /** Returns the Matrix stored in FILE in single precision, narrowing
+     * entries stored in double precision.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static FloatMatrix readFloat(Path file) throws MatrixException, IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            int h = header.rows, w = header.cols;
+            checkHeap(h, w);
+            boolean columns = header.layout == COLUMN_MAJOR;
+            float[] data = new float[h * w];
+            if (header.dtype == FLOAT32) {
+                getFloats(channel, header.dataOffset, data);
+            } else {
+                try (OffHeapMatrix M = OffHeapMatrix.map(channel, header.dataOffset,
+                                                         columns ? w : h, columns ? h : w,
+                                                         MapMode.READ_ONLY)) {
+                    int tile = Math.min(M.getHeight(), OffHeapMatrix.tileRows(M.getWidth()));
+                    double[] rows = new double[tile * M.getWidth()];
+                    for (int r0 = 0; r0 < M.getHeight(); r0 += tile) {
+                        int r1 = Math.min(M.getHeight(), r0 + tile);
+                        M.getRows(r0, r1, rows, 0);
+                        int start = r0 * M.getWidth(), len = (r1 - r0) * M.getWidth();
+                        for (int i = 0; i < len; i++) {
+                            data[start + i] = (float) rows[i];
+                        }
+                    }
+                }
+            }
+            if (columns) {
+                FloatMatrix T = new FloatMatrix(w, h, data, 0, h);
+                return T.getTranspose();
+            }
+            if (h == w) {
+                return new FloatSquareMatrix(h, data, 0, h);
+            }
+            return new FloatMatrix(h, w, data, 0, w);
+        }
+    }
+
+    /** Returns the columns of the Matrix stored in FILE as a VectorSet.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static VectorSet readVectorSet(Path file) throws MatrixException, IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            int h = header.rows, w = header.cols;
+            VectorSet set = new VectorSet();
+            if (header.layout != COLUMN_MAJOR || header.dtype != FLOAT64) {
+                Matrix A = read(file);
+                for (int c = 1; c <= w; c++) {
+                    double[] values = new double[h];
+                    for (int r = 1; r <= h; r++) {
+                        values[r - 1] = A.get(r, c);
+                    }
+                    set.add(new Vector(values));
+                }
+                return set;
+            }
+            try (OffHeapMatrix M = OffHeapMatrix.map(channel, header.dataOffset, w, h,
+                                                     MapMode.READ_ONLY)) {
+                for (int c = 0; c < w; c++) {
+                    double[] values = new double[h];
+                    M.getRows(c, c + 1, values, 0);
+                    set.add(new Vector(values));
+                }
+            }
+            return set;
+        }
+    }
+
+    /** Returns the row-major, double precision Matrix stored in FILE mapped
+     * with MODE, so that its entries are read from the file as they are
+     * used rather than loaded. Changes to a Matrix mapped READ_WRITE are
+     * written to the file.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static OffHeapMatrix map(Path file, MapMode mode) throws MatrixException, IOException {
+        boolean write = mode != MapMode.READ_ONLY;
+        try (FileChannel channel = write
+                 ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                 : FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            if (header.layout != ROW_MAJOR || header.dtype != FLOAT64) {
+                throw new MatrixException("Only row-major double precision matrix files"
+                                + " can be mapped.");
+            }
+            return OffHeapMatrix.map(channel, header.dataOffset, header.rows, header.cols, mode);
+        }
+    }
+
+    /** Returns a channel writing FILE from the end of the header, which is
+     * written last.
+     *
+     * @throws IOException */
+    private static FileChannel create(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                               StandardOpenOption.WRITE,
+                                               StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(HEADER_BYTES);
+        return channel;
+    }
+
+    /** Throws a MatrixException unless an H x W Matrix fits in one array.
+     *
+     * @throws MatrixException */
+    private static void checkHeap(int h, int w) throws MatrixException {
+        if ((long) h * w > Integer.MAX_VALUE - 8) {
+            throw new MatrixException("This matrix is too large to be held on the heap.");
+        }
+    }
+
+    /** Writes the header of a file to CHANNEL.
+     *
+     * @throws IOException */
+    private static void writeHeader(FileChannel channel, int kind, int layout, int dtype,
+                                    int factorization, int rows, int cols, long factorOffset)
+        throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(kind).putInt(layout).putInt(dtype)
+            .putInt(factorization).putLong(rows).putLong(cols).putLong(HEADER_BYTES)
+            .putLong(factorOffset).putLong(0);
+        header.flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+
+    /** Returns the header of the file open on CHANNEL, checking that it
+     * describes entries within the file.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    private static Header readHeader(FileChannel channel) throws MatrixException, IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                throw new MatrixException("This is not a matrix file.");
+            }
+        }
+        buffer.flip();
+        if (buffer.getInt() != MAGIC) {
+            throw new MatrixException("This is not a matrix file.");
+        }
+        if (buffer.getInt() != VERSION) {
+            throw new MatrixException("This matrix file has an unsupported version.");
+        }
+        Header header = new Header();
+        header.kind = buffer.getInt();
+        header.layout = buffer.getInt();
+        header.dtype = buffer.getInt();
+        header.factorization = buffer.getInt();
+        long rows = buffer.getLong(), cols = buffer.getLong();
+        header.dataOffset = buffer.getLong();
+        header.factorOffset = buffer.getLong();
+        if (header.kind < MATRIX || header.kind > VECTORS
+            || header.layout < ROW_MAJOR || header.layout > COLUMN_MAJOR
+            || header.dtype < FLOAT64 || header.dtype > FLOAT32
+            || header.factorization < NO_FACTORS || header.factorization > CHOLESKY_FACTORS
+            || rows < 0 || rows > Integer.MAX_VALUE || cols < 0 || cols > Integer.MAX_VALUE
+            || header.dataOffset < HEADER_BYTES
+            || header.dataOffset + rows * cols * (header.dtype == FLOAT64 ? 8 : 4) > size) {
+            throw new MatrixException("This matrix file is corrupt.");
+        }
+        header.rows = (int) rows;
+        header.cols = (int) cols;
+        if (header.factorization != NO_FACTORS) {
+            long bytes = rows * rows * Double.BYTES
+                + (header.factorization == LU_FACTORS ? rows * Integer.BYTES : 0);
+            if (rows != cols || header.dtype != FLOAT64 || header.factorOffset < HEADER_BYTES
+                || header.factorOffset + bytes > size) {
+                throw new MatrixException("This matrix file is corrupt.");
+            }
+        }
+        return header;
+    }
+
+    /** Fills VALUES with the floats stored in the file open on CHANNEL from
+     * POSITION, mapping at most MAP_BYTES bytes at a time.
+     *
+     * @throws IOException */
+    private static void getFloats(FileChannel channel, long position, float[] values)
+        throws IOException {
+        for (int off = 0; off < values.length;) {
+            int n = Math.min(values.length - off, MAP_BYTES / Float.BYTES);
+            channel.map(MapMode.READ_ONLY, position, (long) n * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values, off, n);
+            position += (long) n * Float.BYTES;
+            off += n;
+        }
+    }
+
+    /** The fields of the header of a file. */
+    private static final class Header {
+        /** The kind, layout, dtype and factorization. */
+        int kind, layout, dtype, factorization;
+
+        /** The number of rows and columns. */
+        int rows, cols;
+
+        /** The offsets of the entries and of the factorization. */
+        long dataOffset, factorOffset;
+    }
+
+    /** Writes values little-endian to a channel through a direct buffer,
+     * keeping doubles aligned to 8 bytes from the start of the file. */
+    private static final class Output {
+
+        Output(FileChannel channel) throws IOException {
+            _channel = channel;
+            _position = channel.position();
+            _buffer = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /** Returns the position in the file of the next value. */
+        long position() {
+            return _position + _buffer.position();
+        }
+
+        /** Writes the LEN doubles of VALUES from OFF, first padding to a
+         * multiple of 8 bytes. */
+        void put(double[] values, int off, int len) throws IOException {
+            while (position() % Double.BYTES != 0) {
+                room(1);
+                _buffer.put((byte) 0);
+            }
+            while (len > 0) {
+                room(Double.BYTES);
+                int n = Math.min(len, _buffer.remaining() / Double.BYTES);
+                _buffer.asDoubleBuffer().put(values, off, n);
+                _buffer.position(_buffer.position() + n * Double.BYTES);
+                off += n;
+                len -= n;
+            }
+        }
+
+        /** Writes the LEN floats of VALUES from OFF. */
+        void put(float[] values, int off, int len) throws IOException {
+            while (len > 0) {
+                room(Float.BYTES);
+                int n = Math.min(len, _buffer.remaining() / Float.BYTES);
+                _buffer.asFloatBuffer().put(values, off, n);
+                _buffer.position(_buffer.position() + n * Float.BYTES);
+                off += n;
+                len -= n;
+            }
+        }
+
+        /** Writes the LEN ints of VALUES from OFF. */
+        void put(int[] values, int off, int len) throws IOException {
+            while (len > 0) {
+                room(Integer.BYTES);
+                int n = Math.min(len, _buffer.remaining() / Integer.BYTES);
+                _buffer.asIntBuffer().put(values, off, n);
+                _buffer.position(_buffer.position() + n * Integer.BYTES);
+                off += n;
+                len -= n;
+            }
+        }
+
+        /** Flushes the buffer unless it has room for BYTES more bytes. */
+        private void room(int bytes) throws IOException {
+            if (_buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        /** Writes out the buffered values. */
+        void flush() throws IOException {
+            _buffer.flip();
+            while (_buffer.hasRemaining()) {
+                _position += _channel.write(_buffer);
+            }
+            _buffer.clear();
+        }
+
+        /** The channel written to. */
+        private final FileChannel _channel;
+
+        /** The position in the file of the start of the buffer. */
+        private long _position;
+
+        /** The values yet to be written. */
+        private final ByteBuffer _buffer;
+    }
+
+    /** The first four bytes of a file, "LAVA" read as a little-endian int. */
+    static final int MAGIC = 0x4156414c;
+
+    /** The version of the format written. */
+    static final int VERSION = 1;
+
+    /** The length of the header, which keeps the entries aligned. */
+    static final int HEADER_BYTES = 64;
+
+    /** Kinds of object stored. */
+    static final int MATRIX = 0, SQUARE = 1, VECTORS = 2;
+
+    /** Layouts of the entries. */
+    static final int ROW_MAJOR = 0, COLUMN_MAJOR = 1;
+
+    /** Types of the entries. */
+    static final int FLOAT64 = 0, FLOAT32 = 1;
+
+    /** Stored factorizations. */
+    static final int NO_FACTORS = 0, LU_FACTORS = 1, CHOLESKY_FACTORS = 2;
+
+    /** The size of the buffer values are written through. */
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    /** The largest region of a file mapped at once. */
+    private static final int MAP_BYTES = 1 << 30;
+
+    /** This class is not instantiated. */
+    private MatrixFile() {
+    }
+}
@@ -0,0 +1,445 @@
+package matrix_calculator;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+/** Reads and writes matrices in the MatrixMarket exchange format, in
+ * either its coordinate form, which lists the non-zero entries, or its
+ * array form, which lists every entry column by column. Real, integer and
+ * pattern fields are read, with general, symmetric and skew-symmetric
+ * storage; complex and Hermitian matrices are not supported. Input is
+ * streamed from a channel a chunk at a time, with the entries of each chunk
+ * parsed in parallel.
+ *
+ * @author AndyPalan */
+public final class MatrixMarket {
+
+    /** Returns the sparse Matrix, in CSR form, stored in FILE. A file in
+     * array form is converted.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static SparseMatrix readSparse(Path file) throws MatrixException, IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readSparse(channel);
+        }
+    }
+
+    /** Returns the sparse Matrix, in CSR form, read from CHANNEL.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static SparseMatrix readSparse(ReadableByteChannel channel)
+        throws MatrixException, IOException {
+        Entries entries = read(new TextReader(channel));
+        return entries._coordinate ? entries.toSparse() : new SparseMatrix(entries.toMatrix());
+    }
+
+    /** Returns the Matrix stored in FILE, which is a SquareMatrix if it is
+     * square. A file in coordinate form is converted.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static Matrix read(Path file) throws MatrixException, IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /** Returns the Matrix read from CHANNEL, which is a SquareMatrix if it
+     * is square.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static Matrix read(ReadableByteChannel channel) throws MatrixException, IOException {
+        Entries entries = read(new TextReader(channel));
+        return entries._coordinate ? entries.toSparse().toMatrix() : entries.toMatrix();
+    }
+
+    /** Writes A to FILE in coordinate form, replacing its contents.
+     *
+     * @throws IOException */
+    public static void write(Path file, SparseMatrix A) throws IOException {
+        try (FileChannel channel = create(file)) {
+            write(channel, A);
+        }
+    }
+
+    /** Writes A to CHANNEL in coordinate form.
+     *
+     * @throws IOException */
+    public static void write(WritableByteChannel channel, SparseMatrix A) throws IOException {
+        int[] pointers = A.pointers(), indices = A.indices();
+        double[] values = A.values();
+        boolean csr = A.isCSR();
+        TextWriter.write(channel, BANNER + " matrix coordinate real general\n"
+                         + A.getHeight() + " " + A.getWidth() + " " + A.nonZeros() + "\n");
+        TextWriter.write(channel, A.nonZeros(), 3, (from, to, out) -> {
+            int major = Arrays.binarySearch(pointers, (int) from);
+            if (major < 0) {
+                major = -major - 2;
+            }
+            while (pointers[major + 1] <= from) {
+                major++;
+            }
+            for (int p = (int) from; p < to; p++) {
+                while (pointers[major + 1] <= p) {
+                    major++;
+                }
+                int r = csr ? major : indices[p], c = csr ? indices[p] : major;
+                out.append(r + 1).append(' ').append(c + 1).append(' ');
+                TextWriter.append(out, values[p]);
+                out.append('\n');
+            }
+        });
+    }
+
+    /** Writes A to FILE in array form, replacing its contents.
+     *
+     * @throws IOException */
+    public static void write(Path file, Matrix A) throws IOException {
+        try (FileChannel channel = create(file)) {
+            write(channel, A);
+        }
+    }
+
+    /** Writes A to CHANNEL in array form.
+     *
+     * @throws IOException */
+    public static void write(WritableByteChannel channel, Matrix A) throws IOException {
+        int h = A.getHeight();
+        TextWriter.write(channel, BANNER + " matrix array real general\n"
+                         + h + " " + A.getWidth() + "\n");
+        TextWriter.write(channel, (long) h * A.getWidth(), 1, (from, to, out) -> {
+            for (long k = from; k < to; k++) {
+                TextWriter.append(out, A.get((int) (k % h) + 1, (int) (k / h) + 1));
+                out.append('\n');
+            }
+        });
+    }
+
+    /** Returns a channel writing FILE, replacing its contents.
+     *
+     * @throws IOException */
+    private static FileChannel create(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /** Returns the entries of the Matrix read by IN.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    private static Entries read(TextReader in) throws MatrixException, IOException {
+        String banner = in.readLine();
+        String[] words = banner == null ? new String[0]
+            : banner.trim().toLowerCase(Locale.ROOT).split("\\s+");
+        if (words.length != 5 || !words[0].equals(BANNER.toLowerCase(Locale.ROOT))
+            || !words[1].equals("matrix")) {
+            throw new MatrixException("This is not a MatrixMarket file.");
+        }
+        boolean coordinate = words[2].equals("coordinate");
+        if (!coordinate && !words[2].equals("array")) {
+            throw new MatrixException("The format " + words[2] + " is not supported.");
+        }
+        boolean pattern = words[3].equals("pattern");
+        if (!pattern && !words[3].equals("real") && !words[3].equals("integer")
+            || pattern && !coordinate) {
+            throw new MatrixException("The field " + words[3] + " is not supported.");
+        }
+        int symmetry = Arrays.asList("general", "symmetric", "skew-symmetric").indexOf(words[4]);
+        if (symmetry < 0) {
+            throw new MatrixException("The symmetry " + words[4] + " is not supported.");
+        }
+        String size = in.readLine();
+        while (size != null && (size.startsWith("%") || size.trim().isEmpty())) {
+            size = in.readLine();
+        }
+        if (size == null) {
+            throw new MatrixException("The file ends before the size of the matrix.");
+        }
+        long[] dims = new long[coordinate ? 3 : 2];
+        String[] fields = size.trim().split("\\s+");
+        try {
+            if (fields.length != dims.length) {
+                throw new NumberFormatException();
+            }
+            for (int i = 0; i < dims.length; i++) {
+                dims[i] = Long.parseLong(fields[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new MatrixException("Line " + in.line() + ": the size is not valid.");
+        }
+        if (dims[0] < 0 || dims[0] > Integer.MAX_VALUE || dims[1] < 0
+            || dims[1] > Integer.MAX_VALUE || (symmetry != GENERAL && dims[0] != dims[1])) {
+            throw new MatrixException("Line " + in.line() + ": the size is not valid.");
+        }
+        int rows = (int) dims[0], cols = (int) dims[1];
+        long count;
+        if (coordinate) {
+            count = dims[2];
+        } else if (symmetry == GENERAL) {
+            count = dims[0] * dims[1];
+        } else {
+            count = symmetry == SYMMETRIC ? dims[0] * (dims[0] + 1) / 2
+                : dims[0] * (dims[0] - 1) / 2;
+        }
+        long mirrored = coordinate && symmetry != GENERAL ? 2 * count : count;
+        if (count < 0 || mirrored > Integer.MAX_VALUE - 8
+            || (!coordinate && dims[0] * dims[1] > Integer.MAX_VALUE - 8)) {
+            throw new MatrixException("This matrix is too large to be held on the heap.");
+        }
+        Entries entries = new Entries(rows, cols, coordinate, symmetry, (int) count);
+        while (in.nextChunk()) {
+            byte[] b = in.bytes();
+            int[] bounds = in.pieces();
+            Piece[] pieces = new Piece[bounds.length - 1];
+            Parallel.forRows(pieces.length, TextReader.PIECE_BYTES, (from, to) -> {
+                for (int k = from; k < to; k++) {
+                    pieces[k] = parse(b, bounds[k], bounds[k + 1], coordinate, pattern);
+                }
+            });
+            long line = in.line();
+            for (Piece piece : pieces) {
+                if (piece._error != null) {
+                    throw new MatrixException("Line " + (line + piece._errorLine) + ": "
+                                              + piece._error);
+                }
+                if (!entries.append(piece)) {
+                    throw new MatrixException("The file has more than " + count + " entries.");
+                }
+                line += piece._lines;
+            }
+            in.countLines(line - in.line());
+        }
+        if (entries._size != count) {
+            throw new MatrixException("The file ends after " + entries._size + " of its "
+                                      + count + " entries.");
+        }
+        return entries;
+    }
+
+    /** Returns the entries on the whole lines of B from FROM to TO: a row,
+     * a column and, unless PATTERN is true, a value on each line if
+     * COORDINATE is true, and a value on each line otherwise. */
+    private static Piece parse(byte[] b, int from, int to, boolean coordinate,
+                               boolean pattern) {
+        Piece piece = new Piece(coordinate);
+        int fields = coordinate ? (pattern ? 2 : 3) : 1;
+        for (int i = from, end; i < to; i = end + 1) {
+            end = i;
+            while (end < to && b[end] != '\n') {
+                end++;
+            }
+            piece._lines++;
+            int s = TextReader.skipBlanks(b, i, end);
+            if (s == end || b[s] == '%' || b[s] == '\r') {
+                continue;
+            }
+            int row = 0, col = 0;
+            double x = 1;
+            for (int f = 0; f < fields; f++) {
+                int e = TextReader.skipToken(b, s, end);
+                if (s == e) {
+                    piece.fail("There are " + f + " entries where " + fields
+                               + " were expected.");
+                    return piece;
+                }
+                try {
+                    if (f < fields - 1 || pattern) {
+                        if (f == 0) {
+                            row = TextReader.parseInt(b, s, e);
+                        } else {
+                            col = TextReader.parseInt(b, s, e);
+                        }
+                    } else {
+                        x = TextReader.parseDouble(b, s, e);
+                    }
+                } catch (NumberFormatException ex) {
+                    piece.fail("Cannot read \"" + TextReader.text(b, s, e) + "\" as a number.");
+                    return piece;
+                }
+                s = TextReader.skipBlanks(b, e, end);
+                if (s < end && b[s] == '\r') {
+                    s++;
+                }
+            }
+            if (s != end) {
+                piece.fail("There are more than " + fields + " entries.");
+                return piece;
+            }
+            piece.add(row, col, x);
+        }
+        return piece;
+    }
+
+    /** The entries parsed from one piece of a chunk. */
+    private static final class Piece {
+
+        Piece(boolean coordinate) {
+            _values = new double[64];
+            if (coordinate) {
+                _rows = new int[64];
+                _cols = new int[64];
+            }
+        }
+
+        /** Appends the entry X at ROW and COL, which are ignored in array
+         * form. */
+        void add(int row, int col, double x) {
+            if (_size == _values.length) {
+                _values = Arrays.copyOf(_values, 2 * _size);
+                if (_rows != null) {
+                    _rows = Arrays.copyOf(_rows, 2 * _size);
+                    _cols = Arrays.copyOf(_cols, 2 * _size);
+                }
+            }
+            if (_rows != null) {
+                _rows[_size] = row;
+                _cols[_size] = col;
+            }
+            _values[_size++] = x;
+        }
+
+        /** Records the error MESSAGE on the current line. */
+        void fail(String message) {
+            _error = message;
+            _errorLine = _lines;
+        }
+
+        /** The rows and columns of the entries, in coordinate form. */
+        int[] _rows, _cols;
+
+        /** The values of the entries. */
+        double[] _values;
+
+        /** The number of entries and of lines. */
+        int _size, _lines;
+
+        /** The first error met, or null. */
+        String _error;
+
+        /** The line of the error, counted from 1. */
+        int _errorLine;
+    }
+
+    /** The entries read so far. */
+    private static final class Entries {
+
+        Entries(int rows, int cols, boolean coordinate, int symmetry, int count) {
+            _height = rows;
+            _width = cols;
+            _coordinate = coordinate;
+            _symmetry = symmetry;
+            _values = new double[count];
+            if (coordinate) {
+                _rows = new int[count];
+                _cols = new int[count];
+            }
+        }
+
+        /** Appends the entries of PIECE, returning false if there are more
+         * than expected. */
+        boolean append(Piece piece) {
+            if (piece._size > _values.length - _size) {
+                return false;
+            }
+            System.arraycopy(piece._values, 0, _values, _size, piece._size);
+            if (_coordinate) {
+                System.arraycopy(piece._rows, 0, _rows, _size, piece._size);
+                System.arraycopy(piece._cols, 0, _cols, _size, piece._size);
+            }
+            _size += piece._size;
+            return true;
+        }
+
+        /** Returns the sparse Matrix of the entries, in coordinate form,
+         * mirrored according to the symmetry.
+         *
+         * @throws MatrixException */
+        SparseMatrix toSparse() throws MatrixException {
+            int symmetry = _symmetry;
+            int[] r = _rows, c = _cols;
+            double[] v = _values;
+            if (symmetry != GENERAL) {
+                int n = _size;
+                for (int k = 0; k < _size; k++) {
+                    if (r[k] < c[k]) {
+                        throw new MatrixException("The entry (" + r[k] + ", " + c[k]
+                                                  + ") is above the diagonal of a"
+                                                  + " symmetric matrix.");
+                    }
+                    n += r[k] != c[k] ? 1 : 0;
+                }
+                r = Arrays.copyOf(r, n);
+                c = Arrays.copyOf(c, n);
+                v = Arrays.copyOf(v, n);
+                for (int k = 0, p = _size; k < _size; k++) {
+                    if (r[k] != c[k]) {
+                        r[p] = c[k];
+                        c[p] = r[k];
+                        v[p++] = symmetry == SKEW ? -v[k] : v[k];
+                    }
+                }
+            }
+            return SparseMatrix.fromTriplets(_height, _width, r, c, v);
+        }
+
+        /** Returns the Matrix whose entries, in array form, are the entries
+         * read column by column, on and below the diagonal if it is
+         * symmetric and strictly below if it is skew-symmetric.
+         *
+         * @throws MatrixException */
+        Matrix toMatrix() throws MatrixException {
+            int rows = _height, cols = _width, symmetry = _symmetry;
+            Matrix A = rows == cols ? new SquareMatrix(rows) : new Matrix(rows, cols);
+            double[] a = A.data();
+            int k = 0;
+            for (int c = 0; c < cols; c++) {
+                int first = symmetry == GENERAL ? 0 : symmetry == SYMMETRIC ? c : c + 1;
+                for (int r = first; r < rows; r++) {
+                    double x = _values[k++];
+                    a[r * cols + c] = x;
+                    if (r != c && symmetry != GENERAL) {
+                        a[c * cols + r] = symmetry == SKEW ? -x : x;
+                    }
+                }
+            }
+            return A;
+        }
+
+        /** The dimensions of the Matrix. */
+        private final int _height, _width;
+
+        /** True if the entries have rows and columns. */
+        final boolean _coordinate;
+
+        /** The symmetry of the Matrix: GENERAL, SYMMETRIC or SKEW. */
+        private final int _symmetry;
+
+        /** The rows and columns of the entries, in coordinate form. */
+        private int[] _rows, _cols;
+
+        /** The values of the entries. */
+        private final double[] _values;
+
+        /** The number of entries read. */
+        int _size;
+    }
+
+    /** The first word of a MatrixMarket file. */
+    private static final String BANNER = "%%MatrixMarket";
+
+    /** The symmetries supported. */
+    private static final int GENERAL = 0, SYMMETRIC = 1, SKEW = 2;
+
+    /** This class is not instantiated. */
+    private MatrixMarket() {
+    }
+}
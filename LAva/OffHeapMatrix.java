@@ -0,0 +1,400 @@
+package matrix_calculator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** A Matrix whose entries are held outside the Java heap, either in
+ * directly allocated memory or in a memory-mapped file, so that its size is
+ * not bounded by the heap and does not add to the work of the garbage
+ * collector. A mapped Matrix may be larger than physical memory, in which
+ * case the operating system pages it in and out of the file as it is used.
+ *
+ * Entries are stored row-major as little-endian doubles. Since a single
+ * buffer holds at most 2^31 bytes, the rows are split into segments, each
+ * a buffer of whole rows. The operations in Operations that accept an
+ * OffHeapMatrix stream it a tile of rows at a time through the heap
+ * kernels, and return an OffHeapMatrix allocated directly, unless they are
+ * given one to overwrite.
+ *
+ * Directly allocated memory, from allocate() and from those operations,
+ * counts against the JVM's limit on direct memory, set by
+ * -XX:MaxDirectMemorySize and by default the maximum heap size, and is only
+ * returned once its buffers are collected, so close() alone does not free
+ * it. A long chain of large operations should write into Matrices mapped
+ * onto files, or reuse its results, rather than allocate a new Matrix for
+ * each step.
+ *
+ * A Matrix is closed explicitly, after which it may no longer be used. Its
+ * memory is returned, or its file unmapped, once the buffers it held are
+ * collected.
+ *
+ * @author AndyPalan */
+public class OffHeapMatrix implements AutoCloseable {
+
+    /** Returns a new ROW x COL Matrix filled with zeroes, allocated outside
+     * the heap. Its memory counts against the limit on direct memory.
+     *
+     * @throws MatrixException */
+    public static OffHeapMatrix allocate(int row, int col) throws MatrixException {
+        return allocate(row, col, segmentRows(col));
+    }
+
+    /** Returns a new Matrix allocated outside the heap holding the entries
+     * of A.
+     *
+     * @throws MatrixException */
+    public static OffHeapMatrix allocate(Matrix A) throws MatrixException {
+        int h = A.getHeight(), w = A.getWidth();
+        OffHeapMatrix M = allocate(h, w);
+        int tile = tileRows(w);
+        double[] rows = new double[tile * w];
+        for (int r0 = 0; r0 < h; r0 += tile) {
+            int m = Math.min(tile, h - r0);
+            Operations.copy(new Matrix(m, w, A.data(), A.offset() + r0 * A.stride(),
+                                       A.stride(), A.colStride()),
+                            new Matrix(m, w, rows, 0, w));
+            M.putRows(r0, r0 + m, rows, 0);
+        }
+        return M;
+    }
+
+    /** Returns a new ROW x COL Matrix allocated outside the heap in segments
+     * of SEGMENTROWS rows.
+     *
+     * @throws MatrixException */
+    static OffHeapMatrix allocate(int row, int col, int segmentRows) throws MatrixException {
+        OffHeapMatrix M = new OffHeapMatrix(row, col, segmentRows);
+        for (int s = 0; s < M._segments.length; s++) {
+            M.attach(s, ByteBuffer.allocateDirect(M.segmentBytes(s)));
+        }
+        return M;
+    }
+
+    /** Returns a ROW x COL Matrix mapped onto the start of FILE, which is
+     * created or extended as needed, so that changes to the Matrix are
+     * written to the file.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static OffHeapMatrix map(Path file, int row, int col)
+        throws MatrixException, IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            return map(channel, 0, row, col, MapMode.READ_WRITE);
+        }
+    }
+
+    /** Returns a ROW x COL Matrix mapped with MODE onto CHANNEL from the
+     * byte POSITION. The mapping stays valid once CHANNEL is closed. A
+     * Matrix mapped READ_ONLY cannot be set.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    public static OffHeapMatrix map(FileChannel channel, long position, int row, int col,
+                                    MapMode mode) throws MatrixException, IOException {
+        return map(channel, position, row, col, mode, segmentRows(col));
+    }
+
+    /** Returns a ROW x COL Matrix mapped with MODE onto CHANNEL from the
+     * byte POSITION, in segments of SEGMENTROWS rows.
+     *
+     * @throws MatrixException
+     * @throws IOException */
+    static OffHeapMatrix map(FileChannel channel, long position, int row, int col,
+                             MapMode mode, int segmentRows)
+        throws MatrixException, IOException {
+        if (position < 0) {
+            throw new MatrixException("Incorrect position.");
+        }
+        OffHeapMatrix M = new OffHeapMatrix(row, col, segmentRows);
+        long start = position;
+        for (int s = 0; s < M._segments.length; s++) {
+            int bytes = M.segmentBytes(s);
+            M.attach(s, channel.map(mode, start, bytes));
+            start += bytes;
+        }
+        return M;
+    }
+
+    /** Creates a new ROW x COL Matrix split into segments of SEGMENTROWS
+     * rows, which are yet to be attached.
+     *
+     * @throws MatrixException */
+    private OffHeapMatrix(int row, int col, int segmentRows) throws MatrixException {
+        if (row < 0 || col < 0 || segmentRows < 1
+            || (long) segmentRows * col * Double.BYTES > Integer.MAX_VALUE) {
+            throw new MatrixException("Incorrect dimension.");
+        }
+        _height = row;
+        _width = col;
+        _segmentRows = segmentRows;
+        int count = (row + segmentRows - 1) / segmentRows;
+        _buffers = new ByteBuffer[count];
+        _segments = new DoubleBuffer[count];
+    }
+
+    /** Returns the largest number of rows of width COL that fit in one
+     * segment. */
+    private static int segmentRows(int col) {
+        return (int) Math.max(1, SEGMENT_BYTES / Math.max(1L, (long) col * Double.BYTES));
+    }
+
+    /** Returns the number of bytes in segment S. */
+    private int segmentBytes(int s) {
+        int rows = Math.min(_segmentRows, _height - s * _segmentRows);
+        return rows * _width * Double.BYTES;
+    }
+
+    /** Makes BUFFER hold segment S. */
+    private void attach(int s, ByteBuffer buffer) {
+        _buffers[s] = buffer;
+        _segments[s] = buffer.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+
+    /** Returns the segments of this Matrix.
+     *
+     * @throws IllegalStateException if this Matrix has been closed */
+    private DoubleBuffer[] segments() {
+        DoubleBuffer[] segments = _segments;
+        if (segments == null) {
+            throw new IllegalStateException("This matrix has been closed.");
+        }
+        return segments;
+    }
+
+    /** Returns the double at row R and col C. */
+    public double get(int r, int c) {
+        checkIndex(r, c);
+        return segments()[(r - 1) / _segmentRows]
+            .get((r - 1) % _segmentRows * _width + c - 1);
+    }
+
+    /** Sets the entry at row R and col C to be the double K. */
+    public void set(int r, int c, double k) {
+        checkIndex(r, c);
+        segments()[(r - 1) / _segmentRows].put((r - 1) % _segmentRows * _width + c - 1, k);
+    }
+
+    /** Throws an IndexOutOfBoundsException unless row R and col C are in
+     * this Matrix, since a column past the end of a row would otherwise read
+     * the next row. */
+    private void checkIndex(int r, int c) {
+        if (r < 1 || r > _height || c < 1 || c > _width) {
+            throw new IndexOutOfBoundsException("(" + r + ", " + c + ")");
+        }
+    }
+
+    /** Returns the number of rows of this Matrix. */
+    public int getHeight() {
+        return _height;
+    }
+
+    /** Returns the number of columns of this Matrix. */
+    public int getWidth() {
+        return _width;
+    }
+
+    /** Returns a copy of this Matrix on the heap, which is a SquareMatrix
+     * if this Matrix is square.
+     *
+     * @throws MatrixException */
+    public Matrix toMatrix() throws MatrixException {
+        if ((long) _height * _width > Integer.MAX_VALUE - 8) {
+            throw new MatrixException("This matrix is too large to be held on the heap.");
+        }
+        Matrix A = _height == _width ? new SquareMatrix(_height) : new Matrix(_height, _width);
+        getRows(0, _height, A.data(), 0);
+        return A;
+    }
+
+    /** Writes any changes to a mapped Matrix through to its file. */
+    public void flush() {
+        segments();
+        for (ByteBuffer buffer : _buffers) {
+            if (buffer instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) buffer).force();
+            }
+        }
+    }
+
+    /** Returns true if this Matrix has been closed. */
+    public boolean isClosed() {
+        return _segments == null;
+    }
+
+    /** Closes this Matrix, after which it may no longer be used. Changes to
+     * a mapped Matrix are first written through to its file. */
+    @Override
+    public void close() {
+        if (_segments != null) {
+            flush();
+            _segments = null;
+            _buffers = null;
+        }
+    }
+
+    /** Copies rows FROM (inclusive) to TO (exclusive), counted from 0, into
+     * DST from OFF, row-major with no gaps. */
+    void getRows(int from, int to, double[] dst, int off) {
+        DoubleBuffer[] segments = segments();
+        while (from < to) {
+            int s = from / _segmentRows, first = from % _segmentRows;
+            int rows = Math.min(to - from, _segmentRows - first);
+            segments[s].get(first * _width, dst, off, rows * _width);
+            off += rows * _width;
+            from += rows;
+        }
+    }
+
+    /** Copies rows FROM (inclusive) to TO (exclusive), counted from 0, from
+     * SRC at OFF, row-major with no gaps. */
+    void putRows(int from, int to, double[] src, int off) {
+        DoubleBuffer[] segments = segments();
+        while (from < to) {
+            int s = from / _segmentRows, first = from % _segmentRows;
+            int rows = Math.min(to - from, _segmentRows - first);
+            segments[s].put(first * _width, src, off, rows * _width);
+            off += rows * _width;
+            from += rows;
+        }
+    }
+
+    /** Returns the number of rows of width WIDTH held on the heap at a time
+     * by the kernels below. */
+    static int tileRows(int width) {
+        return Math.max(1, TILE_ENTRIES / Math.max(width, 1));
+    }
+
+    /** Sets C to be the elementwise combination KA * A + KB * B, where A, B
+     * and C all have the same dimension. */
+    static void combine(OffHeapMatrix A, double kA, OffHeapMatrix B, double kB,
+                        OffHeapMatrix C) {
+        int w = A._width, tile = tileRows(w);
+        Parallel.forRows(A._height, w, (from, to) -> {
+            double[] a = new double[tile * w], b = new double[tile * w];
+            for (int r0 = from; r0 < to; r0 += tile) {
+                int r1 = Math.min(to, r0 + tile), len = (r1 - r0) * w;
+                A.getRows(r0, r1, a, 0);
+                if (kB != 0) {
+                    B.getRows(r0, r1, b, 0);
+                }
+                for (int i = 0; i < len; i++) {
+                    a[i] = kA * a[i] + (kB != 0 ? kB * b[i] : 0);
+                }
+                C.putRows(r0, r1, a, 0);
+            }
+        });
+    }
+
+    /** Sets C to be A x B, overwriting it. B is read onto the heap whole if
+     * it is small, and otherwise a block of its rows at a time for each tile
+     * of rows of A. */
+    static void multiply(OffHeapMatrix A, OffHeapMatrix B, OffHeapMatrix C) {
+        int k = B._height, n = B._width;
+        double[] whole = null;
+        if ((long) k * n <= HEAP_ENTRIES) {
+            whole = new double[k * n];
+            B.getRows(0, k, whole, 0);
+        }
+        multiply(A, whole, B, C);
+    }
+
+    /** Sets C to be A x B, overwriting it, where B may be strided.
+     *
+     * @throws MatrixException */
+    static void multiply(OffHeapMatrix A, Matrix B, OffHeapMatrix C) throws MatrixException {
+        int k = B.getHeight(), n = B.getWidth();
+        double[] b = new double[k * n];
+        Operations.copy(B, new Matrix(k, n, b, 0, n));
+        multiply(A, b, null, C);
+    }
+
+    /** Sets C to be A x B, where B is given either whole as the row-major
+     * array WHOLE or, if WHOLE is null, by BLOCKED. */
+    private static void multiply(OffHeapMatrix A, double[] whole, OffHeapMatrix blocked,
+                                 OffHeapMatrix C) {
+        int k = A._width, n = C._width;
+        int tile = tileRows(Math.max(k, n));
+        int depth = whole != null ? k : Math.max(1, Math.min(k, HEAP_ENTRIES / Math.max(n, 1)));
+        Parallel.forRows(A._height, (long) n * k, (from, to) -> {
+            double[] a = new double[tile * k], c = new double[tile * n];
+            double[] b = whole != null ? whole : new double[depth * n];
+            double[] part = whole != null ? null : new double[tile * n];
+            for (int r0 = from; r0 < to; r0 += tile) {
+                int m = Math.min(tile, to - r0);
+                A.getRows(r0, r0 + m, a, 0);
+                if (whole != null) {
+                    Gemm.multiply(m, n, k, a, 0, k, whole, 0, n, c, 0, n);
+                } else {
+                    Arrays.fill(c, 0, m * n, 0);
+                    for (int k0 = 0; k0 < k; k0 += depth) {
+                        int kb = Math.min(depth, k - k0);
+                        blocked.getRows(k0, k0 + kb, b, 0);
+                        Gemm.multiply(m, n, kb, a, k0, k, b, 0, n, part, 0, n);
+                        for (int i = 0; i < m * n; i++) {
+                            c[i] += part[i];
+                        }
+                    }
+                }
+                C.putRows(r0, r0 + m, c, 0);
+            }
+        });
+    }
+
+    /** Returns the product of A and the entries X, in the form Ax. */
+    static double[] multiply(OffHeapMatrix A, double[] x) {
+        int w = A._width, tile = tileRows(w);
+        double[] y = new double[A._height];
+        Parallel.forRows(A._height, w, (from, to) -> {
+            double[] a = new double[tile * w];
+            for (int r0 = from; r0 < to; r0 += tile) {
+                int r1 = Math.min(to, r0 + tile);
+                A.getRows(r0, r1, a, 0);
+                for (int r = r0; r < r1; r++) {
+                    double sum = 0;
+                    int row = (r - r0) * w;
+                    for (int j = 0; j < w; j++) {
+                        sum += a[row + j] * x[j];
+                    }
+                    y[r] = sum;
+                }
+            }
+        });
+        return y;
+    }
+
+    /** The largest number of bytes in one segment. */
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    /** The number of entries of each operand the kernels hold on the heap
+     * per tile of rows. */
+    private static final int TILE_ENTRIES = 1 << 15;
+
+    /** The largest number of entries of a right-hand operand read onto the
+     * heap at once. */
+    private static final int HEAP_ENTRIES = 1 << 20;
+
+    /** The number of rows. */
+    private final int _height;
+
+    /** The number of columns. */
+    private final int _width;
+
+    /** The number of rows in each segment but the last. */
+    private final int _segmentRows;
+
+    /** The buffers holding each segment, or null once closed. */
+    private ByteBuffer[] _buffers;
+
+    /** Views of the segments as doubles, or null once closed. */
+    private volatile DoubleBuffer[] _segments;
+}
@@ -1,5 +1,7 @@
 package matrix_calculator;
 
+import java.util.concurrent.ForkJoinPool;
+
 /** Executes matrix operations.
  *
  * @author AndyPalan */
@@ -15,34 +17,30 @@ public class Operations {
             throw new MatrixException("These two matrices do not have"
                             + " the appropriate dimension to be added/subtracted together.");
         }
-        double[][] contents = new double[A.getHeight()][A.getWidth()];
-        for (int r = 1; r <= A.getHeight(); r++) {
-            for (int c = 1; c <= A.getWidth(); c++) {
-                contents[r - 1][c - 1] = A.get(r, c) + B.get(r, c);
-            }
-        }
-        return new Matrix(A.getHeight(), A.getWidth(), contents);
+        Matrix C = new Matrix(A.getHeight(), A.getWidth());
+        combine(A, 1, B, 1, C);
+        return C;
     }
 
     /** Returns the Matrix that is the result of subtracting B from A (A - B).
      * 
      * @throws MatrixException */
     public static Matrix subtract(Matrix A, Matrix B) throws MatrixException {
-        Matrix C = matrixCopy(B);
-        C.scalarMult(-1);
-        return add(A, C);
+        if (!A.getDimension().equals(B.getDimension())) {
+            throw new MatrixException("These two matrices do not have"
+                            + " the appropriate dimension to be added/subtracted together.");
+        }
+        Matrix C = new Matrix(A.getHeight(), A.getWidth());
+        combine(A, 1, B, -1, C);
+        return C;
     }
 
     /** Returns the Matrix that has been scalar multiplied by K. 
      * @throws MatrixException */
     public static Matrix scalarMult(Matrix A, double k) throws MatrixException {
-        double[][] contents = new double[A.getHeight()][A.getWidth()];
-        for (int r = 1; r <= A.getHeight(); r++) {
-            for (int c = 1; c <= A.getWidth(); c++) {
-                contents[r - 1][c - 1] = k * A.get(r, c);
-            }
-        }
-        return new Matrix(A.getHeight(), A.getWidth(), contents);
+        Matrix C = new Matrix(A.getHeight(), A.getWidth());
+        scale(A, k, C);
+        return C;
     }
 
     /** Returns the Matrix that is the result of Matrix multiplying A and B in
@@ -54,23 +52,14 @@ public class Operations {
             throw new MatrixException("These two matrices do not have"
                             + " the appropriate dimension to be multiplied together.");
         }
-        double[][] contents = new double[A.getHeight()][B.getWidth()];
-        for (int i = 0, j = 0; i < A.getHeight(); j++) {
-            double entry = 0;
-            for (int c = 1; c <= A.getWidth(); c++) {
-                entry += ((A.get(i + 1, c) * B.get(c, j + 1)));
-            }
-            contents[i][j] = entry;
-            if (j == (B.getWidth() - 1)) {
-                j = -1;
-                i++;
-            }
-        }
-        return new Matrix(A.getHeight(), B.getWidth(), contents);
+        Matrix C = new Matrix(A.getHeight(), B.getWidth());
+        Gemm.multiply(A, B, C);
+        return C;
     }
     
     /** Returns the Square Matrix that is the result of Matrix multiplying A
-     * and B in the form A x B.
+     * and B in the form A x B. Matrices larger than the Strassen cutoff are
+     * multiplied with the Strassen-Winograd algorithm.
      *
      * @throws MatrixException */
     public static SquareMatrix matrixMult(SquareMatrix A, SquareMatrix B) throws MatrixException {
@@ -78,19 +67,9 @@ public class Operations {
             throw new MatrixException("These two matrices do not have"
                             + " the appropriate dimension to be multiplied together.");
         }
-        double[][] contents = new double[A.getHeight()][A.getWidth()];
-        for (int i = 0, j = 0; i < A.getHeight(); j++) {
-            double entry = 0;
-            for (int c = 1; c <= A.getWidth(); c++) {
-                entry += ((A.get(i + 1, c) * B.get(c, j + 1)));
-            }
-            contents[i][j] = entry;
-            if (j == (B.getWidth() - 1)) {
-                j = -1;
-                i++;
-            }
-        }
-        return new SquareMatrix(A.getHeight(), contents);
+        SquareMatrix C = new SquareMatrix(A.getHeight());
+        multiply(A, B, C);
+        return C;
     }
 
 
@@ -98,13 +77,8 @@ public class Operations {
      * Matrix. 
      * @throws MatrixException */
     public static Matrix matrixCopy(Matrix A) throws MatrixException {
-        Matrix B = new Matrix(A.getHeight(), A.getWidth(),
-                        new double[A.getHeight()][A.getWidth()]);
-        for (int r = 1; r <= A.getHeight(); r++) {
-            for (int c = 1; c <= A.getWidth(); c++) {
-                B.set(r, c, A.get(r, c));
-            }
-        }
+        Matrix B = new Matrix(A.getHeight(), A.getWidth());
+        copy(A, B);
         return B;
     }
     
@@ -112,26 +86,455 @@ public class Operations {
      * Matrix. 
      * @throws MatrixException */
     public static SquareMatrix matrixCopy(SquareMatrix A) throws MatrixException {
-        SquareMatrix B = new SquareMatrix(A.getHeight(),
-                        new double[A.getHeight()][A.getWidth()]);
-        for (int r = 1; r <= A.getHeight(); r++) {
-            for (int c = 1; c <= A.getWidth(); c++) {
-                B.set(r, c, A.get(r, c));
-            }
-        }
+        SquareMatrix B = new SquareMatrix(A.getHeight());
+        copy(A, B);
         return B;
     }
 
-    /** Takes the exponent of a Square Matrix A to the Kth power.
+    /** Returns the sparse Matrix that is the result of adding together A
+     * and B (A + B).
+     *
+     * @throws MatrixException */
+    public static SparseMatrix add(SparseMatrix A, SparseMatrix B) throws MatrixException {
+        checkSum(A, B);
+        return SparseMatrix.combine(A, 1, B, 1);
+    }
+
+    /** Returns the sparse Matrix that is the result of subtracting B from A
+     * (A - B).
+     *
+     * @throws MatrixException */
+    public static SparseMatrix subtract(SparseMatrix A, SparseMatrix B)
+        throws MatrixException {
+        checkSum(A, B);
+        return SparseMatrix.combine(A, 1, B, -1);
+    }
+
+    /** Throws a MatrixException unless the sparse matrices A and B can be
+     * added together.
+     *
+     * @throws MatrixException */
+    private static void checkSum(SparseMatrix A, SparseMatrix B) throws MatrixException {
+        if (A.getHeight() != B.getHeight() || A.getWidth() != B.getWidth()) {
+            throw new MatrixException("These two matrices do not have"
+                            + " the appropriate dimension to be added/subtracted together.");
+        }
+    }
+
+    /** Returns the sparse Matrix A scalar multiplied by K.
+     *
+     * @throws MatrixException */
+    public static SparseMatrix scalarMult(SparseMatrix A, double k) throws MatrixException {
+        return A.scale(k);
+    }
+
+    /** Returns the sparse Matrix that is the result of Matrix multiplying
+     * the sparse matrices A and B in the form A x B.
+     *
+     * @throws MatrixException */
+    public static SparseMatrix matrixMult(SparseMatrix A, SparseMatrix B)
+        throws MatrixException {
+        checkProduct(A.getWidth(), B.getHeight());
+        return SparseMatrix.multiply(A, B);
+    }
+
+    /** Returns the dense Matrix that is the result of Matrix multiplying the
+     * sparse Matrix A and the Matrix B in the form A x B.
+     *
+     * @throws MatrixException */
+    public static Matrix matrixMult(SparseMatrix A, Matrix B) throws MatrixException {
+        checkProduct(A.getWidth(), B.getHeight());
+        Matrix C = new Matrix(A.getHeight(), B.getWidth());
+        SparseMatrix.multiply(A, B, C);
+        return C;
+    }
+
+    /** Returns the dense Matrix that is the result of Matrix multiplying the
+     * Matrix A and the sparse Matrix B in the form A x B.
+     *
+     * @throws MatrixException */
+    public static Matrix matrixMult(Matrix A, SparseMatrix B) throws MatrixException {
+        checkProduct(A.getWidth(), B.getHeight());
+        Matrix C = new Matrix(A.getHeight(), B.getWidth());
+        SparseMatrix.multiply(A, B, C);
+        return C;
+    }
+
+    /** Returns the Vector that is the result of multiplying the sparse
+     * Matrix A and the Vector X in the form Ax.
+     *
+     * @throws MatrixException */
+    public static Vector matrixMult(SparseMatrix A, Vector x) throws MatrixException {
+        return A.multiply(x);
+    }
+
+    /** Throws a MatrixException unless a Matrix of width WIDTH can be
+     * multiplied by one of height HEIGHT.
+     *
+     * @throws MatrixException */
+    private static void checkProduct(int width, int height) throws MatrixException {
+        if (width != height) {
+            throw new MatrixException("These two matrices do not have"
+                            + " the appropriate dimension to be multiplied together.");
+        }
+    }
+
+    /** Copies the contents of the sparse Matrix A into a new sparse Matrix,
+     * in the same form, and returns that Matrix.
+     *
+     * @throws MatrixException */
+    public static SparseMatrix matrixCopy(SparseMatrix A) throws MatrixException {
+        return A.scale(1);
+    }
+
+    /** Returns the off-heap Matrix that is the result of adding together A
+     * and B (A + B).
+     *
+     * @throws MatrixException */
+    public static OffHeapMatrix add(OffHeapMatrix A, OffHeapMatrix B) throws MatrixException {
+        checkSum(A, B);
+        OffHeapMatrix C = OffHeapMatrix.allocate(A.getHeight(), A.getWidth());
+        OffHeapMatrix.combine(A, 1, B, 1, C);
+        return C;
+    }
+
+    /** Returns the off-heap Matrix that is the result of subtracting B from
+     * A (A - B).
+     *
+     * @throws MatrixException */
+    public static OffHeapMatrix subtract(OffHeapMatrix A, OffHeapMatrix B)
+        throws MatrixException {
+        checkSum(A, B);
+        OffHeapMatrix C = OffHeapMatrix.allocate(A.getHeight(), A.getWidth());
+        OffHeapMatrix.combine(A, 1, B, -1, C);
+        return C;
+    }
+
+    /** Throws a MatrixException unless A and B have the same dimension.
+     *
+     * @throws MatrixException */
+    private static void checkSum(OffHeapMatrix A, OffHeapMatrix B) throws MatrixException {
+        if (A.getHeight() != B.getHeight() || A.getWidth() != B.getWidth()) {
+            throw new MatrixException("These two matrices do not have"
+                            + " the appropriate dimension to be added/subtracted together.");
+        }
+    }
+
+    /** Returns the off-heap Matrix that has been scalar multiplied by K.
+     *
+     * @throws MatrixException */
+    public static OffHeapMatrix scalarMult(OffHeapMatrix A, double k) throws MatrixException {
+        OffHeapMatrix C = OffHeapMatrix.allocate(A.getHeight(), A.getWidth());
+        OffHeapMatrix.combine(A, k, A, 0, C);
+        return C;
+    }
+
+    /** Returns the off-heap Matrix that is the result of Matrix multiplying
+     * A and B in the form A x B.
+     *
+     * @throws MatrixException */
+    public static OffHeapMatrix matrixMult(OffHeapMatrix A, OffHeapMatrix B)
+        throws MatrixException {
+        checkProduct(A.getWidth(), B.getHeight());
+        OffHeapMatrix C = OffHeapMatrix.allocate(A.getHeight(), B.getWidth());
+        OffHeapMatrix.multiply(A, B, C);
+        return C;
+    }
+
+    /** Returns the off-heap Matrix that is the result of Matrix multiplying
+     * the off-heap Matrix A and the Matrix B in the form A x B.
+     *
+     * @throws MatrixException */
+    public static OffHeapMatrix matrixMult(OffHeapMatrix A, Matrix B) throws MatrixException {
+        checkProduct(A.getWidth(), B.getHeight());
+        OffHeapMatrix C = OffHeapMatrix.allocate(A.getHeight(), B.getWidth());
+        OffHeapMatrix.multiply(A, B, C);
+        return C;
+    }
+
+    /** Returns the Vector that is the result of multiplying the off-heap
+     * Matrix A and the Vector X in the form Ax.
+     *
+     * @throws MatrixException */
+    public static Vector matrixMult(OffHeapMatrix A, Vector x) throws MatrixException {
+        if (A.getWidth() != x.numRows()) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        return new Vector(OffHeapMatrix.multiply(A, x.values()));
+    }
+
+    /** Copies the contents of the off-heap Matrix A into a new off-heap
+     * Matrix and returns that Matrix.
+     *
+     * @throws MatrixException */
+    public static OffHeapMatrix matrixCopy(OffHeapMatrix A) throws MatrixException {
+        return scalarMult(A, 1);
+    }
+
+    /** Sets the off-heap Matrix C to be A + B, overwriting it. C may be A
+     * or B, or a Matrix mapped onto a file, which keeps the result out of
+     * directly allocated memory.
+     *
+     * @throws MatrixException */
+    public static void add(OffHeapMatrix A, OffHeapMatrix B, OffHeapMatrix C)
+        throws MatrixException {
+        checkSum(A, B);
+        checkResult(C, A.getHeight(), A.getWidth());
+        OffHeapMatrix.combine(A, 1, B, 1, C);
+    }
+
+    /** Sets the off-heap Matrix C to be A - B, overwriting it. C may be A
+     * or B.
+     *
+     * @throws MatrixException */
+    public static void subtract(OffHeapMatrix A, OffHeapMatrix B, OffHeapMatrix C)
+        throws MatrixException {
+        checkSum(A, B);
+        checkResult(C, A.getHeight(), A.getWidth());
+        OffHeapMatrix.combine(A, 1, B, -1, C);
+    }
+
+    /** Sets the off-heap Matrix C to be A scalar multiplied by K,
+     * overwriting it. C may be A.
+     *
+     * @throws MatrixException */
+    public static void scalarMult(OffHeapMatrix A, double k, OffHeapMatrix C)
+        throws MatrixException {
+        checkResult(C, A.getHeight(), A.getWidth());
+        OffHeapMatrix.combine(A, k, A, 0, C);
+    }
+
+    /** Sets the off-heap Matrix C to be A x B, overwriting it. C may not be
+     * A or B.
+     *
+     * @throws MatrixException */
+    public static void matrixMult(OffHeapMatrix A, OffHeapMatrix B, OffHeapMatrix C)
+        throws MatrixException {
+        checkProduct(A.getWidth(), B.getHeight());
+        checkResult(C, A.getHeight(), B.getWidth());
+        if (C == A || C == B) {
+            throw new MatrixException("The product cannot overwrite one of its operands.");
+        }
+        OffHeapMatrix.multiply(A, B, C);
+    }
+
+    /** Sets the off-heap Matrix C to be A x B, where B is a Matrix,
+     * overwriting it. C may not be A.
+     *
+     * @throws MatrixException */
+    public static void matrixMult(OffHeapMatrix A, Matrix B, OffHeapMatrix C)
+        throws MatrixException {
+        checkProduct(A.getWidth(), B.getHeight());
+        checkResult(C, A.getHeight(), B.getWidth());
+        if (C == A) {
+            throw new MatrixException("The product cannot overwrite one of its operands.");
+        }
+        OffHeapMatrix.multiply(A, B, C);
+    }
+
+    /** Throws a MatrixException unless C is HEIGHT x WIDTH.
+     *
+     * @throws MatrixException */
+    private static void checkResult(OffHeapMatrix C, int height, int width)
+        throws MatrixException {
+        if (C.getHeight() != height || C.getWidth() != width) {
+            throw new MatrixException("The result matrix does not have the"
+                            + " appropriate dimension.");
+        }
+    }
+
+    /** Sets the block sizes used by matrixMult: ROWS rows of the left
+     * operand and DEPTH rows of the right operand are held in cache at a
+     * time, over COLS columns of the product.
+     *
+     * @throws MatrixException */
+    public static void setMultBlockSizes(int rows, int depth, int cols)
+        throws MatrixException {
+        Gemm.setBlockSizes(rows, depth, cols);
+    }
+
+    /** Sets the size above which square matrices are multiplied with the
+     * Strassen-Winograd algorithm to N. Blocks no larger than N are
+     * multiplied classically. Use Integer.MAX_VALUE to always multiply
+     * classically.
+     *
+     * @throws MatrixException */
+    public static void setStrassenCutoff(int n) throws MatrixException {
+        Strassen.setCutoff(n);
+    }
+
+    /** Runs the operations in this class on POOL once they are large
+     * enough to be worth splitting, or on the common pool if POOL is null.
+     * This is a single setting for the whole process, so it changes the
+     * pool used by every thread; use usePool() to choose a pool for the
+     * calling thread alone. */
+    public static void setPool(ForkJoinPool pool) {
+        Parallel.setPool(pool);
+    }
+
+    /** Runs the operations in this class started by the calling thread on
+     * POOL, or on the common pool if POOL is null, until the returned Scope
+     * is closed, whatever pool setPool() has chosen. Scopes nest, and are
+     * closed on the same thread in the reverse order, as a
+     * try-with-resources statement does. */
+    public static Scope usePool(ForkJoinPool pool) {
+        return Parallel.usePool(pool);
+    }
+
+    /** A setting for the calling thread, in force until it is closed. */
+    public interface Scope extends AutoCloseable {
+
+        /** Restores the setting in force before this one. */
+        @Override
+        void close();
+    }
+
+    /** Sets the amount of work below which operations run on the calling
+     * thread to THRESHOLD. Work is counted in entries written, or in
+     * multiply-adds for products.
+     *
+     * @throws MatrixException */
+    public static void setParallelThreshold(long threshold) throws MatrixException {
+        Parallel.setThreshold(threshold);
+    }
+
+    /** Takes the exponent of a Square Matrix A to the Kth power, where K is
+     * non-negative. A^0 is the identity. Uses O(log K) products, alternating
+     * between two work matrices, which share one Strassen workspace when
+     * they are large enough to use it.
      * @throws MatrixException */
     public static SquareMatrix exp(SquareMatrix A, int k) throws MatrixException {
-        int count = 1;
-        SquareMatrix B = Operations.matrixCopy(A);
-        while (count < k) {
-            count++;
-            B = Operations.matrixMult(B, A);
+        if (k < 0) {
+            throw new MatrixException("Cannot raise a matrix to the negative power "
+                                      + k + ".");
+        }
+        int n = A.getHeight();
+        SquareMatrix B = new SquareMatrix(n);
+        if (k == 0) {
+            for (int i = 1; i <= n; i++) {
+                B.set(i, i, 1);
+            }
+            return B;
+        }
+        A = contiguous(A);
+        copy(A, B);
+        SquareMatrix work = new SquareMatrix(n);
+        Strassen strassen = n > Strassen.cutoff() ? Strassen.forSize(n) : null;
+        for (int bit = Integer.highestOneBit(k) >>> 1; bit != 0; bit >>>= 1) {
+            multiply(B, B, work, strassen);
+            SquareMatrix swap = B;
+            B = work;
+            work = swap;
+            if ((k & bit) != 0) {
+                multiply(B, A, work, strassen);
+                swap = B;
+                B = work;
+                work = swap;
+            }
         }
         return B;
     }
 
+    /** Sets C to be the product A x B of the square matrices A and B, where
+     * C does not share storage with A or B. */
+    static void multiply(SquareMatrix A, SquareMatrix B, SquareMatrix C)
+        throws MatrixException {
+        if (A.getHeight() > Strassen.cutoff()) {
+            Strassen.multiply(contiguous(A), contiguous(B), C);
+        } else {
+            Gemm.multiply(A, B, C);
+        }
+    }
+
+    /** Sets C to be the product A x B of the square matrices A and B, whose
+     * rows are contiguous, using STRASSEN if it is not null and the blocked
+     * kernel otherwise. C does not share storage with A or B. */
+    private static void multiply(SquareMatrix A, SquareMatrix B, SquareMatrix C,
+                                 Strassen strassen) {
+        if (strassen != null) {
+            strassen.product(A, B, C);
+        } else {
+            Gemm.multiply(A, B, C);
+        }
+    }
+
+    /** Returns A if its rows are contiguous in storage, or else a compact
+     * copy of A. */
+    static SquareMatrix contiguous(SquareMatrix A) throws MatrixException {
+        if (A.colStride() == 1) {
+            return A;
+        }
+        return matrixCopy(A);
+    }
+
+    /** Sets C to be the elementwise combination KA * A + KB * B, where A, B
+     * and C all have the same dimension. */
+    static void combine(Matrix A, double kA, Matrix B, double kB, Matrix C) {
+        double[] a = A.data(), b = B.data(), c = C.data();
+        int w = A.getWidth();
+        int acs = A.colStride(), bcs = B.colStride(), ccs = C.colStride();
+        boolean contiguous = acs == 1 && bcs == 1 && ccs == 1;
+        Parallel.forRows(A.getHeight(), w, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int ar = A.offset() + r * A.stride();
+                int br = B.offset() + r * B.stride();
+                int cr = C.offset() + r * C.stride();
+                if (contiguous) {
+                    for (int j = 0; j < w; j++) {
+                        c[cr + j] = kA * a[ar + j] + kB * b[br + j];
+                    }
+                } else {
+                    for (int j = 0; j < w; j++) {
+                        c[cr + j * ccs] = kA * a[ar + j * acs] + kB * b[br + j * bcs];
+                    }
+                }
+            }
+        });
+    }
+
+    /** Sets C to be K * A, where A and C have the same dimension. */
+    static void scale(Matrix A, double k, Matrix C) {
+        double[] a = A.data(), c = C.data();
+        int w = A.getWidth();
+        int acs = A.colStride(), ccs = C.colStride();
+        Parallel.forRows(A.getHeight(), w, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int ar = A.offset() + r * A.stride();
+                int cr = C.offset() + r * C.stride();
+                if (acs == 1 && ccs == 1) {
+                    for (int j = 0; j < w; j++) {
+                        c[cr + j] = k * a[ar + j];
+                    }
+                } else {
+                    for (int j = 0; j < w; j++) {
+                        c[cr + j * ccs] = k * a[ar + j * acs];
+                    }
+                }
+            }
+        });
+    }
+
+    /** Copies the contents of A into B, which has the same dimension. A
+     * transposed view is copied with a cache-oblivious transpose. */
+    static void copy(Matrix A, Matrix B) {
+        int w = A.getWidth();
+        if (A.colStride() != 1 && B.colStride() == 1) {
+            Matrix.transposeBlock(A.data(), A.offset(), A.colStride(), A.stride(),
+                                  B.data(), B.offset(), B.stride(), B.colStride(),
+                                  w, A.getHeight());
+            return;
+        }
+        if (A.colStride() != 1 || B.colStride() != 1) {
+            scale(A, 1, B);
+            return;
+        }
+        Parallel.forRows(A.getHeight(), w, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                System.arraycopy(A.data(), A.offset() + r * A.stride(),
+                                 B.data(), B.offset() + r * B.stride(), w);
+            }
+        });
+    }
+
 }
@@ -0,0 +1,156 @@
+package matrix_calculator;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/** Splits row-oriented kernels into tiles of rows run on a ForkJoinPool,
+ * once the work involved passes a threshold. The pool is set for the whole
+ * process, unless the calling thread has scoped a pool of its own.
+ *
+ * @author AndyPalan */
+final class Parallel {
+
+    /** A kernel over the rows FROM (inclusive) to TO (exclusive) of its
+     * output. */
+    interface RowKernel {
+        void rows(int from, int to);
+    }
+
+    /** Runs KERNEL over HEIGHT rows, each costing WORKPERROW units of work,
+     * splitting the rows into tiles on the pool if the total work is at least
+     * the threshold. */
+    static void forRows(int height, long workPerRow, RowKernel kernel) {
+        long threshold = _threshold;
+        ForkJoinPool pool = pool();
+        if (height < 2 || height * workPerRow < threshold
+            || pool.getParallelism() < 2) {
+            kernel.rows(0, height);
+            return;
+        }
+        int tiles = pool.getParallelism() * TILES_PER_THREAD;
+        int grain = (int) Math.max(threshold / Math.max(workPerRow, 1),
+                                   (height + tiles - 1) / tiles);
+        RowTask task = new RowTask(kernel, 0, height, Math.max(grain, 1), pool);
+        if (ForkJoinTask.getPool() == pool) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    /** Returns the pool that parallel kernels started by the calling thread
+     * run on: the pool of its innermost scope if it has one, and otherwise
+     * the pool set for the process. */
+    static ForkJoinPool pool() {
+        ForkJoinPool pool = SCOPED.get();
+        if (pool == null) {
+            pool = _pool;
+        }
+        return pool == null ? ForkJoinPool.commonPool() : pool;
+    }
+
+    /** Sets the pool that parallel kernels run on, for every thread without
+     * a scope of its own, to POOL, or to the common pool if POOL is null. */
+    static void setPool(ForkJoinPool pool) {
+        _pool = pool;
+    }
+
+    /** Returns a scope in which the kernels started by the calling thread
+     * run on POOL, or on the common pool if POOL is null, and which restores
+     * the previous pool of the thread when it is closed. */
+    static Operations.Scope usePool(ForkJoinPool pool) {
+        ForkJoinPool previous = enter(pool == null ? ForkJoinPool.commonPool() : pool);
+        return () -> exit(previous);
+    }
+
+    /** Makes POOL the scoped pool of the calling thread, returning the one
+     * it replaces, which may be null. */
+    private static ForkJoinPool enter(ForkJoinPool pool) {
+        ForkJoinPool previous = SCOPED.get();
+        SCOPED.set(pool);
+        return previous;
+    }
+
+    /** Restores PREVIOUS, which may be null, as the scoped pool of the
+     * calling thread. */
+    private static void exit(ForkJoinPool previous) {
+        if (previous == null) {
+            SCOPED.remove();
+        } else {
+            SCOPED.set(previous);
+        }
+    }
+
+    /** Sets the amount of work below which kernels run on the calling thread
+     * to THRESHOLD.
+     *
+     * @throws MatrixException */
+    static void setThreshold(long threshold) throws MatrixException {
+        if (threshold < 1) {
+            throw new MatrixException("The parallel threshold must be positive.");
+        }
+        _threshold = threshold;
+    }
+
+    /** A task running a RowKernel over a range of rows, splitting the range
+     * in half until it is no larger than a grain. The kernel runs scoped to
+     * the pool it was started on, so that any kernels it starts in turn
+     * stay on that pool. */
+    @SuppressWarnings("serial")
+    private static final class RowTask extends RecursiveAction {
+
+        RowTask(RowKernel kernel, int from, int to, int grain, ForkJoinPool pool) {
+            _kernel = kernel;
+            _from = from;
+            _to = to;
+            _grain = grain;
+            _owner = pool;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from <= _grain) {
+                ForkJoinPool previous = enter(_owner);
+                try {
+                    _kernel.rows(_from, _to);
+                } finally {
+                    exit(previous);
+                }
+                return;
+            }
+            int mid = (_from + _to) >>> 1;
+            invokeAll(new RowTask(_kernel, _from, mid, _grain, _owner),
+                      new RowTask(_kernel, mid, _to, _grain, _owner));
+        }
+
+        /** The kernel run by this task. */
+        private final RowKernel _kernel;
+
+        /** The first row covered by this task. */
+        private final int _from;
+
+        /** One past the last row covered by this task. */
+        private final int _to;
+
+        /** The largest number of rows run without splitting. */
+        private final int _grain;
+
+        /** The pool this task was started on. */
+        private final ForkJoinPool _owner;
+    }
+
+    /** The number of tiles per worker thread a large kernel is split into,
+     * so that uneven tiles can be balanced by work stealing. */
+    private static final int TILES_PER_THREAD = 4;
+
+    /** The pool of the innermost scope of each thread, if it has one. */
+    private static final ThreadLocal<ForkJoinPool> SCOPED = new ThreadLocal<>();
+
+    /** The pool parallel kernels run on, or null for the common pool. */
+    private static volatile ForkJoinPool _pool;
+
+    /** The amount of work (entries written, or multiply-adds for products)
+     * below which kernels run on the calling thread. */
+    private static volatile long _threshold = 1 << 16;
+}
@@ -0,0 +1,12 @@
+package matrix_calculator;
+
+/** An approximation M of a square Matrix A for which Mz = r is cheap to
+ * solve, used by the iterative solvers to speed up their convergence. The
+ * closer M is to A, the fewer iterations are needed.
+ *
+ * @author AndyPalan */
+public interface Preconditioner {
+
+    /** Sets Z to the solution of Mz = R, both of length n. */
+    void apply(double[] r, double[] z);
+}
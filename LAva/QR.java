@@ -0,0 +1,270 @@
+package matrix_calculator;
+
+/** The Householder QR factorization A = QR of an m x n Matrix A. With
+ * k = min(m, n), Q is the m x k Matrix with orthonormal columns and R is the
+ * k x n upper triangular (or trapezoidal) Matrix, normalised so that the
+ * diagonal of R is non-negative.
+ *
+ * The factorization is held compactly: R on and above the diagonal of one
+ * row-major array, and the Householder vectors below it. Q and R are only
+ * formed when asked for. Large matrices are factored a panel of columns at a
+ * time, with the panel's reflectors applied to the rest of the matrix at once
+ * in the compact WY form I - V T V^T, so that the bulk of the work is done by
+ * the blocked multiply kernel.
+ *
+ * @author AndyPalan */
+public class QR {
+
+    /** Creates the QR factorization of A.
+     *
+     * @throws MatrixException */
+    public QR(Matrix A) throws MatrixException {
+        _m = A.getHeight();
+        _n = A.getWidth();
+        _k = Math.min(_m, _n);
+        _qr = new double[_m * _n];
+        Operations.copy(A, new Matrix(_m, _n, _qr, 0, _n));
+        _tau = new double[_k];
+        if (_k >= 2 * BLOCK) {
+            factorBlocked();
+        } else {
+            factorPanel(0, _k, _n);
+        }
+    }
+
+    /** Factors columns FROM to TO (exclusive), applying each reflector to the
+     * columns up to LAST (exclusive). */
+    private void factorPanel(int from, int to, int last) {
+        int m = _m, n = _n;
+        double[] a = _qr;
+        double[] w = new double[n];
+        for (int k = from; k < to; k++) {
+            double alpha = a[k * n + k];
+            double norm = 0;
+            for (int i = k + 1; i < m; i++) {
+                norm += a[i * n + k] * a[i * n + k];
+            }
+            if (norm == 0) {
+                _tau[k] = 0;
+                continue;
+            }
+            double beta = -Math.copySign(Math.sqrt(alpha * alpha + norm), alpha);
+            _tau[k] = (beta - alpha) / beta;
+            double scale = 1 / (alpha - beta);
+            for (int i = k + 1; i < m; i++) {
+                a[i * n + k] *= scale;
+            }
+            a[k * n + k] = beta;
+            reflect(k, k + 1, last, w);
+        }
+    }
+
+    /** Applies reflector K to columns FROM to TO (exclusive), using W as
+     * scratch space. */
+    private void reflect(int k, int from, int to, double[] w) {
+        int m = _m, n = _n;
+        double[] a = _qr;
+        double tau = _tau[k];
+        if (tau == 0 || from >= to) {
+            return;
+        }
+        System.arraycopy(a, k * n + from, w, from, to - from);
+        for (int i = k + 1; i < m; i++) {
+            double v = a[i * n + k];
+            int r = i * n;
+            for (int j = from; j < to; j++) {
+                w[j] += v * a[r + j];
+            }
+        }
+        for (int j = from; j < to; j++) {
+            w[j] *= tau;
+        }
+        int r = k * n;
+        for (int j = from; j < to; j++) {
+            a[r + j] -= w[j];
+        }
+        for (int i = k + 1; i < m; i++) {
+            double v = a[i * n + k];
+            if (v != 0) {
+                int row = i * n;
+                for (int j = from; j < to; j++) {
+                    a[row + j] -= v * w[j];
+                }
+            }
+        }
+    }
+
+    /** Factors the Matrix a panel of BLOCK columns at a time, updating the
+     * trailing columns with the compact WY form of each panel. */
+    private void factorBlocked() {
+        int m = _m, n = _n;
+        for (int j = 0; j < _k; j += BLOCK) {
+            int nb = Math.min(BLOCK, _k - j);
+            factorPanel(j, j + nb, j + nb);
+            int trailing = n - j - nb;
+            if (trailing == 0) {
+                continue;
+            }
+            int rows = m - j;
+            double[] v = panelVectors(j, nb);
+            double[] t = triangularFactor(v, rows, j, nb);
+            double[] a = _qr;
+            int a2 = j * n + j + nb;
+            // W = V^T A2
+            double[] w = new double[nb * trailing];
+            Gemm.multiply(nb, trailing, rows, v, 0, 1, nb, a, a2, n, 1, w, 0, trailing);
+            // W = T^T W
+            double[] tw = new double[nb * trailing];
+            Gemm.multiply(nb, trailing, nb, t, 0, 1, nb, w, 0, trailing, 1,
+                          tw, 0, trailing);
+            // A2 = A2 - V W
+            double[] vw = new double[rows * trailing];
+            Gemm.multiply(rows, trailing, nb, v, 0, nb, tw, 0, trailing,
+                          vw, 0, trailing);
+            for (int i = 0; i < rows; i++) {
+                int r = a2 + i * n;
+                int s = i * trailing;
+                for (int c = 0; c < trailing; c++) {
+                    a[r + c] -= vw[s + c];
+                }
+            }
+        }
+    }
+
+    /** Returns the Householder vectors of columns J to J + NB (exclusive) as
+     * a row-major (m - J) x NB array, with their implicit unit diagonal and
+     * zeroes above it filled in. */
+    private double[] panelVectors(int j, int nb) {
+        int rows = _m - j;
+        double[] v = new double[rows * nb];
+        for (int i = 0; i < rows; i++) {
+            int r = (j + i) * _n + j;
+            for (int c = 0; c < nb; c++) {
+                if (i == c) {
+                    v[i * nb + c] = 1;
+                } else if (i > c) {
+                    v[i * nb + c] = _qr[r + c];
+                }
+            }
+        }
+        return v;
+    }
+
+    /** Returns the NB x NB upper triangular T, row-major, such that the
+     * product of the reflectors with vectors V (ROWS x NB) and scalars
+     * starting at _tau[J] is I - V T V^T. */
+    private double[] triangularFactor(double[] v, int rows, int j, int nb) {
+        double[] t = new double[nb * nb];
+        double[] z = new double[nb];
+        for (int c = 0; c < nb; c++) {
+            double tau = _tau[j + c];
+            // z = V[:, 0:c]^T v_c
+            for (int p = 0; p < c; p++) {
+                z[p] = 0;
+            }
+            for (int i = c; i < rows; i++) {
+                double vic = v[i * nb + c];
+                for (int p = 0; p < c; p++) {
+                    z[p] += v[i * nb + p] * vic;
+                }
+            }
+            // T[0:c, c] = -tau T[0:c, 0:c] z
+            for (int p = 0; p < c; p++) {
+                double sum = 0;
+                for (int q = p; q < c; q++) {
+                    sum += t[p * nb + q] * z[q];
+                }
+                t[p * nb + c] = -tau * sum;
+            }
+            t[c * nb + c] = tau;
+        }
+        return t;
+    }
+
+    /** Returns the m x k Matrix Q with orthonormal columns. If A was square,
+     * Q is a SquareMatrix.
+     *
+     * @throws MatrixException */
+    public Matrix getQ() throws MatrixException {
+        int m = _m, k = _k, n = _n;
+        Matrix Q = m == k ? new SquareMatrix(m) : new Matrix(m, k);
+        double[] q = Q.data();
+        for (int i = 0; i < k; i++) {
+            q[i * k + i] = 1;
+        }
+        double[] a = _qr;
+        double[] w = new double[k];
+        for (int c = k - 1; c >= 0; c--) {
+            double tau = _tau[c];
+            if (tau == 0) {
+                continue;
+            }
+            // Apply H_c = I - tau v v^T to rows c..m, columns c..k of Q
+            for (int j = c; j < k; j++) {
+                w[j] = q[c * k + j];
+            }
+            for (int i = c + 1; i < m; i++) {
+                double v = a[i * n + c];
+                int r = i * k;
+                for (int j = c; j < k; j++) {
+                    w[j] += v * q[r + j];
+                }
+            }
+            for (int j = c; j < k; j++) {
+                w[j] *= tau;
+                q[c * k + j] -= w[j];
+            }
+            for (int i = c + 1; i < m; i++) {
+                double v = a[i * n + c];
+                int r = i * k;
+                for (int j = c; j < k; j++) {
+                    q[r + j] -= v * w[j];
+                }
+            }
+        }
+        for (int j = 0; j < k; j++) {
+            if (a[j * n + j] < 0) {
+                for (int i = 0; i < m; i++) {
+                    q[i * k + j] = -q[i * k + j];
+                }
+            }
+        }
+        return Q;
+    }
+
+    /** Returns the k x n upper triangular Matrix R. If A was square, R is a
+     * SquareMatrix.
+     *
+     * @throws MatrixException */
+    public Matrix getR() throws MatrixException {
+        int k = _k, n = _n;
+        Matrix R = k == n ? new SquareMatrix(n) : new Matrix(k, n);
+        double[] r = R.data();
+        for (int i = 0; i < k; i++) {
+            double sign = _qr[i * n + i] < 0 ? -1 : 1;
+            for (int j = i; j < n; j++) {
+                r[i * n + j] = sign * _qr[i * n + j];
+            }
+        }
+        return R;
+    }
+
+    /** The number of columns in a panel of the blocked factorization. */
+    static final int BLOCK = 32;
+
+    /** The number of rows of the factored Matrix. */
+    private final int _m;
+
+    /** The number of columns of the factored Matrix. */
+    private final int _n;
+
+    /** The number of Householder reflectors, min(m, n). */
+    private final int _k;
+
+    /** R on and above the diagonal, and the Householder vectors (without
+     * their unit first entries) below it, row-major. */
+    private final double[] _qr;
+
+    /** The scalars tau of the reflectors H = I - tau v v^T. */
+    private final double[] _tau;
+}
@@ -0,0 +1,93 @@
+package matrix_calculator;
+
+import java.util.Arrays;
+
+/** The symmetric successive over-relaxation preconditioner
+ * M = (D + wL) D^-1 (D + wU) / (w (2 - w)), where D, L and U are the
+ * diagonal, strictly lower and strictly upper parts of A and w is the
+ * relaxation factor. M is symmetric positive definite whenever A is, so it
+ * may be used with the conjugate gradient method, and it needs no
+ * factorization: applying it is one forward and one backward sweep.
+ *
+ * @author AndyPalan */
+public class SSORPreconditioner implements Preconditioner {
+
+    /** Creates the SSOR preconditioner of the square SparseMatrix A with
+     * relaxation factor OMEGA, which must lie strictly between 0 and 2.
+     *
+     * @throws MatrixException */
+    public SSORPreconditioner(SparseMatrix A, double omega) throws MatrixException {
+        int n = A.getHeight();
+        if (n != A.getWidth()) {
+            throw new MatrixException("This matrix is not square.");
+        }
+        if (!(omega > 0 && omega < 2)) {
+            throw new MatrixException("The relaxation factor must lie between 0 and 2.");
+        }
+        SparseMatrix a = A.toCSR();
+        _n = n;
+        _omega = omega;
+        _pointers = a.pointers();
+        _indices = a.indices();
+        _values = a.values();
+        _diagonal = new int[n];
+        Arrays.fill(_diagonal, -1);
+        for (int i = 0; i < n; i++) {
+            for (int p = _pointers[i]; p < _pointers[i + 1]; p++) {
+                if (_indices[p] == i && _values[p] != 0) {
+                    _diagonal[i] = p;
+                }
+            }
+            if (_diagonal[i] < 0) {
+                throw new MatrixException("This matrix has a zero on its diagonal.");
+            }
+        }
+    }
+
+    /** Creates the SSOR preconditioner of the square Matrix A with
+     * relaxation factor OMEGA.
+     *
+     * @throws MatrixException */
+    public SSORPreconditioner(Matrix A, double omega) throws MatrixException {
+        this(new SparseMatrix(A), omega);
+    }
+
+    @Override
+    public void apply(double[] r, double[] z) {
+        int[] ptr = _pointers, idx = _indices, diag = _diagonal;
+        double[] val = _values;
+        double w = _omega, scale = w * (2 - w);
+        // (D + wL) u = w (2 - w) r
+        for (int i = 0; i < _n; i++) {
+            double sum = scale * r[i];
+            for (int p = ptr[i]; p < diag[i]; p++) {
+                sum -= w * val[p] * z[idx[p]];
+            }
+            z[i] = sum / val[diag[i]];
+        }
+        // (D + wU) z = Du
+        for (int i = _n - 1; i >= 0; i--) {
+            double d = val[diag[i]];
+            double sum = d * z[i];
+            for (int p = diag[i] + 1; p < ptr[i + 1]; p++) {
+                sum -= w * val[p] * z[idx[p]];
+            }
+            z[i] = sum / d;
+        }
+    }
+
+    /** The order of A. */
+    private final int _n;
+
+    /** The relaxation factor. */
+    private final double _omega;
+
+    /** The CSR form of A, shared with it. */
+    private final int[] _pointers, _indices;
+
+    /** See _pointers. */
+    private final double[] _values;
+
+    /** The position of the diagonal entry of each row. */
+    private final int[] _diagonal;
+}
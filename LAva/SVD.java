@@ -0,0 +1,642 @@
+package matrix_calculator;
+
+import java.util.Arrays;
+
+/** The singular value decomposition A = U S V^T of an m x n Matrix A. With
+ * k = min(m, n), the thin factors are the m x k Matrix U and the n x k
+ * Matrix V, both with orthonormal columns, and the k x k diagonal Matrix S
+ * of singular values in decreasing order.
+ *
+ * Two methods are available. The Golub-Kahan method reduces A to bidiagonal
+ * form by Householder reflections and then diagonalizes it by implicitly
+ * shifted QR steps; it is the faster of the two on large matrices. The
+ * one-sided Jacobi method orthogonalizes the columns of A by plane
+ * rotations until they are mutually orthogonal; it is slower, but computes
+ * small singular values to high relative accuracy. Either may skip the
+ * singular vectors and compute the singular values alone.
+ *
+ * @author AndyPalan */
+public class SVD {
+
+    /** The methods by which the decomposition may be computed. */
+    public enum Method {
+        /** Householder bidiagonalization and implicit QR. */
+        GOLUB_KAHAN,
+        /** One-sided Jacobi rotations. */
+        JACOBI
+    }
+
+    /** Creates the thin singular value decomposition of A by the
+     * Golub-Kahan method.
+     *
+     * @throws MatrixException */
+    public SVD(Matrix A) throws MatrixException {
+        this(A, Method.GOLUB_KAHAN, true);
+    }
+
+    /** Creates the singular value decomposition of A by METHOD, computing
+     * the singular vectors only if VECTORS is true. A must have at least one
+     * entry, so that it has a largest and a smallest singular value.
+     *
+     * @throws MatrixException */
+    public SVD(Matrix A, Method method, boolean vectors) throws MatrixException {
+        _m = A.getHeight();
+        _n = A.getWidth();
+        _k = Math.min(_m, _n);
+        if (_k == 0) {
+            throw new MatrixException("A matrix with no entries has no singular"
+                                      + " value decomposition.");
+        }
+        boolean wide = _m < _n;
+        int rows = Math.max(_m, _n), cols = _k;
+        double[] a = new double[rows * cols];
+        Operations.copy(wide ? A.viewTranspose() : A, new Matrix(rows, cols, a, 0, cols));
+        if (method == Method.JACOBI) {
+            jacobi(a, rows, cols, vectors);
+        } else {
+            golubKahan(a, rows, cols, vectors);
+        }
+        if (wide) {
+            double[] left = _ut;
+            _ut = _vt;
+            _vt = left;
+        }
+    }
+
+    /** Sets _s, and _ut and _vt if VECTORS, to the decomposition of the
+     * M x N row-major Matrix A, where M >= N, by Golub-Kahan
+     * bidiagonalization and implicit QR. A is overwritten.
+     *
+     * @throws MatrixException */
+    private void golubKahan(double[] a, int m, int n, boolean vectors)
+        throws MatrixException {
+        double[] s = new double[n];
+        double[] e = new double[n];
+        double[] work = new double[m];
+        double[] w = new double[n];
+        double[] ut = vectors ? new double[n * m] : null;
+        double[] vt = vectors ? new double[n * n] : null;
+
+        // Reduce A to bidiagonal form, with the diagonal in s and the
+        // superdiagonal in e
+        int nct = Math.min(m - 1, n);
+        int nrt = Math.max(0, Math.min(n - 2, m));
+        for (int k = 0; k < Math.max(nct, nrt); k++) {
+            if (k < nct) {
+                s[k] = 0;
+                for (int i = k; i < m; i++) {
+                    s[k] = Math.hypot(s[k], a[i * n + k]);
+                }
+                if (s[k] != 0) {
+                    if (a[k * n + k] < 0) {
+                        s[k] = -s[k];
+                    }
+                    for (int i = k; i < m; i++) {
+                        a[i * n + k] /= s[k];
+                    }
+                    a[k * n + k] += 1;
+                    // Apply the reflection to the columns to the right
+                    for (int j = k + 1; j < n; j++) {
+                        w[j] = 0;
+                    }
+                    for (int i = k; i < m; i++) {
+                        double aik = a[i * n + k];
+                        int r = i * n;
+                        for (int j = k + 1; j < n; j++) {
+                            w[j] += aik * a[r + j];
+                        }
+                    }
+                    for (int j = k + 1; j < n; j++) {
+                        w[j] = -w[j] / a[k * n + k];
+                    }
+                    for (int i = k; i < m; i++) {
+                        double aik = a[i * n + k];
+                        int r = i * n;
+                        for (int j = k + 1; j < n; j++) {
+                            a[r + j] += w[j] * aik;
+                        }
+                    }
+                }
+                s[k] = -s[k];
+            }
+            for (int j = k + 1; j < n; j++) {
+                e[j] = a[k * n + j];
+            }
+            if (vectors && k < nct) {
+                for (int i = k; i < m; i++) {
+                    ut[k * m + i] = a[i * n + k];
+                }
+            }
+            if (k < nrt) {
+                e[k] = 0;
+                for (int i = k + 1; i < n; i++) {
+                    e[k] = Math.hypot(e[k], e[i]);
+                }
+                if (e[k] != 0) {
+                    if (e[k + 1] < 0) {
+                        e[k] = -e[k];
+                    }
+                    for (int i = k + 1; i < n; i++) {
+                        e[i] /= e[k];
+                    }
+                    e[k + 1] += 1;
+                }
+                e[k] = -e[k];
+                if (k + 1 < m && e[k] != 0) {
+                    // Apply the reflection to the rows below
+                    for (int i = k + 1; i < m; i++) {
+                        int r = i * n;
+                        double sum = 0;
+                        for (int j = k + 1; j < n; j++) {
+                            sum += e[j] * a[r + j];
+                        }
+                        work[i] = sum / e[k + 1];
+                    }
+                    for (int i = k + 1; i < m; i++) {
+                        int r = i * n;
+                        double f = work[i];
+                        for (int j = k + 1; j < n; j++) {
+                            a[r + j] -= e[j] * f;
+                        }
+                    }
+                }
+                if (vectors) {
+                    for (int i = k + 1; i < n; i++) {
+                        vt[k * n + i] = e[i];
+                    }
+                }
+            }
+        }
+        int p = n;
+        if (nct < n) {
+            s[nct] = a[nct * n + nct];
+        }
+        if (nrt + 1 < p) {
+            e[nrt] = a[nrt * n + p - 1];
+        }
+        e[p - 1] = 0;
+
+        if (vectors) {
+            // Accumulate the left reflections into the rows of ut
+            for (int j = nct; j < n; j++) {
+                ut[j * m + j] = 1;
+            }
+            for (int k = nct - 1; k >= 0; k--) {
+                int uk = k * m;
+                if (s[k] != 0) {
+                    for (int j = k + 1; j < n; j++) {
+                        int uj = j * m;
+                        double t = 0;
+                        for (int i = k; i < m; i++) {
+                            t += ut[uk + i] * ut[uj + i];
+                        }
+                        t = -t / ut[uk + k];
+                        for (int i = k; i < m; i++) {
+                            ut[uj + i] += t * ut[uk + i];
+                        }
+                    }
+                    for (int i = k; i < m; i++) {
+                        ut[uk + i] = -ut[uk + i];
+                    }
+                    ut[uk + k] += 1;
+                } else {
+                    Arrays.fill(ut, uk, uk + m, 0);
+                    ut[uk + k] = 1;
+                }
+            }
+            // Accumulate the right reflections into the rows of vt
+            for (int k = n - 1; k >= 0; k--) {
+                int vk = k * n;
+                if (k < nrt && e[k] != 0) {
+                    for (int j = k + 1; j < n; j++) {
+                        int vj = j * n;
+                        double t = 0;
+                        for (int i = k + 1; i < n; i++) {
+                            t += vt[vk + i] * vt[vj + i];
+                        }
+                        t = -t / vt[vk + k + 1];
+                        for (int i = k + 1; i < n; i++) {
+                            vt[vj + i] += t * vt[vk + i];
+                        }
+                    }
+                }
+                Arrays.fill(vt, vk, vk + n, 0);
+                vt[vk + k] = 1;
+            }
+        }
+
+        // Diagonalize the bidiagonal matrix by implicit QR steps
+        double eps = Math.ulp(1.0);
+        double tiny = Double.MIN_NORMAL / eps;
+        int total = 0;
+        while (p > 0) {
+            // Find the largest k such that e[k] is negligible, and classify
+            // the block after it: 1 if s[p-1] is negligible, 2 if some other
+            // s[k] is, 3 for a QR step, and 4 if s[p-1] has converged
+            int k, kase;
+            for (k = p - 2; k >= 0; k--) {
+                if (Math.abs(e[k]) <= tiny + eps * (Math.abs(s[k]) + Math.abs(s[k + 1]))) {
+                    e[k] = 0;
+                    break;
+                }
+            }
+            if (k == p - 2) {
+                kase = 4;
+            } else {
+                int ks;
+                for (ks = p - 1; ks > k; ks--) {
+                    double t = (ks != p ? Math.abs(e[ks]) : 0)
+                        + (ks != k + 1 ? Math.abs(e[ks - 1]) : 0);
+                    if (Math.abs(s[ks]) <= tiny + eps * t) {
+                        s[ks] = 0;
+                        break;
+                    }
+                }
+                if (ks == k) {
+                    kase = 3;
+                } else if (ks == p - 1) {
+                    kase = 1;
+                } else {
+                    kase = 2;
+                    k = ks;
+                }
+            }
+            k++;
+
+            if (kase == 1) {
+                // Deflate a negligible s[p-1]
+                double f = e[p - 2];
+                e[p - 2] = 0;
+                for (int j = p - 2; j >= k; j--) {
+                    double t = Math.hypot(s[j], f);
+                    double cs = s[j] / t, sn = f / t;
+                    s[j] = t;
+                    if (j != k) {
+                        f = -sn * e[j - 1];
+                        e[j - 1] = cs * e[j - 1];
+                    }
+                    if (vectors) {
+                        rotate(vt, j * n, (p - 1) * n, n, cs, sn);
+                    }
+                }
+            } else if (kase == 2) {
+                // Split at a negligible s[k-1]
+                double f = e[k - 1];
+                e[k - 1] = 0;
+                for (int j = k; j < p; j++) {
+                    double t = Math.hypot(s[j], f);
+                    double cs = s[j] / t, sn = f / t;
+                    s[j] = t;
+                    f = -sn * e[j];
+                    e[j] = cs * e[j];
+                    if (vectors) {
+                        rotate(ut, j * m, (k - 1) * m, m, cs, sn);
+                    }
+                }
+            } else if (kase == 3) {
+                if (++total > MAX_ITERATIONS * n) {
+                    throw new MatrixException("The singular value iteration did not"
+                                              + " converge.");
+                }
+                // Shift from the trailing 2 x 2 block
+                double scale = Math.max(Math.max(Math.max(Math.max(
+                        Math.abs(s[p - 1]), Math.abs(s[p - 2])), Math.abs(e[p - 2])),
+                        Math.abs(s[k])), Math.abs(e[k]));
+                double sp = s[p - 1] / scale;
+                double spm1 = s[p - 2] / scale;
+                double epm1 = e[p - 2] / scale;
+                double sk = s[k] / scale;
+                double ek = e[k] / scale;
+                double b = ((spm1 + sp) * (spm1 - sp) + epm1 * epm1) / 2;
+                double c = (sp * epm1) * (sp * epm1);
+                double shift = 0;
+                if (b != 0 || c != 0) {
+                    shift = Math.copySign(Math.sqrt(b * b + c), b);
+                    shift = c / (b + shift);
+                }
+                double f = (sk + sp) * (sk - sp) + shift;
+                double g = sk * ek;
+                // Chase the bulge down the bidiagonal
+                for (int j = k; j < p - 1; j++) {
+                    double t = Math.hypot(f, g);
+                    double cs = f / t, sn = g / t;
+                    if (j != k) {
+                        e[j - 1] = t;
+                    }
+                    f = cs * s[j] + sn * e[j];
+                    e[j] = cs * e[j] - sn * s[j];
+                    g = sn * s[j + 1];
+                    s[j + 1] = cs * s[j + 1];
+                    if (vectors) {
+                        rotate(vt, j * n, (j + 1) * n, n, cs, sn);
+                    }
+                    t = Math.hypot(f, g);
+                    cs = f / t;
+                    sn = g / t;
+                    s[j] = t;
+                    f = cs * e[j] + sn * s[j + 1];
+                    s[j + 1] = -sn * e[j] + cs * s[j + 1];
+                    g = sn * e[j + 1];
+                    e[j + 1] = cs * e[j + 1];
+                    if (vectors && j < m - 1) {
+                        rotate(ut, j * m, (j + 1) * m, m, cs, sn);
+                    }
+                }
+                e[p - 2] = f;
+            } else {
+                // s[k] has converged: make it positive and move it into
+                // place
+                if (s[k] <= 0) {
+                    s[k] = s[k] < 0 ? -s[k] : 0;
+                    if (vectors) {
+                        for (int i = 0; i < n; i++) {
+                            vt[k * n + i] = -vt[k * n + i];
+                        }
+                    }
+                }
+                while (k < n - 1 && s[k] < s[k + 1]) {
+                    double t = s[k];
+                    s[k] = s[k + 1];
+                    s[k + 1] = t;
+                    if (vectors) {
+                        Matrix.swapRows(vt, k * n, (k + 1) * n, n);
+                        Matrix.swapRows(ut, k * m, (k + 1) * m, m);
+                    }
+                    k++;
+                }
+                p--;
+            }
+        }
+        _s = s;
+        _ut = ut;
+        _vt = vt;
+    }
+
+    /** Sets _s, and _ut and _vt if VECTORS, to the decomposition of the
+     * M x N row-major Matrix A, where M >= N, by one-sided Jacobi rotations.
+     *
+     * @throws MatrixException */
+    private void jacobi(double[] a, int m, int n, boolean vectors)
+        throws MatrixException {
+        // The columns of A, as the rows of g
+        double[] g = new double[n * m];
+        Matrix.transposeBlock(a, 0, n, 1, g, 0, m, 1, m, n);
+        double[] vt = null;
+        if (vectors) {
+            vt = new double[n * n];
+            for (int i = 0; i < n; i++) {
+                vt[i * n + i] = 1;
+            }
+        }
+        double eps = Math.ulp(1.0);
+        boolean rotated = true;
+        for (int sweep = 0; rotated; sweep++) {
+            if (sweep == MAX_SWEEPS) {
+                throw new MatrixException("The singular value iteration did not"
+                                          + " converge.");
+            }
+            rotated = false;
+            for (int p = 0; p < n - 1; p++) {
+                for (int q = p + 1; q < n; q++) {
+                    int gp = p * m, gq = q * m;
+                    double alpha = 0, beta = 0, gamma = 0;
+                    for (int i = 0; i < m; i++) {
+                        alpha += g[gp + i] * g[gp + i];
+                        beta += g[gq + i] * g[gq + i];
+                        gamma += g[gp + i] * g[gq + i];
+                    }
+                    if (Math.abs(gamma) <= eps * Math.sqrt(alpha * beta)) {
+                        continue;
+                    }
+                    rotated = true;
+                    double zeta = (beta - alpha) / (2 * gamma);
+                    double t = Math.copySign(1, zeta) / (Math.abs(zeta) + Math.hypot(1, zeta));
+                    double c = 1 / Math.sqrt(1 + t * t);
+                    rotate(g, gp, gq, m, c, -c * t);
+                    if (vectors) {
+                        rotate(vt, p * n, q * n, n, c, -c * t);
+                    }
+                }
+            }
+        }
+        // The singular values are the lengths of the columns, which become
+        // the left singular vectors once normalized
+        double[] s = new double[n];
+        for (int j = 0; j < n; j++) {
+            double sum = 0;
+            for (int i = 0; i < m; i++) {
+                sum += g[j * m + i] * g[j * m + i];
+            }
+            s[j] = Math.sqrt(sum);
+        }
+        Integer[] order = new Integer[n];
+        for (int j = 0; j < n; j++) {
+            order[j] = j;
+        }
+        Arrays.sort(order, (i, j) -> Double.compare(s[j], s[i]));
+        _s = new double[n];
+        if (vectors) {
+            _ut = new double[n * m];
+            _vt = new double[n * n];
+        }
+        int nonzero = 0;
+        for (int j = 0; j < n; j++) {
+            int from = order[j];
+            _s[j] = s[from];
+            if (vectors) {
+                System.arraycopy(vt, from * n, _vt, j * n, n);
+                if (s[from] != 0) {
+                    for (int i = 0; i < m; i++) {
+                        _ut[j * m + i] = g[from * m + i] / s[from];
+                    }
+                    nonzero++;
+                }
+            }
+        }
+        if (vectors) {
+            complete(_ut, nonzero, n, m);
+        }
+    }
+
+    /** Applies the plane rotation [CS SN; -SN CS] to the rows of length LEN
+     * at X and Y of A, setting them to CS x + SN y and -SN x + CS y. */
+    private static void rotate(double[] a, int x, int y, int len, double cs, double sn) {
+        for (int i = 0; i < len; i++) {
+            double ax = a[x + i], ay = a[y + i];
+            a[x + i] = cs * ax + sn * ay;
+            a[y + i] = cs * ay - sn * ax;
+        }
+    }
+
+    /** Fills rows FROM to ROWS (exclusive) of the row-major array Q, whose
+     * rows have length LEN and whose first FROM rows are orthonormal, with
+     * unit vectors orthogonal to all rows before them. */
+    private static void complete(double[] q, int from, int rows, int len) {
+        for (int j = from; j < rows; j++) {
+            // Start from the unit vector least represented so far
+            int best = 0;
+            double bestNorm = -1;
+            for (int i = 0; i < len; i++) {
+                double norm = 1;
+                for (int l = 0; l < j; l++) {
+                    norm -= q[l * len + i] * q[l * len + i];
+                }
+                if (norm > bestNorm) {
+                    best = i;
+                    bestNorm = norm;
+                }
+            }
+            int r = j * len;
+            Arrays.fill(q, r, r + len, 0);
+            q[r + best] = 1;
+            for (int pass = 0; pass < 2; pass++) {
+                for (int l = 0; l < j; l++) {
+                    double dot = 0;
+                    for (int i = 0; i < len; i++) {
+                        dot += q[r + i] * q[l * len + i];
+                    }
+                    for (int i = 0; i < len; i++) {
+                        q[r + i] -= dot * q[l * len + i];
+                    }
+                }
+            }
+            double length = 0;
+            for (int i = 0; i < len; i++) {
+                length += q[r + i] * q[r + i];
+            }
+            Matrix.scaleRow(q, r, 0, len, 1 / Math.sqrt(length));
+        }
+    }
+
+    /** Returns the singular values in decreasing order. */
+    public double[] getSingularValues() {
+        return _s.clone();
+    }
+
+    /** Returns the k x k diagonal Matrix S of singular values.
+     *
+     * @throws MatrixException */
+    public SquareMatrix getS() throws MatrixException {
+        SquareMatrix S = new SquareMatrix(_k);
+        for (int i = 0; i < _k; i++) {
+            S.data()[i * _k + i] = _s[i];
+        }
+        return S;
+    }
+
+    /** Returns the m x k Matrix U of left singular vectors. If A had no more
+     * rows than columns, U is a SquareMatrix.
+     *
+     * @throws MatrixException */
+    public Matrix getU() throws MatrixException {
+        return vectors(_ut, _m, _k);
+    }
+
+    /** Returns the n x k Matrix V of right singular vectors. If A had no more
+     * columns than rows, V is a SquareMatrix.
+     *
+     * @throws MatrixException */
+    public Matrix getV() throws MatrixException {
+        return vectors(_vt, _n, _k);
+    }
+
+    /** Returns the m x m orthogonal Matrix whose first k columns are U.
+     *
+     * @throws MatrixException */
+    public SquareMatrix getFullU() throws MatrixException {
+        return (SquareMatrix) vectors(_ut, _m, _m);
+    }
+
+    /** Returns the n x n orthogonal Matrix whose first k columns are V.
+     *
+     * @throws MatrixException */
+    public SquareMatrix getFullV() throws MatrixException {
+        return (SquareMatrix) vectors(_vt, _n, _n);
+    }
+
+    /** Returns the ROWS x COLS Matrix whose first k columns are the rows of
+     * Q (of length ROWS), completed with further orthonormal columns.
+     *
+     * @throws MatrixException */
+    private Matrix vectors(double[] q, int rows, int cols) throws MatrixException {
+        if (q == null) {
+            throw new MatrixException("The singular vectors were not computed.");
+        }
+        double[] full = Arrays.copyOf(q, cols * rows);
+        complete(full, _k, cols, rows);
+        Matrix M = rows == cols ? new SquareMatrix(rows) : new Matrix(rows, cols);
+        Matrix.transposeBlock(full, 0, rows, 1, M.data(), 0, cols, 1, cols, rows);
+        return M;
+    }
+
+    /** Returns the largest singular value, the 2-norm of A. */
+    public double getNorm() {
+        return _s[0];
+    }
+
+    /** Returns the numerical rank of A: the number of singular values larger
+     * than max(m, n) times the largest one times the machine precision. */
+    public int getRank() {
+        double tolerance = Math.max(_m, _n) * _s[0] * Math.ulp(1.0);
+        int rank = 0;
+        while (rank < _k && _s[rank] > tolerance) {
+            rank++;
+        }
+        return rank;
+    }
+
+    /** Returns the 2-norm condition number of A, the ratio of its largest
+     * and smallest singular values, which is infinite if A is rank
+     * deficient. */
+    public double getConditionNumber() {
+        return _s[0] / _s[_k - 1];
+    }
+
+    /** Returns the n x m Moore-Penrose pseudoinverse V S^+ U^T of A, where
+     * singular values below the rank tolerance are treated as 0. If A is
+     * square, so is its pseudoinverse.
+     *
+     * @throws MatrixException */
+    public Matrix getPseudoinverse() throws MatrixException {
+        if (_ut == null) {
+            throw new MatrixException("The singular vectors were not computed.");
+        }
+        int m = _m, n = _n, r = getRank();
+        double[] w = new double[n * r];
+        for (int l = 0; l < r; l++) {
+            double inverse = 1 / _s[l];
+            for (int i = 0; i < n; i++) {
+                w[i * r + l] = _vt[l * n + i] * inverse;
+            }
+        }
+        Matrix X = m == n ? new SquareMatrix(n) : new Matrix(n, m);
+        Gemm.multiply(n, m, r, w, 0, r, _ut, 0, m, X.data(), 0, m);
+        return X;
+    }
+
+    /** The number of QR steps allowed per singular value before giving up. */
+    static final int MAX_ITERATIONS = 75;
+
+    /** The number of Jacobi sweeps allowed before giving up. */
+    static final int MAX_SWEEPS = 60;
+
+    /** The number of rows of the decomposed Matrix. */
+    private final int _m;
+
+    /** The number of columns of the decomposed Matrix. */
+    private final int _n;
+
+    /** The number of singular values, min(m, n). */
+    private final int _k;
+
+    /** The singular values in decreasing order. */
+    private double[] _s;
+
+    /** The left singular vectors as the rows of a k x m array, or null if
+     * they were not computed. */
+    private double[] _ut;
+
+    /** The right singular vectors as the rows of a k x n array, or null if
+     * they were not computed. */
+    private double[] _vt;
+}
@@ -0,0 +1,200 @@
+package matrix_calculator;
+
+import java.util.Arrays;
+
+/** The Cholesky factorization PAP^T = LL^T of a symmetric positive definite
+ * SparseMatrix A, where P is the fill-reducing ordering of a SparseSymbolic
+ * analysis and L is sparse lower triangular with a positive diagonal. Both
+ * triangles of A must be stored. L is computed a row at a time, the pattern
+ * of each row being read off the elimination tree, and is stored by column
+ * with the diagonal entry first.
+ *
+ * The symbolic analysis may be shared between factorizations of matrices
+ * with the same pattern, so that only the numeric work is repeated.
+ *
+ * @author AndyPalan */
+public class SparseCholesky {
+
+    /** Creates the Cholesky factorization of A with a minimum degree
+     * ordering.
+     *
+     * @throws MatrixException */
+    public SparseCholesky(SparseMatrix A) throws MatrixException {
+        this(A, new SparseSymbolic(A));
+    }
+
+    /** Creates the Cholesky factorization of A with the symbolic analysis
+     * S, which must be of a Matrix with the pattern of A.
+     *
+     * @throws MatrixException */
+    public SparseCholesky(SparseMatrix A, SparseSymbolic S) throws MatrixException {
+        SparseMatrix a = S.check(A);
+        _symbolic = S;
+        _n = S._n;
+        int nnz = S.getFactorNonZeros();
+        _indices = new int[nnz];
+        _values = new double[nnz];
+        if (!isSymmetric(a)) {
+            return;
+        }
+        _positiveDefinite = factor(a.values());
+    }
+
+    /** Returns true if the CSC Matrix A equals its transpose to within
+     * epsilon. */
+    private static boolean isSymmetric(SparseMatrix A) throws MatrixException {
+        SparseMatrix T = A.getTranspose().toCSC();
+        int n = A.getWidth(), nnz = A.nonZeros();
+        if (!Arrays.equals(A.pointers(), 0, n + 1, T.pointers(), 0, n + 1)
+            || !Arrays.equals(A.indices(), 0, nnz, T.indices(), 0, nnz)) {
+            return false;
+        }
+        double[] a = A.values(), t = T.values();
+        for (int p = 0; p < nnz; p++) {
+            if (Math.abs(a[p] - t[p]) >= Matrix.epsilon) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Computes L from the values AX of A in the order of the CSC pattern of
+     * the symbolic analysis, returning false if a pivot is not positive. */
+    private boolean factor(double[] ax) {
+        SparseSymbolic s = _symbolic;
+        int n = _n;
+        int[] up = s._upperPointers, ui = s._upperIndices, map = s._map;
+        double[] c = new double[ui.length];
+        for (int p = 0; p < map.length; p++) {
+            if (map[p] >= 0) {
+                c[map[p]] = ax[p];
+            }
+        }
+        int[] lp = s._columnPointers;
+        int[] li = _indices;
+        double[] lx = _values;
+        int[] next = Arrays.copyOf(lp, n);
+        int[] stack = new int[n];
+        int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+        double[] x = new double[n];
+        for (int k = 0; k < n; k++) {
+            int top = s.reach(k, stack, mark);
+            x[k] = 0;
+            for (int p = up[k]; p < up[k + 1]; p++) {
+                x[ui[p]] = c[p];
+            }
+            double d = x[k];
+            x[k] = 0;
+            for (; top < n; top++) {
+                int i = stack[top];
+                double lki = x[i] / lx[lp[i]];
+                x[i] = 0;
+                for (int p = lp[i] + 1; p < next[i]; p++) {
+                    x[li[p]] -= lx[p] * lki;
+                }
+                d -= lki * lki;
+                int p = next[i]++;
+                li[p] = k;
+                lx[p] = lki;
+            }
+            if (!(d > 0)) {
+                return false;
+            }
+            int p = next[k]++;
+            li[p] = k;
+            lx[p] = Math.sqrt(d);
+        }
+        return true;
+    }
+
+    /** Returns true if the factored Matrix is symmetric positive definite,
+     * in which case the factorization exists. */
+    public boolean isPositiveDefinite() {
+        return _positiveDefinite;
+    }
+
+    /** Returns the symbolic analysis used by this factorization. */
+    public SparseSymbolic getSymbolic() {
+        return _symbolic;
+    }
+
+    /** Returns the natural logarithm of the determinant of the factored
+     * Matrix.
+     *
+     * @throws MatrixException */
+    public double getLogDet() throws MatrixException {
+        check();
+        int[] lp = _symbolic._columnPointers;
+        double sum = 0;
+        for (int k = 0; k < _n; k++) {
+            sum += Math.log(_values[lp[k]]);
+        }
+        return 2 * sum;
+    }
+
+    /** Returns the solution x to Ax = B.
+     *
+     * @throws MatrixException */
+    public Vector solve(Vector b) throws MatrixException {
+        check();
+        if (b.numRows() != _n) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        int n = _n;
+        int[] perm = _symbolic._perm, lp = _symbolic._columnPointers;
+        int[] li = _indices;
+        double[] lx = _values;
+        double[] bv = b.values();
+        double[] y = new double[n];
+        for (int k = 0; k < n; k++) {
+            y[k] = bv[perm[k]];
+        }
+        // Ly = Pb
+        for (int j = 0; j < n; j++) {
+            y[j] /= lx[lp[j]];
+            for (int p = lp[j] + 1; p < lp[j + 1]; p++) {
+                y[li[p]] -= lx[p] * y[j];
+            }
+        }
+        // L^T z = y
+        for (int j = n - 1; j >= 0; j--) {
+            for (int p = lp[j] + 1; p < lp[j + 1]; p++) {
+                y[j] -= lx[p] * y[li[p]];
+            }
+            y[j] /= lx[lp[j]];
+        }
+        double[] x = new double[n];
+        for (int k = 0; k < n; k++) {
+            x[perm[k]] = y[k];
+        }
+        return new Vector(x);
+    }
+
+    /** Throws a MatrixException if the factored Matrix is not positive
+     * definite.
+     *
+     * @throws MatrixException */
+    private void check() throws MatrixException {
+        if (!_positiveDefinite) {
+            throw new MatrixException("This matrix is not positive definite.");
+        }
+    }
+
+    /** The symbolic analysis of the factored Matrix. */
+    private final SparseSymbolic _symbolic;
+
+    /** The order of the factored Matrix. */
+    private final int _n;
+
+    /** The row indices and values of L by column, in the columns given by
+     * the symbolic analysis, with the diagonal entry first. */
+    private final int[] _indices;
+
+    /** See _indices. */
+    private final double[] _values;
+
+    /** True if the factored Matrix is symmetric positive definite. */
+    private boolean _positiveDefinite;
+}
@@ -0,0 +1,247 @@
+package matrix_calculator;
+
+import java.util.Arrays;
+
+/** The LU factorization PAQ = LU of a square SparseMatrix A, where Q is the
+ * fill-reducing column ordering of a SparseSymbolic analysis, P is chosen
+ * by threshold partial pivoting, L is sparse unit lower triangular and U
+ * sparse upper triangular. A is factored a column at a time (the
+ * Gilbert-Peierls algorithm): each column of L and U comes from a sparse
+ * triangular solve with the columns of L found so far, whose pattern is
+ * found by a depth-first search of the graph of L, so that the work is
+ * proportional to the floating point operations done.
+ *
+ * A pivot on the diagonal is kept whenever it is at least THRESHOLD times
+ * the largest candidate in its column, so that a fill-reducing symmetric
+ * ordering survives for matrices that need little pivoting.
+ *
+ * @author AndyPalan */
+public class SparseLU {
+
+    /** The fraction of the largest candidate a diagonal pivot must reach. */
+    static final double THRESHOLD = 0.1;
+
+    /** Creates the LU factorization of A with a minimum degree ordering.
+     *
+     * @throws MatrixException */
+    public SparseLU(SparseMatrix A) throws MatrixException {
+        this(A, new SparseSymbolic(A));
+    }
+
+    /** Creates the LU factorization of A with the column ordering of the
+     * symbolic analysis S, which must be of a Matrix with the pattern of A.
+     *
+     * @throws MatrixException */
+    public SparseLU(SparseMatrix A, SparseSymbolic S) throws MatrixException {
+        SparseMatrix a = S.check(A);
+        _symbolic = S;
+        _n = S._n;
+        int size = S.getFactorNonZeros();
+        _lp = new int[_n + 1];
+        _up = new int[_n + 1];
+        _li = new int[size];
+        _lx = new double[size];
+        _ui = new int[size];
+        _ux = new double[size];
+        _pinv = new int[_n];
+        _singular = !factor(a);
+    }
+
+    /** Computes L and U from the CSC Matrix A, returning false if A is
+     * singular. */
+    private boolean factor(SparseMatrix A) {
+        int n = _n;
+        int[] ap = A.pointers(), ai = A.indices();
+        double[] ax = A.values();
+        int[] q = _symbolic._perm;
+        int[] pinv = _pinv;
+        Arrays.fill(pinv, -1);
+        int[] xi = new int[2 * n];
+        int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+        double[] x = new double[n];
+        int lnz = 0, unz = 0;
+        for (int k = 0; k < n; k++) {
+            _lp[k] = lnz;
+            _up[k] = unz;
+            if (lnz + n > _li.length) {
+                _li = Arrays.copyOf(_li, 2 * _li.length + n);
+                _lx = Arrays.copyOf(_lx, _li.length);
+            }
+            if (unz + n > _ui.length) {
+                _ui = Arrays.copyOf(_ui, 2 * _ui.length + n);
+                _ux = Arrays.copyOf(_ux, _ui.length);
+            }
+            int col = q[k];
+            // Solve Lx = A(:, col) over the pattern reached from A(:, col)
+            int top = n;
+            for (int p = ap[col]; p < ap[col + 1]; p++) {
+                if (mark[ai[p]] != k) {
+                    top = search(ai[p], k, top, xi, mark);
+                }
+            }
+            for (int p = top; p < n; p++) {
+                x[xi[p]] = 0;
+            }
+            for (int p = ap[col]; p < ap[col + 1]; p++) {
+                x[ai[p]] = ax[p];
+            }
+            for (int px = top; px < n; px++) {
+                int j = xi[px], J = pinv[j];
+                if (J < 0) {
+                    continue;
+                }
+                double xj = x[j];
+                for (int p = _lp[J] + 1; p < _lp[J + 1]; p++) {
+                    x[_li[p]] -= _lx[p] * xj;
+                }
+            }
+            // Choose the pivot among the rows not yet pivotal
+            int ipiv = -1;
+            double largest = -1;
+            for (int p = top; p < n; p++) {
+                int i = xi[p];
+                if (pinv[i] < 0) {
+                    if (Math.abs(x[i]) > largest) {
+                        largest = Math.abs(x[i]);
+                        ipiv = i;
+                    }
+                } else {
+                    _ui[unz] = pinv[i];
+                    _ux[unz++] = x[i];
+                }
+            }
+            if (ipiv < 0 || largest < Matrix.epsilon) {
+                return false;
+            }
+            if (pinv[col] < 0 && mark[col] == k && Math.abs(x[col]) >= THRESHOLD * largest) {
+                ipiv = col;
+            }
+            double pivot = x[ipiv];
+            _ui[unz] = k;
+            _ux[unz++] = pivot;
+            pinv[ipiv] = k;
+            _li[lnz] = ipiv;
+            _lx[lnz++] = 1;
+            for (int p = top; p < n; p++) {
+                int i = xi[p];
+                if (pinv[i] < 0) {
+                    _li[lnz] = i;
+                    _lx[lnz++] = x[i] / pivot;
+                }
+                x[i] = 0;
+            }
+        }
+        _lp[n] = lnz;
+        _up[n] = unz;
+        for (int p = 0; p < lnz; p++) {
+            _li[p] = pinv[_li[p]];
+        }
+        return true;
+    }
+
+    /** Pushes onto XI[top..n-1], in topological order, the rows reachable
+     * from row J in the graph of the columns of L found so far which are
+     * not yet marked with STAMP in MARK, and returns the new top. The
+     * search is iterative, using XI[0..] as its stack and XI[n..] for the
+     * position reached in each column on it. */
+    private int search(int j, int stamp, int top, int[] xi, int[] mark) {
+        int n = _n;
+        int head = 0;
+        xi[0] = j;
+        while (head >= 0) {
+            j = xi[head];
+            int J = _pinv[j];
+            if (mark[j] != stamp) {
+                mark[j] = stamp;
+                xi[n + head] = J < 0 ? 0 : _lp[J];
+            }
+            boolean done = true;
+            int end = J < 0 ? 0 : _lp[J + 1];
+            for (int p = xi[n + head]; p < end; p++) {
+                int i = _li[p];
+                if (mark[i] != stamp) {
+                    xi[n + head] = p;
+                    xi[++head] = i;
+                    done = false;
+                    break;
+                }
+            }
+            if (done) {
+                head--;
+                xi[--top] = j;
+            }
+        }
+        return top;
+    }
+
+    /** Returns true if the factored Matrix is singular, i.e. if some column
+     * has no candidate pivot of at least epsilon. */
+    public boolean isSingular() {
+        return _singular;
+    }
+
+    /** Returns the symbolic analysis used by this factorization. */
+    public SparseSymbolic getSymbolic() {
+        return _symbolic;
+    }
+
+    /** Returns the solution x to Ax = B.
+     *
+     * @throws MatrixException */
+    public Vector solve(Vector b) throws MatrixException {
+        if (_singular) {
+            throw new MatrixException("This matrix is singular.");
+        }
+        if (b.numRows() != _n) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        int n = _n;
+        double[] bv = b.values();
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            y[_pinv[i]] = bv[i];
+        }
+        // Ly = Pb, with the unit diagonal first in each column
+        for (int j = 0; j < n; j++) {
+            for (int p = _lp[j] + 1; p < _lp[j + 1]; p++) {
+                y[_li[p]] -= _lx[p] * y[j];
+            }
+        }
+        // Uz = y, with the diagonal last in each column
+        for (int j = n - 1; j >= 0; j--) {
+            y[j] /= _ux[_up[j + 1] - 1];
+            for (int p = _up[j]; p < _up[j + 1] - 1; p++) {
+                y[_ui[p]] -= _ux[p] * y[j];
+            }
+        }
+        int[] q = _symbolic._perm;
+        double[] x = new double[n];
+        for (int k = 0; k < n; k++) {
+            x[q[k]] = y[k];
+        }
+        return new Vector(x);
+    }
+
+    /** The symbolic analysis of the factored Matrix. */
+    private final SparseSymbolic _symbolic;
+
+    /** The order of the factored Matrix. */
+    private final int _n;
+
+    /** The column pointers of L and U. */
+    private final int[] _lp, _up;
+
+    /** The row indices of L and U by column. */
+    private int[] _li, _ui;
+
+    /** The values of L and U by column. */
+    private double[] _lx, _ux;
+
+    /** Row i of A is row _pinv[i] of PA. */
+    private final int[] _pinv;
+
+    /** True if some column has no candidate pivot of at least epsilon. */
+    private final boolean _singular;
+}
@@ -0,0 +1,561 @@
+package matrix_calculator;
+
+import java.util.Arrays;
+
+/** A Matrix stored in compressed sparse form, holding only its non-zero
+ * entries. In compressed sparse row (CSR) form, the entries of row r are
+ * values[pointers[r] .. pointers[r + 1]), in columns indices[...], each row
+ * sorted by column; compressed sparse column (CSC) form is the same with the
+ * roles of rows and columns exchanged. Indices in the arrays start at 0,
+ * while rows and columns passed to get() start at 1, as for Matrix.
+ *
+ * Storage is O(nnz). The transpose of a CSR Matrix is the CSC Matrix with
+ * the same arrays, so transposing costs nothing.
+ *
+ * @author AndyPalan */
+public class SparseMatrix {
+
+    /** Creates a new ROWS x COLS sparse Matrix in CSR form if CSR is true
+     * and in CSC form otherwise, sharing the arrays POINTERS, INDICES and
+     * VALUES, whose indices must be sorted within each row (or column).
+     *
+     * @throws MatrixException */
+    public SparseMatrix(int rows, int cols, int[] pointers, int[] indices,
+                        double[] values, boolean csr) throws MatrixException {
+        this(rows, cols, pointers, indices, values, csr, true);
+    }
+
+    /** Creates a new sparse Matrix as above, checking that the arrays are
+     * consistent only if CHECK is true.
+     *
+     * @throws MatrixException */
+    private SparseMatrix(int rows, int cols, int[] pointers, int[] indices,
+                         double[] values, boolean csr, boolean check)
+        throws MatrixException {
+        if (check) {
+            check(rows, cols, pointers, indices, values, csr);
+        }
+        _height = rows;
+        _width = cols;
+        _pointers = pointers;
+        _indices = indices;
+        _values = values;
+        _csr = csr;
+    }
+
+    /** Throws a MatrixException unless POINTERS, INDICES and VALUES
+     * describe a ROWS x COLS Matrix in CSR (if CSR) or CSC form.
+     *
+     * @throws MatrixException */
+    private static void check(int rows, int cols, int[] pointers, int[] indices,
+                              double[] values, boolean csr) throws MatrixException {
+        if (rows < 1 || cols < 1) {
+            throw new MatrixException("The dimensions of a matrix must be positive.");
+        }
+        int major = csr ? rows : cols, minor = csr ? cols : rows;
+        boolean valid = pointers.length == major + 1 && pointers[0] == 0
+            && pointers[major] <= indices.length && pointers[major] <= values.length;
+        for (int i = 0; valid && i < major; i++) {
+            valid = pointers[i] <= pointers[i + 1];
+            for (int p = pointers[i]; valid && p < pointers[i + 1]; p++) {
+                valid = indices[p] >= 0 && indices[p] < minor
+                    && (p == pointers[i] || indices[p] > indices[p - 1]);
+            }
+        }
+        if (!valid) {
+            throw new MatrixException("The compressed arrays do not match the"
+                            + " dimensions of the matrix.");
+        }
+    }
+
+    /** Creates a new sparse Matrix in CSR form holding the non-zero entries
+     * of the dense Matrix A.
+     *
+     * @throws MatrixException */
+    public SparseMatrix(Matrix A) throws MatrixException {
+        int m = A.getHeight(), n = A.getWidth();
+        double[] a = A.data();
+        int off = A.offset(), rs = A.stride(), cs = A.colStride();
+        int nnz = 0;
+        for (int r = 0; r < m; r++) {
+            for (int c = 0; c < n; c++) {
+                if (a[off + r * rs + c * cs] != 0) {
+                    nnz++;
+                }
+            }
+        }
+        _height = m;
+        _width = n;
+        _pointers = new int[m + 1];
+        _indices = new int[nnz];
+        _values = new double[nnz];
+        _csr = true;
+        int p = 0;
+        for (int r = 0; r < m; r++) {
+            for (int c = 0; c < n; c++) {
+                double value = a[off + r * rs + c * cs];
+                if (value != 0) {
+                    _indices[p] = c;
+                    _values[p++] = value;
+                }
+            }
+            _pointers[r + 1] = p;
+        }
+    }
+
+    /** Returns a new ROWS x COLS sparse Matrix in CSR form with entries
+     * VALUES[i] at row ROW[i] and column COL[i] (starting at 1). Entries
+     * given more than once are added together.
+     *
+     * @throws MatrixException */
+    public static SparseMatrix fromTriplets(int rows, int cols, int[] row, int[] col,
+                                            double[] values) throws MatrixException {
+        if (row.length != col.length || row.length != values.length) {
+            throw new MatrixException("The triplet arrays do not have the same"
+                            + " length.");
+        }
+        int nnz = values.length;
+        for (int k = 0; k < nnz; k++) {
+            if (row[k] < 1 || row[k] > rows || col[k] < 1 || col[k] > cols) {
+                throw new MatrixException("The index (" + row[k] + ", " + col[k]
+                                          + ") is out of range.");
+            }
+        }
+        // Bucket by column, then by row, so that each row ends up sorted
+        int[] colPointers = new int[cols + 1];
+        for (int k = 0; k < nnz; k++) {
+            colPointers[col[k]]++;
+        }
+        prefixSum(colPointers);
+        int[] byCol = new int[nnz];
+        int[] next = Arrays.copyOf(colPointers, cols);
+        for (int k = 0; k < nnz; k++) {
+            byCol[next[col[k] - 1]++] = k;
+        }
+        int[] pointers = new int[rows + 1];
+        for (int k = 0; k < nnz; k++) {
+            pointers[row[k]]++;
+        }
+        prefixSum(pointers);
+        int[] indices = new int[nnz];
+        double[] sorted = new double[nnz];
+        next = Arrays.copyOf(pointers, rows);
+        for (int k : byCol) {
+            int p = next[row[k] - 1]++;
+            indices[p] = col[k] - 1;
+            sorted[p] = values[k];
+        }
+        // Merge duplicates
+        int p = 0;
+        for (int r = 0; r < rows; r++) {
+            int start = p;
+            for (int q = pointers[r]; q < pointers[r + 1]; q++) {
+                if (p > start && indices[p - 1] == indices[q]) {
+                    sorted[p - 1] += sorted[q];
+                } else {
+                    indices[p] = indices[q];
+                    sorted[p++] = sorted[q];
+                }
+            }
+            pointers[r] = start;
+        }
+        pointers[rows] = p;
+        return new SparseMatrix(rows, cols, pointers, Arrays.copyOf(indices, p),
+                                Arrays.copyOf(sorted, p), true);
+    }
+
+    /** Replaces each entry of P with the sum of itself and the entries
+     * before it. */
+    private static void prefixSum(int[] p) {
+        for (int i = 1; i < p.length; i++) {
+            p[i] += p[i - 1];
+        }
+    }
+
+    /** Returns the integer height (number of rows) of this Matrix. */
+    public int getHeight() {
+        return _height;
+    }
+
+    /** Returns the integer width (number of columns) of this Matrix. */
+    public int getWidth() {
+        return _width;
+    }
+
+    /** Returns the number of stored entries of this Matrix. */
+    public int nonZeros() {
+        return _pointers[_csr ? _height : _width];
+    }
+
+    /** Returns true if this Matrix is in CSR form, false if it is in CSC
+     * form. */
+    public boolean isCSR() {
+        return _csr;
+    }
+
+    /** Returns the entry at row R and column C (index starting at 1).
+     *
+     * @throws MatrixException */
+    public double get(int r, int c) throws MatrixException {
+        if (r < 1 || r > _height || c < 1 || c > _width) {
+            throw new MatrixException("The index (" + r + ", " + c + ") is out of range.");
+        }
+        int major = _csr ? r - 1 : c - 1, minor = _csr ? c - 1 : r - 1;
+        int p = Arrays.binarySearch(_indices, _pointers[major], _pointers[major + 1], minor);
+        return p >= 0 ? _values[p] : 0;
+    }
+
+    /** Returns the number of non-zero entries in column C (index starting
+     * at 1). */
+    public int count(int c) {
+        if (!_csr) {
+            return _pointers[c] - _pointers[c - 1];
+        }
+        int count = 0;
+        for (int r = 0; r < _height; r++) {
+            if (Arrays.binarySearch(_indices, _pointers[r], _pointers[r + 1], c - 1) >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Returns the transpose of this Matrix, which shares its arrays.
+     *
+     * @throws MatrixException */
+    public SparseMatrix getTranspose() throws MatrixException {
+        return new SparseMatrix(_width, _height, _pointers, _indices, _values, !_csr, false);
+    }
+
+    /** Returns this Matrix in CSR form.
+     *
+     * @throws MatrixException */
+    public SparseMatrix toCSR() throws MatrixException {
+        return _csr ? this : convert();
+    }
+
+    /** Returns this Matrix in CSC form.
+     *
+     * @throws MatrixException */
+    public SparseMatrix toCSC() throws MatrixException {
+        return _csr ? convert() : this;
+    }
+
+    /** Returns this Matrix in the other compressed form.
+     *
+     * @throws MatrixException */
+    private SparseMatrix convert() throws MatrixException {
+        int major = _csr ? _height : _width, minor = _csr ? _width : _height;
+        int nnz = nonZeros();
+        int[] pointers = new int[minor + 1];
+        for (int p = 0; p < nnz; p++) {
+            pointers[_indices[p] + 1]++;
+        }
+        prefixSum(pointers);
+        int[] next = Arrays.copyOf(pointers, minor);
+        int[] indices = new int[nnz];
+        double[] values = new double[nnz];
+        for (int i = 0; i < major; i++) {
+            for (int p = _pointers[i]; p < _pointers[i + 1]; p++) {
+                int q = next[_indices[p]]++;
+                indices[q] = i;
+                values[q] = _values[p];
+            }
+        }
+        return new SparseMatrix(_height, _width, pointers, indices, values, !_csr, false);
+    }
+
+    /** Returns this Matrix as a dense Matrix, which is a SquareMatrix if this
+     * Matrix is square.
+     *
+     * @throws MatrixException */
+    public Matrix toMatrix() throws MatrixException {
+        Matrix A = _height == _width ? new SquareMatrix(_height) : new Matrix(_height, _width);
+        double[] a = A.data();
+        int major = _csr ? _height : _width;
+        int ms = _csr ? _width : 1, is = _csr ? 1 : _width;
+        for (int i = 0; i < major; i++) {
+            for (int p = _pointers[i]; p < _pointers[i + 1]; p++) {
+                a[i * ms + _indices[p] * is] = _values[p];
+            }
+        }
+        return A;
+    }
+
+    /** Returns the product of this Matrix and the vector X.
+     *
+     * @throws MatrixException */
+    public Vector multiply(Vector x) throws MatrixException {
+        if (x.numRows() != _width) {
+            throw new MatrixException("The vector does not have the"
+                            + " appropriate dimension.");
+        }
+        double[] y = new double[_height];
+        multiply(x.values(), y);
+        return new Vector(y);
+    }
+
+    /** Sets Y to the product of this Matrix and X. */
+    void multiply(double[] x, double[] y) {
+        int[] ptr = _pointers, idx = _indices;
+        double[] val = _values;
+        if (_csr) {
+            Parallel.forRows(_height, Math.max(1, nonZeros() / _height), (from, to) -> {
+                for (int r = from; r < to; r++) {
+                    double sum = 0;
+                    for (int p = ptr[r]; p < ptr[r + 1]; p++) {
+                        sum += val[p] * x[idx[p]];
+                    }
+                    y[r] = sum;
+                }
+            });
+        } else {
+            Arrays.fill(y, 0);
+            for (int c = 0; c < _width; c++) {
+                double xc = x[c];
+                if (xc != 0) {
+                    for (int p = ptr[c]; p < ptr[c + 1]; p++) {
+                        y[idx[p]] += val[p] * xc;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Returns the sparse product A x B, in CSR form. */
+    static SparseMatrix multiply(SparseMatrix A, SparseMatrix B) throws MatrixException {
+        SparseMatrix a = A.toCSR(), b = B.toCSR();
+        int m = a._height, n = b._width;
+        int[] ap = a._pointers, ai = a._indices, bp = b._pointers, bi = b._indices;
+        double[] av = a._values, bv = b._values;
+        long work = Math.max(1, (long) a.nonZeros() * Math.max(1, b.nonZeros() / b._height) / m);
+        // Count the entries of each row of the product
+        int[] pointers = new int[m + 1];
+        Parallel.forRows(m, work, (from, to) -> {
+            Workspace space = Workspace.of(n);
+            int[] mark = space._mark;
+            for (int r = from; r < to; r++) {
+                int count = 0, stamp = space.stamp();
+                for (int p = ap[r]; p < ap[r + 1]; p++) {
+                    int k = ai[p];
+                    for (int q = bp[k]; q < bp[k + 1]; q++) {
+                        if (mark[bi[q]] != stamp) {
+                            mark[bi[q]] = stamp;
+                            count++;
+                        }
+                    }
+                }
+                pointers[r + 1] = count;
+            }
+        });
+        prefixSum(pointers);
+        int[] indices = new int[pointers[m]];
+        double[] values = new double[pointers[m]];
+        // Accumulate each row in a dense workspace
+        Parallel.forRows(m, work, (from, to) -> {
+            Workspace space = Workspace.of(n);
+            int[] mark = space._mark;
+            double[] w = space._values;
+            for (int r = from; r < to; r++) {
+                int start = pointers[r], end = start, stamp = space.stamp();
+                for (int p = ap[r]; p < ap[r + 1]; p++) {
+                    int k = ai[p];
+                    double ark = av[p];
+                    for (int q = bp[k]; q < bp[k + 1]; q++) {
+                        int c = bi[q];
+                        if (mark[c] != stamp) {
+                            mark[c] = stamp;
+                            indices[end++] = c;
+                            w[c] = ark * bv[q];
+                        } else {
+                            w[c] += ark * bv[q];
+                        }
+                    }
+                }
+                Arrays.sort(indices, start, end);
+                for (int p = start; p < end; p++) {
+                    values[p] = w[indices[p]];
+                }
+            }
+        });
+        return new SparseMatrix(m, n, pointers, indices, values, true, false);
+    }
+
+    /** Sets the dense Matrix C to be the product A x B of the sparse A and
+     * the dense B. */
+    static void multiply(SparseMatrix A, Matrix B, Matrix C) throws MatrixException {
+        SparseMatrix a = A.toCSR();
+        int n = B.getWidth();
+        int[] ap = a._pointers, ai = a._indices;
+        double[] av = a._values;
+        double[] b = B.data(), c = C.data();
+        int bOff = B.offset(), bs = B.stride(), bcs = B.colStride();
+        int cOff = C.offset(), cs = C.stride();
+        Parallel.forRows(a._height, Math.max(1, (long) a.nonZeros() * n / a._height),
+                         (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int cr = cOff + r * cs;
+                Arrays.fill(c, cr, cr + n, 0);
+                for (int p = ap[r]; p < ap[r + 1]; p++) {
+                    double arp = av[p];
+                    int br = bOff + ai[p] * bs;
+                    for (int j = 0; j < n; j++) {
+                        c[cr + j] += arp * b[br + j * bcs];
+                    }
+                }
+            }
+        });
+    }
+
+    /** Sets the dense Matrix C to be the product A x B of the dense A and
+     * the sparse B. */
+    static void multiply(Matrix A, SparseMatrix B, Matrix C) throws MatrixException {
+        SparseMatrix b = B.toCSR();
+        int k = A.getWidth(), n = b._width;
+        int[] bp = b._pointers, bi = b._indices;
+        double[] bv = b._values;
+        double[] a = A.data(), c = C.data();
+        int aOff = A.offset(), as = A.stride(), acs = A.colStride();
+        int cOff = C.offset(), cs = C.stride();
+        Parallel.forRows(A.getHeight(), Math.max(1, (long) k + b.nonZeros()), (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int cr = cOff + r * cs;
+                Arrays.fill(c, cr, cr + n, 0);
+                int ar = aOff + r * as;
+                for (int p = 0; p < k; p++) {
+                    double arp = a[ar + p * acs];
+                    if (arp != 0) {
+                        for (int q = bp[p]; q < bp[p + 1]; q++) {
+                            c[cr + bi[q]] += arp * bv[q];
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /** Returns the sparse Matrix KA x A + KB x B, in CSR form, where A and B
+     * have the same dimensions. */
+    static SparseMatrix combine(SparseMatrix A, double kA, SparseMatrix B, double kB)
+        throws MatrixException {
+        SparseMatrix a = A.toCSR(), b = B.toCSR();
+        int m = a._height;
+        int[] pointers = new int[m + 1];
+        int[] indices = new int[a.nonZeros() + b.nonZeros()];
+        double[] values = new double[indices.length];
+        int q = 0;
+        for (int r = 0; r < m; r++) {
+            int i = a._pointers[r], iEnd = a._pointers[r + 1];
+            int j = b._pointers[r], jEnd = b._pointers[r + 1];
+            while (i < iEnd || j < jEnd) {
+                int ci = i < iEnd ? a._indices[i] : Integer.MAX_VALUE;
+                int cj = j < jEnd ? b._indices[j] : Integer.MAX_VALUE;
+                double value;
+                if (ci < cj) {
+                    value = kA * a._values[i++];
+                } else if (cj < ci) {
+                    value = kB * b._values[j++];
+                } else {
+                    value = kA * a._values[i++] + kB * b._values[j++];
+                }
+                if (value != 0) {
+                    indices[q] = Math.min(ci, cj);
+                    values[q++] = value;
+                }
+            }
+            pointers[r + 1] = q;
+        }
+        return new SparseMatrix(m, a._width, pointers, Arrays.copyOf(indices, q),
+                                Arrays.copyOf(values, q), true, false);
+    }
+
+    /** Returns a copy of this Matrix with every entry multiplied by K.
+     *
+     * @throws MatrixException */
+    SparseMatrix scale(double k) throws MatrixException {
+        int nnz = nonZeros();
+        double[] values = new double[nnz];
+        for (int p = 0; p < nnz; p++) {
+            values[p] = k * _values[p];
+        }
+        return new SparseMatrix(_height, _width, _pointers.clone(),
+                                Arrays.copyOf(_indices, nnz), values, _csr, false);
+    }
+
+    /** Returns the pointer array of this Matrix. */
+    int[] pointers() {
+        return _pointers;
+    }
+
+    /** Returns the index array of this Matrix. */
+    int[] indices() {
+        return _indices;
+    }
+
+    /** Returns the value array of this Matrix. */
+    double[] values() {
+        return _values;
+    }
+
+    /** The dense workspace a thread accumulates rows of a sparse product
+     * in, kept between products so that each tile of rows does not
+     * allocate and clear arrays as wide as the product. Entries of the
+     * workspace are valid only where _mark holds the current stamp, so it
+     * never needs to be cleared between rows. */
+    private static final class Workspace {
+
+        /** Returns the workspace of the calling thread, with room for N
+         * columns. A tile using it must not start other kernels, which
+         * could run on the same thread. */
+        static Workspace of(int n) {
+            Workspace space = WORKSPACE.get();
+            if (space._mark.length < n) {
+                space._mark = new int[n];
+                space._values = new double[n];
+                space._stamp = 0;
+            }
+            return space;
+        }
+
+        /** Returns a stamp that no entry of _mark holds yet. */
+        int stamp() {
+            if (_stamp == Integer.MAX_VALUE) {
+                Arrays.fill(_mark, 0);
+                _stamp = 0;
+            }
+            return ++_stamp;
+        }
+
+        /** The stamp of the row each column was last touched by. */
+        int[] _mark = new int[0];
+
+        /** The accumulated value of each column touched by the current row. */
+        double[] _values = new double[0];
+
+        /** The last stamp handed out. */
+        private int _stamp;
+    }
+
+    /** Each thread's workspace for sparse products. */
+    private static final ThreadLocal<Workspace> WORKSPACE =
+        ThreadLocal.withInitial(Workspace::new);
+
+    /** The height of this Matrix. */
+    private final int _height;
+
+    /** The width of this Matrix. */
+    private final int _width;
+
+    /** Entries of row (CSR) or column (CSC) i are stored from _pointers[i]
+     * up to _pointers[i + 1]. */
+    private final int[] _pointers;
+
+    /** The column (CSR) or row (CSC) of each stored entry, from 0. */
+    private final int[] _indices;
+
+    /** The value of each stored entry. */
+    private final double[] _values;
+
+    /** True if this Matrix is in CSR form, false if in CSC form. */
+    private final boolean _csr;
+}
@@ -0,0 +1,427 @@
+package matrix_calculator;
+
+import java.util.Arrays;
+
+/** The symbolic analysis of a square SparseMatrix for direct factorization:
+ * a fill-reducing ordering P of the pattern of A + A^T, the elimination
+ * tree of PAP^T and the column structure of its Cholesky factor. The
+ * analysis depends only on where the entries of A are, not on their values,
+ * so it may be reused by SparseCholesky and SparseLU for any Matrix with
+ * the same pattern, skipping straight to the numeric factorization.
+ *
+ * @author AndyPalan */
+public class SparseSymbolic {
+
+    /** The fill-reducing orderings available. */
+    public enum Ordering {
+        /** The rows and columns in their given order. */
+        NATURAL,
+        /** Reverse Cuthill-McKee, which reduces the bandwidth. */
+        REVERSE_CUTHILL_MCKEE,
+        /** Minimum degree, which reduces the fill-in. */
+        MINIMUM_DEGREE
+    }
+
+    /** Creates the symbolic analysis of A with a minimum degree ordering.
+     *
+     * @throws MatrixException */
+    public SparseSymbolic(SparseMatrix A) throws MatrixException {
+        this(A, Ordering.MINIMUM_DEGREE);
+    }
+
+    /** Creates the symbolic analysis of A with ORDERING.
+     *
+     * @throws MatrixException */
+    public SparseSymbolic(SparseMatrix A, Ordering ordering) throws MatrixException {
+        if (A.getHeight() != A.getWidth()) {
+            throw new MatrixException("This matrix is not square.");
+        }
+        SparseMatrix a = A.toCSC();
+        int n = a.getWidth();
+        _n = n;
+        _pointers = Arrays.copyOf(a.pointers(), n + 1);
+        _indices = Arrays.copyOf(a.indices(), a.nonZeros());
+        int[][] graph = graph(_pointers, _indices, n);
+        if (ordering == Ordering.REVERSE_CUTHILL_MCKEE) {
+            _perm = reverseCuthillMcKee(graph, n);
+        } else if (ordering == Ordering.MINIMUM_DEGREE) {
+            _perm = minimumDegree(graph, n);
+        } else {
+            _perm = new int[n];
+            for (int k = 0; k < n; k++) {
+                _perm[k] = k;
+            }
+        }
+        _pinv = new int[n];
+        for (int k = 0; k < n; k++) {
+            _pinv[_perm[k]] = k;
+        }
+        permute();
+        _parent = eliminationTree();
+        _columnPointers = columnCounts();
+    }
+
+    /** Returns the adjacency lists of the graph of A + A^T, without
+     * self-loops, where A is the N x N CSC pattern POINTERS, INDICES. */
+    private static int[][] graph(int[] pointers, int[] indices, int n) {
+        int[] degree = new int[n];
+        for (int j = 0; j < n; j++) {
+            for (int p = pointers[j]; p < pointers[j + 1]; p++) {
+                int i = indices[p];
+                if (i != j) {
+                    degree[i]++;
+                    degree[j]++;
+                }
+            }
+        }
+        int[][] adj = new int[n][];
+        for (int i = 0; i < n; i++) {
+            adj[i] = new int[degree[i]];
+        }
+        int[] size = new int[n];
+        for (int j = 0; j < n; j++) {
+            for (int p = pointers[j]; p < pointers[j + 1]; p++) {
+                int i = indices[p];
+                if (i != j) {
+                    adj[i][size[i]++] = j;
+                    adj[j][size[j]++] = i;
+                }
+            }
+        }
+        // Remove the duplicates left by entries present in both triangles
+        for (int i = 0; i < n; i++) {
+            int[] list = adj[i];
+            Arrays.sort(list);
+            int len = 0;
+            for (int k = 0; k < list.length; k++) {
+                if (len == 0 || list[len - 1] != list[k]) {
+                    list[len++] = list[k];
+                }
+            }
+            adj[i] = Arrays.copyOf(list, len);
+        }
+        return adj;
+    }
+
+    /** Returns the reverse Cuthill-McKee ordering of the N-node graph ADJ:
+     * a breadth-first search from a pseudo-peripheral node of each
+     * component, visiting neighbours in increasing order of degree, with
+     * the resulting order reversed. */
+    private static int[] reverseCuthillMcKee(int[][] adj, int n) {
+        int[] order = new int[n];
+        int[] level = new int[n];
+        boolean[] placed = new boolean[n];
+        int count = 0;
+        for (int start = 0; start < n; start++) {
+            if (placed[start]) {
+                continue;
+            }
+            // Find a pseudo-peripheral node by repeated searches from the
+            // farthest node found
+            int root = start, eccentricity = -1;
+            while (true) {
+                int last = breadthFirst(adj, root, placed, order, count, level);
+                int far = order[last - 1];
+                for (int k = count; k < last; k++) {
+                    int v = order[k];
+                    if (level[v] == level[far] && adj[v].length < adj[far].length) {
+                        far = v;
+                    }
+                }
+                if (level[far] <= eccentricity) {
+                    break;
+                }
+                eccentricity = level[far];
+                root = far;
+            }
+            int last = breadthFirst(adj, root, placed, order, count, level);
+            for (int k = count; k < last; k++) {
+                placed[order[k]] = true;
+            }
+            count = last;
+        }
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            int store = order[i];
+            order[i] = order[j];
+            order[j] = store;
+        }
+        return order;
+    }
+
+    /** Writes the nodes of the component of ROOT in ADJ that are not yet
+     * PLACED into ORDER from FROM, in breadth-first order with neighbours in
+     * increasing order of degree, setting LEVEL to their distance from ROOT.
+     * Returns the index in ORDER after the last node written. */
+    private static int breadthFirst(int[][] adj, int root, boolean[] placed,
+                                    int[] order, int from, int[] level) {
+        int head = from, tail = from;
+        order[tail++] = root;
+        placed[root] = true;
+        level[root] = 0;
+        while (head < tail) {
+            int v = order[head++];
+            int first = tail;
+            for (int u : adj[v]) {
+                if (!placed[u]) {
+                    placed[u] = true;
+                    level[u] = level[v] + 1;
+                    order[tail++] = u;
+                }
+            }
+            // Insertion sort of the new nodes by degree
+            for (int k = first + 1; k < tail; k++) {
+                int u = order[k], j = k - 1;
+                while (j >= first && adj[order[j]].length > adj[u].length) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = u;
+            }
+        }
+        for (int k = from; k < tail; k++) {
+            placed[order[k]] = false;
+        }
+        return tail;
+    }
+
+    /** Returns a minimum degree ordering of the N-node graph ADJ, which is
+     * consumed: the node of least degree in the elimination graph is
+     * eliminated at each step, its neighbours becoming a clique. Nodes are
+     * kept in buckets by degree, so that the next one is found quickly. */
+    private static int[] minimumDegree(int[][] adj, int n) {
+        int[] size = new int[n];
+        int[] head = new int[n], next = new int[n], prev = new int[n];
+        Arrays.fill(head, -1);
+        for (int v = 0; v < n; v++) {
+            size[v] = adj[v].length;
+            link(v, size[v], head, next, prev);
+        }
+        boolean[] eliminated = new boolean[n];
+        int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+        int[] order = new int[n];
+        int min = 0;
+        for (int k = 0; k < n; k++) {
+            while (head[min] < 0) {
+                min++;
+            }
+            int v = head[min];
+            unlink(v, min, head, next, prev);
+            eliminated[v] = true;
+            order[k] = v;
+            int[] clique = adj[v];
+            int cliqueSize = size[v];
+            for (int c = 0; c < cliqueSize; c++) {
+                mark[clique[c]] = k;
+            }
+            // Join each neighbour to the rest of the clique, dropping v
+            for (int c = 0; c < cliqueSize; c++) {
+                int u = clique[c];
+                int[] list = adj[u];
+                int len = 0;
+                for (int p = 0; p < size[u]; p++) {
+                    int w = list[p];
+                    if (w != v && mark[w] != k) {
+                        list[len++] = w;
+                    }
+                }
+                if (len + cliqueSize - 1 > list.length) {
+                    list = Arrays.copyOf(list, Math.max(2 * list.length, len + cliqueSize - 1));
+                }
+                for (int q = 0; q < cliqueSize; q++) {
+                    if (clique[q] != u) {
+                        list[len++] = clique[q];
+                    }
+                }
+                adj[u] = list;
+                unlink(u, size[u], head, next, prev);
+                size[u] = len;
+                link(u, len, head, next, prev);
+                min = Math.min(min, len);
+            }
+            adj[v] = null;
+        }
+        return order;
+    }
+
+    /** Adds node V to the front of the bucket for DEGREE. */
+    private static void link(int v, int degree, int[] head, int[] next, int[] prev) {
+        next[v] = head[degree];
+        prev[v] = -1;
+        if (head[degree] >= 0) {
+            prev[head[degree]] = v;
+        }
+        head[degree] = v;
+    }
+
+    /** Removes node V from the bucket for DEGREE. */
+    private static void unlink(int v, int degree, int[] head, int[] next, int[] prev) {
+        if (prev[v] >= 0) {
+            next[prev[v]] = next[v];
+        } else {
+            head[degree] = next[v];
+        }
+        if (next[v] >= 0) {
+            prev[next[v]] = prev[v];
+        }
+    }
+
+    /** Sets _upperPointers and _upperIndices to the pattern of the upper
+     * triangle of C = PAP^T in CSC form, and _map so that entry p of A is
+     * entry _map[p] of it, or -1 if it lies below the diagonal of C. */
+    private void permute() {
+        int n = _n;
+        int nnz = _pointers[n];
+        int[] counts = new int[n + 1];
+        for (int j = 0; j < n; j++) {
+            for (int p = _pointers[j]; p < _pointers[j + 1]; p++) {
+                int i = _pinv[_indices[p]], c = _pinv[j];
+                if (i <= c) {
+                    counts[c + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < n; c++) {
+            counts[c + 1] += counts[c];
+        }
+        _upperPointers = counts.clone();
+        _upperIndices = new int[counts[n]];
+        _map = new int[nnz];
+        for (int j = 0; j < n; j++) {
+            for (int p = _pointers[j]; p < _pointers[j + 1]; p++) {
+                int i = _pinv[_indices[p]], c = _pinv[j];
+                if (i <= c) {
+                    int q = counts[c]++;
+                    _upperIndices[q] = i;
+                    _map[p] = q;
+                } else {
+                    _map[p] = -1;
+                }
+            }
+        }
+    }
+
+    /** Returns the elimination tree of C, as the parent of each node, or
+     * -1 for a root. */
+    private int[] eliminationTree() {
+        int n = _n;
+        int[] parent = new int[n];
+        int[] ancestor = new int[n];
+        for (int k = 0; k < n; k++) {
+            parent[k] = -1;
+            ancestor[k] = -1;
+            for (int p = _upperPointers[k]; p < _upperPointers[k + 1]; p++) {
+                int i = _upperIndices[p];
+                while (i != -1 && i < k) {
+                    int next = ancestor[i];
+                    ancestor[i] = k;
+                    if (next == -1) {
+                        parent[i] = k;
+                    }
+                    i = next;
+                }
+            }
+        }
+        return parent;
+    }
+
+    /** Returns the column pointers of the Cholesky factor L of C, found by
+     * walking the pattern of each row of L in the elimination tree. */
+    private int[] columnCounts() {
+        int n = _n;
+        int[] pointers = new int[n + 1];
+        int[] stack = new int[n];
+        int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+        for (int k = 0; k < n; k++) {
+            pointers[k + 1]++;
+            int top = reach(k, stack, mark);
+            for (int p = top; p < n; p++) {
+                pointers[stack[p] + 1]++;
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            pointers[k + 1] += pointers[k];
+        }
+        return pointers;
+    }
+
+    /** Writes the pattern of row K of L, excluding the diagonal, into
+     * S[top..n-1] in topological order and returns top. MARK is scratch
+     * space, in which entries equal to K mark visited nodes. */
+    int reach(int k, int[] s, int[] mark) {
+        int n = _n;
+        int top = n;
+        mark[k] = k;
+        for (int p = _upperPointers[k]; p < _upperPointers[k + 1]; p++) {
+            int i = _upperIndices[p];
+            int len = 0;
+            for (; mark[i] != k; i = _parent[i]) {
+                s[len++] = i;
+                mark[i] = k;
+            }
+            while (len > 0) {
+                s[--top] = s[--len];
+            }
+        }
+        return top;
+    }
+
+    /** Returns A in CSC form, throwing a MatrixException unless it has the
+     * pattern analysed here.
+     *
+     * @throws MatrixException */
+    SparseMatrix check(SparseMatrix A) throws MatrixException {
+        SparseMatrix a = A.getHeight() == _n && A.getWidth() == _n ? A.toCSC() : null;
+        int nnz = _pointers[_n];
+        if (a == null || a.nonZeros() != nnz
+            || !Arrays.equals(a.pointers(), 0, _n + 1, _pointers, 0, _n + 1)
+            || !Arrays.equals(a.indices(), 0, nnz, _indices, 0, nnz)) {
+            throw new MatrixException("The matrix does not have the pattern of this"
+                                      + " analysis.");
+        }
+        return a;
+    }
+
+    /** Returns the fill-reducing permutation P, such that row and column K
+     * of PAP^T are row and column getPermutation()[K - 1] of A (index
+     * starting at 1). */
+    public int[] getPermutation() {
+        int[] perm = new int[_n];
+        for (int k = 0; k < _n; k++) {
+            perm[k] = _perm[k] + 1;
+        }
+        return perm;
+    }
+
+    /** Returns the number of entries of the Cholesky factor L of PAP^T,
+     * including its diagonal. */
+    public int getFactorNonZeros() {
+        return _columnPointers[_n];
+    }
+
+    /** The order of the analysed Matrix. */
+    final int _n;
+
+    /** The CSC pattern of the analysed Matrix. */
+    final int[] _pointers, _indices;
+
+    /** Row and column k of PAP^T are row and column _perm[k] of A. */
+    final int[] _perm;
+
+    /** The inverse of _perm. */
+    final int[] _pinv;
+
+    /** The CSC pattern of the upper triangle of PAP^T. */
+    int[] _upperPointers, _upperIndices;
+
+    /** Entry p of A is entry _map[p] of the upper triangle of PAP^T, or -1
+     * if it lies below the diagonal. */
+    int[] _map;
+
+    /** The parent of each node in the elimination tree, or -1 for a root. */
+    final int[] _parent;
+
+    /** The column pointers of the Cholesky factor of PAP^T. */
+    final int[] _columnPointers;
+}
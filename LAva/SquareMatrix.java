@@ -1,6 +1,7 @@
 package matrix_calculator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /** A class representing a square Matrix object (i.e. an n x n Matrix).
  * 
@@ -12,86 +13,89 @@ public class SquareMatrix extends Matrix {
         super(n, n, contents);
     }
 
+    /** Creates a new N x N square Matrix filled with zeroes. */
+    public SquareMatrix(int n) throws MatrixException {
+        super(n, n);
+    }
+
+    /** Creates a new N x N square Matrix stored in row-major order in DATA,
+     * starting at OFFSET with rows STRIDE apart. DATA is shared, not copied. */
+    public SquareMatrix(int n, double[] data, int offset, int stride)
+        throws MatrixException {
+        super(n, n, data, offset, stride);
+    }
+
+    /** Creates a new N x N square Matrix that shares DATA, with rows STRIDE
+     * apart and the entries of a row COLSTRIDE apart. */
+    SquareMatrix(int n, double[] data, int offset, int stride, int colStride)
+        throws MatrixException {
+        super(n, n, data, offset, stride, colStride);
+    }
+
+    /** Returns a view of the transpose of this Matrix, which shares this
+     * Matrix's storage.
+     *
+     * @throws MatrixException */
+    public SquareMatrix viewTranspose() throws MatrixException {
+        return new SquareMatrix(getHeight(), data(), offset(), colStride(), stride());
+    }
+
     /** Sets _rowRed to be this Matrix in row reduced form if EF is false and
      * sets _rowRedEF to be this Matrix in row reduced echelon form if EF is
-     * true. Simultaneously computes rank/nullity/determinant and inverse
-     * while checking for linear independence of columns and injectivity/
-     * surjectivity of this Matrix.
+     * true. Simultaneously computes rank/nullity while checking for linear
+     * independence of columns and injectivity/surjectivity of this Matrix.
      *
      * @throws MatrixException */
     public void squareRowReduction(Boolean EF) throws MatrixException {
         SquareMatrix B = Operations.matrixCopy(this);
-        SquareMatrix I = new SquareMatrix(getHeight(), new double[getHeight()][getHeight()]);
+        int n = getHeight();
+        double[] b = B.data();
         _pivotCols = new ArrayList<Integer>();
         _pivotRows = new ArrayList<Integer>();
-        for (int r = 1; r <= I.getHeight(); r++) {
-            I.set(r, r, 1);
-        }
-        int pivot = 1;
-        double det = 1;
-        for (int c = 1; c <= B.getWidth(); c++) {
+        int pivot = 0;
+        for (int c = 0; c < n; c++) {
             // Check for free column
-            if (B.count(c, pivot) == 0) {
+            if (B.count(c + 1, pivot + 1) == 0) {
                 continue;
             }
             
             // Swap pivot with largest absolute value
             int max = pivot;
-            for (int i = pivot + 1; i <= B.getHeight(); i++) {
-                if (Math.abs(B.get(i, c)) > Math.abs(B.get(max, c))) {
+            for (int i = pivot + 1; i < n; i++) {
+                if (Math.abs(b[i * n + c]) > Math.abs(b[max * n + c])) {
                     max = i;
                 }
             }
             if (max != pivot) {
-                B.switchRow(pivot, max);
-                I.switchRow(pivot, max);
-                det *= -1;
-//                B.print();
-//                System.out.println("");
+                swapRows(b, pivot * n, max * n, n);
             }
 
             // Scale the row for the pivot to have value 1
-            double scalefactor = 1 / B.get(pivot, c);
-            B.scalarMultRow(pivot, scalefactor);
-            I.scalarMultRow(pivot, scalefactor);
-            det *= (1 / scalefactor);
-//            B.print();
-//            System.out.println("");
-            
+            int p = pivot * n;
+            double scalefactor = 1 / b[p + c];
+            scaleRow(b, p, c, n, scalefactor);
 
             // Elimination
-            if (EF == true) {
-                for (int r = 1; r <= B.getHeight(); r++) {
-                    if (r == pivot) {
-                        continue;
-                    }
-                    double elimfactor = -1 * B.get(r, c) / B.get(pivot, c);
-                    B.add(pivot, r, elimfactor);
-                    I.add(pivot, r, elimfactor);
-//                    B.print();
-//                    System.out.println("");
-                }
-            } else {
-                for (int r = pivot + 1; r <= B.getHeight(); r++) {
-                    double elimfactor = -1 * B.get(r, c) / B.get(pivot, c);
-                    B.add(pivot, r, elimfactor);
-//                    B.print();
-//                    System.out.println("");
+            int first = EF ? 0 : pivot + 1;
+            for (int r = first; r < n; r++) {
+                if (r == pivot) {
+                    continue;
                 }
+                int row = r * n;
+                double elimfactor = -1 * b[row + c] / b[p + c];
+                axpyRow(b, p, row, c, n, elimfactor);
             }
-            _pivotCols.add(c);
-            _pivotRows.add(pivot);
+            _pivotCols.add(c + 1);
+            _pivotRows.add(pivot + 1);
             pivot++;
         }
         if (EF == true) {
             _rowRedEF = B;
-            _inverse = I;
         } else {
             _rowRed = B;
         }
-        _det = det;
         if (_rank == null) {
-            _rank = pivot - 1;
+            _rank = pivot;
             _nullity = getWidth() - _rank;
             _linInd = (_rank == getWidth());
             _surjective = (_rank == getHeight());
@@ -119,10 +123,99 @@ public class SquareMatrix extends Matrix {
         return _rowRedEF;
     }
 
+    /** Sets _lu to be the LU factorization of this Matrix.
+     *
+     * @throws MatrixException */
+    public void LU() throws MatrixException {
+        _lu = new LU(this);
+    }
+
+    /** Returns the LU factorization of this Matrix.
+     *
+     * @throws MatrixException */
+    public LU getLU() throws MatrixException {
+        if (_lu == null) {
+            LU();
+        }
+        return _lu;
+    }
+
+    /** Sets _cholesky to be the Cholesky factorization of this Matrix.
+     *
+     * @throws MatrixException */
+    public void Cholesky() throws MatrixException {
+        _cholesky = new Cholesky(this);
+    }
+
+    /** Returns the Cholesky factorization of this Matrix, which exists if
+     * getCholesky().isPositiveDefinite().
+     *
+     * @throws MatrixException */
+    public Cholesky getCholesky() throws MatrixException {
+        if (_cholesky == null) {
+            Cholesky();
+        }
+        return _cholesky;
+    }
+
+    /** Returns the LU factorization of this Matrix if it has been computed
+     * or restored, and null otherwise. */
+    LU cachedLU() {
+        return _lu;
+    }
+
+    /** Returns the Cholesky factorization of this Matrix if it has been
+     * computed or restored, and null otherwise. */
+    Cholesky cachedCholesky() {
+        return _cholesky;
+    }
+
+    /** Sets the LU factorization of this Matrix to the stored LU. */
+    void setLU(LU lu) {
+        _lu = lu;
+    }
+
+    /** Sets the Cholesky factorization of this Matrix to the stored
+     * CHOLESKY. */
+    void setCholesky(Cholesky cholesky) {
+        _cholesky = cholesky;
+    }
+
+    /** Returns true if this Matrix may be positive definite, judging only
+     * by symmetry and the signs of its diagonal. */
+    boolean maybePositiveDefinite() {
+        if (!isSymmetric()) {
+            return false;
+        }
+        for (int i = 1; i <= getHeight(); i++) {
+            if (!(get(i, i) > 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Sets _rank, _nullity, _linInd, _surjective and _injective, reading
+     * them off the LU factorization when this Matrix is invertible and
+     * falling back on row reduction otherwise.
+     *
+     * @throws MatrixException */
+    protected void rank() throws MatrixException {
+        if (getLU().isSingular()) {
+            getRowRed();
+        } else if (_rank == null) {
+            _rank = getWidth();
+            _nullity = 0;
+            _linInd = true;
+            _surjective = true;
+            _injective = true;
+        }
+    }
+
     /** Returns the determinant of this Matrix. */
     public double getDet() throws MatrixException {
         if (_det == null) {
-            getRowRed();
+            _det = getLU().getDet();
         }
         return _det;
     }
@@ -139,16 +232,32 @@ public class SquareMatrix extends Matrix {
         return _trace;
     }
 
-    /** Returns the inverse of this Matrix. 
+    /** Returns the inverse of this Matrix, computed from its LU
+     * factorization.
      * 
      * @throws MatrixException */
     public SquareMatrix getInverse() throws MatrixException {
         if (_inverse == null) {
-            getRowRedEF();
+            _inverse = getLU().getInverse();
         }
         return _inverse;
     }
 
+    /** Returns a vector which is one possible solution to the system
+     * of linear equations, Ax=b, where A is this matrix and B is
+     * a vector. Uses the Cholesky factorization when this Matrix is
+     * symmetric positive definite, and the LU factorization when it is
+     * otherwise invertible. */
+    public Vector solve(Vector b) throws MatrixException {
+        if (maybePositiveDefinite() && getCholesky().isPositiveDefinite()) {
+            return getCholesky().solve(b);
+        }
+        if (getLU().isSingular()) {
+            return super.solve(b);
+        }
+        return getLU().solve(b);
+    }
+
     /** Returns the transpose of this Matrix. */
     public SquareMatrix getTranspose() throws MatrixException {
         if (_transpose == null) {
@@ -159,41 +268,17 @@ public class SquareMatrix extends Matrix {
 
     /** Sets _transpose to be the transpose of this Matrix. */
     public void transpose() throws MatrixException {
-        SquareMatrix T = new SquareMatrix(getHeight(), new double[getHeight()][getHeight()]);
-        for (int r = 1; r <= getHeight(); r++) {
-            for (int c = 1; c <= getWidth(); c++) {
-                T.set(c, r, get(r, c));
-            }
-        }
+        SquareMatrix T = new SquareMatrix(getHeight());
+        transposeInto(T);
         _transpose = T;
     }
 
-    /** Sets _Q and _R to be the QR factorised form of this Matrix. 
-     * @throws MatrixException */
-    public void QR() throws MatrixException {
-        VectorSet columns = vectorSet();
-        VectorSet orthogonalised = columns.gramSchmidt(0, columns);
-        VectorSet orthonormalised = orthogonalised.orthonormalise();
-        SquareMatrix Q = orthonormalised.toSquareMatrix();
-        SquareMatrix R = new SquareMatrix(Q.getHeight(), new double[getHeight()][getHeight()]);
-        for (int c = 1; c <= getHeight(); c++) {
-            for (int r = 1; r <= c; r++) {
-                R.set(r, c, columns.get(c - 1).dotProduct(orthonormalised.get(r - 1)));
-            }
-        }
-        _Q = Q;
-        _R = R;
-    }
-
     /** Returns an array list containing the QR factorised form of this Matrix. 
      * @throws MatrixException */
     public ArrayList<SquareMatrix> getQR() throws MatrixException {
-        if (_Q == null) {
-            QR();
-        }
         ArrayList<SquareMatrix> result = new ArrayList<SquareMatrix>();
-        result.add(_Q);
-        result.add(_R);
+        result.add(getQ());
+        result.add(getR());
         return result;
     }
 
@@ -201,7 +286,7 @@ public class SquareMatrix extends Matrix {
      * @throws MatrixException */
     public SquareMatrix getQ() throws MatrixException {
         if (_Q == null) {
-            QR();
+            _Q = (SquareMatrix) getQRFactorization().getQ();
         }
         return _Q;
     }
@@ -210,7 +295,7 @@ public class SquareMatrix extends Matrix {
      * @throws MatrixException */
     public SquareMatrix getR() throws MatrixException {
         if (_R == null) {
-            QR();
+            _R = (SquareMatrix) getQRFactorization().getR();
         }
         return _R;
     }
@@ -244,7 +329,14 @@ public class SquareMatrix extends Matrix {
 
     /** Returns true if this Matrix is lower triangular. */
     public boolean isLowerTriangular() throws MatrixException {
-        return getTranspose().isUpperTriangular();
+        for (int r = 1; r < getHeight(); r++) {
+            for (int c = r + 1; c <= getWidth(); c++) {
+                if (Math.abs(get(r, c)) >= epsilon) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     /** Returns true if this Matrix is triangular. */
@@ -252,6 +344,32 @@ public class SquareMatrix extends Matrix {
         return isUpperTriangular() || isLowerTriangular();
     }
 
+    /** Returns true if this Matrix is symmetric, or has been declared
+     * symmetric by setSymmetric(). */
+    public boolean isSymmetric() {
+        if (_symmetric == null) {
+            double[] a = data();
+            int n = getHeight(), off = offset(), rs = stride(), cs = colStride();
+            _symmetric = true;
+            for (int r = 1; r < n && _symmetric; r++) {
+                for (int c = 0; c < r; c++) {
+                    if (Math.abs(a[off + r * rs + c * cs] - a[off + c * rs + r * cs])
+                        >= epsilon) {
+                        _symmetric = false;
+                        break;
+                    }
+                }
+            }
+        }
+        return _symmetric;
+    }
+
+    /** Declares this Matrix symmetric without checking it, so that the
+     * symmetric eigenvalue solver is used, reading only the lower triangle. */
+    public void setSymmetric() {
+        _symmetric = true;
+    }
+
     
     /** Returns true if this matrix is similar to matrix MATRIX. 
      * @throws MatrixException */
@@ -279,27 +397,79 @@ public class SquareMatrix extends Matrix {
         return true;
     }
     
-    /** Sets _eigenvalues to contain the eigenvalues of this Matrix. 
-     * 
+    /** Sets _eigenvalues to contain the eigenvalues of this Matrix
+     * (values smaller than epsilon are treated as 0), and
+     * _imaginaryEigenvalues to contain their imaginary parts. A diagonal
+     * Matrix, or a triangular one not declared symmetric, gives its diagonal
+     * in order; otherwise the eigenvalues are found by the symmetric solver
+     * if this Matrix is symmetric, or by Hessenberg reduction and shifted QR
+     * iteration, and are given in decreasing order of absolute value.
+     *
      * @throws MatrixException */
     public void eigenvalues() throws MatrixException {
+        int n = getHeight();
         _eigenvalues = new ArrayList<Double>();
-        SquareMatrix A = this;
-        if (!(isTriangular() || isDiagonal())) {
-            SquareMatrix Q = getQ();
-            SquareMatrix R = getR();
-            A = Operations.matrixMult(R, Q);
-            while (!A.isTriangular()) {
-                Q = A.getQ();
-                R = A.getR();
-                A = Operations.matrixMult(R, Q);
+        _imaginaryEigenvalues = new ArrayList<Double>();
+        if (isSymmetric() && !isDiagonal()) {
+            symmetricEigen();
+            return;
+        }
+        if (isTriangular()) {
+            for (int i = 1; i <= n; i++) {
+                double value = get(i, i);
+                _eigenvalues.add(Math.abs(value) < epsilon ? 0 : value);
+                _imaginaryEigenvalues.add(0.0);
             }
+            return;
         }
-        for (int i = 1; i <= getHeight(); i++) {
-            _eigenvalues.add(A.get(i, i));
+        double[][] values = HessenbergQR.eigenvalues(this);
+        double[] re = values[0], im = values[1];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> Double.compare(Math.hypot(re[j], im[j]),
+                                                    Math.hypot(re[i], im[i])));
+        for (int i : order) {
+            _eigenvalues.add(Math.abs(re[i]) < epsilon ? 0 : re[i]);
+            _imaginaryEigenvalues.add(Math.abs(im[i]) < epsilon ? 0 : im[i]);
         }
     }
-    
+
+    /** Sets _eigenvalues and _eigenvectors of this symmetric, non-diagonal
+     * Matrix in one pass of the symmetric solver. The eigenvectors are
+     * orthonormal, each with its last non-negligible component positive.
+     *
+     * @throws MatrixException */
+    private void symmetricEigen() throws MatrixException {
+        int n = getHeight();
+        double[] v = new double[n * n];
+        double[] d = SymmetricQL.eigen(this, v);
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> Double.compare(Math.abs(d[j]), Math.abs(d[i])));
+        _eigenvalues = new ArrayList<Double>();
+        _imaginaryEigenvalues = new ArrayList<Double>();
+        _eigenvectors = new ArrayList<Vector>();
+        for (int i : order) {
+            _eigenvalues.add(Math.abs(d[i]) < epsilon ? 0 : d[i]);
+            _imaginaryEigenvalues.add(0.0);
+            double[] x = Arrays.copyOfRange(v, i * n, i * n + n);
+            int last = n - 1;
+            while (last > 0 && Math.abs(x[last]) < epsilon) {
+                last--;
+            }
+            if (x[last] < 0) {
+                for (int k = 0; k < n; k++) {
+                    x[k] = -x[k];
+                }
+            }
+            _eigenvectors.add(new Vector(x));
+        }
+    }
+
     /** Returns an ArrayList containing the eigenvalues of this Matrix. */
     public ArrayList<Double> getEigenvalues() throws MatrixException {
         if (_eigenvalues == null) {
@@ -307,30 +477,29 @@ public class SquareMatrix extends Matrix {
         }
         return _eigenvalues;
     }
+
+    /** Returns an ArrayList containing the imaginary parts of the
+     * eigenvalues of this Matrix, in the same order as getEigenvalues().
+     *
+     * @throws MatrixException */
+    public ArrayList<Double> getImaginaryEigenvalues() throws MatrixException {
+        if (_imaginaryEigenvalues == null) {
+            eigenvalues();
+        }
+        return _imaginaryEigenvalues;
+    }
     
-    /** Sets _eigenvectors to contain the eigenvectors of this Matrix. */
+    /** Sets _eigenvectors to contain the real eigenvectors of this Matrix.
+     * Those of a symmetric Matrix are orthonormal.
+     *
+     * @throws MatrixException */
     public void eigenvectors() throws MatrixException {
-        ArrayList<Double> eigenvalues = getEigenvalues();
-        ArrayList<Double> computed = new ArrayList<>();
-        ArrayList<Vector> eigenvectors = new ArrayList<>();
-        for (double value : eigenvalues) {
-            if (computed.contains(value)) {
-                continue;
-            }
-            SquareMatrix copy = Operations.matrixCopy(this);
-            for (int i = 1; i <= getHeight(); i++) {
-                copy.set(i, i, get(i, i) - value);
-            }
-            VectorSet vectors = copy.nullSpace();
-            for (int i = 0; i < vectors.size(); i++) {
-                eigenvectors.add(vectors.get(i));
-            }
-            computed.add(value);
+        if (isSymmetric() && !isDiagonal()) {
+            symmetricEigen();
+            return;
         }
-//        for (Vector v : eigenvectors) {
-//            v.scaleWholeNum();
-//        }
-        _eigenvectors = eigenvectors;
+        _eigenvectors = InverseIteration.eigenvectors(this, getEigenvalues(),
+                                                      getImaginaryEigenvalues());
     }
     
     /** Returns an ArrayList of vectors containing the eigenvectors of this Matrix. */
@@ -352,7 +521,7 @@ public class SquareMatrix extends Matrix {
      * this matrix, A is expressed as A = PDP-1 and D is a diagonal matrix. */
     public void diagonalise() throws MatrixException {
         Vector[] vectors = new Vector[getWidth()];
-        SquareMatrix D = new SquareMatrix(getWidth(), new double[getWidth()][getWidth()]);
+        SquareMatrix D = new SquareMatrix(getWidth());
         ArrayList<SquareMatrix> result = new ArrayList<>();
 
         for (int i = 0; i < getWidth(); i++) {
@@ -398,12 +567,24 @@ public class SquareMatrix extends Matrix {
     /** The inverse of this Matrix. */
     private SquareMatrix _inverse;
 
+    /** The LU factorization of this Matrix. */
+    private LU _lu;
+
+    /** The Cholesky factorization of this Matrix. */
+    private Cholesky _cholesky;
+
     /** The transpose of this Matrix. */
     protected SquareMatrix _transpose;
 
+    /** Whether this Matrix is symmetric, or null if not yet checked. */
+    private Boolean _symmetric;
+
     /** The eigenvalues of this Matrix. */
     private ArrayList<Double> _eigenvalues;
 
+    /** The imaginary parts of the eigenvalues of this Matrix. */
+    private ArrayList<Double> _imaginaryEigenvalues;
+
     /** The eigenvectors of this Matrix. */
     private ArrayList<Vector> _eigenvectors;
 
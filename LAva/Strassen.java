@@ -0,0 +1,191 @@
+package matrix_calculator;
+
+/** Multiplies large square matrices with the Winograd variant of Strassen's
+ * algorithm (7 half-size products and 15 additions per level), recursing
+ * until the blocks are no larger than a cutoff and using the blocked
+ * classical kernel below it. Odd sizes are handled by peeling off the last
+ * row and column and fixing them up with matrix-vector products.
+ *
+ * @author AndyPalan */
+final class Strassen {
+
+    /** The smallest cutoff that may be set, below which the extra additions
+     * always outweigh the saved product. */
+    static final int MIN_CUTOFF = 16;
+
+    /** Returns the largest size multiplied with the classical kernel. */
+    static int cutoff() {
+        return _cutoff;
+    }
+
+    /** Sets the largest size multiplied with the classical kernel to N.
+     *
+     * @throws MatrixException */
+    static void setCutoff(int n) throws MatrixException {
+        if (n < MIN_CUTOFF) {
+            throw new MatrixException("The Strassen cutoff must be at least "
+                                      + MIN_CUTOFF + ".");
+        }
+        _cutoff = n;
+    }
+
+    /** Sets C to be the product A x B of the N x N matrices A and B, where C
+     * does not share storage with A or B. */
+    static void multiply(Matrix A, Matrix B, Matrix C) {
+        forSize(A.getHeight()).product(A, B, C);
+    }
+
+    /** Returns a multiplication of N x N matrices with the current cutoff,
+     * whose workspace is allocated by its first product and reused by the
+     * rest. It is not safe to use from several threads at once. */
+    static Strassen forSize(int n) {
+        int cutoff = _cutoff;
+        int levels = 0;
+        for (int size = n; size > cutoff; size = (size & ~1) / 2) {
+            levels++;
+        }
+        return new Strassen(n, cutoff, levels);
+    }
+
+    /** A multiplication of N x N matrices using CUTOFF as its cutoff, that
+     * recurses LEVELS times. */
+    private Strassen(int n, int cutoff, int levels) {
+        _size = n;
+        _levelCutoff = cutoff;
+        _x = new double[levels][];
+        _y = new double[levels][];
+    }
+
+    /** Sets C to be the product A x B of the matrices A and B, which are of
+     * the size this multiplication was made for, where C does not share
+     * storage with A or B. */
+    void product(Matrix A, Matrix B, Matrix C) {
+        assert A.getHeight() == _size;
+        multiply(_size, A.data(), A.offset(), A.stride(),
+                 B.data(), B.offset(), B.stride(),
+                 C.data(), C.offset(), C.stride(), 0);
+    }
+
+    /** Sets the N x N block of C at COFF (rows CS apart) to be the product of
+     * the N x N blocks of A at AOFF and B at BOFF, at recursion depth
+     * DEPTH. */
+    private void multiply(int n, double[] a, int aOff, int as,
+                          double[] b, int bOff, int bs,
+                          double[] c, int cOff, int cs, int depth) {
+        if (n <= _levelCutoff) {
+            Gemm.multiply(n, n, n, a, aOff, as, b, bOff, bs, c, cOff, cs);
+            return;
+        }
+        if (n % 2 == 1) {
+            multiply(n - 1, a, aOff, as, b, bOff, bs, c, cOff, cs, depth);
+            peel(n, a, aOff, as, b, bOff, bs, c, cOff, cs);
+            return;
+        }
+        int h = n / 2;
+        if (_x[depth] == null) {
+            _x[depth] = new double[h * h];
+            _y[depth] = new double[h * h];
+        }
+        double[] x = _x[depth], y = _y[depth];
+        int a11 = aOff, a12 = aOff + h, a21 = aOff + h * as, a22 = a21 + h;
+        int b11 = bOff, b12 = bOff + h, b21 = bOff + h * bs, b22 = b21 + h;
+        int c11 = cOff, c12 = cOff + h, c21 = cOff + h * cs, c22 = c21 + h;
+        int next = depth + 1;
+
+        // C21 = P7 = (A11 - A21)(B22 - B12)
+        combine(h, a, a11, as, a, a21, as, -1, x, 0, h);
+        combine(h, b, b22, bs, b, b12, bs, -1, y, 0, h);
+        multiply(h, x, 0, h, y, 0, h, c, c21, cs, next);
+        // C22 = P5 = (A21 + A22)(B12 - B11)
+        combine(h, a, a21, as, a, a22, as, 1, x, 0, h);
+        combine(h, b, b12, bs, b, b11, bs, -1, y, 0, h);
+        multiply(h, x, 0, h, y, 0, h, c, c22, cs, next);
+        // C12 = P6 = (A21 + A22 - A11)(B22 - B12 + B11)
+        combine(h, x, 0, h, a, a11, as, -1, x, 0, h);
+        combine(h, b, b22, bs, y, 0, h, -1, y, 0, h);
+        multiply(h, x, 0, h, y, 0, h, c, c12, cs, next);
+        // C11 = P3 = (A12 - A21 - A22 + A11) B22
+        combine(h, a, a12, as, x, 0, h, -1, x, 0, h);
+        multiply(h, x, 0, h, b, b22, bs, c, c11, cs, next);
+        // X = P1 = A11 B11
+        multiply(h, a, a11, as, b, b11, bs, x, 0, h, next);
+        // C12 = P1 + P6, C21 = C12 + P7, C12 += P5, C22 = C21 + P5, C12 += P3
+        combine(h, x, 0, h, c, c12, cs, 1, c, c12, cs);
+        combine(h, c, c12, cs, c, c21, cs, 1, c, c21, cs);
+        combine(h, c, c12, cs, c, c22, cs, 1, c, c12, cs);
+        combine(h, c, c21, cs, c, c22, cs, 1, c, c22, cs);
+        combine(h, c, c12, cs, c, c11, cs, 1, c, c12, cs);
+        // C21 -= P4 = A22 (B22 - B12 + B11 - B21)
+        combine(h, y, 0, h, b, b21, bs, -1, y, 0, h);
+        multiply(h, a, a22, as, y, 0, h, c, c11, cs, next);
+        combine(h, c, c21, cs, c, c11, cs, -1, c, c21, cs);
+        // C11 = P1 + P2 = P1 + A12 B21
+        multiply(h, a, a12, as, b, b21, bs, c, c11, cs, next);
+        combine(h, x, 0, h, c, c11, cs, 1, c, c11, cs);
+    }
+
+    /** Completes the product of the N x N blocks at AOFF and BOFF into COFF,
+     * given that its leading (N - 1) x (N - 1) block holds the product of the
+     * leading blocks of A and B. */
+    private static void peel(int n, double[] a, int aOff, int as,
+                             double[] b, int bOff, int bs,
+                             double[] c, int cOff, int cs) {
+        int m = n - 1;
+        int bLast = bOff + m * bs;
+        for (int i = 0; i < m; i++) {
+            double aim = a[aOff + i * as + m];
+            int cr = cOff + i * cs;
+            for (int j = 0; j < m; j++) {
+                c[cr + j] += aim * b[bLast + j];
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            double sum = 0;
+            int ar = aOff + i * as;
+            for (int p = 0; p < n; p++) {
+                sum += a[ar + p] * b[bOff + p * bs + m];
+            }
+            c[cOff + i * cs + m] = sum;
+        }
+        int aLast = aOff + m * as, cLast = cOff + m * cs;
+        for (int j = 0; j < n; j++) {
+            c[cLast + j] = 0;
+        }
+        for (int p = 0; p < n; p++) {
+            double amp = a[aLast + p];
+            int br = bOff + p * bs;
+            for (int j = 0; j < n; j++) {
+                c[cLast + j] += amp * b[br + j];
+            }
+        }
+    }
+
+    /** Sets the H x H block of D at DOFF to be the block of X at XOFF plus
+     * SIGN times the block of Y at YOFF. D may be the same block as X or Y. */
+    private static void combine(int h, double[] x, int xOff, int xs,
+                                double[] y, int yOff, int ys, double sign,
+                                double[] d, int dOff, int ds) {
+        for (int i = 0; i < h; i++) {
+            int xr = xOff + i * xs, yr = yOff + i * ys, dr = dOff + i * ds;
+            for (int j = 0; j < h; j++) {
+                d[dr + j] = x[xr + j] + sign * y[yr + j];
+            }
+        }
+    }
+
+    /** The size of the matrices multiplied. */
+    private final int _size;
+
+    /** The largest size multiplied with the classical kernel during this
+     * multiplication. */
+    private final int _levelCutoff;
+
+    /** The first half-size workspace at each recursion depth. */
+    private final double[][] _x;
+
+    /** The second half-size workspace at each recursion depth. */
+    private final double[][] _y;
+
+    /** The largest size multiplied with the classical kernel. */
+    private static volatile int _cutoff = 1024;
+}
@@ -0,0 +1,201 @@
+package matrix_calculator;
+
+/** Computes the eigenvalues and orthonormal eigenvectors of a real symmetric
+ * Matrix. The Matrix is reduced to tridiagonal form by Householder
+ * similarity transformations, accumulated into an orthogonal Matrix, and the
+ * tridiagonal Matrix is then diagonalised by implicitly shifted QL steps,
+ * whose rotations are applied to the accumulated transformation. Only the
+ * lower triangle of the Matrix is read.
+ *
+ * @author AndyPalan */
+final class SymmetricQL {
+
+    /** The number of QL steps allowed per eigenvalue before giving up. */
+    static final int MAX_ITERATIONS = 30;
+
+    /** Returns the eigenvalues of the symmetric Matrix A, and sets the rows
+     * of the n x n row-major array V to the corresponding orthonormal
+     * eigenvectors.
+     *
+     * @throws MatrixException */
+    static double[] eigen(SquareMatrix A, double[] v) throws MatrixException {
+        int n = A.getHeight();
+        double[] a = new double[n * n];
+        Operations.copy(A, new SquareMatrix(n, a, 0, n));
+        double[] d = new double[n], e = new double[n];
+        tridiagonalize(a, n, d, e);
+        Matrix.transposeBlock(a, 0, n, 1, v, 0, n, 1, n, n);
+        diagonalize(v, n, d, e);
+        return d;
+    }
+
+    /** Reduces the N x N row-major symmetric Matrix A (of which only the
+     * lower triangle is read) to tridiagonal form, setting D to its diagonal,
+     * E[1..N-1] to its subdiagonal, and A to the orthogonal transformation
+     * used. */
+    private static void tridiagonalize(double[] a, int n, double[] d, double[] e) {
+        for (int j = 0; j < n; j++) {
+            d[j] = a[(n - 1) * n + j];
+        }
+        for (int i = n - 1; i > 0; i--) {
+            double scale = 0, h = 0;
+            for (int k = 0; k < i; k++) {
+                scale += Math.abs(d[k]);
+            }
+            if (scale == 0) {
+                e[i] = d[i - 1];
+                for (int j = 0; j < i; j++) {
+                    d[j] = a[(i - 1) * n + j];
+                    a[i * n + j] = 0;
+                    a[j * n + i] = 0;
+                }
+            } else {
+                // Householder vector, scaled, in d[0..i-1]
+                for (int k = 0; k < i; k++) {
+                    d[k] /= scale;
+                    h += d[k] * d[k];
+                }
+                double f = d[i - 1];
+                double g = -Math.copySign(Math.sqrt(h), f);
+                e[i] = scale * g;
+                h -= f * g;
+                d[i - 1] = f - g;
+                for (int j = 0; j < i; j++) {
+                    e[j] = 0;
+                }
+                // e = A d, using the lower triangle
+                for (int j = 0; j < i; j++) {
+                    f = d[j];
+                    a[j * n + i] = f;
+                    g = e[j] + a[j * n + j] * f;
+                    for (int k = j + 1; k < i; k++) {
+                        g += a[k * n + j] * d[k];
+                        e[k] += a[k * n + j] * f;
+                    }
+                    e[j] = g;
+                }
+                f = 0;
+                for (int j = 0; j < i; j++) {
+                    e[j] /= h;
+                    f += e[j] * d[j];
+                }
+                double hh = f / (h + h);
+                for (int j = 0; j < i; j++) {
+                    e[j] -= hh * d[j];
+                }
+                // A = A - d e^T - e d^T
+                for (int j = 0; j < i; j++) {
+                    f = d[j];
+                    g = e[j];
+                    for (int k = j; k < i; k++) {
+                        a[k * n + j] -= f * e[k] + g * d[k];
+                    }
+                    d[j] = a[(i - 1) * n + j];
+                    a[i * n + j] = 0;
+                }
+            }
+            d[i] = h;
+        }
+        // Accumulate the transformations
+        for (int i = 0; i < n - 1; i++) {
+            a[(n - 1) * n + i] = a[i * n + i];
+            a[i * n + i] = 1;
+            double h = d[i + 1];
+            if (h != 0) {
+                for (int k = 0; k <= i; k++) {
+                    d[k] = a[k * n + i + 1] / h;
+                }
+                for (int j = 0; j <= i; j++) {
+                    double g = 0;
+                    for (int k = 0; k <= i; k++) {
+                        g += a[k * n + i + 1] * a[k * n + j];
+                    }
+                    for (int k = 0; k <= i; k++) {
+                        a[k * n + j] -= g * d[k];
+                    }
+                }
+            }
+            for (int k = 0; k <= i; k++) {
+                a[k * n + i + 1] = 0;
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            d[j] = a[(n - 1) * n + j];
+            a[(n - 1) * n + j] = 0;
+        }
+        a[n * n - 1] = 1;
+        e[0] = 0;
+    }
+
+    /** Diagonalizes the N x N symmetric tridiagonal Matrix with diagonal D and
+     * subdiagonal E[1..N-1] by implicit QL steps, leaving its eigenvalues in
+     * D and applying the rotations to the rows of V.
+     *
+     * @throws MatrixException */
+    private static void diagonalize(double[] v, int n, double[] d, double[] e)
+        throws MatrixException {
+        for (int i = 1; i < n; i++) {
+            e[i - 1] = e[i];
+        }
+        if (n > 0) {
+            e[n - 1] = 0;
+        }
+        double eps = Math.ulp(1.0);
+        double f = 0, tst1 = 0;
+        for (int l = 0; l < n; l++) {
+            // Look for a small subdiagonal element
+            tst1 = Math.max(tst1, Math.abs(d[l]) + Math.abs(e[l]));
+            int m = l;
+            while (Math.abs(e[m]) > eps * tst1) {
+                m++;
+            }
+            int iter = 0;
+            while (m > l && Math.abs(e[l]) > eps * tst1) {
+                if (iter++ == MAX_ITERATIONS) {
+                    throw new MatrixException("The eigenvalue iteration did not"
+                                              + " converge.");
+                }
+                // Form the shift
+                double g = d[l];
+                double p = (d[l + 1] - g) / (2 * e[l]);
+                double r = Math.copySign(Math.hypot(p, 1), p);
+                d[l] = e[l] / (p + r);
+                d[l + 1] = e[l] * (p + r);
+                double dl1 = d[l + 1];
+                double h = g - d[l];
+                for (int i = l + 2; i < n; i++) {
+                    d[i] -= h;
+                }
+                f += h;
+                // Implicit QL transformation
+                p = d[m];
+                double c = 1, c2 = 1, c3 = 1, s = 0, s2 = 0;
+                double el1 = e[l + 1];
+                for (int i = m - 1; i >= l; i--) {
+                    c3 = c2;
+                    c2 = c;
+                    s2 = s;
+                    g = c * e[i];
+                    h = c * p;
+                    r = Math.hypot(p, e[i]);
+                    e[i + 1] = s * r;
+                    s = e[i] / r;
+                    c = p / r;
+                    p = c * d[i] - s * g;
+                    d[i + 1] = h + s * (c * g + s * d[i]);
+                    int r0 = i * n, r1 = r0 + n;
+                    for (int k = 0; k < n; k++) {
+                        h = v[r1 + k];
+                        v[r1 + k] = s * v[r0 + k] + c * h;
+                        v[r0 + k] = c * v[r0 + k] - s * h;
+                    }
+                }
+                p = -s * s2 * c3 * el1 * e[l] / dl1;
+                e[l] = s * p;
+                d[l] = c * p;
+            }
+            d[l] += f;
+            e[l] = 0;
+        }
+    }
+}
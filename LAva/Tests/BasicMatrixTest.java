@@ -1,6 +1,20 @@
 package matrix_calculator;
 
 import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.Test;
 
 public class BasicMatrixTest {
@@ -271,4 +285,1006 @@ public class BasicMatrixTest {
     }
     
 
-}
\ No newline at end of file
+    @Test
+    public void flatStorage() throws MatrixException {
+        double[] data = {
+                        9, 9, 9, 9,
+                        9, 1, 2, 9,
+                        9, 3, 4, 9
+        };
+        Matrix A = new Matrix(2, 2, data, 5, 4);
+        assertEquals(A.get(1, 1), 1, 0);
+        assertEquals(A.get(2, 2), 4, 0);
+
+        A.set(2, 1, 7);
+        assertEquals(data[9], 7, 0);
+
+        double[][] contentsB = {
+                        { 1, 2 },
+                        { 7, 4 }
+        };
+        Matrix B = new Matrix(2, 2, contentsB);
+        assertTrue(A.equals(B));
+        assertTrue(Operations.matrixCopy(A).equals(B));
+
+        Matrix row = new Matrix(1, 3, new double[][] { { 1, 2, 3 } });
+        assertEquals(row.getHeight(), 1);
+        assertEquals(row.get(1, 3), 3, 0);
+        try {
+            A.get(1, 3);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // Column 3 is not in A, though data[7] is
+        }
+        FloatMatrix F = new FloatMatrix(2, 2, new float[] { 1, 2, 3, 4 }, 0, 2);
+        try {
+            F.get(1, 3);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // Column 3 is not in F, though entry (2, 1) follows (1, 2)
+        }
+        try {
+            F.set(3, 1, 0);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // Row 3 is not in F
+        }
+    }
+
+    @Test
+    public void blockedMultiplication() throws MatrixException {
+        int m = 70, n = 45, k = 53;
+        Matrix A = new Matrix(m, k);
+        Matrix B = new Matrix(k, n);
+        for (int r = 1; r <= m; r++) {
+            for (int c = 1; c <= k; c++) {
+                A.set(r, c, (r * 7 + c * 3) % 11 - 5);
+            }
+        }
+        for (int r = 1; r <= k; r++) {
+            for (int c = 1; c <= n; c++) {
+                B.set(r, c, (r * 5 + c * 2) % 13 - 6);
+            }
+        }
+        Matrix AB;
+        Operations.setMultBlockSizes(16, 20, 24);
+        try {
+            AB = Operations.matrixMult(A, B);
+        } finally {
+            Operations.setMultBlockSizes(128, 256, 2048);
+        }
+        for (int r = 1; r <= m; r++) {
+            for (int c = 1; c <= n; c++) {
+                double entry = 0;
+                for (int i = 1; i <= k; i++) {
+                    entry += A.get(r, i) * B.get(i, c);
+                }
+                assertEquals(entry, AB.get(r, c), Matrix.epsilon);
+            }
+        }
+    }
+
+    @Test
+    public void parallelOperations() throws MatrixException {
+        int n = 37;
+        Matrix A = new Matrix(n, n);
+        Matrix B = new Matrix(n, n);
+        for (int r = 1; r <= n; r++) {
+            for (int c = 1; c <= n; c++) {
+                A.set(r, c, (r * 3 + c) % 7 - 3);
+                B.set(r, c, (r + c * 5) % 9 - 4);
+            }
+        }
+        Matrix sum = Operations.add(A, B);
+        Matrix difference = Operations.subtract(A, B);
+        Matrix scaled = Operations.scalarMult(A, 2.5);
+        Matrix product = Operations.matrixMult(A, B);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Operations.setPool(pool);
+        Operations.setParallelThreshold(1);
+        try {
+            assertTrue(Operations.add(A, B).equals(sum));
+            assertTrue(Operations.subtract(A, B).equals(difference));
+            assertTrue(Operations.scalarMult(A, 2.5).equals(scaled));
+            assertTrue(Operations.matrixMult(A, B).equals(product));
+            assertTrue(Operations.matrixCopy(A).equals(A));
+        } finally {
+            Operations.setPool(null);
+            Operations.setParallelThreshold(1 << 16);
+            pool.shutdown();
+        }
+
+        ForkJoinPool outer = new ForkJoinPool(3), inner = new ForkJoinPool(2);
+        Operations.Scope scope = Operations.usePool(outer);
+        try {
+            assertSame(outer, Parallel.pool());
+            Operations.Scope nested = Operations.usePool(inner);
+            Operations.setParallelThreshold(1);
+            try {
+                assertSame(inner, Parallel.pool());
+                ForkJoinPool[] seen = new ForkJoinPool[n];
+                Parallel.forRows(n, 1, (from, to) -> {
+                    for (int r = from; r < to; r++) {
+                        seen[r] = Parallel.pool();
+                    }
+                });
+                for (ForkJoinPool p : seen) {
+                    assertSame(inner, p);
+                }
+                assertTrue(Operations.matrixMult(A, B).equals(product));
+            } finally {
+                Operations.setParallelThreshold(1 << 16);
+                nested.close();
+            }
+            assertSame(outer, Parallel.pool());
+        } finally {
+            scope.close();
+            outer.shutdown();
+            inner.shutdown();
+        }
+        assertSame(ForkJoinPool.commonPool(), Parallel.pool());
+    }
+
+    @Test
+    public void strassenMultiplication() throws MatrixException {
+        int n = 67;
+        SquareMatrix A = new SquareMatrix(n);
+        SquareMatrix B = new SquareMatrix(n);
+        for (int r = 1; r <= n; r++) {
+            for (int c = 1; c <= n; c++) {
+                A.set(r, c, (r * 7 + c * 3) % 11 - 5);
+                B.set(r, c, (r * 5 + c * 2) % 13 - 6);
+            }
+        }
+        Matrix classical = Operations.matrixMult((Matrix) A, (Matrix) B);
+        Operations.setStrassenCutoff(16);
+        try {
+            assertTrue(Operations.matrixMult(A, B).equals(classical));
+        } finally {
+            Operations.setStrassenCutoff(1024);
+        }
+    }
+
+    @Test
+    public void exponent() throws MatrixException {
+        double[][] contents = {
+                        { 1, 1 },
+                        { 1, 0 }
+        };
+        SquareMatrix A = new SquareMatrix(2, contents);
+
+        SquareMatrix A0 = Operations.exp(A, 0);
+        assertTrue(A0.equals(new SquareMatrix(2, new double[][] { { 1, 0 }, { 0, 1 } })));
+        assertTrue(Operations.exp(A, 1).equals(A));
+
+        // Powers of A hold consecutive Fibonacci numbers
+        SquareMatrix A10 = Operations.exp(A, 10);
+        assertTrue(A10.equals(new SquareMatrix(2, new double[][] { { 89, 55 }, { 55, 34 } })));
+        SquareMatrix A45 = Operations.exp(A, 45);
+        assertEquals(A45.get(1, 2), 1134903170, 0);
+
+        // A transposed view raised above the Strassen cutoff
+        SquareMatrix B = new SquareMatrix(37);
+        fill(B, new Random(23));
+        SquareMatrix T = B.viewTranspose(), copy = Operations.matrixCopy(T), expected = copy;
+        for (int i = 1; i < 5; i++) {
+            expected = Operations.matrixMult(expected, copy);
+        }
+        Operations.setStrassenCutoff(16);
+        try {
+            SquareMatrix T5 = Operations.exp(T, 5);
+            for (int r = 1; r <= 37; r++) {
+                for (int c = 1; c <= 37; c++) {
+                    assertEquals(expected.get(r, c), T5.get(r, c), 1e-10);
+                }
+            }
+        } finally {
+            Operations.setStrassenCutoff(1024);
+        }
+    }
+
+    @Test
+    public void views() throws MatrixException {
+        double[][] contentsA = {
+                        { 5, 4, 6 },
+                        { 1, 0, 3 },
+                        { 0, 0, 7 },
+                        { 3, 0, 0 }
+        };
+        Matrix A = new Matrix(4, 3, contentsA);
+
+        Matrix T = A.viewTranspose();
+        assertTrue(T.equals(A.getTranspose()));
+
+        double[][] contentsB = {
+                        { 1, 4, 3, 6 },
+                        { 8, 5, 2, 2 },
+                        { 1, 6, 9, 4 },
+        };
+        Matrix B = new Matrix(3, 4, contentsB);
+        Matrix product = Operations.matrixMult(A, B);
+        Matrix viewProduct = Operations.matrixMult(A.getTranspose().viewTranspose(),
+                                                   B.getTranspose().viewTranspose());
+        assertTrue(product.equals(viewProduct));
+
+        T.set(3, 2, 10);
+        assertEquals(A.get(2, 3), 10, 0);
+
+        Matrix block = A.viewBlock(2, 3, 2, 3);
+        double[][] contentsBlock = {
+                        { 0, 10 },
+                        { 0, 7 }
+        };
+        assertTrue(block.equals(new Matrix(2, 2, contentsBlock)));
+        try {
+            block.set(1, 3, 1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // Column 3 of the block is outside it, though in A
+        }
+        assertTrue(A.viewRow(4).equals(new Matrix(1, 3, new double[][] { { 3, 0, 0 } })));
+        assertEquals(A.viewColumn(1).get(4, 1), 3, 0);
+        assertEquals(A.viewRows(3, 4).getHeight(), 2);
+        assertEquals(A.viewColumns(2, 3).get(1, 2), 6, 0);
+
+        Matrix copyT = Operations.matrixCopy(T);
+        assertEquals(copyT.get(3, 2), 10, 0);
+        assertTrue(copyT.equals(T));
+        assertTrue(Operations.add(T, T).equals(Operations.scalarMult(copyT, 2)));
+    }
+
+    @Test
+    public void LU() throws MatrixException {
+        double[][] contentsA = {
+                        { 2, 1, 1 },
+                        { 4, -6, 0 },
+                        { -2, 7, 2 }
+        };
+        SquareMatrix A = new SquareMatrix(3, contentsA);
+        LU lu = A.getLU();
+        assertFalse(lu.isSingular());
+        assertEquals(A.getDet(), -16, Matrix.epsilon);
+        assertEquals(A.getRank(), 3);
+        assertTrue(A.isInjective());
+
+        int[] perm = lu.getPermutation();
+        SquareMatrix PA = new SquareMatrix(3);
+        for (int r = 1; r <= 3; r++) {
+            for (int c = 1; c <= 3; c++) {
+                PA.set(r, c, A.get(perm[r - 1], c));
+            }
+        }
+        assertTrue(Operations.matrixMult(lu.getL(), lu.getU()).equals(PA));
+
+        SquareMatrix I = Operations.matrixMult(A, A.getInverse());
+        assertTrue(I.isDiagonal());
+        assertEquals(I.getTrace(), 3, Matrix.epsilon);
+
+        Vector x = A.solve(new Vector(5, -2, 9));
+        assertTrue(x.equals(new Vector(1, 1, 2)));
+
+        double[][] contentsB = {
+                        { 1, 2, 3 },
+                        { 4, 5, 6 },
+                        { 7, 8, 9 }
+        };
+        SquareMatrix B = new SquareMatrix(3, contentsB);
+        assertTrue(B.getLU().isSingular());
+        assertEquals(B.getDet(), 0, Matrix.epsilon);
+        assertEquals(B.getRank(), 2);
+    }
+
+    @Test
+    public void cholesky() throws MatrixException {
+        double[][] contentsA = {
+                        { 4, 2, -2 },
+                        { 2, 10, 2 },
+                        { -2, 2, 6 }
+        };
+        SquareMatrix A = new SquareMatrix(3, contentsA);
+        Cholesky cholesky = A.getCholesky();
+        assertTrue(cholesky.isPositiveDefinite());
+        SquareMatrix L = cholesky.getL();
+        assertTrue(L.isLowerTriangular());
+        assertTrue(Operations.matrixMult(L, L.getTranspose()).equals(A));
+        assertEquals(A.getDet(), cholesky.getDet(), Matrix.epsilon);
+        assertEquals(Math.log(A.getDet()), cholesky.getLogDet(), Matrix.epsilon);
+        Vector x = A.solve(new Vector(4, 14, 6));
+        assertTrue(x.equals(new Vector(1, 1, 1)));
+
+        // Symmetric but indefinite, and not symmetric
+        double[][] contentsB = {
+                        { 1, 2 },
+                        { 2, 1 }
+        };
+        assertFalse(new SquareMatrix(2, contentsB).getCholesky().isPositiveDefinite());
+        double[][] contentsC = {
+                        { 2, 1 },
+                        { 0, 2 }
+        };
+        assertFalse(new SquareMatrix(2, contentsC).getCholesky().isPositiveDefinite());
+
+        // Large enough to be factored in blocks, with several right-hand sides
+        int n = 200;
+        SquareMatrix G = new SquareMatrix(n);
+        for (int r = 1; r <= n; r++) {
+            for (int c = 1; c <= n; c++) {
+                G.set(r, c, Math.sin(r * c));
+            }
+        }
+        SquareMatrix S = Operations.matrixMult(G, G.getTranspose());
+        for (int i = 1; i <= n; i++) {
+            S.set(i, i, S.get(i, i) + 1);
+        }
+        Cholesky large = S.getCholesky();
+        assertTrue(large.isPositiveDefinite());
+        SquareMatrix U = S.getLU().getU();
+        double logDet = 0;
+        for (int i = 1; i <= n; i++) {
+            logDet += Math.log(Math.abs(U.get(i, i)));
+        }
+        assertEquals(logDet, large.getLogDet(), 0.000001);
+        Matrix B = new Matrix(n, 3);
+        for (int r = 1; r <= n; r++) {
+            for (int c = 1; c <= 3; c++) {
+                B.set(r, c, r % (c + 1));
+            }
+        }
+        Matrix X = large.solve(B);
+        assertTrue(Operations.matrixMult(S, X).equals(B));
+    }
+
+    @Test
+    public void sparse() throws MatrixException {
+        int[] rows = { 1, 3, 2, 1, 3, 1 };
+        int[] cols = { 1, 1, 2, 3, 3, 1 };
+        double[] values = { 1, 4, 5, 2, 6, 1 };
+        SparseMatrix S = SparseMatrix.fromTriplets(3, 4, rows, cols, values);
+        assertTrue(S.isCSR());
+        assertEquals(5, S.nonZeros());
+        assertEquals(2, S.get(1, 1), Matrix.epsilon);
+        assertEquals(0, S.get(2, 4), Matrix.epsilon);
+        assertEquals(2, S.count(3));
+        double[][] contents = {
+                        { 2, 0, 2, 0 },
+                        { 0, 5, 0, 0 },
+                        { 4, 0, 6, 0 }
+        };
+        Matrix A = new Matrix(3, 4, contents);
+        assertTrue(S.toMatrix().equals(A));
+        assertTrue(new SparseMatrix(A).toMatrix().equals(A));
+
+        SparseMatrix T = S.getTranspose();
+        assertFalse(T.isCSR());
+        assertTrue(T.toMatrix().equals(A.getTranspose()));
+        assertTrue(T.toCSR().toMatrix().equals(A.getTranspose()));
+        assertEquals(4, T.toCSR().get(1, 3), Matrix.epsilon);
+
+        Vector x = new Vector(1, 2, 3, 4);
+        assertTrue(Operations.matrixMult(S, x).equals(new Vector(8, 10, 22)));
+        assertTrue(S.toCSC().multiply(x).equals(new Vector(8, 10, 22)));
+
+        Matrix STS = Operations.matrixMult(A.getTranspose(), A);
+        assertTrue(Operations.matrixMult(T, S).toMatrix().equals(STS));
+        // A narrower product reuses the workspace of the one before
+        assertTrue(Operations.matrixMult(S, T).toMatrix()
+                   .equals(Operations.matrixMult(A, A.getTranspose())));
+        assertTrue(Operations.matrixMult(T, A).equals(STS));
+        assertTrue(Operations.matrixMult(A.getTranspose(), S).equals(STS));
+        assertTrue(Operations.add(S, S).toMatrix().equals(Operations.scalarMult(A, 2)));
+        assertEquals(0, Operations.subtract(S, S).nonZeros());
+        assertTrue(Operations.scalarMult(S, -1).toMatrix().equals(Operations.scalarMult(A, -1)));
+
+        int[] pointers = { 0, 2, 1 };
+        int[] indices = { 0, 1 };
+        double[] entries = { 1, 1 };
+        try {
+            new SparseMatrix(2, 2, pointers, indices, entries, true);
+            fail();
+        } catch (MatrixException e) {
+            // Pointers must not decrease
+        }
+    }
+
+
+    @Test
+    public void sparseSolvers() throws MatrixException {
+        // The 5-point Laplacian on a 6 x 6 grid, plus a convection term for
+        // an unsymmetric matrix with the same pattern
+        int g = 6, n = g * g;
+        int[] rows = new int[5 * n], cols = new int[5 * n];
+        double[] laplace = new double[5 * n], convect = new double[5 * n];
+        int count = 0;
+        for (int i = 0; i < g; i++) {
+            for (int j = 0; j < g; j++) {
+                int k = i * g + j;
+                int[][] nbrs = { { i, j }, { i - 1, j }, { i + 1, j }, { i, j - 1 }, { i, j + 1 } };
+                for (int[] nbr : nbrs) {
+                    if (nbr[0] < 0 || nbr[0] >= g || nbr[1] < 0 || nbr[1] >= g) {
+                        continue;
+                    }
+                    int m = nbr[0] * g + nbr[1];
+                    rows[count] = k + 1;
+                    cols[count] = m + 1;
+                    laplace[count] = m == k ? 4 : -1;
+                    convect[count] = m == k ? 4 : m > k ? -1.5 : -0.5;
+                    count++;
+                }
+            }
+        }
+        rows = Arrays.copyOf(rows, count);
+        cols = Arrays.copyOf(cols, count);
+        SparseMatrix A = SparseMatrix.fromTriplets(n, n, rows, cols, Arrays.copyOf(laplace, count));
+        SparseMatrix B = SparseMatrix.fromTriplets(n, n, rows, cols, Arrays.copyOf(convect, count));
+        double[] values = new double[n];
+        for (int k = 0; k < n; k++) {
+            values[k] = k % 7 - 3;
+        }
+        Vector b = new Vector(values);
+        Vector expected = ((SquareMatrix) A.toMatrix()).solve(b);
+
+        for (SparseSymbolic.Ordering ordering : SparseSymbolic.Ordering.values()) {
+            SparseSymbolic S = new SparseSymbolic(A, ordering);
+            int[] perm = S.getPermutation().clone();
+            Arrays.sort(perm);
+            for (int k = 0; k < n; k++) {
+                assertEquals(k + 1, perm[k]);
+            }
+            SparseCholesky C = new SparseCholesky(A, S);
+            assertTrue(C.isPositiveDefinite());
+            assertTrue(C.solve(b).equals(expected));
+            assertTrue(new SparseLU(A, S).solve(b).equals(expected));
+
+            // The analysis is reused for new values with the same pattern
+            SparseLU L = new SparseLU(B, S);
+            assertFalse(L.isSingular());
+            assertTrue(B.multiply(L.solve(b)).equals(b));
+        }
+        SparseSymbolic natural = new SparseSymbolic(A, SparseSymbolic.Ordering.NATURAL);
+        assertTrue(new SparseSymbolic(A).getFactorNonZeros() < natural.getFactorNonZeros());
+        double logDet = 0;
+        SquareMatrix U = ((SquareMatrix) A.toMatrix()).getLU().getU();
+        for (int k = 1; k <= n; k++) {
+            logDet += Math.log(Math.abs(U.get(k, k)));
+        }
+        assertEquals(logDet, new SparseCholesky(A).getLogDet(), 1e-9);
+
+        // Symmetric but indefinite, and unsymmetric
+        assertFalse(new SparseCholesky(Operations.scalarMult(A, -1)).isPositiveDefinite());
+        assertFalse(new SparseCholesky(B).isPositiveDefinite());
+        SparseSymbolic S = new SparseSymbolic(A);
+        assertTrue(new SparseCholesky(Operations.scalarMult(A, 2), S).isPositiveDefinite());
+        try {
+            new SparseLU(SparseMatrix.fromTriplets(n, n, new int[] { 1 }, new int[] { 1 },
+                                                   new double[] { 1 }), S);
+            fail();
+        } catch (MatrixException e) {
+            // The pattern differs from the analysed one
+        }
+    }
+
+
+    @Test
+    public void banded() throws MatrixException {
+        int n = 9;
+        SquareMatrix A = new SquareMatrix(n);
+        for (int r = 1; r <= n; r++) {
+            for (int c = Math.max(1, r - 2); c <= Math.min(n, r + 1); c++) {
+                A.set(r, c, r == c ? 0.5 : (r * 3 + c * 5) % 7 - 3);
+            }
+        }
+        BandMatrix B = new BandMatrix(A);
+        assertEquals(2, B.getLowerBandwidth());
+        assertEquals(1, B.getUpperBandwidth());
+        assertTrue(B.toMatrix().equals(A));
+        assertEquals(A.getLU().getDet(), B.getDet(), 1e-9);
+        double[] values = new double[n];
+        for (int k = 0; k < n; k++) {
+            values[k] = k - 4;
+        }
+        Vector b = new Vector(values);
+        Vector x = B.solve(b);
+        assertTrue(x.equals(A.solve(b)));
+        assertTrue(B.multiply(x).equals(b));
+        try {
+            B.set(1, 5, 1);
+            fail();
+        } catch (MatrixException e) {
+            // Outside the band
+        }
+
+        // A tridiagonal system far too large to hold densely
+        int m = 100000;
+        double[] lower = new double[m - 1], diagonal = new double[m], upper = new double[m - 1];
+        double[] rhs = new double[m];
+        for (int k = 0; k < m; k++) {
+            diagonal[k] = 4;
+            rhs[k] = k % 5;
+            if (k < m - 1) {
+                lower[k] = -1;
+                upper[k] = -2;
+            }
+        }
+        TridiagonalMatrix T = new TridiagonalMatrix(lower, diagonal, upper);
+        Vector y = new Vector(rhs);
+        assertTrue(T.multiply(T.solve(y)).equals(y));
+
+        // Not diagonally dominant, so the Thomas algorithm is not used
+        double[][] contents = {
+                        { 0, 1, 0 },
+                        { 1, 0, 2 },
+                        { 0, 3, 1 }
+        };
+        SquareMatrix C = new SquareMatrix(3, contents);
+        TridiagonalMatrix S = new TridiagonalMatrix(C);
+        assertEquals(C.getLU().getDet(), S.getDet(), Matrix.epsilon);
+        assertTrue(S.solve(new Vector(1, 2, 3)).equals(C.solve(new Vector(1, 2, 3))));
+    }
+
+
+    @Test
+    public void batch() throws MatrixException {
+        Random random = new Random(7);
+        int count = 50;
+        for (int size = 2; size <= 4; size++) {
+            MatrixBatch A = new MatrixBatch(size, count), B = new MatrixBatch(size, count);
+            double[] b = new double[size * count];
+            for (int i = 0; i < count; i++) {
+                for (int r = 1; r <= size; r++) {
+                    b[(r - 1) * count + i] = random.nextDouble() - 0.5;
+                    for (int c = 1; c <= size; c++) {
+                        A.set(i, r, c, random.nextDouble() - 0.5 + (r == c ? 1 : 0));
+                        B.set(i, r, c, random.nextDouble() - 0.5);
+                    }
+                }
+            }
+            double[] det = A.getDet();
+            MatrixBatch inverse = A.getInverse(), product = A.multiply(B);
+            double[] x = A.solve(b);
+            for (int i = 0; i < count; i++) {
+                SquareMatrix a = A.get(i);
+                assertEquals(a.getLU().getDet(), det[i], 1e-12);
+                assertTrue(inverse.get(i).equals(a.getLU().getInverse()));
+                assertTrue(product.get(i).equals(Operations.matrixMult(a, B.get(i))));
+                double[] rhs = new double[size];
+                for (int r = 0; r < size; r++) {
+                    rhs[r] = b[r * count + i];
+                }
+                Vector expected = a.getLU().solve(new Vector(rhs));
+                for (int r = 0; r < size; r++) {
+                    assertEquals(expected.get(r), x[r * count + i], 1e-9);
+                }
+            }
+            MatrixBatch C = new MatrixBatch(size, count);
+            C.set(3, inverse.get(3));
+            assertTrue(C.get(3).equals(inverse.get(3)));
+        }
+        try {
+            new MatrixBatch(5, 10);
+            fail();
+        } catch (MatrixException e) {
+            // Only small matrices are batched
+        }
+        MatrixBatch pair = new MatrixBatch(2, 2);
+        try {
+            pair.get(2, 1, 1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // There is no matrix 2, though entry (1, 2) of matrix 0 follows
+        }
+        try {
+            pair.set(0, 1, 3, 1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // Column 3 is not in a 2 x 2 matrix
+        }
+        try {
+            pair.get(-1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // There is no matrix -1
+        }
+    }
+
+
+    @Test
+    public void fixedSize() throws MatrixException {
+        Random random = new Random(11);
+        for (int n = 2; n <= 4; n++) {
+            SquareMatrix A = new SquareMatrix(n), B = new SquareMatrix(n);
+            double[] values = new double[n];
+            for (int r = 1; r <= n; r++) {
+                values[r - 1] = random.nextDouble();
+                for (int c = 1; c <= n; c++) {
+                    A.set(r, c, random.nextDouble() - 0.5 + (r == c ? 1 : 0));
+                    B.set(r, c, random.nextDouble() - 0.5);
+                }
+            }
+            Vector x = new Vector(values);
+            SquareMatrix product = Operations.matrixMult(A, B);
+            SquareMatrix inverse = A.getLU().getInverse();
+            double det = A.getLU().getDet();
+            Vector image = inverse.getLU().solve(x);
+            if (n == 2) {
+                Matrix2 a = new Matrix2(A), b = new Matrix2(B);
+                assertTrue(a.toSquareMatrix().equals(A));
+                assertEquals(det, a.getDet(), 1e-12);
+                assertTrue(a.getInverse().toSquareMatrix().equals(inverse));
+                assertTrue(a.multiply(b).toSquareMatrix().equals(product));
+                assertTrue(a.getTranspose().toSquareMatrix().equals(A.getTranspose()));
+                assertTrue(a.transform(x).equals(image));
+                assertTrue(a.multiply(Matrix2.IDENTITY).equals(a));
+            } else if (n == 3) {
+                Matrix3 a = new Matrix3(A), b = new Matrix3(B);
+                assertTrue(a.toSquareMatrix().equals(A));
+                assertEquals(det, a.getDet(), 1e-12);
+                assertTrue(a.getInverse().toSquareMatrix().equals(inverse));
+                assertTrue(a.multiply(b).toSquareMatrix().equals(product));
+                assertTrue(a.getTranspose().toSquareMatrix().equals(A.getTranspose()));
+                assertTrue(a.transform(x).equals(image));
+                assertTrue(a.multiply(Matrix3.IDENTITY).equals(a));
+            } else {
+                Matrix4 a = new Matrix4(A), b = new Matrix4(B);
+                assertTrue(a.toSquareMatrix().equals(A));
+                assertEquals(det, a.getDet(), 1e-12);
+                assertTrue(a.getInverse().toSquareMatrix().equals(inverse));
+                assertTrue(a.multiply(b).toSquareMatrix().equals(product));
+                assertTrue(a.getTranspose().toSquareMatrix().equals(A.getTranspose()));
+                assertTrue(a.transform(x).equals(image));
+                assertTrue(a.add(b).scalarMult(2).equals(
+                    new Matrix4(Operations.scalarMult(Operations.add(A, B), 2))));
+                double[] y = values.clone();
+                a.transform(y, y, 0);
+                assertTrue(new Vector(y).equals(image));
+            }
+        }
+        try {
+            new Matrix3(new SquareMatrix(4));
+            fail();
+        } catch (MatrixException e) {
+            // The dimensions differ
+        }
+        try {
+            Matrix3.IDENTITY.get(1, 4);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // (1, 4) would otherwise alias (2, 1)
+        }
+    }
+
+    /** Fills A with entries uniform in [-0.5, 0.5). */
+    private static void fill(Matrix A, Random random) {
+        for (int r = 1; r <= A.getHeight(); r++) {
+            for (int c = 1; c <= A.getWidth(); c++) {
+                A.set(r, c, random.nextDouble() - 0.5);
+            }
+        }
+    }
+
+    @Test
+    public void floatMatrices() throws MatrixException {
+        Random random = new Random(13);
+        Matrix A = new Matrix(70, 150), B = new Matrix(150, 40), C = new Matrix(70, 150);
+        fill(A, random);
+        fill(B, random);
+        fill(C, random);
+        double[] values = new double[150];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble() - 0.5;
+        }
+        Vector x = new Vector(values);
+        FloatMatrix a = new FloatMatrix(A), b = new FloatMatrix(B), c = new FloatMatrix(C);
+        FloatVector v = new FloatVector(x);
+        assertTrue(new FloatMatrix(a.toMatrix()).equals(a));
+        assertTrue(v.toVector().equals(x));
+        assertTrue(new FloatMatrix(Operations.matrixMult(A, B))
+                   .equals(FloatOperations.matrixMult(a, b)));
+        assertTrue(new FloatMatrix(Operations.add(A, C)).equals(FloatOperations.add(a, c)));
+        assertTrue(new FloatMatrix(Operations.subtract(A, C))
+                   .equals(FloatOperations.subtract(a, c)));
+        assertTrue(new FloatMatrix(Operations.scalarMult(A, 3))
+                   .equals(FloatOperations.scalarMult(a, 3)));
+        a.set(1, 1, Float.POSITIVE_INFINITY);
+        assertEquals(Float.NEGATIVE_INFINITY, FloatOperations.scalarMult(a, -2).get(1, 1), 0);
+        a.set(1, 1, (float) A.get(1, 1));
+        assertTrue(new FloatMatrix(A.getTranspose()).equals(a.getTranspose()));
+        Matrix X = new Matrix(150, 1, values, 0, 1);
+        FloatVector y = FloatOperations.matrixMult(a, v);
+        assertTrue(new FloatMatrix(Operations.matrixMult(A, X))
+                   .equals(new FloatMatrix(70, 1, y.values(), 0, 1)));
+        assertEquals(x.dotProduct(x), v.dotProduct(v), 1e-4);
+        FloatMatrix s = FloatOperations.matrixMult(a, a.getTranspose());
+        assertTrue(s instanceof FloatSquareMatrix);
+        assertTrue(s.toMatrix() instanceof SquareMatrix);
+        SquareMatrix AAT = new SquareMatrix(70);
+        Operations.copy(Operations.matrixMult(A, A.getTranspose()), AAT);
+        assertEquals(AAT.getTrace(), ((FloatSquareMatrix) s).getTrace(), 1e-3);
+        try {
+            FloatOperations.matrixMult(a, c);
+            fail();
+        } catch (MatrixException e) {
+            // The dimensions differ
+        }
+    }
+
+    @Test
+    public void offHeap() throws MatrixException, IOException {
+        Random random = new Random(17);
+        Matrix A = new Matrix(90, 60), B = new Matrix(90, 60), C = new Matrix(60, 40);
+        fill(A, random);
+        fill(B, random);
+        fill(C, random);
+        double[] values = new double[60];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble();
+        }
+        Vector x = new Vector(values);
+        try (OffHeapMatrix a = OffHeapMatrix.allocate(A);
+             OffHeapMatrix b = OffHeapMatrix.allocate(90, 60, 7);
+             OffHeapMatrix c = OffHeapMatrix.allocate(60, 40, 9)) {
+            for (int r = 1; r <= 90; r++) {
+                for (int col = 1; col <= 60; col++) {
+                    b.set(r, col, B.get(r, col));
+                }
+            }
+            for (int r = 1; r <= 60; r++) {
+                for (int col = 1; col <= 40; col++) {
+                    c.set(r, col, C.get(r, col));
+                }
+            }
+            assertTrue(a.toMatrix().equals(A));
+            assertTrue(b.toMatrix().equals(B));
+            try (OffHeapMatrix sum = Operations.add(a, b);
+                 OffHeapMatrix difference = Operations.subtract(a, b);
+                 OffHeapMatrix scaled = Operations.scalarMult(b, -2);
+                 OffHeapMatrix product = Operations.matrixMult(b, c);
+                 OffHeapMatrix heapProduct = Operations.matrixMult(a, C.getTranspose().getTranspose())) {
+                assertTrue(sum.toMatrix().equals(Operations.add(A, B)));
+                assertTrue(difference.toMatrix().equals(Operations.subtract(A, B)));
+                assertTrue(scaled.toMatrix().equals(Operations.scalarMult(B, -2)));
+                assertTrue(product.toMatrix().equals(Operations.matrixMult(B, C)));
+                assertTrue(heapProduct.toMatrix().equals(Operations.matrixMult(A, C)));
+            }
+            Vector y = Operations.matrixMult(a, x);
+            for (int r = 1; r <= 90; r++) {
+                double expected = 0;
+                for (int col = 1; col <= 60; col++) {
+                    expected += A.get(r, col) * values[col - 1];
+                }
+                assertEquals(expected, y.get(r - 1), 1e-12);
+            }
+            try {
+                Operations.matrixMult(a, b);
+                fail();
+            } catch (MatrixException e) {
+                // The dimensions differ
+            }
+        }
+
+        File file = File.createTempFile("matrix", ".bin");
+        file.deleteOnExit();
+        OffHeapMatrix mapped = OffHeapMatrix.map(file.toPath(), 90, 60);
+        for (int r = 1; r <= 90; r++) {
+            for (int col = 1; col <= 60; col++) {
+                mapped.set(r, col, A.get(r, col));
+            }
+        }
+        mapped.close();
+        assertTrue(mapped.isClosed());
+        try {
+            mapped.get(1, 1);
+            fail();
+        } catch (IllegalStateException e) {
+            // The matrix has been closed
+        }
+        assertEquals(90 * 60 * 8, file.length());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             OffHeapMatrix read = OffHeapMatrix.map(channel, 0, 90, 60, MapMode.READ_ONLY, 11)) {
+            assertTrue(read.toMatrix().equals(A));
+            assertEquals(A.get(90, 60), read.get(90, 60), 0);
+        }
+
+        File out = File.createTempFile("product", ".bin");
+        File total = File.createTempFile("sum", ".bin");
+        out.deleteOnExit();
+        total.deleteOnExit();
+        try (OffHeapMatrix a = OffHeapMatrix.allocate(A);
+             OffHeapMatrix b = OffHeapMatrix.allocate(B);
+             OffHeapMatrix product = OffHeapMatrix.map(out.toPath(), 90, 40);
+             OffHeapMatrix sum = OffHeapMatrix.map(total.toPath(), 90, 60)) {
+            Operations.matrixMult(a, C, product);
+            assertTrue(product.toMatrix().equals(Operations.matrixMult(A, C)));
+            Operations.add(a, b, sum);
+            assertTrue(sum.toMatrix().equals(Operations.add(A, B)));
+            Operations.subtract(sum, b, sum);
+            Operations.scalarMult(sum, 2, sum);
+            Matrix expected = Operations.subtract(Operations.add(A, B), B);
+            assertTrue(sum.toMatrix().equals(Operations.scalarMult(expected, 2)));
+            try {
+                Operations.matrixMult(a, C, sum);
+                fail();
+            } catch (MatrixException e) {
+                // The result has the wrong dimension
+            }
+        }
+    }
+
+    @Test
+    public void matrixFiles() throws MatrixException, IOException {
+        Random random = new Random(19);
+        Path file = File.createTempFile("matrix", ".bin").toPath();
+        file.toFile().deleteOnExit();
+        Matrix A = new Matrix(30, 20);
+        fill(A, random);
+        MatrixFile.write(file, A);
+        assertEquals(64 + 30 * 20 * 8, Files.size(file));
+        Matrix read = MatrixFile.read(file);
+        assertFalse(read instanceof SquareMatrix);
+        assertTrue(read.equals(A));
+        MatrixFile.write(file, A.getTranspose());
+        assertTrue(MatrixFile.read(file).equals(A.getTranspose()));
+
+        SquareMatrix S = new SquareMatrix(25);
+        fill(S, random);
+        Vector b = new Vector(new double[25]);
+        b.values()[3] = 1;
+        Vector x = S.getLU().solve(b);
+        MatrixFile.write(file, S);
+        SquareMatrix T = (SquareMatrix) MatrixFile.read(file);
+        assertTrue(T.equals(S));
+        assertNotNull(T.cachedLU());
+        assertTrue(T.getLU().solve(b).equals(x));
+        assertEquals(S.getLU().getDet(), T.getLU().getDet(), 1e-12);
+        SquareMatrix P = Operations.matrixMult(S, S.getTranspose());
+        assertTrue(P.getCholesky().isPositiveDefinite());
+        MatrixFile.write(file, P);
+        T = (SquareMatrix) MatrixFile.read(file);
+        assertNotNull(T.cachedCholesky());
+        assertTrue(T.getCholesky().getL().equals(P.getCholesky().getL()));
+
+        VectorSet set = new VectorSet(new Vector(1, 2, 3), new Vector(4, 5, 6));
+        MatrixFile.write(file, set);
+        assertTrue(MatrixFile.readVectorSet(file).equals(set));
+        assertTrue(MatrixFile.read(file).equals(set.matricize()));
+
+        FloatMatrix F = new FloatMatrix(A);
+        MatrixFile.write(file, F);
+        assertEquals(64 + 30 * 20 * 4, Files.size(file));
+        assertTrue(MatrixFile.readFloat(file).equals(F));
+        assertTrue(new FloatMatrix(MatrixFile.read(file)).equals(F));
+
+        MatrixFile.write(file, A);
+        try (OffHeapMatrix M = MatrixFile.map(file, MapMode.READ_WRITE)) {
+            assertTrue(M.toMatrix().equals(A));
+            M.set(1, 1, 42);
+        }
+        assertEquals(42, MatrixFile.read(file).get(1, 1), 0);
+        Path copy = file.resolveSibling(file.getFileName() + ".copy");
+        try (OffHeapMatrix M = MatrixFile.map(file, MapMode.READ_ONLY)) {
+            MatrixFile.write(copy, M);
+        }
+        assertTrue(MatrixFile.read(copy).equals(MatrixFile.read(file)));
+        Files.delete(copy);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(100);
+        }
+        try {
+            MatrixFile.read(file);
+            fail();
+        } catch (MatrixException e) {
+            // The entries are missing
+        }
+    }
+
+    @Test
+    public void parseNumbers() {
+        Random random = new Random(23);
+        String[] fixed = {"0", "-0", "1", "+2.5", ".5", "5.", "1e3", "1E-3", "-1.25e+2",
+                          "0.1", "123456789012345678901234567890", "1e-400", "1e400",
+                          "4.9e-324", "1.7976931348623157E308", "0.30000000000000004",
+                          "NaN", "-Infinity", "00012.5000"};
+        for (String text : fixed) {
+            assertEquals(text, Double.parseDouble(text), parse(text), 0);
+        }
+        for (int i = 0; i < 10000; i++) {
+            double x = Double.longBitsToDouble(random.nextLong());
+            String text = i % 2 == 0 ? Double.toString(x)
+                : String.format("%." + random.nextInt(17) + "f", random.nextDouble() * 1000);
+            assertEquals(text, Double.parseDouble(text), parse(text), 0);
+        }
+        for (String text : new String[] {"", "-", ".", "e5", "1e", "1.2.3", "1,5"}) {
+            try {
+                parse(text);
+                fail(text);
+            } catch (NumberFormatException e) {
+                // Not a number
+            }
+        }
+    }
+
+    /** Returns the double TEXT is read as. */
+    private static double parse(String text) {
+        byte[] b = text.getBytes(StandardCharsets.ISO_8859_1);
+        return TextReader.parseDouble(b, 0, b.length);
+    }
+
+    @Test
+    public void textFormats() throws MatrixException, IOException {
+        Random random = new Random(29);
+        Path file = File.createTempFile("matrix", ".txt").toPath();
+        file.toFile().deleteOnExit();
+        Matrix A = new Matrix(400, 300);
+        fill(A, random);
+        for (int r = 1; r <= 400; r++) {
+            for (int c = 1; c <= 300; c += 1 + random.nextInt(3)) {
+                A.set(r, c, 0);
+            }
+        }
+        A.set(7, 9, 1e-300);
+        A.set(8, 9, -3);
+        MatrixCsv.write(file, A);
+        Matrix B = MatrixCsv.read(file);
+        assertArrayEquals(A.data(), Arrays.copyOf(B.data(), 400 * 300), 0);
+        SparseMatrix S = MatrixCsv.readSparse(file, ',', false);
+        assertTrue(S.toMatrix().equals(A));
+        assertEquals(new SparseMatrix(A).nonZeros(), S.nonZeros());
+
+        String csv = "a;b;c\r\n 1 ; 2.5;-3\r\n\r\n4;5e1; 6 \n7;8;9";
+        Matrix C = MatrixCsv.read(channel(csv), ';', true);
+        assertTrue(C instanceof SquareMatrix);
+        assertTrue(C.equals(new Matrix(3, 3, new double[][] {{1, 2.5, -3}, {4, 50, 6}, {7, 8, 9}})));
+        try {
+            MatrixCsv.read(channel("1,2\n\n3,4\n5\n"), ',', false);
+            fail();
+        } catch (MatrixException e) {
+            assertTrue(e.getMessage().startsWith("Line 4"));
+        }
+        try {
+            MatrixCsv.read(channel("1,2\n3,x\n"), ',', false);
+            fail();
+        } catch (MatrixException e) {
+            assertTrue(e.getMessage().startsWith("Line 2"));
+        }
+
+        MatrixMarket.write(file, S);
+        assertTrue(MatrixMarket.readSparse(file).toMatrix().equals(A));
+        MatrixMarket.write(file, S.toCSC());
+        assertTrue(MatrixMarket.read(file).equals(A));
+        MatrixMarket.write(file, A);
+        assertArrayEquals(A.data(), MatrixMarket.read(file).data(), 0);
+
+        String mtx = "%%MatrixMarket matrix coordinate real symmetric\n% comment\n3 3 4\n"
+            + "1 1 2\n2 1 -1\n3 2 -1.5\n3 3 4\n";
+        Matrix M = MatrixMarket.read(channel(mtx));
+        assertTrue(M.equals(new Matrix(3, 3, new double[][] {{2, -1, 0}, {-1, 0, -1.5},
+                                                              {0, -1.5, 4}})));
+        mtx = "%%MatrixMarket matrix coordinate pattern skew-symmetric\n2 2 1\n2 1\n";
+        assertTrue(MatrixMarket.read(channel(mtx))
+                   .equals(new Matrix(2, 2, new double[][] {{0, -1}, {1, 0}})));
+        mtx = "%%MatrixMarket matrix array real symmetric\n2 2\n1\n2\n3\n";
+        assertTrue(MatrixMarket.read(channel(mtx))
+                   .equals(new Matrix(2, 2, new double[][] {{1, 2}, {2, 3}})));
+        try {
+            MatrixMarket.read(channel("%%MatrixMarket matrix coordinate real general\n"
+                                      + "2 2 3\n1 1 1\n2 2 1\n"));
+            fail();
+        } catch (MatrixException e) {
+            // An entry is missing
+        }
+        try {
+            MatrixMarket.read(channel("%%MatrixMarket matrix coordinate complex general\n"));
+            fail();
+        } catch (MatrixException e) {
+            // Complex matrices are not supported
+        }
+    }
+
+    /** Returns a channel reading TEXT. */
+    private static java.nio.channels.ReadableByteChannel channel(String text) {
+        return Channels.newChannel(new java.io.ByteArrayInputStream(
+            text.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+}
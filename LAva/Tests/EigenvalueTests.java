@@ -3,6 +3,7 @@ package matrix_calculator;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -86,6 +87,42 @@ public class EigenvalueTests {
         assertTrue(A.getR().equals(R));
     }
     
+    @Test
+    public void thinQR() throws MatrixException {
+        double[][] contentsA = {
+                        { 3, -6 },
+                        { 4, -8 },
+                        { 0, 1 }
+        };
+        Matrix A = new Matrix(3, 2, contentsA);
+
+        double[][] contentsQ = {
+                        { 0.6, 0 },
+                        { 0.8, 0 },
+                        { 0, 1 }
+        };
+        double[][] contentsR = {
+                        { 5, -10 },
+                        { 0, 1 }
+        };
+        QR qr = A.getQRFactorization();
+        assertTrue(qr.getQ().equals(new Matrix(3, 2, contentsQ)));
+        assertTrue(qr.getR().equals(new SquareMatrix(2, contentsR)));
+
+        int n = 80;
+        SquareMatrix B = new SquareMatrix(n);
+        for (int r = 1; r <= n; r++) {
+            for (int c = 1; c <= n; c++) {
+                B.set(r, c, (r * 7 + c * c) % 17 - 8 + (r == c ? n : 0));
+            }
+        }
+        SquareMatrix Q = B.getQ();
+        assertTrue(Operations.matrixMult(Q, B.getR()).equals(B));
+        SquareMatrix QTQ = Operations.matrixMult(Q.viewTranspose(), Q);
+        assertTrue(QTQ.isDiagonal());
+        assertEquals(QTQ.getTrace(), n, Matrix.epsilon);
+    }
+
     @Test
     public void eigenvalues() throws MatrixException {
         double[][] contentsA = {
@@ -240,6 +277,84 @@ public class EigenvalueTests {
 //        diagonalised.get(0).print();
     }
     
+    @Test
+    public void clusteredEigenvectors() throws MatrixException {
+        // -1 is a double eigenvalue with two independent eigenvectors
+        double[][] contentsA = {
+                        { -13, -8, -4 },
+                        { 12, 7, 4 },
+                        { 24, 16, 7 }
+        };
+        SquareMatrix A = new SquareMatrix(3, contentsA);
+        ArrayList<Vector> vectors = A.getEigenvectors();
+        assertEquals(3, vectors.size());
+        assertEigenvectors(A, vectors);
+        assertTrue(A.isDiagonalisable());
+
+        // PDP^-1 with eigenvalues 2 and 2 + 1e-10, which share a cluster
+        double[][] contentsP = {
+                        { 1, 1, 0 },
+                        { 0, 1, 1 },
+                        { 1, 0, 1 }
+        };
+        SquareMatrix P = new SquareMatrix(3, contentsP);
+        SquareMatrix D = new SquareMatrix(3, new double[][] {
+                        { 2, 0, 0 },
+                        { 0, 2 + 1e-10, 0 },
+                        { 0, 0, 5 }
+        });
+        SquareMatrix B = Operations.matrixMult(Operations.matrixMult(P, D), P.getInverse());
+        vectors = B.getEigenvectors();
+        assertEquals(3, vectors.size());
+        assertEigenvectors(B, vectors);
+    }
+
+    @Test
+    public void defectiveEigenvectors() throws MatrixException {
+        // 2 has algebraic multiplicity 2 but a single eigenvector
+        double[][] contentsA = {
+                        { 2, 1, 0 },
+                        { 0, 2, 0 },
+                        { 0, 0, 3 }
+        };
+        SquareMatrix A = new SquareMatrix(3, contentsA);
+        ArrayList<Vector> vectors = A.getEigenvectors();
+        assertEquals(2, vectors.size());
+        assertEigenvectors(A, vectors);
+        assertFalse(A.isDiagonalisable());
+    }
+
+    /** Asserts that VECTORS are linearly independent and that each satisfies
+     * Av = lambda v for an eigenvalue lambda of A. */
+    private static void assertEigenvectors(SquareMatrix A, ArrayList<Vector> vectors)
+        throws MatrixException {
+        int n = A.getHeight(), k = vectors.size();
+        Matrix V = new Matrix(n, k);
+        for (int j = 0; j < k; j++) {
+            Vector v = vectors.get(j);
+            double[] image = new double[n];
+            double dot = 0, length = 0;
+            for (int r = 1; r <= n; r++) {
+                for (int c = 1; c <= n; c++) {
+                    image[r - 1] += A.get(r, c) * v.get(c - 1);
+                }
+                dot += v.get(r - 1) * image[r - 1];
+                length += v.get(r - 1) * v.get(r - 1);
+                V.set(r, j + 1, v.get(r - 1));
+            }
+            double lambda = dot / length;
+            boolean eigenvalue = false;
+            for (double value : A.getEigenvalues()) {
+                eigenvalue |= Math.abs(value - lambda) < Matrix.epsilon;
+            }
+            assertTrue(eigenvalue);
+            for (int r = 0; r < n; r++) {
+                assertEquals(lambda * v.get(r), image[r], Matrix.epsilon);
+            }
+        }
+        assertEquals(k, V.getSVD().getRank());
+    }
+
     @Test
     public void similarity() throws MatrixException{
         double[][] contents1 = {
@@ -262,4 +377,165 @@ public class EigenvalueTests {
 //        System.out.println(matrix2.getEigenvalues().get(2));
         assertTrue(matrix1.similar(matrix2));
     }
+
+    @Test
+    public void shiftedQR() throws MatrixException {
+        // A rotation by 90 degrees has eigenvalues +i and -i
+        double[][] contentsA = {
+                { 0, -1 },
+                { 1, 0 }
+        };
+        SquareMatrix A = new SquareMatrix(2, contentsA);
+        assertEquals(0, A.getEigenvalues().get(0), 0.0001);
+        assertEquals(0, A.getEigenvalues().get(1), 0.0001);
+        assertEquals(1, A.getImaginaryEigenvalues().get(0), 0.0001);
+        assertEquals(-1, A.getImaginaryEigenvalues().get(1), 0.0001);
+
+        // A companion matrix of (x - 1)(x - 2)...(x - 6)
+        double[] coefficients = { 720, -1764, 1624, -735, 175, -21 };
+        SquareMatrix B = new SquareMatrix(6);
+        for (int i = 1; i < 6; i++) {
+            B.set(i + 1, i, 1);
+        }
+        for (int i = 1; i <= 6; i++) {
+            B.set(i, 6, -coefficients[i - 1]);
+        }
+        for (int i = 0; i < 6; i++) {
+            assertEquals(6 - i, B.getEigenvalues().get(i), 0.0001);
+            assertEquals(0, B.getImaginaryEigenvalues().get(i), 0.0001);
+        }
+
+        int n = 60;
+        SquareMatrix C = new SquareMatrix(n);
+        Random random = new Random(9);
+        double trace = 0;
+        for (int r = 1; r <= n; r++) {
+            for (int c = 1; c <= n; c++) {
+                C.set(r, c, random.nextDouble() - 0.5);
+            }
+            trace += C.get(r, r);
+        }
+        double sum = 0, imaginary = 0;
+        for (int i = 0; i < n; i++) {
+            sum += C.getEigenvalues().get(i);
+            imaginary += C.getImaginaryEigenvalues().get(i);
+            if (i > 0) {
+                assertTrue(Math.hypot(C.getEigenvalues().get(i - 1),
+                                      C.getImaginaryEigenvalues().get(i - 1))
+                           >= Math.hypot(C.getEigenvalues().get(i),
+                                         C.getImaginaryEigenvalues().get(i)));
+            }
+        }
+        assertEquals(trace, sum, 0.000001);
+        assertEquals(0, imaginary, 0.000001);
+    }
+
+    @Test
+    public void symmetric() throws MatrixException {
+        double[][] contentsA = {
+                { 2, -1, 0 },
+                { -1, 2, -1 },
+                { 0, -1, 2 }
+        };
+        SquareMatrix A = new SquareMatrix(3, contentsA);
+        assertTrue(A.isSymmetric());
+        double root = Math.sqrt(2);
+        assertEquals(2 + root, A.getEigenvalues().get(0), 0.000001);
+        assertEquals(2, A.getEigenvalues().get(1), 0.000001);
+        assertEquals(2 - root, A.getEigenvalues().get(2), 0.000001);
+        double[] c1 = { 0.5, -root / 2, 0.5 };
+        assertTrue(A.getEigenvectors().get(0).equals(new Vector(c1)));
+        double[] c2 = { -root / 2, 0, root / 2 };
+        assertTrue(A.getEigenvectors().get(1).equals(new Vector(c2)));
+
+        int n = 40;
+        SquareMatrix B = new SquareMatrix(n);
+        Random random = new Random(4);
+        for (int r = 1; r <= n; r++) {
+            for (int c = 1; c <= r; c++) {
+                double value = random.nextDouble() - 0.5;
+                B.set(r, c, value);
+                B.set(c, r, value);
+            }
+        }
+        assertTrue(B.isSymmetric());
+        ArrayList<Double> values = B.getEigenvalues();
+        ArrayList<Vector> vectors = B.getEigenvectors();
+        assertEquals(n, vectors.size());
+        for (int i = 0; i < n; i++) {
+            Vector v = vectors.get(i);
+            Matrix Bv = Operations.matrixMult(B, v.matricize());
+            for (int r = 1; r <= n; r++) {
+                assertEquals(values.get(i) * v.get(r - 1), Bv.get(r, 1), 0.000001);
+            }
+            for (int j = 0; j < n; j++) {
+                assertEquals(i == j ? 1 : 0, v.dotProduct(vectors.get(j)), 0.000001);
+            }
+        }
+
+        // Only the lower triangle of a Matrix declared symmetric is read
+        SquareMatrix C = new SquareMatrix(n);
+        for (int r = 1; r <= n; r++) {
+            for (int c = 1; c <= r; c++) {
+                C.set(r, c, B.get(r, c));
+            }
+        }
+        C.setSymmetric();
+        for (int i = 0; i < n; i++) {
+            assertEquals(values.get(i), C.getEigenvalues().get(i), 0.000001);
+        }
+    }
+
+    @Test
+    public void svd() throws MatrixException {
+        double[][] contentsA = {
+                { 3, 2, 2 },
+                { 2, 3, -2 }
+        };
+        Matrix A = new Matrix(2, 3, contentsA);
+        for (SVD.Method method : SVD.Method.values()) {
+            SVD svd = new SVD(A, method, true);
+            assertEquals(5, svd.getSingularValues()[0], 0.000001);
+            assertEquals(3, svd.getSingularValues()[1], 0.000001);
+            assertEquals(2, svd.getRank());
+            assertEquals(5.0 / 3, svd.getConditionNumber(), 0.000001);
+            Matrix USV = Operations.matrixMult(Operations.matrixMult(svd.getU(), svd.getS()),
+                                               svd.getV().viewTranspose());
+            Matrix VtV = Operations.matrixMult(svd.getFullV().viewTranspose(),
+                                               svd.getFullV());
+            for (int r = 1; r <= 3; r++) {
+                for (int c = 1; c <= 3; c++) {
+                    if (r <= 2) {
+                        assertEquals(A.get(r, c), USV.get(r, c), 0.000001);
+                    }
+                    assertEquals(r == c ? 1 : 0, VtV.get(r, c), 0.000001);
+                }
+            }
+        }
+
+        double[][] contentsB = {
+                { 1, 2, 3, 4 },
+                { 5, 6, 7, 8 },
+                { 9, 10, 11, 12 },
+                { 13, 14, 15, 16 }
+        };
+        SquareMatrix B = new SquareMatrix(4, contentsB);
+        assertEquals(2, B.getSVD().getRank());
+        Matrix P = B.getSVD().getPseudoinverse();
+        assertTrue(P instanceof SquareMatrix);
+        Matrix BPB = Operations.matrixMult(Operations.matrixMult(B, P), B);
+        for (int r = 1; r <= 4; r++) {
+            for (int c = 1; c <= 4; c++) {
+                assertEquals(B.get(r, c), BPB.get(r, c), 0.000001);
+            }
+        }
+        double[] values = new SVD(B, SVD.Method.GOLUB_KAHAN, false).getSingularValues();
+        assertEquals(B.getSVD().getSingularValues()[0], values[0], 0.000001);
+        try {
+            new SVD(B.viewBlock(1, 4, 3, 2));
+            fail();
+        } catch (MatrixException e) {
+            // An empty block has no singular values
+        }
+    }
 }
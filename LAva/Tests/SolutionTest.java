@@ -2,6 +2,9 @@ package matrix_calculator;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
 import org.junit.Test;
 
 public class SolutionTest {
@@ -76,4 +79,204 @@ public class SolutionTest {
         assertTrue(answer.equalScale(solution3));
     }
     
+
+    @Test
+    public void numericSolve() throws MatrixException {
+        double[][] contents = {
+                        { 1, 1, 2 },
+                        { 2, 2, 4 },
+                        { 0, 1, 1 }
+        };
+        Matrix A = new Matrix(3, 3, contents);
+        // The reduced system has the row [ 0 0 0 | -3 ]
+        assertNull(A.solve(new Vector(1, -1, 0)));
+        assertNull(A.solve(new Vector(1, -1, 0), new String[3]));
+
+        Vector b = new Vector(3, 6, 1);
+        Vector x = A.solve(b);
+        assertTrue(x.equals(new Vector(2, 1, 0)));
+        String[] solset = new String[3];
+        assertTrue(A.solve(b, solset).equals(x));
+        assertEquals("2 - x3", solset[0]);
+        assertEquals("1 - x3", solset[1]);
+        assertEquals("Free", solset[2]);
+        try {
+            A.solve(new Vector(1, 2));
+            fail();
+        } catch (MatrixException e) {
+            // The vector has the wrong dimension
+        }
+    }
+
+    @Test
+    public void factorOnce() throws MatrixException {
+        double[][] spd = {
+                        { 4, 1, 0 },
+                        { 1, 3, 1 },
+                        { 0, 1, 2 }
+        };
+        double[][] general = {
+                        { 0, 2, 1 },
+                        { 1, 1, 1 },
+                        { 3, 0, 2 }
+        };
+        double[][] rectangular = {
+                        { 1, 1, 2 },
+                        { 2, 2, 4 },
+                        { 0, 1, 1 }
+        };
+        Vector[] b = { new Vector(3, 6, 1), new Vector(1, -1, 0), new Vector(0, 0, 2) };
+        Matrix[] matrices = {
+                        new SquareMatrix(3, spd),
+                        new Matrix(3, 3, general),
+                        new Matrix(3, 3, rectangular),
+                        new Matrix(3, 3, rectangular).getTranspose()
+        };
+        for (Matrix A : matrices) {
+            LinearSolver solver = new LinearSolver(A);
+            Vector[] x = solver.solve(b);
+            for (int j = 0; j < b.length; j++) {
+                Vector expected = new Matrix(3, 3, copy(A)).solve(b[j]);
+                if (expected == null) {
+                    assertNull(x[j]);
+                    assertNull(solver.solve(b[j]));
+                } else {
+                    assertTrue(x[j].equals(expected));
+                    assertTrue(solver.solve(b[j]).equals(expected));
+                }
+            }
+        }
+        LinearSolver solver = new LinearSolver(matrices[1]);
+        assertTrue(solver.isInvertible());
+        Matrix B = new VectorSet(b).toMatrix();
+        Matrix X = solver.solve(B);
+        for (int j = 0; j < b.length; j++) {
+            Vector expected = matrices[1].solve(b[j]);
+            for (int i = 1; i <= 3; i++) {
+                assertEquals(expected.get(i - 1), X.get(i, j + 1), Matrix.epsilon);
+            }
+        }
+        try {
+            new LinearSolver(matrices[2]).solve(B);
+            fail();
+        } catch (MatrixException e) {
+            // The second column of B has no solution
+        }
+    }
+
+    /** Returns the entries of the 3 x 3 Matrix A. */
+    private static double[][] copy(Matrix A) {
+        double[][] contents = new double[3][3];
+        for (int r = 0; r < 3; r++) {
+            for (int c = 0; c < 3; c++) {
+                contents[r][c] = A.get(r + 1, c + 1);
+            }
+        }
+        return contents;
+    }
+
+    /** Returns the 5-point Laplacian on a G x G grid, with the entries
+     * coupling to the next cell in the grid raised by SKEW. */
+    private static SparseMatrix grid(int g, double skew) throws MatrixException {
+        int n = g * g;
+        ArrayList<int[]> entries = new ArrayList<>();
+        ArrayList<Double> values = new ArrayList<>();
+        for (int i = 0; i < g; i++) {
+            for (int j = 0; j < g; j++) {
+                int k = i * g + j;
+                entries.add(new int[] { k, k });
+                values.add(4.0);
+                int[][] nbrs = { { i - 1, j }, { i + 1, j }, { i, j - 1 }, { i, j + 1 } };
+                for (int[] nbr : nbrs) {
+                    if (nbr[0] >= 0 && nbr[0] < g && nbr[1] >= 0 && nbr[1] < g) {
+                        int m = nbr[0] * g + nbr[1];
+                        entries.add(new int[] { k, m });
+                        values.add(m > k ? -1 + skew : -1 - skew);
+                    }
+                }
+            }
+        }
+        int[] rows = new int[entries.size()], cols = new int[entries.size()];
+        double[] vals = new double[entries.size()];
+        for (int p = 0; p < rows.length; p++) {
+            rows[p] = entries.get(p)[0] + 1;
+            cols[p] = entries.get(p)[1] + 1;
+            vals[p] = values.get(p);
+        }
+        return SparseMatrix.fromTriplets(n, n, rows, cols, vals);
+    }
+
+    @Test
+    public void iterative() throws MatrixException {
+        SparseMatrix A = grid(20, 0), B = grid(20, 0.4);
+        double[] values = new double[400];
+        for (int k = 0; k < 400; k++) {
+            values[k] = k % 9 - 4;
+        }
+        Vector b = new Vector(values);
+
+        IterativeSolver cg = new IterativeSolver(A, IterativeSolver.Method.CONJUGATE_GRADIENT);
+        Vector x = cg.solve(b);
+        assertTrue(cg.hasConverged());
+        assertTrue(A.multiply(x).equals(b));
+        int plain = cg.getIterations();
+        Preconditioner[] preconditioners = {
+                        new JacobiPreconditioner(A),
+                        new SSORPreconditioner(A, 1.5),
+                        new ILUPreconditioner(A)
+        };
+        for (Preconditioner M : preconditioners) {
+            cg.setPreconditioner(M);
+            assertTrue(A.multiply(cg.solve(b)).equals(b));
+            assertTrue(cg.getIterations() <= plain);
+        }
+        assertTrue(cg.getIterations() < plain);
+
+        // Warm starts and residual callbacks
+        cg.solve(b, x);
+        assertEquals(0, cg.getIterations());
+        ArrayList<Double> residuals = new ArrayList<>();
+        cg.setListener((iteration, residual) -> residuals.add(residual));
+        cg.setPreconditioner(null);
+        cg.setMaxIterations(5);
+        cg.solve(b);
+        assertFalse(cg.hasConverged());
+        assertEquals(5, residuals.size());
+        assertEquals(cg.getResidual(), residuals.get(4), 0);
+
+        for (IterativeSolver.Method method : new IterativeSolver.Method[] {
+                        IterativeSolver.Method.GMRES, IterativeSolver.Method.BICGSTAB }) {
+            IterativeSolver solver = new IterativeSolver(B, method);
+            solver.setTolerance(1e-12);
+            assertTrue(B.multiply(solver.solve(b)).equals(b));
+            int iterations = solver.getIterations();
+            solver.setPreconditioner(new ILUPreconditioner(B));
+            assertTrue(B.multiply(solver.solve(b)).equals(b));
+            assertTrue(solver.getIterations() < iterations);
+        }
+
+        // A dense Matrix, and a matrix-free operator: the 1-D Laplacian
+        SquareMatrix D = (SquareMatrix) B.toMatrix();
+        IterativeSolver gmres = new IterativeSolver(D, IterativeSolver.Method.GMRES);
+        gmres.setRestart(10);
+        assertTrue(B.multiply(gmres.solve(b)).equals(b));
+        LinearOperator laplace = new LinearOperator() {
+            public int size() {
+                return 400;
+            }
+
+            public void apply(double[] u, double[] v) {
+                for (int i = 0; i < 400; i++) {
+                    v[i] = 2 * u[i] - (i > 0 ? u[i - 1] : 0) - (i < 399 ? u[i + 1] : 0);
+                }
+            }
+        };
+        Vector y = new IterativeSolver(laplace, IterativeSolver.Method.CONJUGATE_GRADIENT).solve(b);
+        double[] lower = new double[399], diagonal = new double[400], upper = new double[399];
+        Arrays.fill(lower, -1);
+        Arrays.fill(upper, -1);
+        Arrays.fill(diagonal, 2);
+        assertTrue(new TridiagonalMatrix(lower, diagonal, upper).multiply(y).equals(b));
+    }
+
 }
@@ -0,0 +1,309 @@
+package matrix_calculator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Reads a text file of numbers from a channel a chunk of whole lines at a
+ * time, so that files far larger than memory can be streamed, and parses
+ * the numbers straight from the bytes of each chunk. A chunk may be split
+ * into pieces of whole lines to be parsed in parallel.
+ *
+ * @author AndyPalan */
+final class TextReader {
+
+    /** Creates a new reader of CHANNEL. */
+    TextReader(ReadableByteChannel channel) {
+        _channel = channel;
+        _bytes = new byte[CHUNK_BYTES];
+    }
+
+    /** Returns the next line, without its line terminator, or null at the
+     * end of the input.
+     *
+     * @throws IOException */
+    String readLine() throws IOException {
+        int from = _start;
+        while (true) {
+            for (int i = from; i < _end; i++) {
+                if (_bytes[i] == '\n') {
+                    String line = string(_start, i);
+                    _start = i + 1;
+                    _line++;
+                    return line;
+                }
+            }
+            from = _end - _start;
+            if (!fill()) {
+                if (_start == _end) {
+                    return null;
+                }
+                String line = string(_start, _end);
+                _start = _end;
+                _line++;
+                return line;
+            }
+        }
+    }
+
+    /** Returns the bytes FROM to TO as a String, dropping a trailing
+     * carriage return. */
+    private String string(int from, int to) {
+        if (to > from && _bytes[to - 1] == '\r') {
+            to--;
+        }
+        return new String(_bytes, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    /** Makes the next chunk of whole lines available as bytes() from
+     * start() to end(), returning false if the input is exhausted. The
+     * previous chunk is no longer valid.
+     *
+     * @throws IOException */
+    boolean nextChunk() throws IOException {
+        _line += _chunkLines;
+        _chunkLines = 0;
+        boolean more = fill();
+        while (true) {
+            int last = _end - 1;
+            while (last >= _start && _bytes[last] != '\n') {
+                last--;
+            }
+            if (last >= _start || (!more && _start < _end)) {
+                _chunkStart = _start;
+                _chunkEnd = last >= _start ? last + 1 : _end;
+                _start = _chunkEnd;
+                return true;
+            }
+            if (!more) {
+                return false;
+            }
+            more = fill();
+        }
+    }
+
+    /** Moves the unread bytes to the front of the buffer, growing it if
+     * they fill it, and reads more of the channel after them, returning
+     * false if the channel is exhausted.
+     *
+     * @throws IOException */
+    private boolean fill() throws IOException {
+        if (_eof) {
+            return false;
+        }
+        int unread = _end - _start;
+        if (unread == _bytes.length) {
+            _bytes = Arrays.copyOf(_bytes, 2 * _bytes.length);
+        }
+        System.arraycopy(_bytes, _start, _bytes, 0, unread);
+        _start = 0;
+        _end = unread;
+        ByteBuffer buffer = ByteBuffer.wrap(_bytes, _end, _bytes.length - _end);
+        while (buffer.hasRemaining()) {
+            if (_channel.read(buffer) < 0) {
+                _eof = true;
+                break;
+            }
+        }
+        int read = buffer.position() - _end;
+        _end = buffer.position();
+        return read > 0;
+    }
+
+    /** Returns the buffer holding the current chunk. */
+    byte[] bytes() {
+        return _bytes;
+    }
+
+    /** Returns the index in bytes() of the start of the current chunk. */
+    int start() {
+        return _chunkStart;
+    }
+
+    /** Returns the index in bytes() of the end of the current chunk. */
+    int end() {
+        return _chunkEnd;
+    }
+
+    /** Returns the number of lines before the current chunk, or the number
+     * of lines read by readLine(). */
+    long line() {
+        return _line;
+    }
+
+    /** Records that the current chunk held LINES lines, for line(). */
+    void countLines(long lines) {
+        _chunkLines = lines;
+    }
+
+    /** Returns the boundaries of the pieces of whole lines, each about
+     * PIECE_BYTES long, that the current chunk is split into. Piece k is
+     * from the kth entry to the next. */
+    int[] pieces() {
+        int count = Math.max(1, (_chunkEnd - _chunkStart) / PIECE_BYTES);
+        int[] bounds = new int[count + 1];
+        bounds[0] = _chunkStart;
+        int k = 1;
+        for (int i = 1; i < count; i++) {
+            int p = Math.max(_chunkStart + i * PIECE_BYTES, bounds[k - 1] + 1);
+            while (p < _chunkEnd && _bytes[p - 1] != '\n') {
+                p++;
+            }
+            if (p < _chunkEnd) {
+                bounds[k++] = p;
+            }
+        }
+        bounds[k++] = _chunkEnd;
+        return Arrays.copyOf(bounds, k);
+    }
+
+    /** Returns the index of the first byte from FROM before TO that is not
+     * a space or tab. */
+    static int skipBlanks(byte[] b, int from, int to) {
+        while (from < to && (b[from] == ' ' || b[from] == '\t')) {
+            from++;
+        }
+        return from;
+    }
+
+    /** Returns the index of the first byte from FROM before TO that is a
+     * space, tab or carriage return. */
+    static int skipToken(byte[] b, int from, int to) {
+        while (from < to && b[from] != ' ' && b[from] != '\t' && b[from] != '\r') {
+            from++;
+        }
+        return from;
+    }
+
+    /** Returns the int written in the bytes FROM to TO.
+     *
+     * @throws NumberFormatException */
+    static int parseInt(byte[] b, int from, int to) {
+        long n = 0;
+        boolean negative = from < to && b[from] == '-';
+        int i = negative || (from < to && b[from] == '+') ? from + 1 : from;
+        if (i == to || to - i > 10) {
+            throw new NumberFormatException(text(b, from, to));
+        }
+        for (; i < to; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) {
+                throw new NumberFormatException(text(b, from, to));
+            }
+            n = 10 * n + d;
+        }
+        n = negative ? -n : n;
+        if (n != (int) n) {
+            throw new NumberFormatException(text(b, from, to));
+        }
+        return (int) n;
+    }
+
+    /** Returns the double written in the bytes FROM to TO. A decimal with at
+     * most 15 significant digits and a power of ten of at most 22 is
+     * computed directly, as the one rounding of an exact integer multiplied
+     * or divided by an exact power of ten, which is correctly rounded. Any
+     * other number is left to Double.parseDouble().
+     *
+     * @throws NumberFormatException */
+    static double parseDouble(byte[] b, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (b[i] == '-' || b[i] == '+')) {
+            negative = b[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0, exponent = 0;
+        boolean any = false, exact = true;
+        for (; i < to && b[i] >= '0' && b[i] <= '9'; i++) {
+            any = true;
+            if (digits < 18) {
+                mantissa = 10 * mantissa + (b[i] - '0');
+                digits += mantissa == 0 ? 0 : 1;
+            } else {
+                exponent++;
+                exact = false;
+            }
+        }
+        if (i < to && b[i] == '.') {
+            for (i++; i < to && b[i] >= '0' && b[i] <= '9'; i++) {
+                any = true;
+                if (digits < 18) {
+                    mantissa = 10 * mantissa + (b[i] - '0');
+                    digits += mantissa == 0 ? 0 : 1;
+                    exponent--;
+                } else {
+                    exact = false;
+                }
+            }
+        }
+        if (any && i < to && (b[i] == 'e' || b[i] == 'E')) {
+            i++;
+            boolean negativeExponent = i < to && b[i] == '-';
+            if (i < to && (b[i] == '-' || b[i] == '+')) {
+                i++;
+            }
+            int e = 0, start = i;
+            for (; i < to && b[i] >= '0' && b[i] <= '9'; i++) {
+                e = Math.min(10 * e + (b[i] - '0'), 100000);
+            }
+            if (i == start) {
+                any = false;
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+        if (any && i == to && exact) {
+            if (mantissa == 0) {
+                return negative ? -0.0 : 0.0;
+            }
+            if (digits <= 15 && exponent >= -22 && exponent <= 22) {
+                double x = mantissa;
+                x = exponent < 0 ? x / POWERS[-exponent] : x * POWERS[exponent];
+                return negative ? -x : x;
+            }
+        }
+        return Double.parseDouble(text(b, from, to));
+    }
+
+    /** Returns the bytes FROM to TO as a String. */
+    static String text(byte[] b, int from, int to) {
+        return new String(b, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    /** The powers of ten that are exact doubles. */
+    private static final double[] POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** The number of bytes read from the channel at a time. */
+    static final int CHUNK_BYTES = 1 << 23;
+
+    /** The size of the pieces a chunk is split into to be parsed in
+     * parallel. */
+    static final int PIECE_BYTES = 1 << 18;
+
+    /** The channel read. */
+    private final ReadableByteChannel _channel;
+
+    /** The bytes read and not yet discarded. */
+    private byte[] _bytes;
+
+    /** The first unread byte of _bytes, and one past the last byte read. */
+    private int _start, _end;
+
+    /** The current chunk in _bytes. */
+    private int _chunkStart, _chunkEnd;
+
+    /** The number of lines before the current chunk. */
+    private long _line;
+
+    /** The number of lines in the current chunk. */
+    private long _chunkLines;
+
+    /** True once the channel is exhausted. */
+    private boolean _eof;
+}
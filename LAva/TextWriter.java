@@ -0,0 +1,81 @@
+package matrix_calculator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/** Writes a text file of numbers to a channel, formatting batches of lines
+ * in parallel and writing them in order.
+ *
+ * @author AndyPalan */
+final class TextWriter {
+
+    /** A formatter of a range of the lines of a file. */
+    interface Lines {
+        /** Appends lines FROM (inclusive) to TO (exclusive), counted from 0,
+         * each ending with a newline, to OUT. */
+        void format(long from, long to, StringBuilder out);
+    }
+
+    /** Writes TEXT to CHANNEL.
+     *
+     * @throws IOException */
+    static void write(WritableByteChannel channel, String text) throws IOException {
+        write(channel, text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /** Writes the COUNT lines formatted by LINES to CHANNEL, where each line
+     * holds about ENTRIES numbers.
+     *
+     * @throws IOException */
+    static void write(WritableByteChannel channel, long count, int entries, Lines lines)
+        throws IOException {
+        int pieceLines = Math.max(1, PIECE_ENTRIES / Math.max(1, entries));
+        long batch = (long) pieceLines * PIECES;
+        byte[][] pieces = new byte[PIECES][];
+        for (long first = 0; first < count; first += batch) {
+            long start = first;
+            int n = (int) Math.min(PIECES, (count - first + pieceLines - 1) / pieceLines);
+            Parallel.forRows(n, (long) pieceLines * entries, (from, to) -> {
+                StringBuilder out = new StringBuilder();
+                for (int k = from; k < to; k++) {
+                    out.setLength(0);
+                    long line = start + (long) k * pieceLines;
+                    lines.format(line, Math.min(count, line + pieceLines), out);
+                    pieces[k] = out.toString().getBytes(StandardCharsets.ISO_8859_1);
+                }
+            });
+            for (int k = 0; k < n; k++) {
+                write(channel, pieces[k]);
+                pieces[k] = null;
+            }
+        }
+    }
+
+    /** Writes BYTES to CHANNEL.
+     *
+     * @throws IOException */
+    private static void write(WritableByteChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /** Appends X to OUT, without a fraction if it is an integer, and
+     * otherwise as Double.toString() writes it, which reads back as X. */
+    static void append(StringBuilder out, double x) {
+        if (x == (long) x && Math.abs(x) < 1e15 && (x != 0 || 1 / x > 0)) {
+            out.append((long) x);
+        } else {
+            out.append(x);
+        }
+    }
+
+    /** The number of entries formatted together by one task. */
+    private static final int PIECE_ENTRIES = 1 << 14;
+
+    /** The number of pieces formatted before they are written. */
+    private static final int PIECES = 64;
+}
@@ -0,0 +1,109 @@
+package matrix_calculator;
+
+/** A band Matrix with lower and upper bandwidths of 1, whose non-zero
+ * entries lie on the diagonal and the diagonals next to it. Systems that
+ * are diagonally dominant, as most from splines and 1-D discretizations
+ * are, are solved by the Thomas algorithm, which needs no pivoting and
+ * takes O(n) time; others fall back on the pivoted band LU factorization.
+ *
+ * @author AndyPalan */
+public class TridiagonalMatrix extends BandMatrix {
+
+    /** Creates a new N x N tridiagonal Matrix of zeros.
+     *
+     * @throws MatrixException */
+    public TridiagonalMatrix(int n) throws MatrixException {
+        super(n, 1, 1);
+    }
+
+    /** Creates a new tridiagonal Matrix with the subdiagonal LOWER, the
+     * diagonal DIAGONAL and the superdiagonal UPPER, where LOWER and UPPER
+     * have one entry fewer than DIAGONAL.
+     *
+     * @throws MatrixException */
+    public TridiagonalMatrix(double[] lower, double[] diagonal, double[] upper)
+        throws MatrixException {
+        this(diagonal.length);
+        int n = diagonal.length;
+        if (lower.length != n - 1 || upper.length != n - 1) {
+            throw new MatrixException("The diagonals do not have the appropriate"
+                            + " lengths.");
+        }
+        double[] d = data();
+        for (int i = 0; i < n; i++) {
+            d[3 * i] = i > 0 ? lower[i - 1] : 0;
+            d[3 * i + 1] = diagonal[i];
+            d[3 * i + 2] = i < n - 1 ? upper[i] : 0;
+        }
+    }
+
+    /** Creates a new tridiagonal Matrix holding the entries of the square
+     * Matrix A, which must have no non-zero entries outside the three
+     * diagonals.
+     *
+     * @throws MatrixException */
+    public TridiagonalMatrix(Matrix A) throws MatrixException {
+        this(A.getHeight());
+        int[] bandwidths = bandwidths(A);
+        if (bandwidths[0] > 1 || bandwidths[1] > 1) {
+            throw new MatrixException("This matrix is not tridiagonal.");
+        }
+        int n = getHeight();
+        double[] d = data();
+        for (int i = 0; i < n; i++) {
+            d[3 * i] = i > 0 ? A.get(i + 1, i) : 0;
+            d[3 * i + 1] = A.get(i + 1, i + 1);
+            d[3 * i + 2] = i < n - 1 ? A.get(i + 1, i + 2) : 0;
+        }
+    }
+
+    @Override
+    public void set(int r, int c, double k) throws MatrixException {
+        super.set(r, c, k);
+        _dominant = null;
+    }
+
+    @Override
+    public Vector solve(Vector b) throws MatrixException {
+        if (b.numRows() != getHeight() || !isDominant()) {
+            return super.solve(b);
+        }
+        int n = getHeight();
+        double[] d = data();
+        double[] bv = b.values();
+        double[] c = new double[n];
+        double[] x = new double[n];
+        double m = d[1];
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                m = d[3 * i + 1] - d[3 * i] * c[i - 1];
+            }
+            if (Math.abs(m) < Matrix.epsilon) {
+                return super.solve(b);
+            }
+            c[i] = d[3 * i + 2] / m;
+            x[i] = (bv[i] - (i > 0 ? d[3 * i] * x[i - 1] : 0)) / m;
+        }
+        for (int i = n - 2; i >= 0; i--) {
+            x[i] -= c[i] * x[i + 1];
+        }
+        return new Vector(x);
+    }
+
+    /** Returns true if the diagonal entry of every row is at least the sum
+     * of the magnitudes of the other entries. */
+    private boolean isDominant() {
+        if (_dominant == null) {
+            double[] d = data();
+            _dominant = true;
+            for (int i = 0; i < getHeight() && _dominant; i++) {
+                _dominant = Math.abs(d[3 * i + 1]) >= Math.abs(d[3 * i]) + Math.abs(d[3 * i + 2]);
+            }
+        }
+        return _dominant;
+    }
+
+    /** True if this Matrix is diagonally dominant, or null if not yet
+     * known. */
+    private Boolean _dominant;
+}
@@ -17,11 +17,9 @@ public class Vector {
      * 
      * @throws MatrixException */
     public Matrix matricize() throws MatrixException {
-        double[][] contents = new double[_numRows][1];
-        for (int row = 0; row < _numRows; row++) {
-            contents[row][0] = _values[row];
-        }
-        Matrix matrix = new Matrix(_numRows, 1, contents);
+        double[] contents = new double[_numRows];
+        System.arraycopy(_values, 0, contents, 0, _numRows);
+        Matrix matrix = new Matrix(_numRows, 1, contents, 0, 1);
         return matrix;
     }
 
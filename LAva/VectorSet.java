@@ -17,19 +17,20 @@ public class VectorSet {
      * 
      * @throws MatrixException */
     public Matrix matricize() throws MatrixException {
-        double[][] contents = new double[_vectors.get(0).numRows()][size()];
+        int h = _vectors.get(0).numRows();
+        double[] contents = new double[h * size()];
         int count = 0;
         for (Vector vector : _vectors) {
             for (int row = 0; row < vector.numRows(); row++) {
-                contents[row][count] = vector.values()[row];
+                contents[row * size() + count] = vector.values()[row];
             }
             count++;
         }
         Matrix matrix;
-        if (_vectors.get(0).numRows() == size()) {
-            matrix = new SquareMatrix(size(), contents);
+        if (h == size()) {
+            matrix = new SquareMatrix(size(), contents, 0, size());
         } else {
-            matrix = new Matrix(_vectors.get(0).numRows(), size(), contents);
+            matrix = new Matrix(h, size(), contents, 0, size());
         }
         return matrix;
     }
@@ -92,7 +93,7 @@ public class VectorSet {
         }
         int h = _vectors.get(0).numRows();
         int w = _vectors.size();
-        Matrix matrix = new Matrix(h, w, new double[h][w]);
+        Matrix matrix = new Matrix(h, w);
         for (int c = 0; c < w; c++) {
             Vector v = get(c);
             for (int r = 0; r < h; r++) {
@@ -117,7 +118,7 @@ public class VectorSet {
             }
         }
         int h = _vectors.get(0).numRows();
-        SquareMatrix matrix = new SquareMatrix(h, new double[h][h]);
+        SquareMatrix matrix = new SquareMatrix(h);
         for (int c = 0; c < h; c++) {
             Vector v = get(c);
             for (int r = 0; r < h; r++) {